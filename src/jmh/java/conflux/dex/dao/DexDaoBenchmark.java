@@ -0,0 +1,107 @@
+package conflux.dex.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.model.Order;
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.OrderType;
+
+/**
+ * Benchmarks to call DAO via the direct delegation, compared with the reflective
+ * proxy that dispatched by declaring class of method. In-memory DAO is used,
+ * so that the dispatch overhead dominates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DexDaoBenchmark {
+
+	private static final int SAMPLES = 1024;
+
+	private DexDao direct;
+	private DexDao proxy;
+	private int index;
+
+	@Setup
+	public void setup() {
+		InMemoryDexDao dao = new InMemoryDexDao();
+		this.direct = dao;
+		this.proxy = (DexDao) Proxy.newProxyInstance(DexDao.class.getClassLoader(), new Class[] { DexDao.class },
+				new ReflectiveInvocationHandler(dao));
+
+		for (int i = 0; i < SAMPLES; i++) {
+			Order order = new Order();
+			order.setProductId(1);
+			order.setUserId(1);
+			order.setType(OrderType.Limit);
+			order.setSide(OrderSide.Buy);
+			order.setPrice(BigDecimal.ONE);
+			order.setAmount(BigDecimal.ONE);
+			order.setFilledAmount(BigDecimal.ZERO);
+			order.setFilledFunds(BigDecimal.ZERO);
+			dao.addOrder(order);
+		}
+	}
+
+	@Benchmark
+	public Object getOrderDirect() {
+		return this.direct.getOrder((this.index++ & (SAMPLES - 1)) + 1);
+	}
+
+	@Benchmark
+	public Object getOrderProxy() {
+		return this.proxy.getOrder((this.index++ & (SAMPLES - 1)) + 1);
+	}
+
+	@Benchmark
+	public void fillOrderDirect() {
+		this.direct.fillOrder((this.index++ & (SAMPLES - 1)) + 1, BigDecimal.ZERO, BigDecimal.ZERO);
+	}
+
+	@Benchmark
+	public void fillOrderProxy() {
+		this.proxy.fillOrder((this.index++ & (SAMPLES - 1)) + 1, BigDecimal.ZERO, BigDecimal.ZERO);
+	}
+
+	/**
+	 * Dispatches in the same way as the previous proxy based DexDao.
+	 */
+	private static class ReflectiveInvocationHandler implements InvocationHandler {
+		private Map<Class<?>, Object> delegates = new HashMap<Class<?>, Object>();
+
+		ReflectiveInvocationHandler(DelegatingDexDao dao) {
+			this.delegates.put(Transactional.class, dao);
+			this.delegates.put(OrderDao.class, dao.orderDao);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object impl = this.delegates.get(method.getDeclaringClass());
+			if (impl == null) {
+				throw new Exception(String.format("delegate for type %s not registered", method.getDeclaringClass().getName()));
+			}
+
+			try {
+				return method.invoke(impl, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+
+}
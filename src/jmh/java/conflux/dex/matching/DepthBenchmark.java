@@ -0,0 +1,94 @@
+package conflux.dex.matching;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.model.OrderSide;
+
+/**
+ * Benchmarks to add, remove and poll orders of a depth with specified price levels
+ * and total orders, e.g. tens of thousands of resting orders from market makers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DepthBenchmark {
+
+	@Param({ "100", "1000" })
+	public int levels;
+
+	@Param({ "1000", "50000" })
+	public int orders;
+
+	private Depth depth;
+	private long nextOrderId;
+	private BigDecimal[] prices;
+	private long[] orderIds;
+	private Random random = new Random(0);
+
+	@Setup
+	public void setup() {
+		this.depth = new Depth(OrderSide.Sell);
+
+		this.prices = new BigDecimal[this.levels];
+		for (int i = 0; i < this.levels; i++) {
+			this.prices[i] = OrderBookBenchmark.priceOf(OrderSide.Sell, i);
+		}
+
+		this.orderIds = new long[this.orders];
+		for (int i = 0; i < this.orders; i++) {
+			this.orderIds[i] = ++this.nextOrderId;
+			this.depth.add(this.newOrder(this.orderIds[i]));
+		}
+	}
+
+	private Order newOrder(long id) {
+		BigDecimal price = this.prices[this.random.nextInt(this.prices.length)];
+		return Order.limitSell(id, price, OrderBookBenchmark.AMOUNT);
+	}
+
+	/**
+	 * Add a new order at a random price level and then remove it.
+	 */
+	@Benchmark
+	public Object addAndRemove() {
+		Order order = this.newOrder(++this.nextOrderId);
+		this.depth.add(order);
+		return this.depth.remove(order.getId());
+	}
+
+	/**
+	 * Cancel a random resting order and then add a new one at a random price level.
+	 */
+	@Benchmark
+	public Object removeAndAdd() {
+		int index = this.random.nextInt(this.orderIds.length);
+		Object removed = this.depth.remove(this.orderIds[index]);
+
+		this.orderIds[index] = ++this.nextOrderId;
+		this.depth.add(this.newOrder(this.orderIds[index]));
+
+		return removed;
+	}
+
+	/**
+	 * Poll the best order, and then add a new order at the same price.
+	 */
+	@Benchmark
+	public Object pollAndAdd() {
+		Order order = this.depth.poll().get();
+		this.depth.add(Order.limitSell(++this.nextOrderId, order.getPrice(), order.getAmount()));
+		return order;
+	}
+
+}
@@ -0,0 +1,119 @@
+package conflux.dex.matching;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.common.Handler;
+import conflux.dex.model.OrderSide;
+
+/**
+ * Benchmarks to place and cancel orders in an order book, which is pre-filled with
+ * specified price levels on both sides and orders in each price level.
+ *
+ * Each benchmark method keeps the shape of order book unchanged, so that the results
+ * are repeatable for long iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrderBookBenchmark {
+
+	static final int PRICE_SCALE = 4;
+	static final int AMOUNT_SCALE = 4;
+
+	// best bid is 99.99 and best ask is 100.01
+	static final BigDecimal MID_PRICE = BigDecimal.valueOf(1000000, PRICE_SCALE);
+	static final BigDecimal TICK = BigDecimal.valueOf(100, PRICE_SCALE);
+	static final BigDecimal AMOUNT = BigDecimal.valueOf(10000, AMOUNT_SCALE);
+
+	@Param({ "10", "100", "1000" })
+	public int levels;
+
+	@Param({ "1", "20" })
+	public int ordersPerLevel;
+
+	@Param({ "false", "true" })
+	public boolean fixedPoint;
+
+	private OrderBook book;
+	private long nextOrderId;
+	private BigDecimal[] bidPrices;
+	private BigDecimal bestAsk;
+	private Random random = new Random(0);
+	// matching logs are published with reused log as engine does
+	private long publishedLogs;
+	private Handler<Log> sink = log -> this.publishedLogs++;
+
+	static BigDecimal priceOf(OrderSide side, int level) {
+		BigDecimal delta = TICK.multiply(BigDecimal.valueOf(level + 1));
+		return side == OrderSide.Buy ? MID_PRICE.subtract(delta) : MID_PRICE.add(delta);
+	}
+
+	static OrderBook newOrderBook(int levels, int ordersPerLevel, boolean fixedPoint) {
+		OrderBook book = new OrderBook(1, AMOUNT_SCALE);
+		book.setDailyLimit(false);
+		book.setOpen(true);
+
+		if (fixedPoint) {
+			book.setFixedPoint(FixedPoint.create(PRICE_SCALE, AMOUNT_SCALE).get());
+		}
+
+		long id = 1;
+		for (int i = 0; i < levels; i++) {
+			for (int j = 0; j < ordersPerLevel; j++) {
+				book.placeOrder(Order.limitBuy(id++, priceOf(OrderSide.Buy, i), AMOUNT));
+				book.placeOrder(Order.limitSell(id++, priceOf(OrderSide.Sell, i), AMOUNT));
+			}
+		}
+
+		return book;
+	}
+
+	@Setup
+	public void setup() {
+		this.book = newOrderBook(this.levels, this.ordersPerLevel, this.fixedPoint);
+		this.nextOrderId = 2L * this.levels * this.ordersPerLevel + 1;
+
+		this.bidPrices = new BigDecimal[this.levels];
+		for (int i = 0; i < this.levels; i++) {
+			this.bidPrices[i] = priceOf(OrderSide.Buy, i);
+		}
+
+		this.bestAsk = priceOf(OrderSide.Sell, 0);
+	}
+
+	/**
+	 * Place a maker order at a random price level and then cancel it.
+	 */
+	@Benchmark
+	public Object placeAndCancel() {
+		BigDecimal price = this.bidPrices[this.random.nextInt(this.bidPrices.length)];
+		Order order = Order.limitBuy(this.nextOrderId++, price, AMOUNT);
+
+		this.book.placeOrder(order, this.sink);
+
+		return this.book.cancelOrder(order.getId(), OrderSide.Buy).orElse(order);
+	}
+
+	/**
+	 * Place a taker order that fully filled with the best maker order,
+	 * and then place a new maker order at the best price level.
+	 */
+	@Benchmark
+	public long takeAndRefill() {
+		this.book.placeOrder(Order.limitBuy(this.nextOrderId++, this.bestAsk, AMOUNT), this.sink);
+		this.book.placeOrder(Order.limitSell(this.nextOrderId++, this.bestAsk, AMOUNT), this.sink);
+		return this.publishedLogs;
+	}
+
+}
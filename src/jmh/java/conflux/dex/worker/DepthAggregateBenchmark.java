@@ -0,0 +1,58 @@
+package conflux.dex.worker;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.model.OrderSide;
+
+/**
+ * Benchmarks to get the aggregated depth levels, which is requested by REST API
+ * and published to websocket subscribers periodically.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DepthAggregateBenchmark {
+
+	private static final int PRICE_SCALE = 4;
+
+	@Param({ "0", "2" })
+	public int step;
+
+	// 20 for websocket and 150 for REST API by default
+	@Param({ "20", "150" })
+	public int depth;
+
+	@Param({ "5000" })
+	public int orders;
+
+	private DepthAggregate aggregate;
+
+	@Setup
+	public void setup() {
+		this.aggregate = new DepthAggregate(OrderSide.Sell, PRICE_SCALE, this.step);
+
+		BigDecimal price = BigDecimal.valueOf(1000000, PRICE_SCALE);
+		BigDecimal tick = BigDecimal.valueOf(1, PRICE_SCALE);
+		for (int i = 0; i < this.orders; i++) {
+			price = price.add(tick);
+			this.aggregate.add(price, BigDecimal.ONE);
+		}
+	}
+
+	@Benchmark
+	public List<DepthPriceLevel> getLevels() {
+		return this.aggregate.getLevels(this.depth);
+	}
+
+}
@@ -0,0 +1,80 @@
+package conflux.dex.worker.batch;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.dao.DexDao;
+import conflux.dex.matching.Log;
+import conflux.dex.matching.Order;
+import conflux.dex.matching.OrderBook;
+import conflux.dex.model.OrderSide;
+import conflux.dex.service.FeeService;
+
+/**
+ * Benchmarks to aggregate a batch of matching logs for settlement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SettlementAggregatorBenchmark {
+
+	// engine.log.settlement.batch.max is 60 by default
+	@Param({ "10", "60" })
+	public int batchSize;
+
+	private List<Log> logs;
+	private FeeService feeService;
+
+	@Setup
+	public void setup() {
+		this.feeService = new FeeService(DexDao.newInMemory(), null);
+
+		OrderBook book = new OrderBook(1, 4);
+		book.setDailyLimit(false);
+		book.setOpen(true);
+
+		// each taker order is matched with 2 maker orders of different users,
+		// and completed with both makers.
+		this.logs = new ArrayList<Log>(this.batchSize);
+		long id = 1;
+		while (this.logs.size() < this.batchSize) {
+			BigDecimal price = BigDecimal.valueOf(100 + id % 10);
+			book.placeOrder(newOrder(Order.limitSell(id++, price, BigDecimal.ONE), 1));
+			book.placeOrder(newOrder(Order.limitSell(id++, price, BigDecimal.ONE), 2));
+
+			Order taker = newOrder(Order.limitBuy(id++, price, BigDecimal.valueOf(2)), 3);
+			for (Log log : book.placeOrder(taker)) {
+				if (this.logs.size() < this.batchSize) {
+					this.logs.add(log);
+				}
+			}
+		}
+	}
+
+	private static Order newOrder(Order order, long userId) {
+		order.setUserId(userId);
+		order.setBaseAccountId(userId * 2);
+		order.setQuoteAccountId(userId * 2 + 1);
+		order.setFeeAccountId(order.getSide() == OrderSide.Buy ? userId * 2 : userId * 2 + 1);
+		order.setFeeRateTaker(0.002);
+		order.setFeeRateMaker(0.001);
+		return order;
+	}
+
+	@Benchmark
+	public Object aggregate() {
+		return SettlementAggregator.aggregate(this.logs, this.feeService);
+	}
+
+}
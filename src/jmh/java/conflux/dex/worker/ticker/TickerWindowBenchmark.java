@@ -0,0 +1,78 @@
+package conflux.dex.worker.ticker;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.Tick;
+import conflux.dex.model.Trade;
+
+/**
+ * Benchmarks to update the 24 hours ticker window with trades or aggregated tick,
+ * which happens for every product on every settlement batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TickerWindowBenchmark {
+
+	private static final int SAMPLES = 1024;
+
+	private TickerWindow window;
+	private Trade[] trades = new Trade[SAMPLES];
+	private Tick[] ticks = new Tick[SAMPLES];
+	private int index;
+
+	@Setup
+	public void setup() {
+		Instant now = Instant.now();
+		BigDecimal price = BigDecimal.valueOf(100);
+
+		this.window = new TickerWindow();
+		this.window.move(Tick.open(1, 1, price, BigDecimal.ONE, now));
+
+		// random walk prices, so that high/low prices are updated occasionally
+		Random random = new Random(0);
+		Timestamp timestamp = Timestamp.from(now);
+		for (int i = 0; i < SAMPLES; i++) {
+			price = price.add(BigDecimal.valueOf(random.nextInt(21) - 10, 2));
+
+			Trade trade = new Trade(1, 2 * i + 1, 2 * i + 2, price, BigDecimal.ONE, OrderSide.Buy, BigDecimal.ZERO, BigDecimal.ZERO);
+			trade.setCreateTime(timestamp);
+			trade.setUpdateTime(timestamp);
+			this.trades[i] = trade;
+
+			this.ticks[i] = Tick.open(1, 0, price, BigDecimal.ONE, now);
+		}
+	}
+
+	@Benchmark
+	public Object updateTrade() {
+		this.window.update(this.trades[this.index++ & (SAMPLES - 1)]);
+		return this.window.getAggregate();
+	}
+
+	@Benchmark
+	public void updateTradeWithoutRead() {
+		// aggregated tick is not created until read
+		this.window.update(this.trades[this.index++ & (SAMPLES - 1)]);
+	}
+
+	@Benchmark
+	public Object updateTick() {
+		this.window.update(this.ticks[this.index++ & (SAMPLES - 1)]);
+		return this.window.getAggregate();
+	}
+
+}
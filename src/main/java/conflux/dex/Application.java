@@ -27,9 +27,12 @@ import org.springframework.web.socket.server.standard.ServerEndpointExporter;
 import conflux.dex.blockchain.CfxBuilder;
 import conflux.dex.blockchain.crypto.Domain;
 import conflux.dex.common.BusinessException;
+import conflux.dex.common.Metrics;
 import conflux.dex.common.SignatureValidator;
 import conflux.dex.common.Validators;
+import conflux.dex.common.channel.BoundedChannel;
 import conflux.dex.common.channel.Channel;
+import conflux.dex.common.channel.OverflowPolicy;
 import conflux.dex.config.ConfigRefresh;
 import conflux.dex.config.ConfigService;
 import conflux.dex.controller.metric.MetricsServlet;
@@ -78,8 +81,18 @@ public class Application {
 	}
 	
 	@Bean
-	public Channel<Object> getObjectChannel() {
-		return Channel.create();
+	public Channel<Object> getObjectChannel(
+			@Value("${engine.channel.capacity:0}") int capacity,
+			@Value("${engine.channel.overflow:Block}") OverflowPolicy policy,
+			@Value("${engine.channel.lockfree:false}") boolean lockFree) {
+		Channel<Object> channel = Channel.create(capacity, policy, lockFree);
+		
+		if (channel instanceof BoundedChannel) {
+			((BoundedChannel<Object>) channel).setQueueMetric(Metrics.queue(Channel.class, "engine"));
+			logger.info("engine channel created, capacity = {}, policy = {}, lockFree = {}", capacity, policy, lockFree);
+		}
+		
+		return channel;
 	}
 	
 	@Bean(destroyMethod = "shutdownNow")
@@ -9,6 +9,7 @@ public enum BusinessFault {
     TopicNotSupported(7, "topic not supported"),
     RecordAlreadyExists(8, "record already exists"),
     InvalidChecksumAddress(9, "wrong checksum address"),
+    TopicEncodingNotSupported(10, "encoding not supported for topic"),
     SignatureParseFail(15, "Invalid signature."),
     // currency
     CurrencyNotFound(100, "currency not found"),
@@ -47,7 +48,8 @@ public enum BusinessFault {
     TickNotFound(600, "tick not found"),
 
     // system
-    SystemPaused(1001, "system paused");
+    SystemPaused(1001, "system paused"),
+    SystemBusy(1002, "system busy, please try again later");
 
     private int code;
     private String message;
@@ -113,6 +113,9 @@ public class Metrics {
 	public static class QueueMetric implements Metric {
 		private Meter enqueue = new Meter();
 		private Meter dequeue = new Meter();
+		private Meter reject = new Meter();
+		// 0 for unbounded queue
+		private long capacity;
 		
 		public Meter getEnqueue() {
 			return enqueue;
@@ -126,6 +129,25 @@ public class Metrics {
 			return this.enqueue.getCount() - this.dequeue.getCount();
 		}
 		
+		public Meter getReject() {
+			return reject;
+		}
+		
+		public long getCapacity() {
+			return capacity;
+		}
+		
+		public void setCapacity(long capacity) {
+			this.capacity = capacity;
+		}
+		
+		/**
+		 * Returns the fill level of bounded queue in range [0, 1], or 0 for unbounded queue.
+		 */
+		public double getFillRatio() {
+			return this.capacity <= 0 ? 0 : Math.min(1, Math.max(0, (double) this.getSize() / this.capacity));
+		}
+		
 		public void enqueue() {
 			this.enqueue.mark();
 		}
@@ -141,6 +163,10 @@ public class Metrics {
 		public void dequeue(long n) {
 			this.dequeue.mark(n);
 		}
+		
+		public void reject() {
+			this.reject.mark();
+		}
 	}
 	
 	public static interface InfluxDBReportable {
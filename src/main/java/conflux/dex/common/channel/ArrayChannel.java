@@ -0,0 +1,35 @@
+package conflux.dex.common.channel;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded channel backed by an array based blocking queue, which supports multiple
+ * senders and receivers.
+ */
+class ArrayChannel<T> extends BoundedChannel<T> {
+
+	private BlockingQueue<T> queue;
+
+	public ArrayChannel(int capacity, OverflowPolicy policy) {
+		super(capacity, policy);
+
+		this.queue = new ArrayBlockingQueue<T>(capacity);
+	}
+
+	@Override
+	public int size() {
+		return this.queue.size();
+	}
+
+	@Override
+	protected void put(T data) throws InterruptedException {
+		this.queue.put(data);
+	}
+
+	@Override
+	protected T take() throws InterruptedException {
+		return this.queue.take();
+	}
+
+}
@@ -0,0 +1,126 @@
+package conflux.dex.common.channel;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.BusinessFault;
+import conflux.dex.common.Metrics.QueueMetric;
+
+/**
+ * Channel with bounded capacity, which admits new requests according to the overflow policy.
+ */
+public abstract class BoundedChannel<T> implements Channel<T> {
+
+	// percentage of capacity to start shedding requests
+	private static final int SHED_THRESHOLD_PERCENT = 80;
+
+	private int capacity;
+	private OverflowPolicy policy;
+	private int shedThreshold;
+	private QueueMetric queueMetric;
+
+	protected BoundedChannel(int capacity, OverflowPolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity should be greater than 0");
+		}
+
+		this.capacity = capacity;
+		this.policy = policy;
+		this.shedThreshold = (int) ((long) capacity * SHED_THRESHOLD_PERCENT / 100);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	public void setQueueMetric(QueueMetric queueMetric) {
+		this.queueMetric = queueMetric;
+
+		if (queueMetric != null) {
+			queueMetric.setCapacity(this.capacity);
+		}
+	}
+
+	/**
+	 * Returns the number of data in channel.
+	 */
+	public abstract int size();
+
+	/**
+	 * Put data into channel, and wait if channel is full.
+	 */
+	protected abstract void put(T data) throws InterruptedException;
+
+	/**
+	 * Take data from channel, and wait if channel is empty.
+	 */
+	protected abstract T take() throws InterruptedException;
+
+	@Override
+	public void admit() throws BusinessException {
+		if (!this.isAdmitted(this.size())) {
+			if (this.queueMetric != null) {
+				this.queueMetric.reject();
+			}
+
+			throw BusinessFault.SystemBusy.rise();
+		}
+	}
+
+	boolean isAdmitted(int size) {
+		switch (this.policy) {
+		case Reject:
+			return size < this.capacity;
+		case Shed:
+			if (size < this.shedThreshold) {
+				return true;
+			}
+
+			if (size >= this.capacity) {
+				return false;
+			}
+
+			// linear probability to shed requests between threshold and capacity
+			int range = this.capacity - this.shedThreshold;
+			return ThreadLocalRandom.current().nextInt(range) >= size - this.shedThreshold;
+		default:
+			return true;
+		}
+	}
+
+	@Override
+	public void send(T data) throws BusinessException {
+		// count in queue size before blocked, so that blocked senders are observed
+		if (this.queueMetric != null) {
+			this.queueMetric.enqueue();
+		}
+
+		try {
+			this.put(data);
+		} catch (InterruptedException e) {
+			// balance the queue size, since data not sent
+			if (this.queueMetric != null) {
+				this.queueMetric.dequeue();
+			}
+
+			Thread.currentThread().interrupt();
+			throw BusinessException.internalError("failed to send data in channel", e);
+		}
+	}
+
+	@Override
+	public T receive() throws InterruptedException {
+		T data = this.take();
+
+		if (this.queueMetric != null) {
+			this.queueMetric.dequeue();
+		}
+
+		return data;
+	}
+
+}
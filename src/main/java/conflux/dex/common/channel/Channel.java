@@ -10,6 +10,20 @@ public interface Channel<T> extends Sender<T>, Receiver<T> {
 	static <T> Channel<T> create() {
 		return new DefaultChannel<T>();
 	}
+	
+	/**
+	 * Create a bounded channel if capacity is greater than 0, otherwise unbounded channel.
+	 * @param lockFree use lock-free ring buffer that supports single receiver only.
+	 */
+	static <T> Channel<T> create(int capacity, OverflowPolicy policy, boolean lockFree) {
+		if (capacity <= 0) {
+			return create();
+		}
+		
+		return lockFree
+				? new LockFreeChannel<T>(capacity, policy)
+				: new ArrayChannel<T>(capacity, policy);
+	}
 
 }
 
@@ -0,0 +1,93 @@
+package conflux.dex.common.channel;
+
+import java.util.concurrent.locks.LockSupport;
+
+import conflux.dex.common.worker.RingBuffer;
+
+/**
+ * Bounded channel backed by a lock-free ring buffer, which supports multiple senders
+ * but only a single receiver, e.g. the matching engine.
+ *
+ * Note, the capacity is rounded up to power of 2.
+ *
+ * Both sender and receiver spin for a while and then park for a short time when channel
+ * is full or empty, and could be interrupted, e.g. on shutdown.
+ */
+class LockFreeChannel<T> extends BoundedChannel<T> {
+
+	private static final int MAX_SPINS = 100;
+	private static final long PARK_NANOS = 50_000;
+
+	private RingBuffer<Slot<T>> buffer;
+
+	public LockFreeChannel(int capacity, OverflowPolicy policy) {
+		super(ceilingPowerOfTwo(capacity), policy);
+
+		this.buffer = new RingBuffer<Slot<T>>(this.getCapacity(), Slot::new);
+	}
+
+	// ring buffer requires capacity of power of 2
+	static int ceilingPowerOfTwo(int capacity) {
+		return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+	}
+
+	@Override
+	public int size() {
+		return this.buffer.size();
+	}
+
+	@Override
+	protected void put(T data) throws InterruptedException {
+		long sequence;
+
+		// claim only if not full, since a claimed slot must be published
+		int spins = 0;
+		while ((sequence = this.buffer.tryClaim()) < 0) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			if (spins < MAX_SPINS) {
+				spins++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+
+		this.buffer.getClaimed(sequence).data = data;
+		this.buffer.publish(sequence);
+	}
+
+	@Override
+	protected T take() throws InterruptedException {
+		long sequence = this.buffer.getConsumed();
+
+		int spins = 0;
+		while (!this.buffer.isPublished(sequence)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			if (spins < MAX_SPINS) {
+				spins++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+
+		// allow GC for received data, since slot is reused
+		Slot<T> slot = this.buffer.get(sequence);
+		T data = slot.data;
+		slot.data = null;
+		this.buffer.release(sequence + 1);
+
+		return data;
+	}
+
+	private static class Slot<T> {
+		T data;
+	}
+
+}
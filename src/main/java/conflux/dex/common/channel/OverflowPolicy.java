@@ -0,0 +1,24 @@
+package conflux.dex.common.channel;
+
+/**
+ * Policy to admit new requests when a bounded channel is full.
+ * 
+ * Note, data that already accepted by system (e.g. order persisted in database) is always
+ * sent to channel, and sender will be blocked if channel is full. Policy only applies to
+ * the admission of new requests, see {@link Sender#admit()}.
+ */
+public enum OverflowPolicy {
+	/**
+	 * Always admit new requests, and block the sender until channel is not full.
+	 */
+	Block,
+	/**
+	 * Reject new requests when channel is full.
+	 */
+	Reject,
+	/**
+	 * Reject new requests randomly once channel is filled over the shed threshold,
+	 * and the probability increases linearly until channel is full.
+	 */
+	Shed,
+}
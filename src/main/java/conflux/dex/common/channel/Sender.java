@@ -6,4 +6,12 @@ public interface Sender<T> {
 	
 	void send(T data) throws BusinessException;
 	
+	/**
+	 * Check whether a new request could be admitted according to the overflow policy,
+	 * which should be called before the request is accepted by system.
+	 * @throws BusinessException if channel is busy to handle more requests.
+	 */
+	default void admit() throws BusinessException {
+	}
+	
 }
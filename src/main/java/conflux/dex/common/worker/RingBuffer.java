@@ -0,0 +1,193 @@
+package conflux.dex.common.worker;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import conflux.dex.common.Handler;
+
+/**
+ * Bounded ring buffer with pre-allocated slots in Disruptor style, which supports
+ * multiple producers and a single consumer.
+ *
+ * Slots are created once by the factory and reused. Producer claims a sequence, writes
+ * data into the slot in place and then publishes the sequence. Consumer reads the published
+ * slots in sequence, and releases slots once handled. So, there is neither node nor data
+ * allocated for each publish, and consumer should copy the data if needed after released.
+ *
+ * When buffer is full, producer will wait until consumer released any slot (backpressure),
+ * and the backpressure handler will be notified.
+ */
+public class RingBuffer<T> {
+
+	private static final int MAX_SPINS = 100;
+	private static final long PARK_NANOS = 100_000;
+
+	private int capacity;
+	private int mask;
+	private Object[] slots;
+	// published sequence of each slot
+	private AtomicLongArray published;
+
+	// next sequence to claim by producers
+	private AtomicLong claimed = new AtomicLong();
+	// next sequence to consume by consumer
+	private AtomicLong consumed = new AtomicLong();
+
+	private AtomicBoolean backpressured = new AtomicBoolean();
+	private Handler<Boolean> backpressureHandler;
+
+	public RingBuffer(int capacity, Supplier<T> factory) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity should be power of 2");
+		}
+
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.slots = new Object[capacity];
+		this.published = new AtomicLongArray(capacity);
+
+		for (int i = 0; i < capacity; i++) {
+			this.slots[i] = factory.get();
+			this.published.set(i, -1);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setBackpressureHandler(Handler<Boolean> backpressureHandler) {
+		this.backpressureHandler = backpressureHandler;
+	}
+
+	public boolean isBackpressured() {
+		return this.backpressured.get();
+	}
+
+	/**
+	 * Returns the number of claimed but not released slots.
+	 */
+	public int size() {
+		return (int) (this.claimed.get() - this.consumed.get());
+	}
+
+	public boolean isEmpty() {
+		return !this.isPublished(this.consumed.get());
+	}
+
+	/**
+	 * Claims the next slot to write, and blocks if buffer is full. The claimed sequence
+	 * must be published later, otherwise consumer will be blocked.
+	 * @return the claimed sequence.
+	 */
+	public long claim() {
+		long sequence = this.claimed.getAndIncrement();
+
+		if (sequence - this.capacity >= this.consumed.get()) {
+			this.waitForCapacity(sequence);
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Claims the next slot to write without blocking, so that producer could wait for capacity
+	 * in its own way, e.g. interruptible.
+	 * @return the claimed sequence, or -1 if buffer is full.
+	 */
+	public long tryClaim() {
+		while (true) {
+			long sequence = this.claimed.get();
+			if (sequence - this.capacity >= this.consumed.get()) {
+				return -1;
+			}
+
+			if (this.claimed.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * Gets the slot of claimed sequence to write, which should be called by producer only.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getClaimed(long sequence) {
+		return (T) this.slots[this.indexOf(sequence)];
+	}
+
+	/**
+	 * Publishes the claimed sequence after slot written, so that consumer could read it.
+	 */
+	public void publish(long sequence) {
+		this.published.set(this.indexOf(sequence), sequence);
+	}
+
+	private void waitForCapacity(long sequence) {
+		if (this.backpressured.compareAndSet(false, true) && this.backpressureHandler != null) {
+			this.backpressureHandler.handle(true);
+		}
+
+		int spins = 0;
+		while (sequence - this.capacity >= this.consumed.get()) {
+			if (spins < MAX_SPINS) {
+				spins++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+		}
+
+		if (this.backpressured.compareAndSet(true, false) && this.backpressureHandler != null) {
+			this.backpressureHandler.handle(false);
+		}
+	}
+
+	private int indexOf(long sequence) {
+		return (int) sequence & this.mask;
+	}
+
+	/**
+	 * Returns the next sequence to consume.
+	 */
+	public long getConsumed() {
+		return this.consumed.get();
+	}
+
+	public boolean isPublished(long sequence) {
+		return this.published.get(this.indexOf(sequence)) == sequence;
+	}
+
+	/**
+	 * Gets the published data of specified sequence, which should be called by consumer only.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(long sequence) {
+		if (sequence < this.consumed.get() || !this.isPublished(sequence)) {
+			throw new IllegalStateException("sequence not published or already released: " + sequence);
+		}
+
+		return (T) this.slots[this.indexOf(sequence)];
+	}
+
+	/**
+	 * Releases all slots before the specified sequence, which should be called by consumer only.
+	 */
+	public void release(long sequence) {
+		long consumed = this.consumed.get();
+		if (sequence == consumed) {
+			return;
+		}
+
+		if (sequence < consumed || !this.isPublished(sequence - 1)) {
+			throw new IllegalStateException("sequence not published or already released: " + sequence);
+		}
+
+		// slots are reused by producers
+		this.consumed.set(sequence);
+	}
+
+}
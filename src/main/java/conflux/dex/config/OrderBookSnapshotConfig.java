@@ -0,0 +1,23 @@
+package conflux.dex.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class OrderBookSnapshotConfig {
+
+	@Value("${engine.snapshot.enabled:false}")
+	public boolean enabled = false;
+
+	@Value("${engine.snapshot.dir:snapshot}")
+	public String dir = "snapshot";
+
+	// Snapshot is ignored if too old, e.g. completed orders may have been archived.
+	@Value("${engine.snapshot.age.max.millis:3600000}")
+	public long maxAgeMillis = 3_600_000;
+
+	// Replay more orders in case of clock skew between DEX and database.
+	@Value("${engine.snapshot.replay.margin.millis:60000}")
+	public long replayMarginMillis = 60_000;
+
+}
@@ -0,0 +1,23 @@
+package conflux.dex.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import conflux.dex.ws.SlowConsumerPolicy;
+
+@Configuration
+public class WebSocketSendConfig {
+
+	// Maximum number of messages buffered for each subscriber.
+	@Value("${ws.send.queue.capacity:1024}")
+	public int queueCapacity = 1024;
+
+	// Policy for topics prefixed with "market."
+	@Value("${ws.send.slow.policy.market:DropOldest}")
+	public SlowConsumerPolicy marketPolicy = SlowConsumerPolicy.DropOldest;
+
+	// Policy for user topics, e.g. account, order and trade.
+	@Value("${ws.send.slow.policy.user:Disconnect}")
+	public SlowConsumerPolicy userPolicy = SlowConsumerPolicy.Disconnect;
+
+}
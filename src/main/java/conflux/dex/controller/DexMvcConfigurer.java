@@ -11,7 +11,8 @@ public class DexMvcConfigurer implements WebMvcConfigurer {
 	@Override
 	@CrossOrigin
 	public void addCorsMappings(CorsRegistry registry) {
-		registry.addMapping("/**");
+		// allow browser to read cursor of the next page
+		registry.addMapping("/**").exposedHeaders(OrderController.HEADER_NEXT_CURSOR);
 	}
 
 }
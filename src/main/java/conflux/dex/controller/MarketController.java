@@ -3,7 +3,6 @@ package conflux.dex.controller;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,14 +22,13 @@ import conflux.dex.common.BusinessException;
 import conflux.dex.common.Validators;
 import conflux.dex.dao.DexDao;
 import conflux.dex.model.DailyLimitRate;
-import conflux.dex.model.OrderSide;
 import conflux.dex.model.Product;
 import conflux.dex.model.Tick;
 import conflux.dex.model.Trade;
 import conflux.dex.service.EngineService;
 import conflux.dex.service.TickService;
 import conflux.dex.service.TradeService;
-import conflux.dex.worker.DepthPriceLevel;
+import conflux.dex.worker.DepthSnapshot;
 import conflux.dex.worker.ticker.DefaultTickGranularity;
 import conflux.dex.worker.ticker.TickGranularity;
 import conflux.dex.worker.ticker.Ticker;
@@ -229,14 +227,15 @@ public class MarketController {
 	
 	/**
 	 * Get depth
-	 * Get the price aggregated depth for the specified product.
+	 * Get the price aggregated depth for the specified product, along with the sequence
+	 * of depth diff, so that diffs with sequence less than or equal to it should be dropped.
 	 * @param product product name.
 	 * @param depth depth to fetch. ([1, 20])
 	 * @param step aggregate precision. ([0, 5])
 	 */
 	@GetMapping("/depth")
 	@Timed(name = "depth")
-	public EnumMap<OrderSide, List<DepthPriceLevel>> getDepth(
+	public DepthSnapshot getDepth(
 			@RequestParam String product,
 			@RequestParam(required = false, defaultValue = "5") int depth,
 			@RequestParam(required = false, defaultValue = "0") int step) {
@@ -10,6 +10,8 @@ import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import javax.servlet.http.HttpServletResponse;
+
 import com.codahale.metrics.Timer;
 import com.google.common.collect.ImmutableMap;
 import conflux.dex.common.*;
@@ -30,14 +32,15 @@ import com.codahale.metrics.annotation.Timed;
 import conflux.dex.blockchain.TypedOrder;
 import conflux.dex.blockchain.TypedOrderCancellation;
 import conflux.dex.dao.DexDao;
+import conflux.dex.dao.ProductCatalog;
 import conflux.dex.model.CancelOrderRequest;
-import conflux.dex.model.Currency;
 import conflux.dex.model.EIP712Data;
 import conflux.dex.model.Order;
 import conflux.dex.model.OrderFilter;
 import conflux.dex.model.OrderSide;
 import conflux.dex.model.OrderStatus;
 import conflux.dex.model.OrderType;
+import conflux.dex.model.PagingCursor;
 import conflux.dex.model.PagingResult;
 import conflux.dex.model.Product;
 import conflux.dex.model.Trade;
@@ -52,6 +55,8 @@ import conflux.web3j.types.AddressType;
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
+	static final String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+	
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private DexDao dao;
 	private OrderService service;
@@ -81,7 +86,8 @@ public class OrderController {
 	private OrderPair convert(PlaceOrderRequest request, boolean ignoreSignature) throws BusinessException {
 		Validators.validateName(request.getProduct(), Product.MAX_LEN, "product");
 		
-		Product product = this.dao.getProductByName(request.getProduct()).mustGet();
+		ProductCatalog.Entry entry = this.dao.getProductCatalog().mustGet(request.getProduct());
+		Product product = entry.getProduct();
 		request.validate(product, ignoreSignature);
 		
 		User user = this.dao.getUserByName(request.getAddress()).mustGet();
@@ -94,9 +100,7 @@ public class OrderController {
 			}
 		}
 		
-		Currency baseCurrency = this.dao.getCurrency(product.getBaseCurrencyId()).mustGet();
-		Currency quoteCurrency = this.dao.getCurrency(product.getQuoteCurrencyId()).mustGet();
-		TypedOrder message = TypedOrder.from(order, user.getName(), baseCurrency, quoteCurrency);
+		TypedOrder message = TypedOrder.from(order, user.getName(), entry.getBaseCurrency(), entry.getQuoteCurrency());
 		
 		return new OrderPair(message, order);
 	}
@@ -333,7 +337,7 @@ public class OrderController {
 		if (product.isEmpty()) {
 			return this.dao.listOrdersByStatus(userId, OrderStatus.Open, offset, limit, asc);
 		} else {
-			int productId = this.dao.getProductByName(product).mustGet().getId();
+			int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
 			return this.dao.listOrdersByStatus(userId, productId, OrderStatus.Open, offset, limit, asc);
 		}
 	}
@@ -377,14 +381,14 @@ public class OrderController {
 			if (product.isEmpty()) {
 				return this.dao.listOrdersByPhase(userId, phase, start, end, offset, limit, asc).getItems();
 			} else {
-				int productId = this.dao.getProductByName(product).mustGet().getId();
+				int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
 				return this.dao.listOrdersByPhase(userId, productId, phase, start, end, offset, limit, asc).getItems();
 			}
 		} else {
 			if (product.isEmpty()) {
 				return this.dao.listOrdersByStatus(userId, status, offset, limit, asc);
 			} else {
-				int productId = this.dao.getProductByName(product).mustGet().getId();
+				int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
 				return this.dao.listOrdersByStatus(userId, productId, status, offset, limit, asc);
 			}
 		}
@@ -398,9 +402,10 @@ public class OrderController {
 	 * @param side order side: "Buy", "Sell" or empty for both sides.
 	 * @param startTimestamp start timestamp to fetch orders. Note, only support to query in recent 180 days.
 	 * @param endTimestamp end timestamp to fetch orders. Note, only support to query orders of 2 days at most.
-	 * @param offset offset to fetch orders.
+	 * @param offset offset to fetch orders, which is ignored if cursor specified.
 	 * @param limit limit to fetch orders. ([1, 100])
 	 * @param asc in time ascending order.
+	 * @param cursor cursor to fetch the next page, which is returned along with the previous page.
 	 */
 	@GetMapping("/completed")
 	@Timed(name = "orders.completed")
@@ -412,13 +417,15 @@ public class OrderController {
 			@RequestParam(required = false, defaultValue = "0") long endTimestamp,
 			@RequestParam(required = false, defaultValue = "0") int offset,
 			@RequestParam(required = false, defaultValue = "100") int limit,
-			@RequestParam(required = false, defaultValue = "true") boolean asc) {
+			@RequestParam(required = false, defaultValue = "true") boolean asc,
+			@RequestParam(required = false, defaultValue = "") String cursor) {
 		Validators.validateAddress(address, AddressType.User, "address");
 		if (!product.isEmpty()) {
 			Validators.validateName(product, Product.MAX_LEN, "product");
 		}
 		Instant timestamps[] = Validators.validateTimeRange(startTimestamp, endTimestamp, Duration.ofDays(2), Duration.ofDays(180));
 		Validators.validatePaging(offset, limit, 100);
+		PagingCursor pagingCursor = PagingCursor.parse(cursor);
 		
 		Timestamp start = Timestamp.from(timestamps[0]);
 		Timestamp end = Timestamp.from(timestamps[1]);
@@ -432,15 +439,23 @@ public class OrderController {
 		PagingResult<Order> orders;
 
 		if (product.isEmpty()) {
-			if (filter == null) {
+			if (pagingCursor != null) {
+				orders = filter == null
+						? this.dao.listOrdersByPhase(userId, OrderFilter.Phase.Completed, start, end, pagingCursor, limit, asc)
+						: this.dao.listOrdersBySidedPhase(userId, filter, start, end, pagingCursor, limit, asc);
+			} else if (filter == null) {
 				orders = this.dao.listOrdersByPhase(userId, OrderFilter.Phase.Completed, start, end, offset, limit, asc);
 			} else {
 				orders = this.dao.listOrdersBySidedPhase(userId, filter, start, end, offset, limit, asc);
 			}
 		} else {
-			int productId = this.dao.getProductByName(product).mustGet().getId();
+			int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
 			
-			if (filter == null) {
+			if (pagingCursor != null) {
+				orders = filter == null
+						? this.dao.listOrdersByPhase(userId, productId, OrderFilter.Phase.Completed, start, end, pagingCursor, limit, asc)
+						: this.dao.listOrdersBySidedPhase(userId, productId, filter, start, end, pagingCursor, limit, asc);
+			} else if (filter == null) {
 				orders = this.dao.listOrdersByPhase(userId, productId, OrderFilter.Phase.Completed, start, end, offset, limit, asc);
 			} else {
 				orders = this.dao.listOrdersBySidedPhase(userId, productId, filter, start, end, offset, limit, asc);
@@ -466,7 +481,7 @@ public class OrderController {
 		if (product.isEmpty()) {
 			return dao.listAllOrdersByStatus(status);
 		} else {
-			int productId = this.dao.getProductByName(product).mustGet().getId();
+			int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
 			return dao.listAllOrdersByStatus(productId, status);
 		}
 	}
@@ -477,9 +492,10 @@ public class OrderController {
 	 * @param product product name, empty for all products.
 	 * @param startTimestamp start timestamp to fetch orders. Note, only support to query in recent 180 days.
 	 * @param endTimestamp end timestamp to fetch orders. Note, only support to query orders of 2 days at most.
-	 * @param offset offset to fetch orders.
+	 * @param offset offset to fetch orders, which is ignored if cursor specified.
 	 * @param limit limit to fetch orders. ([1, 100])
 	 * @param asc in time ascending order.
+	 * @param cursor cursor to fetch the next page, which is returned in response header "X-Next-Cursor" along with the previous page.
 	 */
 	@GetMapping
 	@Timed(name = "orders.history")
@@ -490,7 +506,9 @@ public class OrderController {
 			@RequestParam(required = false, defaultValue = "0") long endTimestamp,
 			@RequestParam(required = false, defaultValue = "0") int offset,
 			@RequestParam(required = false, defaultValue = "100") int limit,
-			@RequestParam(required = false, defaultValue = "true") boolean asc) {
+			@RequestParam(required = false, defaultValue = "true") boolean asc,
+			@RequestParam(required = false, defaultValue = "") String cursor,
+			HttpServletResponse response) {
 		Validators.validateAddress(address, AddressType.User, "address");
 		if (!product.isEmpty()) {
 			Validators.validateName(product, Product.MAX_LEN, "product");
@@ -501,12 +519,29 @@ public class OrderController {
 		Timestamp start = Timestamp.from(timestamps[0]);
 		Timestamp end = Timestamp.from(timestamps[1]);
 		long userId = this.dao.getUserByName(address).mustGet().getId();
+		PagingCursor pagingCursor = PagingCursor.parse(cursor);
+		
+		List<Order> orders;
 		
 		if (product.isEmpty()) {
-			return this.dao.listOrdersByTimeRange(userId, start, end, offset, limit, asc);
+			orders = pagingCursor == null
+					? this.dao.listOrdersByTimeRange(userId, start, end, offset, limit, asc)
+					: this.dao.listOrdersByTimeRange(userId, start, end, pagingCursor, limit, asc);
 		} else {
-			int productId = this.dao.getProductByName(product).mustGet().getId();
-			return this.dao.listOrdersByTimeRange(userId, productId, start, end, offset, limit, asc);
+			int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
+			orders = pagingCursor == null
+					? this.dao.listOrdersByTimeRange(userId, productId, start, end, offset, limit, asc)
+					: this.dao.listOrdersByTimeRange(userId, productId, start, end, pagingCursor, limit, asc);
+		}
+		
+		setNextCursor(response, PagingCursor.next(orders, limit, 0, Order::getCreateTime, Order::getId));
+		
+		return orders;
+	}
+	
+	private static void setNextCursor(HttpServletResponse response, PagingCursor next) {
+		if (next != null) {
+			response.setHeader(HEADER_NEXT_CURSOR, next.encode());
 		}
 	}
 	
@@ -532,9 +567,10 @@ public class OrderController {
 	 * @param product product name.
 	 * @param startTimestamp start timestamp to fetch orders. Note, only support to query in recent 61 days.
 	 * @param endTimestamp end timestamp to fetch orders. Note, only support to query orders of 2 days at most.
-	 * @param offset offset to fetch trades.
+	 * @param offset offset to fetch trades, which is ignored if cursor specified.
 	 * @param limit limit to fetch trades. ([1, 100])
 	 * @param asc in time ascending order.
+	 * @param cursor cursor to fetch the next page, which is returned in response header "X-Next-Cursor" along with the previous page.
 	 */
 	@GetMapping("/matches")
 	@Timed(name = "trades.product")
@@ -545,7 +581,9 @@ public class OrderController {
 			@RequestParam(required = false, defaultValue = "0") long endTimestamp,
 			@RequestParam(required = false, defaultValue = "0") int offset,
 			@RequestParam(required = false, defaultValue = "100") int limit,
-			@RequestParam(required = false, defaultValue = "true") boolean asc) {
+			@RequestParam(required = false, defaultValue = "true") boolean asc,
+			@RequestParam(required = false, defaultValue = "") String cursor,
+			HttpServletResponse response) {
 		Validators.validateAddress(address, AddressType.User, "address");
 		Validators.validateName(product, Product.MAX_LEN, "product");
 		Instant timestamps[] = Validators.validateTimeRange(startTimestamp, endTimestamp, Duration.ofDays(2), Duration.ofDays(61));
@@ -554,9 +592,16 @@ public class OrderController {
 		Timestamp start = Timestamp.from(timestamps[0]);
 		Timestamp end = Timestamp.from(timestamps[1]);
 		long userId = this.dao.getUserByName(address).mustGet().getId();
-		int productId = this.dao.getProductByName(product).mustGet().getId();
+		int productId = this.dao.getProductCatalog().mustGet(product).getProduct().getId();
+		PagingCursor pagingCursor = PagingCursor.parse(cursor);
+		
+		List<Trade> trades = pagingCursor == null
+				? this.dao.listTradesByUser(userId, productId, start, end, offset, limit, asc)
+				: this.dao.listTradesByUser(userId, productId, start, end, pagingCursor, limit, asc);
 		
-		return this.dao.listTradesByUser(userId, productId, start, end, offset, limit, asc);
+		setNextCursor(response, PagingCursor.next(trades, limit, 0, Trade::getCreateTime, Trade::getId));
+		
+		return trades;
 	}
 
 }
@@ -581,9 +626,16 @@ class OrderPagingResult {
 	 * Fetched orders.
 	 */
 	public List<Order> items;
+	/**
+	 * Cursor to fetch the next page, or null if no more orders.
+	 */
+	public String next;
 	
 	public OrderPagingResult(PagingResult<Order> result) {
 		this.total = result.getTotal();
 		this.items = result.getItems();
+		
+		PagingCursor cursor = PagingCursor.next(result);
+		this.next = cursor == null ? null : cursor.encode();
 	}
 }
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
@@ -467,6 +468,16 @@ public class SystemController {
 		return this.healthService.getRecentErrors();
 	}
 
+	/**
+	 * Get workers that blocked by backpressure
+	 * @ignore
+	 */
+	@GetMapping("/get-backpressures")
+	@AuthRequire
+	public Set<String> getBackpressures() {
+		return this.healthService.getBackpressures();
+	}
+
 
 	/**
 	 * List users
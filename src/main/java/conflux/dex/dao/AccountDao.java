@@ -12,8 +12,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
@@ -32,6 +34,12 @@ public interface AccountDao {
 	boolean addAccount(Account account);
 
 	boolean updateAccountBalance(long accountId, BigDecimal holdDelta, BigDecimal availableDelta);
+	
+	/**
+	 * Updates balances of accounts in batch, which are keyed by account id.
+	 * @return ids of accounts that failed to update, e.g. balance not enough.
+	 */
+	List<Long> updateAccountBalances(Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas);
 
 	Optional<Account> getAccount(long userId, String currency);
 	
@@ -39,6 +47,11 @@ public interface AccountDao {
 	
 	List<Account> listAccounts(long userId);
 	
+	/**
+	 * Lists accounts in order of id, which is used to load all accounts in pages.
+	 */
+	List<Account> listAccountsAfter(long idOffset, int limit);
+	
 	void updateAccountStatus(long id, AccountStatus oldStatus, AccountStatus newStatus);
 
 }
@@ -84,6 +97,19 @@ class InMemoryAccountDao extends IdAllocator implements AccountDao {
 		
 		return true;
 	}
+	
+	@Override
+	public List<Long> updateAccountBalances(Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas) {
+		List<Long> failed = new ArrayList<Long>();
+		
+		for (Map.Entry<Long, BigDecimal> entry : holdDeltas.entrySet()) {
+			if (!this.updateAccountBalance(entry.getKey(), entry.getValue(), availableDeltas.get(entry.getKey()))) {
+				failed.add(entry.getKey());
+			}
+		}
+		
+		return failed;
+	}
 
 	@Override
 	public Optional<Account> getAccount(long userId, String currency) {
@@ -106,6 +132,15 @@ class InMemoryAccountDao extends IdAllocator implements AccountDao {
 		return new ArrayList<>(currencyIndex.values());
 	}
 	
+	@Override
+	public List<Account> listAccountsAfter(long idOffset, int limit) {
+		return this.items.values().stream()
+				.filter(account -> account.getId() > idOffset)
+				.sorted((a1, a2) -> Long.compare(a1.getId(), a2.getId()))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
 	@Override
 	public void updateAccountStatus(long id, AccountStatus oldStatus, AccountStatus newStatus) {
 		Account account = this.items.get(id);
@@ -168,6 +203,49 @@ class AccountDaoImpl extends BaseDaoImpl implements AccountDao {
 		String sql = "UPDATE t_account SET hold = hold + ?, available = available + ? WHERE id = ? AND hold + ? >= 0 AND available + ? >= 0";
 		return this.getJdbcTemplate().update(sql, holdDelta, availableDelta, accountId, holdDelta, availableDelta) > 0;
 	}
+	
+	@Metered
+	@Override
+	public List<Long> updateAccountBalances(Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas) {
+		if (holdDeltas.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		// update in order of id to avoid deadlock, since accounts of quote currency are shared among products
+		List<Long> accountIds = new ArrayList<Long>(holdDeltas.keySet());
+		Collections.sort(accountIds);
+		
+		String sql = "UPDATE t_account SET hold = hold + ?, available = available + ? WHERE id = ? AND hold + ? >= 0 AND available + ? >= 0";
+		int[] counts = this.getJdbcTemplate().batchUpdate(sql, new BatchPreparedStatementSetter() {
+			
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				long accountId = accountIds.get(i);
+				BigDecimal holdDelta = holdDeltas.get(accountId);
+				BigDecimal availableDelta = availableDeltas.get(accountId);
+				ps.setBigDecimal(1, holdDelta);
+				ps.setBigDecimal(2, availableDelta);
+				ps.setLong(3, accountId);
+				ps.setBigDecimal(4, holdDelta);
+				ps.setBigDecimal(5, availableDelta);
+			}
+			
+			@Override
+			public int getBatchSize() {
+				return accountIds.size();
+			}
+		});
+		
+		// Note, SUCCESS_NO_INFO is regarded as failure, since the balance check cannot be confirmed.
+		List<Long> failed = new ArrayList<Long>();
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] <= 0) {
+				failed.add(accountIds.get(i));
+			}
+		}
+		
+		return failed;
+	}
 
 	@Metered
 //    @Cacheable
@@ -196,6 +274,12 @@ class AccountDaoImpl extends BaseDaoImpl implements AccountDao {
 		
 		return accounts;
 	}
+	
+	@Override
+	public List<Account> listAccountsAfter(long idOffset, int limit) {
+		String sql = "SELECT * FROM t_account WHERE id > ? ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, accountRowMapper, idOffset, limit);
+	}
 
 	/*
 	 * When update, evict cache key in three way.
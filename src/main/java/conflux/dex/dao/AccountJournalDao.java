@@ -0,0 +1,92 @@
+package conflux.dex.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import conflux.dex.model.AccountJournal;
+
+/**
+ * Durable journal of committed balance changes, which are appended in the same transaction
+ * as other changes, and removed once written to t_account by AccountLedger.
+ */
+public interface AccountJournalDao {
+	
+	void addJournals(List<AccountJournal> journals);
+	
+	/**
+	 * Lists the oldest journals in order of id.
+	 */
+	List<AccountJournal> listJournals(int limit);
+	
+	void deleteJournals(List<Long> ids);
+
+}
+
+class InMemoryAccountJournalDao implements AccountJournalDao {
+	private AtomicLong idAllocator = new AtomicLong();
+	private Map<Long, AccountJournal> items = new ConcurrentSkipListMap<Long, AccountJournal>();
+	
+	@Override
+	public void addJournals(List<AccountJournal> journals) {
+		for (AccountJournal journal : journals) {
+			journal.setId(this.idAllocator.incrementAndGet());
+			this.items.put(journal.getId(), journal);
+		}
+	}
+	
+	@Override
+	public List<AccountJournal> listJournals(int limit) {
+		List<AccountJournal> journals = new ArrayList<AccountJournal>();
+		
+		for (AccountJournal journal : this.items.values()) {
+			if (journals.size() >= limit) {
+				break;
+			}
+			
+			journals.add(journal);
+		}
+		
+		return journals;
+	}
+	
+	@Override
+	public void deleteJournals(List<Long> ids) {
+		for (long id : ids) {
+			this.items.remove(id);
+		}
+	}
+}
+
+@Repository
+class AccountJournalDaoImpl extends BaseDaoImpl implements AccountJournalDao {
+	private static final RowMapper<AccountJournal> journalRowMapper = BeanPropertyRowMapper.newInstance(AccountJournal.class);
+	
+	@Override
+	public void addJournals(List<AccountJournal> journals) {
+		String sql = "INSERT INTO t_account_journal (account_id, hold_delta, available_delta) VALUES (?, ?, ?)";
+		this.insertMultiRows(sql, journals, (ps, offset, journal) -> {
+			ps.setLong(offset + 1, journal.getAccountId());
+			ps.setBigDecimal(offset + 2, journal.getHoldDelta());
+			ps.setBigDecimal(offset + 3, journal.getAvailableDelta());
+		});
+	}
+	
+	@Override
+	public List<AccountJournal> listJournals(int limit) {
+		String sql = "SELECT * FROM t_account_journal ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, journalRowMapper, limit);
+	}
+	
+	@Override
+	public void deleteJournals(List<Long> ids) {
+		// delete by id instead of range, since journals of uncommitted transactions may have smaller ids
+		this.deleteByIds(ids, "t_account_journal");
+	}
+}
@@ -0,0 +1,506 @@
+package conflux.dex.dao;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.codahale.metrics.Histogram;
+
+import conflux.dex.common.Metrics;
+import conflux.dex.model.Account;
+import conflux.dex.model.AccountJournal;
+import conflux.dex.model.AccountStatus;
+
+/**
+ * In-memory ledger of account balances, which checks and updates balances in memory,
+ * and writes the balance changes to t_account in batches periodically (write-behind).
+ *
+ * When enabled, ledger is rebuilt from t_account on startup, and is authoritative for
+ * accounts, e.g. all accounts (including balances) are read from ledger.
+ *
+ * In a database transaction, balance decrease applies immediately to prevent overdraft by
+ * concurrent transactions, and will be reverted if transaction rolled back. Whereas balance
+ * increase applies after transaction committed, but is visible in the same transaction.
+ *
+ * Committed balance changes are durable, since the net changes of a transaction are appended
+ * to t_account_journal before committed, which is much cheaper than updating the hot account
+ * rows. Journals are written to t_account and removed in batches, and the remaining ones are
+ * replayed on startup before ledger rebuilt, e.g. in case of process crashed.
+ */
+@Component
+public class AccountLedger implements AccountDao {
+
+	private static final Logger logger = LoggerFactory.getLogger(AccountLedger.class);
+
+	private static final int LOAD_BATCH_SIZE = 1000;
+	private static final int FLUSH_BATCH_SIZE = 1000;
+
+	private static final Histogram flushLatencyStat = Metrics.histogram(AccountLedger.class, "flush", "latency");
+	private static final Histogram flushSizeStat = Metrics.histogram(AccountLedger.class, "flush", "size");
+
+	private AccountDao dao;
+	private AccountJournalDao journalDao;
+	private TransactionTemplate tt;
+	private boolean enabled;
+
+	private Map<Long, Account> accounts = new ConcurrentHashMap<Long, Account>();
+	// map<userId, map<currency, account>>
+	private Map<Long, Map<String, Account>> index = new ConcurrentHashMap<Long, Map<String, Account>>();
+
+	// flush by only one thread at a time
+	private final Object flushLock = new Object();
+
+	@Autowired
+	public AccountLedger(AccountDaoImpl dao, AccountJournalDaoImpl journalDao, PlatformTransactionManager transactionManager) {
+		this(dao, journalDao);
+
+		this.tt = new TransactionTemplate(transactionManager);
+	}
+
+	AccountLedger(AccountDao dao, AccountJournalDao journalDao) {
+		this.dao = dao;
+		this.journalDao = journalDao;
+	}
+
+	@Autowired
+	public void setEnabled(@Value("${account.ledger.enabled:false}") boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (this.enabled) {
+			this.replay();
+			this.load();
+		}
+	}
+
+	/**
+	 * Writes all journals left by last run to t_account, e.g. process crashed before flushed.
+	 */
+	void replay() {
+		int replayed = 0;
+		int flushed;
+
+		do {
+			flushed = this.flushJournals();
+			replayed += flushed;
+		} while (flushed == FLUSH_BATCH_SIZE);
+
+		logger.info("account journals replayed, journals = {}", replayed);
+	}
+
+	/**
+	 * Rebuilds ledger from database.
+	 */
+	void load() {
+		long idOffset = 0;
+		List<Account> accounts;
+
+		do {
+			accounts = this.dao.listAccountsAfter(idOffset, LOAD_BATCH_SIZE);
+			for (Account account : accounts) {
+				this.cache(account);
+				idOffset = account.getId();
+			}
+		} while (accounts.size() == LOAD_BATCH_SIZE);
+
+		logger.info("account ledger loaded, accounts = {}", this.accounts.size());
+	}
+
+	private Account cache(Account loaded) {
+		Account account = copy(loaded);
+		Account existing = this.accounts.putIfAbsent(account.getId(), account);
+		if (existing != null) {
+			return existing;
+		}
+
+		this.index.computeIfAbsent(account.getUserId(), userId -> new ConcurrentHashMap<String, Account>())
+			.put(account.getCurrency(), account);
+
+		return account;
+	}
+
+	private void evict(Account account) {
+		this.accounts.remove(account.getId());
+
+		Map<String, Account> currencyIndex = this.index.get(account.getUserId());
+		if (currencyIndex != null) {
+			currencyIndex.remove(account.getCurrency());
+		}
+	}
+
+	private Optional<Account> find(long id) {
+		Account account = this.accounts.get(id);
+		if (account != null) {
+			return Optional.of(account);
+		}
+
+		// in case of account added in database but not loaded yet
+		Optional<Account> loaded = this.dao.getAccountById(id);
+		return loaded.isPresent() ? Optional.of(this.cache(loaded.get())) : Optional.empty();
+	}
+
+	private static Account copy(Account account) {
+		Account copy = new Account();
+
+		synchronized (account) {
+			copy.setId(account.getId());
+			copy.setUserId(account.getUserId());
+			copy.setCurrency(account.getCurrency());
+			copy.setHold(account.getHold());
+			copy.setAvailable(account.getAvailable());
+			copy.setStatus(account.getStatus());
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Executes the specified action after transaction completed,
+	 * or executes immediately if not in transaction.
+	 */
+	private static void afterCompletion(Runnable onCommit, Runnable onRollback) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			onCommit.run();
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == STATUS_COMMITTED) {
+					onCommit.run();
+				} else {
+					onRollback.run();
+				}
+			}
+
+		});
+	}
+
+	@Override
+	public boolean addAccount(Account account) {
+		if (!this.dao.addAccount(account)) {
+			return false;
+		}
+
+		// cache immediately so that it is available in the same transaction
+		Account cached = this.cache(account);
+		afterCompletion(() -> {}, () -> this.evict(cached));
+
+		return true;
+	}
+
+	@Override
+	public boolean updateAccountBalance(long accountId, BigDecimal holdDelta, BigDecimal availableDelta) {
+		Optional<Account> account = this.find(accountId);
+		if (!account.isPresent()) {
+			return false;
+		}
+
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			LedgerTransaction tx = new LedgerTransaction();
+			if (!tx.update(account.get(), holdDelta, availableDelta)) {
+				return false;
+			}
+
+			try {
+				tx.beforeCommit(false);
+			} catch (RuntimeException e) {
+				tx.afterCompletion(LedgerTransaction.STATUS_ROLLED_BACK);
+				throw e;
+			}
+
+			tx.afterCompletion(LedgerTransaction.STATUS_COMMITTED);
+			return true;
+		}
+
+		LedgerTransaction tx = (LedgerTransaction) TransactionSynchronizationManager.getResource(this);
+		if (tx == null) {
+			tx = new LedgerTransaction();
+			TransactionSynchronizationManager.bindResource(this, tx);
+			TransactionSynchronizationManager.registerSynchronization(tx);
+		}
+
+		return tx.update(account.get(), holdDelta, availableDelta);
+	}
+
+	@Override
+	public List<Long> updateAccountBalances(Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas) {
+		List<Long> failed = new ArrayList<Long>();
+
+		for (Map.Entry<Long, BigDecimal> entry : holdDeltas.entrySet()) {
+			if (!this.updateAccountBalance(entry.getKey(), entry.getValue(), availableDeltas.get(entry.getKey()))) {
+				failed.add(entry.getKey());
+			}
+		}
+
+		return failed;
+	}
+
+	@Override
+	public Optional<Account> getAccount(long userId, String currency) {
+		Map<String, Account> currencyIndex = this.index.get(userId);
+		Account account = currencyIndex == null ? null : currencyIndex.get(currency);
+		if (account != null) {
+			return Optional.of(copy(account));
+		}
+
+		// in case of account added in database but not loaded yet
+		Optional<Account> loaded = this.dao.getAccount(userId, currency);
+		return loaded.isPresent() ? Optional.of(copy(this.cache(loaded.get()))) : Optional.empty();
+	}
+
+	@Override
+	public Optional<Account> getAccountById(long id) {
+		return this.find(id).map(AccountLedger::copy);
+	}
+
+	@Override
+	public List<Account> listAccounts(long userId) {
+		Map<String, Account> currencyIndex = this.index.get(userId);
+		if (currencyIndex == null) {
+			return Collections.emptyList();
+		}
+
+		return currencyIndex.values().stream()
+				.map(AccountLedger::copy)
+				.sorted(Comparator.comparing(Account::getCurrency))
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public List<Account> listAccountsAfter(long idOffset, int limit) {
+		return this.dao.listAccountsAfter(idOffset, limit);
+	}
+
+	@Override
+	public void updateAccountStatus(long id, AccountStatus oldStatus, AccountStatus newStatus) {
+		this.dao.updateAccountStatus(id, oldStatus, newStatus);
+
+		Optional<Account> account = this.find(id);
+		if (!account.isPresent()) {
+			return;
+		}
+
+		synchronized (account.get()) {
+			if (account.get().getStatus() != oldStatus) {
+				return;
+			}
+
+			account.get().setStatus(newStatus);
+		}
+
+		afterCompletion(() -> {}, () -> {
+			synchronized (account.get()) {
+				account.get().setStatus(oldStatus);
+			}
+		});
+	}
+
+	/**
+	 * Writes the committed balance changes in journals to database in batch.
+	 */
+	@Scheduled(initialDelayString = "${account.ledger.flush.interval.millis:100}", fixedDelayString = "${account.ledger.flush.interval.millis:100}")
+	public void flush() {
+		if (!this.enabled) {
+			return;
+		}
+
+		try {
+			while (this.flushJournals() == FLUSH_BATCH_SIZE) {
+				// continue to flush if more journals
+			}
+		} catch (RuntimeException e) {
+			// journals are kept and will be flushed in next round
+			logger.error("failed to flush account balances", e);
+		}
+	}
+
+	/**
+	 * Writes a batch of journals to t_account and removes them in one transaction,
+	 * and returns the number of journals removed.
+	 */
+	private int flushJournals() {
+		synchronized (this.flushLock) {
+			long start = System.currentTimeMillis();
+
+			int flushed = this.tt == null
+					? this.writeJournals()
+					: this.tt.execute(status -> this.writeJournals());
+
+			if (flushed > 0) {
+				flushLatencyStat.update(System.currentTimeMillis() - start);
+				flushSizeStat.update(flushed);
+			}
+
+			return flushed;
+		}
+	}
+
+	private int writeJournals() {
+		List<AccountJournal> journals = this.journalDao.listJournals(FLUSH_BATCH_SIZE);
+		if (journals.isEmpty()) {
+			return 0;
+		}
+
+		Map<Long, BigDecimal> holdChanges = new HashMap<Long, BigDecimal>();
+		Map<Long, BigDecimal> availableChanges = new HashMap<Long, BigDecimal>();
+
+		for (AccountJournal journal : journals) {
+			holdChanges.merge(journal.getAccountId(), journal.getHoldDelta(), BigDecimal::add);
+			availableChanges.merge(journal.getAccountId(), journal.getAvailableDelta(), BigDecimal::add);
+		}
+
+		List<Long> failed = this.dao.updateAccountBalances(holdChanges, availableChanges);
+		if (!failed.isEmpty()) {
+			// should never happen unless database modified by others, and journals are kept to retry
+			logger.error("failed to flush account balances, database diverged from ledger, accountIds = {}", failed);
+		}
+
+		List<Long> flushedIds = journals.stream()
+				.filter(journal -> !failed.contains(journal.getAccountId()))
+				.map(AccountJournal::getId)
+				.collect(Collectors.toList());
+		this.journalDao.deleteJournals(flushedIds);
+
+		return flushedIds.size();
+	}
+
+	@PreDestroy
+	public void close() {
+		this.flush();
+	}
+
+	/**
+	 * Balance changes in a database transaction, which are only accessed by the transaction thread.
+	 */
+	private class LedgerTransaction extends TransactionSynchronizationAdapter {
+
+		private Map<Long, Account> accounts = new HashMap<Long, Account>();
+
+		// increases not applied to ledger until committed
+		private Map<Long, BigDecimal> holdCredits = new HashMap<Long, BigDecimal>();
+		private Map<Long, BigDecimal> availableCredits = new HashMap<Long, BigDecimal>();
+
+		// decreases applied to ledger, which will be reverted if rolled back
+		private Map<Long, BigDecimal> holdDebits = new HashMap<Long, BigDecimal>();
+		private Map<Long, BigDecimal> availableDebits = new HashMap<Long, BigDecimal>();
+
+		// net balance changes to append to journal
+		private Map<Long, BigDecimal> holdChanges = new HashMap<Long, BigDecimal>();
+		private Map<Long, BigDecimal> availableChanges = new HashMap<Long, BigDecimal>();
+
+		/**
+		 * Returns the amount to decrease in ledger immediately after offset by the uncommitted increases,
+		 * or null if balance not enough.
+		 */
+		private BigDecimal getDebit(BigDecimal balance, BigDecimal credit, BigDecimal delta) {
+			if (delta.signum() >= 0) {
+				return BigDecimal.ZERO;
+			}
+
+			BigDecimal debit = delta.negate().subtract(credit).max(BigDecimal.ZERO);
+			return balance.compareTo(debit) >= 0 ? debit : null;
+		}
+
+		public boolean update(Account account, BigDecimal holdDelta, BigDecimal availableDelta) {
+			long id = account.getId();
+			BigDecimal holdCredit = this.holdCredits.getOrDefault(id, BigDecimal.ZERO);
+			BigDecimal availableCredit = this.availableCredits.getOrDefault(id, BigDecimal.ZERO);
+			BigDecimal holdDebit;
+			BigDecimal availableDebit;
+
+			synchronized (account) {
+				holdDebit = this.getDebit(account.getHold(), holdCredit, holdDelta);
+				availableDebit = this.getDebit(account.getAvailable(), availableCredit, availableDelta);
+				if (holdDebit == null || availableDebit == null) {
+					return false;
+				}
+
+				account.setHold(account.getHold().subtract(holdDebit));
+				account.setAvailable(account.getAvailable().subtract(availableDebit));
+			}
+
+			this.accounts.put(id, account);
+			this.holdCredits.put(id, holdCredit.add(holdDelta).add(holdDebit));
+			this.availableCredits.put(id, availableCredit.add(availableDelta).add(availableDebit));
+			this.holdDebits.merge(id, holdDebit, BigDecimal::add);
+			this.availableDebits.merge(id, availableDebit, BigDecimal::add);
+			this.holdChanges.merge(id, holdDelta, BigDecimal::add);
+			this.availableChanges.merge(id, availableDelta, BigDecimal::add);
+
+			return true;
+		}
+
+		/**
+		 * Appends net balance changes to journal in the transaction, which is rolled back on failure.
+		 */
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			List<AccountJournal> journals = new ArrayList<AccountJournal>();
+
+			for (Map.Entry<Long, BigDecimal> entry : this.holdChanges.entrySet()) {
+				BigDecimal availableChange = this.availableChanges.get(entry.getKey());
+				if (entry.getValue().signum() != 0 || availableChange.signum() != 0) {
+					journals.add(new AccountJournal(entry.getKey(), entry.getValue(), availableChange));
+				}
+			}
+
+			if (!journals.isEmpty()) {
+				journalDao.addJournals(journals);
+			}
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(AccountLedger.this);
+
+			if (status == STATUS_COMMITTED) {
+				for (Account account : this.accounts.values()) {
+					synchronized (account) {
+						account.setHold(account.getHold().add(this.holdCredits.get(account.getId())));
+						account.setAvailable(account.getAvailable().add(this.availableCredits.get(account.getId())));
+					}
+				}
+
+			} else {
+				for (Account account : this.accounts.values()) {
+					synchronized (account) {
+						account.setHold(account.getHold().add(this.holdDebits.get(account.getId())));
+						account.setAvailable(account.getAvailable().add(this.availableDebits.get(account.getId())));
+					}
+				}
+			}
+		}
+
+	}
+
+}
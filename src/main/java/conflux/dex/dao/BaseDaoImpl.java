@@ -1,9 +1,11 @@
 package conflux.dex.dao;
 
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -16,6 +18,16 @@ import org.springframework.jdbc.support.KeyHolder;
 
 class BaseDaoImpl extends JdbcDaoSupport {
 	
+	// max number of rows in a multi-row INSERT statement, to limit the packet size
+	static final int MAX_ROWS_PER_INSERT = 500;
+	
+	interface RowFiller<T> {
+		/**
+		 * Fills parameters of the specified row, which starts after the offset.
+		 */
+		void fill(PreparedStatement ps, int offset, T row) throws SQLException;
+	}
+	
 	@Autowired
 	public void init(DataSource ds) {
 		this.setDataSource(ds);
@@ -40,6 +52,40 @@ class BaseDaoImpl extends JdbcDaoSupport {
 		return cnt;
 	}
 
+	
+	/**
+	 * Inserts rows with multi-row INSERT statements in chunks of MAX_ROWS_PER_INSERT.
+	 * @param sql single row INSERT statement that ends with "VALUES (?, ...)".
+	 */
+	public <T> int insertMultiRows(String sql, List<T> rows, RowFiller<T> filler) {
+		return this.insertMultiRows(sql, "", rows, filler);
+	}
+	
+	/**
+	 * Inserts rows as above, and appends the specified suffix to each statement,
+	 * e.g. "ON DUPLICATE KEY UPDATE ..." without any parameter.
+	 */
+	public <T> int insertMultiRows(String sql, String suffix, List<T> rows, RowFiller<T> filler) {
+		int valuesIndex = sql.lastIndexOf("VALUES");
+		String prefix = sql.substring(0, valuesIndex) + "VALUES ";
+		String placeholders = sql.substring(valuesIndex + "VALUES".length()).trim();
+		int columns = placeholders.length() - placeholders.replace("?", "").length();
+		
+		int count = 0;
+		for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_INSERT) {
+			List<T> chunk = rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_INSERT));
+			String chunkSql = prefix + String.join(", ", Collections.nCopies(chunk.size(), placeholders)) + suffix;
+			count += this.getJdbcTemplate().update(chunkSql, ps -> {
+				int offset = 0;
+				for (T row : chunk) {
+					filler.fill(ps, offset, row);
+					offset += columns;
+				}
+			});
+		}
+		
+		return count;
+	}
 
 	public int deleteByIds(Collection<Long> ids, String table) {
 		if (ids.isEmpty()) {
@@ -33,6 +33,9 @@ public interface ConfigDao {
 	String KEY_LAST_TX_RESERVED_NONCE = "last_tx_reserved_nonce";
 	String ADMIN_NONCE_KEY = "ADMIN_NONCE_KEY";
 
+	// prefix of key for id of the last trade that persisted in ticks, followed by product id
+	String KEY_TICK_LAST_TRADE_ID = "tick_last_trade_id_";
+
 	void setConfig(String name, String value);
 	Optional<String> getConfig(String name);
 	List<Config> listConfig(Collection<String> names);
@@ -57,7 +60,7 @@ class InMemoryConfigDao implements ConfigDao {
 
 	@Override
 	public Optional<String> getConfig(String name) {
-		return Optional.ofNullable(this.items.get(name)).map(Config::getName);
+		return Optional.ofNullable(this.items.get(name)).map(Config::getValue);
 	}
 
 	@Override
@@ -0,0 +1,1364 @@
+package conflux.dex.dao;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.codahale.metrics.Histogram;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.Metrics;
+import conflux.dex.model.Account;
+import conflux.dex.model.AccountStatus;
+import conflux.dex.model.CancelOrderRequest;
+import conflux.dex.model.Config;
+import conflux.dex.model.Currency;
+import conflux.dex.model.DailyLimit;
+import conflux.dex.model.DailyLimitRate;
+import conflux.dex.model.DepositRecord;
+import conflux.dex.model.InstantExchangeProduct;
+import conflux.dex.model.Order;
+import conflux.dex.model.OrderFilter;
+import conflux.dex.model.OrderPruneRecord;
+import conflux.dex.model.OrderStatus;
+import conflux.dex.model.PagingCursor;
+import conflux.dex.model.PagingResult;
+import conflux.dex.model.Product;
+import conflux.dex.model.SettlementStatus;
+import conflux.dex.model.Tick;
+import conflux.dex.model.Trade;
+import conflux.dex.model.TransferRecord;
+import conflux.dex.model.User;
+import conflux.dex.model.UserTradeMap;
+import conflux.dex.model.WithdrawRecord;
+import conflux.dex.model.WithdrawType;
+
+/**
+ * DexDao that delegates to the DAO of each type directly, instead of dispatching
+ * via reflection for every call, which is on the hot path of matching and settlement.
+ * 
+ * Default methods are delegated as well, since they may be overridden by DAO implementations.
+ * So, please add the delegation here once any method added in DAO interfaces.
+ */
+abstract class DelegatingDexDao implements DexDao {
+	private static final Logger log = LoggerFactory.getLogger(DelegatingDexDao.class);
+	
+	protected CurrencyDao currencyDao;
+	protected ProductDao productDao;
+	protected UserDao userDao;
+	protected AccountDao accountDao;
+	protected OrderDao orderDao;
+	protected TradeDao tradeDao;
+	protected TickDao tickDao;
+	protected ConfigDao configDao;
+	protected DepositDao depositDao;
+	protected WithdrawDao withdrawDao;
+	protected DailyLimitDao dailyLimitDao;
+	protected DailyLimitRateDao dailyLimitRateDao;
+	protected TransferDao transferDao;
+	
+	private volatile ProductCatalog productCatalog;
+	
+	protected DelegatingDexDao() {
+		this.withdrawDao = unregistered(WithdrawDao.class);
+		this.transferDao = unregistered(TransferDao.class);
+	}
+	
+	/**
+	 * Returns a DAO that fails on any call, which is only used for DAO not supported, e.g. in memory.
+	 */
+	protected static <T> T unregistered(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, (proxy, method, args) -> {
+			throw new UnsupportedOperationException(String.format("delegate for type %s not registered", type.getName()));
+		}));
+	}
+	
+	private RuntimeException fail(String method, RuntimeException e, Object... args) {
+		if (!(e instanceof BusinessException)) {
+			log.error("DAO fail, method: {}, parameters: {}, {}", method, args, e.toString());
+		}
+		
+		return e;
+	}
+	
+	@Override
+	public ProductCatalog getProductCatalog() {
+		ProductCatalog catalog = this.productCatalog;
+		if (catalog == null) {
+			catalog = this.reloadProductCatalog();
+		}
+		
+		return catalog;
+	}
+	
+	/**
+	 * Rebuilds the product catalog when product or currency changed, or after
+	 * the transaction committed if any.
+	 */
+	private ProductCatalog refreshProductCatalog() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					reloadProductCatalog();
+				}
+			});
+			
+			return this.productCatalog;
+		}
+		
+		return this.reloadProductCatalog();
+	}
+	
+	private synchronized ProductCatalog reloadProductCatalog() {
+		this.productCatalog = ProductCatalog.load(this.productDao, this.currencyDao);
+		return this.productCatalog;
+	}
+	
+	protected abstract <T> T executeInTransaction(TransactionCallback<T> callback);
+	
+	@Override
+	public <T> T execute(TransactionCallback<T> callback) {
+		try {
+			return this.executeInTransaction(callback);
+		} catch (RuntimeException e) {
+			throw this.fail("execute", e, callback);
+		}
+	}
+	
+	// CurrencyDao
+	@Override
+	public boolean addCurrency(Currency currency) {
+		try {
+			boolean result = this.currencyDao.addCurrency(currency);
+			this.refreshProductCatalog();
+			return result;
+		} catch (RuntimeException e) {
+			throw this.fail("addCurrency", e, currency);
+		}
+	}
+	
+	@Override
+	public boolean updateCurrency(Currency currency) {
+		try {
+			boolean result = this.currencyDao.updateCurrency(currency);
+			this.refreshProductCatalog();
+			return result;
+		} catch (RuntimeException e) {
+			throw this.fail("updateCurrency", e, currency);
+		}
+	}
+	
+	@Override
+	public List<Currency> listCurrencies() {
+		try {
+			return this.currencyDao.listCurrencies();
+		} catch (RuntimeException e) {
+			throw this.fail("listCurrencies", e);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<Currency> getCurrency(int id) {
+		try {
+			return this.currencyDao.getCurrency(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getCurrency", e, id);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<Currency> getCurrencyByName(String name) {
+		try {
+			return this.currencyDao.getCurrencyByName(name);
+		} catch (RuntimeException e) {
+			throw this.fail("getCurrencyByName", e, name);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<Currency> getCurrencyByContractAddress(String address) {
+		try {
+			return this.currencyDao.getCurrencyByContractAddress(address);
+		} catch (RuntimeException e) {
+			throw this.fail("getCurrencyByContractAddress", e, address);
+		}
+	}
+	
+	// ProductDao
+	@Override
+	public void addProduct(Product product) {
+		try {
+			this.productDao.addProduct(product);
+			this.refreshProductCatalog();
+		} catch (RuntimeException e) {
+			throw this.fail("addProduct", e, product);
+		}
+	}
+	
+	@Override
+	public void addInstantExchangeProduct(InstantExchangeProduct product) {
+		try {
+			this.productDao.addInstantExchangeProduct(product);
+			this.refreshProductCatalog();
+		} catch (RuntimeException e) {
+			throw this.fail("addInstantExchangeProduct", e, product);
+		}
+	}
+	
+	@Override
+	public boolean updateProduct(Product product) {
+		try {
+			boolean result = this.productDao.updateProduct(product);
+			this.refreshProductCatalog();
+			return result;
+		} catch (RuntimeException e) {
+			throw this.fail("updateProduct", e, product);
+		}
+	}
+	
+	@Override
+	public List<Product> listProducts() {
+		try {
+			return this.productDao.listProducts();
+		} catch (RuntimeException e) {
+			throw this.fail("listProducts", e);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<Product> getProduct(int id) {
+		try {
+			return this.productDao.getProduct(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getProduct", e, id);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<Product> getProductByName(String name) {
+		try {
+			return this.productDao.getProductByName(name);
+		} catch (RuntimeException e) {
+			throw this.fail("getProductByName", e, name);
+		}
+	}
+	
+	@Override
+	public List<Integer> listProductsByCurrencyId(int id) {
+		try {
+			return this.productDao.listProductsByCurrencyId(id);
+		} catch (RuntimeException e) {
+			throw this.fail("listProductsByCurrencyId", e, id);
+		}
+	}
+	
+	// UserDao
+	@Override
+	public boolean addUser(User user) {
+		try {
+			return this.userDao.addUser(user);
+		} catch (RuntimeException e) {
+			throw this.fail("addUser", e, user);
+		}
+	}
+	
+	@Override
+	public List<User> getUsers(Collection<Long> ids) {
+		try {
+			return this.userDao.getUsers(ids);
+		} catch (RuntimeException e) {
+			throw this.fail("getUsers", e, ids);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<User> getUser(long id) {
+		try {
+			return this.userDao.getUser(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getUser", e, id);
+		}
+	}
+	
+	@Override
+	public EntityGetResult<User> getUserByName(String name) {
+		try {
+			return this.userDao.getUserByName(name);
+		} catch (RuntimeException e) {
+			throw this.fail("getUserByName", e, name);
+		}
+	}
+	
+	@Override
+	public PagingResult<User> listUser(int offset, int limit) {
+		try {
+			return this.userDao.listUser(offset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listUser", e, offset, limit);
+		}
+	}
+	
+	@Override
+	public long getUserCount() {
+		try {
+			return this.userDao.getUserCount();
+		} catch (RuntimeException e) {
+			throw this.fail("getUserCount", e);
+		}
+	}
+	
+	// AccountDao
+	@Override
+	public boolean addAccount(Account account) {
+		try {
+			return this.accountDao.addAccount(account);
+		} catch (RuntimeException e) {
+			throw this.fail("addAccount", e, account);
+		}
+	}
+	
+	@Override
+	public boolean updateAccountBalance(long accountId, BigDecimal holdDelta, BigDecimal availableDelta) {
+		try {
+			return this.accountDao.updateAccountBalance(accountId, holdDelta, availableDelta);
+		} catch (RuntimeException e) {
+			throw this.fail("updateAccountBalance", e, accountId, holdDelta, availableDelta);
+		}
+	}
+	
+	@Override
+	public List<Long> updateAccountBalances(Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas) {
+		try {
+			return this.accountDao.updateAccountBalances(holdDeltas, availableDeltas);
+		} catch (RuntimeException e) {
+			throw this.fail("updateAccountBalances", e, holdDeltas, availableDeltas);
+		}
+	}
+	
+	@Override
+	public Optional<Account> getAccount(long userId, String currency) {
+		try {
+			return this.accountDao.getAccount(userId, currency);
+		} catch (RuntimeException e) {
+			throw this.fail("getAccount", e, userId, currency);
+		}
+	}
+	
+	@Override
+	public Optional<Account> getAccountById(long id) {
+		try {
+			return this.accountDao.getAccountById(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getAccountById", e, id);
+		}
+	}
+	
+	@Override
+	public List<Account> listAccounts(long userId) {
+		try {
+			return this.accountDao.listAccounts(userId);
+		} catch (RuntimeException e) {
+			throw this.fail("listAccounts", e, userId);
+		}
+	}
+	
+	@Override
+	public List<Account> listAccountsAfter(long idOffset, int limit) {
+		try {
+			return this.accountDao.listAccountsAfter(idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listAccountsAfter", e, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public void updateAccountStatus(long id, AccountStatus oldStatus, AccountStatus newStatus) {
+		try {
+			this.accountDao.updateAccountStatus(id, oldStatus, newStatus);
+		} catch (RuntimeException e) {
+			throw this.fail("updateAccountStatus", e, id, oldStatus, newStatus);
+		}
+	}
+	
+	// OrderDao
+	@Override
+	public boolean addOrder(Order order) {
+		try {
+			return this.orderDao.addOrder(order);
+		} catch (RuntimeException e) {
+			throw this.fail("addOrder", e, order);
+		}
+	}
+	
+	@Override
+	public void mustAddOrder(Order order) {
+		try {
+			this.orderDao.mustAddOrder(order);
+		} catch (RuntimeException e) {
+			throw this.fail("mustAddOrder", e, order);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatus(long userId, int productId, OrderStatus status, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByStatus(userId, productId, status, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByStatus", e, userId, productId, status, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatus(long userId, OrderStatus status, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByStatus(userId, status, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByStatus", e, userId, status, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByTimeRange(userId, productId, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByTimeRange", e, userId, productId, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByTimeRange(userId, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByTimeRange", e, userId, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByPhase(userId, productId, filter, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByPhase", e, userId, productId, filter, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByPhase(userId, filter, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByPhase", e, userId, filter, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersBySidedPhase(userId, productId, filter, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersBySidedPhase", e, userId, productId, filter, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersBySidedPhase(userId, filter, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersBySidedPhase", e, userId, filter, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByTimeRange(userId, productId, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByTimeRange", e, userId, productId, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByTimeRange(userId, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByTimeRange", e, userId, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByPhase(userId, productId, filter, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByPhase", e, userId, productId, filter, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersByPhase(userId, filter, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByPhase", e, userId, filter, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersBySidedPhase(userId, productId, filter, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersBySidedPhase", e, userId, productId, filter, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.orderDao.listOrdersBySidedPhase(userId, filter, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersBySidedPhase", e, userId, filter, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public boolean updateOrderStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+		try {
+			return this.orderDao.updateOrderStatus(orderId, oldStatus, newStatus);
+		} catch (RuntimeException e) {
+			throw this.fail("updateOrderStatus", e, orderId, oldStatus, newStatus);
+		}
+	}
+	
+	@Override
+	public void fillOrder(long orderId, BigDecimal amount, BigDecimal funds) {
+		try {
+			this.orderDao.fillOrder(orderId, amount, funds);
+		} catch (RuntimeException e) {
+			throw this.fail("fillOrder", e, orderId, amount, funds);
+		}
+	}
+	
+	@Override
+	public void fillOrders(Map<Long, BigDecimal> amounts, Map<Long, BigDecimal> funds) {
+		try {
+			this.orderDao.fillOrders(amounts, funds);
+		} catch (RuntimeException e) {
+			throw this.fail("fillOrders", e, amounts, funds);
+		}
+	}
+	
+	@Override
+	public Optional<Order> getOrder(long orderId) {
+		try {
+			return this.orderDao.getOrder(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("getOrder", e, orderId);
+		}
+	}
+	
+	@Override
+	public Optional<Order> getOrderForUpdate(long orderId) {
+		try {
+			return this.orderDao.getOrderForUpdate(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("getOrderForUpdate", e, orderId);
+		}
+	}
+	
+	@Override
+	public Order mustGetOrder(long orderId) {
+		try {
+			return this.orderDao.mustGetOrder(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("mustGetOrder", e, orderId);
+		}
+	}
+	
+	@Override
+	public Order mustGetOrderForUpdate(long orderId) {
+		try {
+			return this.orderDao.mustGetOrderForUpdate(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("mustGetOrderForUpdate", e, orderId);
+		}
+	}
+	
+	@Override
+	public Optional<Order> getOrderByClientOrderId(long userId, String clientOrderId) {
+		try {
+			return this.orderDao.getOrderByClientOrderId(userId, clientOrderId);
+		} catch (RuntimeException e) {
+			throw this.fail("getOrderByClientOrderId", e, userId, clientOrderId);
+		}
+	}
+	
+	@Override
+	public Order mustGetOrderByClientOrderId(long userId, String clientOrderId) {
+		try {
+			return this.orderDao.mustGetOrderByClientOrderId(userId, clientOrderId);
+		} catch (RuntimeException e) {
+			throw this.fail("mustGetOrderByClientOrderId", e, userId, clientOrderId);
+		}
+	}
+	
+	@Override
+	public Optional<Long> getOrderByHash(String hash) {
+		try {
+			return this.orderDao.getOrderByHash(hash);
+		} catch (RuntimeException e) {
+			throw this.fail("getOrderByHash", e, hash);
+		}
+	}
+	
+	@Override
+	public List<Order> listAllOrdersByStatus(OrderStatus status) {
+		try {
+			return this.orderDao.listAllOrdersByStatus(status);
+		} catch (RuntimeException e) {
+			throw this.fail("listAllOrdersByStatus", e, status);
+		}
+	}
+	
+	@Override
+	public List<Order> listAllOrdersByStatus(int productId, OrderStatus status) {
+		try {
+			return this.orderDao.listAllOrdersByStatus(productId, status);
+		} catch (RuntimeException e) {
+			throw this.fail("listAllOrdersByStatus", e, productId, status);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatusAfter(int productId, OrderStatus status, long idOffset, int limit) {
+		try {
+			return this.orderDao.listOrdersByStatusAfter(productId, status, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByStatusAfter", e, productId, status, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatusAfter(OrderStatus status, long idOffset, int limit) {
+		try {
+			return this.orderDao.listOrdersByStatusAfter(status, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersByStatusAfter", e, status, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public List<Order> listOrdersUpdatedSince(int productId, Timestamp since, long idOffset, int limit) {
+		try {
+			return this.orderDao.listOrdersUpdatedSince(productId, since, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listOrdersUpdatedSince", e, productId, since, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public long getMaxOrderId() {
+		try {
+			return this.orderDao.getMaxOrderId();
+		} catch (RuntimeException e) {
+			throw this.fail("getMaxOrderId", e);
+		}
+	}
+	
+	@Override
+	public boolean addCancelOrderRequest(CancelOrderRequest request) {
+		try {
+			return this.orderDao.addCancelOrderRequest(request);
+		} catch (RuntimeException e) {
+			throw this.fail("addCancelOrderRequest", e, request);
+		}
+	}
+	
+	@Override
+	public void mustAddCancelOrderRequest(CancelOrderRequest request) {
+		try {
+			this.orderDao.mustAddCancelOrderRequest(request);
+		} catch (RuntimeException e) {
+			throw this.fail("mustAddCancelOrderRequest", e, request);
+		}
+	}
+	
+	@Override
+	public void updateCancelOrderRequest(long orderId, SettlementStatus status, String txHash, long txNonce) {
+		try {
+			this.orderDao.updateCancelOrderRequest(orderId, status, txHash, txNonce);
+		} catch (RuntimeException e) {
+			throw this.fail("updateCancelOrderRequest", e, orderId, status, txHash, txNonce);
+		}
+	}
+	
+	@Override
+	public Optional<CancelOrderRequest> getCancelOrderRequest(long orderId) {
+		try {
+			return this.orderDao.getCancelOrderRequest(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("getCancelOrderRequest", e, orderId);
+		}
+	}
+	
+	@Override
+	public CancelOrderRequest mustGetCancelOrderRequest(long orderId) {
+		try {
+			return this.orderDao.mustGetCancelOrderRequest(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("mustGetCancelOrderRequest", e, orderId);
+		}
+	}
+	
+	@Override
+	public boolean deleteCancelOrderRequest(long orderId) {
+		try {
+			return this.orderDao.deleteCancelOrderRequest(orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("deleteCancelOrderRequest", e, orderId);
+		}
+	}
+	
+	@Override
+	public List<CancelOrderRequest> listCancelOrderRequests(SettlementStatus status) {
+		try {
+			return this.orderDao.listCancelOrderRequests(status);
+		} catch (RuntimeException e) {
+			throw this.fail("listCancelOrderRequests", e, status);
+		}
+	}
+	
+	@Override
+	public boolean addOrderPruneRecord(long timestamp, long orderId) {
+		try {
+			return this.orderDao.addOrderPruneRecord(timestamp, orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("addOrderPruneRecord", e, timestamp, orderId);
+		}
+	}
+	
+	@Override
+	public void deleteOrderPruneRecord(long timestamp, long orderId) {
+		try {
+			this.orderDao.deleteOrderPruneRecord(timestamp, orderId);
+		} catch (RuntimeException e) {
+			throw this.fail("deleteOrderPruneRecord", e, timestamp, orderId);
+		}
+	}
+	
+	@Override
+	public List<OrderPruneRecord> getOrderPruneRecords(long timestampUpperBoundExclusive, int offset, int limit) {
+		try {
+			return this.orderDao.getOrderPruneRecords(timestampUpperBoundExclusive, offset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("getOrderPruneRecords", e, timestampUpperBoundExclusive, offset, limit);
+		}
+	}
+	
+	// TradeDao
+	@Override
+	public void addTrade(Trade trade) {
+		try {
+			this.tradeDao.addTrade(trade);
+		} catch (RuntimeException e) {
+			throw this.fail("addTrade", e, trade);
+		}
+	}
+	
+	@Override
+	public void addTradeOrderMap(long orderId, long tradeId) {
+		try {
+			this.tradeDao.addTradeOrderMap(orderId, tradeId);
+		} catch (RuntimeException e) {
+			throw this.fail("addTradeOrderMap", e, orderId, tradeId);
+		}
+	}
+	
+	@Override
+	public void addTradeUserMap(long userId, int productId, Timestamp createTime, long tradeId) {
+		try {
+			this.tradeDao.addTradeUserMap(userId, productId, createTime, tradeId);
+		} catch (RuntimeException e) {
+			throw this.fail("addTradeUserMap", e, userId, productId, createTime, tradeId);
+		}
+	}
+	
+	@Override
+	public void addTrades(List<Trade> trades) {
+		try {
+			this.tradeDao.addTrades(trades);
+		} catch (RuntimeException e) {
+			throw this.fail("addTrades", e, trades);
+		}
+	}
+	
+	@Override
+	public void addTradeOrderMaps(List<Trade> trades) {
+		try {
+			this.tradeDao.addTradeOrderMaps(trades);
+		} catch (RuntimeException e) {
+			throw this.fail("addTradeOrderMaps", e, trades);
+		}
+	}
+	
+	@Override
+	public void addTradeUserMaps(List<UserTradeMap> maps) {
+		try {
+			this.tradeDao.addTradeUserMaps(maps);
+		} catch (RuntimeException e) {
+			throw this.fail("addTradeUserMaps", e, maps);
+		}
+	}
+	
+	@Override
+	public List<Trade> listRecentTrades(int productId, int offset, int limit) {
+		try {
+			return this.tradeDao.listRecentTrades(productId, offset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listRecentTrades", e, productId, offset, limit);
+		}
+	}
+	
+	@Override
+	public List<Trade> listTradesAfter(int productId, long idOffset, int limit) {
+		try {
+			return this.tradeDao.listTradesAfter(productId, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listTradesAfter", e, productId, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public Optional<Trade> getRecentTradeBefore(int productId, Timestamp timestamp) {
+		try {
+			return this.tradeDao.getRecentTradeBefore(productId, timestamp);
+		} catch (RuntimeException e) {
+			throw this.fail("getRecentTradeBefore", e, productId, timestamp);
+		}
+	}
+	
+	@Override
+	public List<Trade> listTradesByOrderId(long orderId, int offset, int limit) {
+		try {
+			return this.tradeDao.listTradesByOrderId(orderId, offset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listTradesByOrderId", e, orderId, offset, limit);
+		}
+	}
+	
+	@Override
+	public List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		try {
+			return this.tradeDao.listTradesByUser(userId, productId, start, end, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listTradesByUser", e, userId, productId, start, end, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		try {
+			return this.tradeDao.listTradesByUser(userId, productId, start, end, cursor, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listTradesByUser", e, userId, productId, start, end, cursor, limit, asc);
+		}
+	}
+	
+	@Override
+	public void updateTradeSettlement(long tradeId, SettlementStatus status, String txHash, long txNonce) {
+		try {
+			this.tradeDao.updateTradeSettlement(tradeId, status, txHash, txNonce);
+		} catch (RuntimeException e) {
+			throw this.fail("updateTradeSettlement", e, tradeId, status, txHash, txNonce);
+		}
+	}
+	
+	@Override
+	public List<Trade> listTradesByStatus(SettlementStatus status) {
+		try {
+			return this.tradeDao.listTradesByStatus(status);
+		} catch (RuntimeException e) {
+			throw this.fail("listTradesByStatus", e, status);
+		}
+	}
+	
+	@Override
+	public Trade getById(long id) {
+		try {
+			return this.tradeDao.getById(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getById", e, id);
+		}
+	}
+	
+	// TickDao
+	@Override
+	public void addTick(Tick tick) {
+		try {
+			this.tickDao.addTick(tick);
+		} catch (RuntimeException e) {
+			throw this.fail("addTick", e, tick);
+		}
+	}
+	
+	@Override
+	public Optional<Tick> getLastTick(int productId, int granularity) {
+		try {
+			return this.tickDao.getLastTick(productId, granularity);
+		} catch (RuntimeException e) {
+			throw this.fail("getLastTick", e, productId, granularity);
+		}
+	}
+	
+	@Override
+	public Tick mustGetLastTick(int productId, int granularity) {
+		try {
+			return this.tickDao.mustGetLastTick(productId, granularity);
+		} catch (RuntimeException e) {
+			throw this.fail("mustGetLastTick", e, productId, granularity);
+		}
+	}
+	
+	@Override
+	public void updateTick(Tick tick) {
+		try {
+			this.tickDao.updateTick(tick);
+		} catch (RuntimeException e) {
+			throw this.fail("updateTick", e, tick);
+		}
+	}
+	
+	@Override
+	public void upsertTicks(List<Tick> ticks) {
+		try {
+			this.tickDao.upsertTicks(ticks);
+		} catch (RuntimeException e) {
+			throw this.fail("upsertTicks", e, ticks);
+		}
+	}
+	
+	@Override
+	public List<Tick> listTicks(int productId, int granularity, Timestamp start, Timestamp end) {
+		try {
+			return this.tickDao.listTicks(productId, granularity, start, end);
+		} catch (RuntimeException e) {
+			throw this.fail("listTicks", e, productId, granularity, start, end);
+		}
+	}
+	
+	@Override
+	public List<Tick> listTicks(int productId, int granularity, Timestamp end, int limit) {
+		try {
+			return this.tickDao.listTicks(productId, granularity, end, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listTicks", e, productId, granularity, end, limit);
+		}
+	}
+	
+	@Override
+	public long getTradeCount(int productId, int granularity) {
+		try {
+			return this.tickDao.getTradeCount(productId, granularity);
+		} catch (RuntimeException e) {
+			throw this.fail("getTradeCount", e, productId, granularity);
+		}
+	}
+	
+	// ConfigDao
+	@Override
+	public void setConfig(String name, String value) {
+		try {
+			this.configDao.setConfig(name, value);
+		} catch (RuntimeException e) {
+			throw this.fail("setConfig", e, name, value);
+		}
+	}
+	
+	@Override
+	public Optional<String> getConfig(String name) {
+		try {
+			return this.configDao.getConfig(name);
+		} catch (RuntimeException e) {
+			throw this.fail("getConfig", e, name);
+		}
+	}
+	
+	@Override
+	public List<Config> listConfig(Collection<String> names) {
+		try {
+			return this.configDao.listConfig(names);
+		} catch (RuntimeException e) {
+			throw this.fail("listConfig", e, names);
+		}
+	}
+	
+	@Override
+	public List<Config> listAll() {
+		try {
+			return this.configDao.listAll();
+		} catch (RuntimeException e) {
+			throw this.fail("listAll", e);
+		}
+	}
+	
+	@Override
+	public int getIntConfig(String key, int defaultV) {
+		try {
+			return this.configDao.getIntConfig(key, defaultV);
+		} catch (RuntimeException e) {
+			throw this.fail("getIntConfig", e, key, defaultV);
+		}
+	}
+	
+	// DepositDao
+	@Override
+	public void addDepositRecord(DepositRecord record) {
+		try {
+			this.depositDao.addDepositRecord(record);
+		} catch (RuntimeException e) {
+			throw this.fail("addDepositRecord", e, record);
+		}
+	}
+	
+	@Override
+	public Optional<DepositRecord> getDepositRecordByTxHash(String txHash) {
+		try {
+			return this.depositDao.getDepositRecordByTxHash(txHash);
+		} catch (RuntimeException e) {
+			throw this.fail("getDepositRecordByTxHash", e, txHash);
+		}
+	}
+	
+	@Override
+	public PagingResult<DepositRecord> listDepositRecords(String userAddress, String currency, int offset, int limit, boolean asc) {
+		try {
+			return this.depositDao.listDepositRecords(userAddress, currency, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listDepositRecords", e, userAddress, currency, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<DepositRecord> listDepositRecords(String userAddress, int offset, int limit, boolean asc) {
+		try {
+			return this.depositDao.listDepositRecords(userAddress, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listDepositRecords", e, userAddress, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public BigDecimal getDepositSum(String currency) {
+		try {
+			return this.depositDao.getDepositSum(currency);
+		} catch (RuntimeException e) {
+			throw this.fail("getDepositSum", e, currency);
+		}
+	}
+	
+	// WithdrawDao
+	@Override
+	public boolean addWithdrawRecord(WithdrawRecord record) {
+		try {
+			return this.withdrawDao.addWithdrawRecord(record);
+		} catch (RuntimeException e) {
+			throw this.fail("addWithdrawRecord", e, record);
+		}
+	}
+	
+	@Override
+	public void mustAddWithdrawRecord(WithdrawRecord record) {
+		try {
+			this.withdrawDao.mustAddWithdrawRecord(record);
+		} catch (RuntimeException e) {
+			throw this.fail("mustAddWithdrawRecord", e, record);
+		}
+	}
+	
+	@Override
+	public void updateWithdrawSettlement(long id, SettlementStatus status, String txHash, long txNonce) {
+		try {
+			this.withdrawDao.updateWithdrawSettlement(id, status, txHash, txNonce);
+		} catch (RuntimeException e) {
+			throw this.fail("updateWithdrawSettlement", e, id, status, txHash, txNonce);
+		}
+	}
+	
+	@Override
+	public PagingResult<WithdrawRecord> listWithdrawRecords(String userAddress, String currency, int offset, int limit, boolean asc) {
+		try {
+			return this.withdrawDao.listWithdrawRecords(userAddress, currency, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listWithdrawRecords", e, userAddress, currency, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<WithdrawRecord> listWithdrawRecords(String userAddress, int offset, int limit, boolean asc) {
+		try {
+			return this.withdrawDao.listWithdrawRecords(userAddress, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listWithdrawRecords", e, userAddress, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<WithdrawRecord> listWithdrawRecordsByStatus(SettlementStatus status) {
+		try {
+			return this.withdrawDao.listWithdrawRecordsByStatus(status);
+		} catch (RuntimeException e) {
+			throw this.fail("listWithdrawRecordsByStatus", e, status);
+		}
+	}
+	
+	@Override
+	public List<WithdrawRecord> listWithdrawRecords(String currency, long idOffset, int limit) {
+		try {
+			return this.withdrawDao.listWithdrawRecords(currency, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listWithdrawRecords", e, currency, idOffset, limit);
+		}
+	}
+	
+	@Override
+	public BigDecimal getWithdrawSum(String currency) {
+		try {
+			return this.withdrawDao.getWithdrawSum(currency);
+		} catch (RuntimeException e) {
+			throw this.fail("getWithdrawSum", e, currency);
+		}
+	}
+	
+	@Override
+	public BigDecimal getWithdrawSumByType(String currency, WithdrawType type) {
+		try {
+			return this.withdrawDao.getWithdrawSumByType(currency, type);
+		} catch (RuntimeException e) {
+			throw this.fail("getWithdrawSumByType", e, currency, type);
+		}
+	}
+	
+	// DailyLimitDao
+	@Override
+	public void addDailyLimit(DailyLimit dailyLimit) {
+		try {
+			this.dailyLimitDao.addDailyLimit(dailyLimit);
+		} catch (RuntimeException e) {
+			throw this.fail("addDailyLimit", e, dailyLimit);
+		}
+	}
+	
+	@Override
+	public void removeDailyLimit(int productId) {
+		try {
+			this.dailyLimitDao.removeDailyLimit(productId);
+		} catch (RuntimeException e) {
+			throw this.fail("removeDailyLimit", e, productId);
+		}
+	}
+	
+	@Override
+	public List<DailyLimit> listDailyLimitsByProductId(int id) {
+		try {
+			return this.dailyLimitDao.listDailyLimitsByProductId(id);
+		} catch (RuntimeException e) {
+			throw this.fail("listDailyLimitsByProductId", e, id);
+		}
+	}
+	
+	@Override
+	public List<DailyLimit> listAllDailyLimit() {
+		try {
+			return this.dailyLimitDao.listAllDailyLimit();
+		} catch (RuntimeException e) {
+			throw this.fail("listAllDailyLimit", e);
+		}
+	}
+	
+	// DailyLimitRateDao
+	@Override
+	public void addDailyLimitRate(DailyLimitRate dailyLimit) {
+		try {
+			this.dailyLimitRateDao.addDailyLimitRate(dailyLimit);
+		} catch (RuntimeException e) {
+			throw this.fail("addDailyLimitRate", e, dailyLimit);
+		}
+	}
+	
+	@Override
+	public Optional<DailyLimitRate> getDailyLimitRateByProductId(int id) {
+		try {
+			return this.dailyLimitRateDao.getDailyLimitRateByProductId(id);
+		} catch (RuntimeException e) {
+			throw this.fail("getDailyLimitRateByProductId", e, id);
+		}
+	}
+	
+	@Override
+	public List<DailyLimitRate> listDailyLimitRate() {
+		try {
+			return this.dailyLimitRateDao.listDailyLimitRate();
+		} catch (RuntimeException e) {
+			throw this.fail("listDailyLimitRate", e);
+		}
+	}
+	
+	// TransferDao
+	@Override
+	public boolean addTransferRecord(TransferRecord record) {
+		try {
+			return this.transferDao.addTransferRecord(record);
+		} catch (RuntimeException e) {
+			throw this.fail("addTransferRecord", e, record);
+		}
+	}
+	
+	@Override
+	public void mustAddTransferRecord(TransferRecord record) {
+		try {
+			this.transferDao.mustAddTransferRecord(record);
+		} catch (RuntimeException e) {
+			throw this.fail("mustAddTransferRecord", e, record);
+		}
+	}
+	
+	@Override
+	public void updateTransferSettlement(long id, SettlementStatus status, String txHash, long txNonce) {
+		try {
+			this.transferDao.updateTransferSettlement(id, status, txHash, txNonce);
+		} catch (RuntimeException e) {
+			throw this.fail("updateTransferSettlement", e, id, status, txHash, txNonce);
+		}
+	}
+	
+	@Override
+	public PagingResult<TransferRecord> listTransferRecords(String userAddress, String currency, int offset, int limit, boolean asc) {
+		try {
+			return this.transferDao.listTransferRecords(userAddress, currency, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listTransferRecords", e, userAddress, currency, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public PagingResult<TransferRecord> listTransferRecords(String userAddress, int offset, int limit, boolean asc) {
+		try {
+			return this.transferDao.listTransferRecords(userAddress, offset, limit, asc);
+		} catch (RuntimeException e) {
+			throw this.fail("listTransferRecords", e, userAddress, offset, limit, asc);
+		}
+	}
+	
+	@Override
+	public List<TransferRecord> listTransferRecordsByStatus(SettlementStatus status) {
+		try {
+			return this.transferDao.listTransferRecordsByStatus(status);
+		} catch (RuntimeException e) {
+			throw this.fail("listTransferRecordsByStatus", e, status);
+		}
+	}
+	
+	@Override
+	public List<TransferRecord> listTransferRecords(String currency, long idOffset, int limit) {
+		try {
+			return this.transferDao.listTransferRecords(currency, idOffset, limit);
+		} catch (RuntimeException e) {
+			throw this.fail("listTransferRecords", e, currency, idOffset, limit);
+		}
+	}
+}
+
+class InMemoryDexDao extends DelegatingDexDao {
+	public InMemoryDexDao() {
+		this.currencyDao = new InMemoryCurrencyDao();
+		this.productDao = new InMemoryProductDao();
+		this.userDao = new InMemoryUserDao();
+		this.accountDao = new InMemoryAccountDao();
+		this.orderDao = new InMemoryOrderDao();
+		this.tradeDao = new InMemoryTradeDao();
+		this.tickDao = new InMemoryTickDao();
+		this.configDao = new InMemoryConfigDao();
+		this.depositDao = new InMemoryDepositDao();
+		this.dailyLimitDao = new InMemoryDailyLimitDao();
+		this.dailyLimitRateDao = new InMemoryDailyLimitRateDao();
+	}
+
+	@Override
+	protected <T> T executeInTransaction(TransactionCallback<T> callback) {
+		return callback.doInTransaction(null);
+	}
+}
+
+class SpringJDBCDexDao extends DelegatingDexDao {
+	private static final Logger logger = LoggerFactory.getLogger(SpringJDBCDexDao.class);
+	private static final Histogram latencyStat = Metrics.histogram(SpringJDBCDexDao.class, "latency");
+
+	private TransactionTemplate tt;
+	
+	public SpringJDBCDexDao(ApplicationContext context) {
+		PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+		this.tt = new TransactionTemplate(transactionManager);
+		
+		this.currencyDao = context.getBean(CurrencyDaoImpl.class);
+		this.productDao = context.getBean(ProductDaoImpl.class);
+		this.userDao = context.getBean(UserDaoImpl.class);
+		AccountLedger ledger = context.getBean(AccountLedger.class);
+		this.accountDao = ledger.isEnabled() ? ledger : context.getBean(AccountDaoImpl.class);
+		LiveOrderIndex orderIndex = context.getBean(LiveOrderIndex.class);
+		this.orderDao = orderIndex.isEnabled() ? orderIndex : context.getBean(OrderDaoImpl.class);
+		this.tradeDao = context.getBean(TradeDaoImpl.class);
+		this.tickDao = context.getBean(TickDaoImpl.class);
+		this.configDao = context.getBean(ConfigDaoImpl.class);
+		this.withdrawDao = context.getBean(WithdrawDaoImpl.class);
+		this.depositDao = context.getBean(DepositDaoImpl.class);
+		this.dailyLimitDao = context.getBean(DailyLimitDaoImpl.class);
+		this.dailyLimitRateDao = context.getBean(DailyLimitRateDaoImpl.class);
+		this.transferDao = context.getBean(TransferDaoImpl.class);
+	}
+
+	@Override
+	protected <T> T executeInTransaction(TransactionCallback<T> callback) {
+		RuntimeException txEx = null;
+		
+		// retry 5 times by default for recoverable runtime exceptions
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			try {
+				return tt.execute(callback);
+			} catch (CannotCreateTransactionException e) {
+				// e.g. idle connection collected by database
+				logger.warn("failed to execute in transaction (CannotCreateTransactionException), retry = {}, message = {}", i, e.getMessage());
+				txEx = e;
+			} catch (DeadlockLoserDataAccessException e) {
+				logger.warn("failed to execute in transaction (DeadlockLoserDataAccessException), retry = {}, message = {}", i, e.getMessage());
+				txEx = e;
+			} catch (CannotAcquireLockException e) {
+				txEx = e;
+				logger.warn("failed to execute in transaction (CannotAcquireLockException), retry = {}, message = {}", i, e.getMessage());
+			}
+		}
+		latencyStat.update(System.currentTimeMillis() - start);
+		throw txEx;
+	}
+}
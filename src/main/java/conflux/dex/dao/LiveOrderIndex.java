@@ -0,0 +1,594 @@
+package conflux.dex.dao;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import conflux.dex.common.Metrics;
+import conflux.dex.common.Metrics.LongGauge;
+import conflux.dex.model.CancelOrderRequest;
+import conflux.dex.model.Order;
+import conflux.dex.model.OrderFilter;
+import conflux.dex.model.OrderPruneRecord;
+import conflux.dex.model.OrderStatus;
+import conflux.dex.model.PagingCursor;
+import conflux.dex.model.PagingResult;
+import conflux.dex.model.SettlementStatus;
+
+/**
+ * In-memory index of incompleted orders (New, Open, Cancelling and Pending) by user,
+ * which serves user queries of incompleted orders without database access.
+ *
+ * When enabled, index is rebuilt from t_order on startup, and then maintained along with
+ * order changes in database, e.g. order added, status changed or filled. Changes in a
+ * database transaction apply to index after transaction committed.
+ *
+ * Since callbacks of different transactions may run out of order, changes of an order that
+ * committed before the order cached are kept as pending, and applied to the order once cached.
+ * So, the order will not be cached if already completed, and never reloaded from database,
+ * which may double apply changes of a transaction whose callbacks not run yet.
+ *
+ * Queries of completed orders (Cancelled and Filled) are still served by database.
+ */
+@Component
+public class LiveOrderIndex implements OrderDao {
+
+	private static final Logger logger = LoggerFactory.getLogger(LiveOrderIndex.class);
+
+	private static final LongGauge sizeGauge = Metrics.longGauge(LiveOrderIndex.class, "size");
+	private static final LongGauge pendingGauge = Metrics.longGauge(LiveOrderIndex.class, "pending");
+
+	private static final OrderStatus[] INCOMPLETED_STATUSES = {
+			OrderStatus.New, OrderStatus.Open, OrderStatus.Cancelling, OrderStatus.Pending };
+
+	private static final Comparator<Order> TIME_ORDER = Comparator.comparing(Order::getCreateTime).thenComparingLong(Order::getId);
+
+	private OrderDao dao;
+	private boolean enabled;
+
+	private Map<Long, Order> orders = new ConcurrentHashMap<Long, Order>();
+	// map<userId, map<orderId, order>>
+	private Map<Long, NavigableMap<Long, Order>> index = new ConcurrentHashMap<Long, NavigableMap<Long, Order>>();
+	// map<orderId, changes> committed before order cached, guarded by itself
+	private Map<Long, PendingChanges> pending = new HashMap<Long, PendingChanges>();
+	private long pendingTimeoutMillis = 600_000;
+
+	@Autowired
+	public LiveOrderIndex(OrderDaoImpl dao) {
+		this((OrderDao) dao);
+	}
+
+	LiveOrderIndex(OrderDao dao) {
+		this.dao = dao;
+	}
+
+	@Autowired
+	public void setEnabled(@Value("${order.index.enabled:false}") boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Autowired
+	public void setPendingTimeoutMillis(@Value("${order.index.pending.timeout.millis:600000}") long pendingTimeoutMillis) {
+		this.pendingTimeoutMillis = pendingTimeoutMillis;
+	}
+
+	@PostConstruct
+	public void init() {
+		if (this.enabled) {
+			this.load();
+		}
+	}
+
+	/**
+	 * Rebuilds index from database.
+	 */
+	void load() {
+		for (OrderStatus status : INCOMPLETED_STATUSES) {
+			for (Order order : this.dao.listAllOrdersByStatus(status)) {
+				this.cache(order);
+			}
+		}
+
+		logger.info("live order index loaded, orders = {}", this.orders.size());
+	}
+
+	private void cache(Order loaded) {
+		Order order = copy(loaded);
+
+		synchronized (this.pending) {
+			PendingChanges changes = this.pending.remove(order.getId());
+			if (changes != null) {
+				changes.applyTo(order);
+				pendingGauge.setValue(this.pending.size());
+			}
+
+			if (order.getStatus().isCompleted() || this.orders.putIfAbsent(order.getId(), order) != null) {
+				return;
+			}
+
+			this.index.computeIfAbsent(order.getUserId(), userId -> new ConcurrentSkipListMap<Long, Order>())
+				.put(order.getId(), order);
+		}
+
+		sizeGauge.setValue(this.orders.size());
+	}
+
+	/**
+	 * Returns the cached order, or keeps the change as pending if order not cached yet,
+	 * e.g. callback of order added not run yet. In this case, null is returned.
+	 */
+	private Order getOrPend(long orderId, Consumer<PendingChanges> change) {
+		Order order = this.orders.get(orderId);
+		if (order != null) {
+			return order;
+		}
+
+		synchronized (this.pending) {
+			// double check, since order may be cached concurrently
+			order = this.orders.get(orderId);
+			if (order == null) {
+				change.accept(this.pending.computeIfAbsent(orderId, id -> new PendingChanges()));
+				pendingGauge.setValue(this.pending.size());
+			}
+		}
+
+		return order;
+	}
+
+	/**
+	 * Removes pending changes of orders that never cached, e.g. changes of evicted orders.
+	 */
+	@Scheduled(initialDelay = 60_000, fixedDelay = 60_000)
+	public void purgePending() {
+		long expired = System.currentTimeMillis() - this.pendingTimeoutMillis;
+
+		synchronized (this.pending) {
+			this.pending.values().removeIf(changes -> changes.createTime < expired);
+			pendingGauge.setValue(this.pending.size());
+		}
+	}
+
+	private void evict(Order order) {
+		this.orders.remove(order.getId());
+
+		NavigableMap<Long, Order> userOrders = this.index.get(order.getUserId());
+		if (userOrders != null) {
+			userOrders.remove(order.getId());
+		}
+
+		sizeGauge.setValue(this.orders.size());
+	}
+
+	private static Order copy(Order order) {
+		Order copy = new Order();
+
+		synchronized (order) {
+			copy.setId(order.getId());
+			copy.setClientOrderId(order.getClientOrderId());
+			copy.setProductId(order.getProductId());
+			copy.setUserId(order.getUserId());
+			copy.setCreateTime(order.getCreateTime());
+			copy.setUpdateTime(order.getUpdateTime());
+			copy.setType(order.getType());
+			copy.setSide(order.getSide());
+			copy.setStatus(order.getStatus());
+			copy.setPrice(order.getPrice());
+			copy.setAmount(order.getAmount());
+			copy.setFeeAddress(order.getFeeAddress());
+			copy.setFeeRateTaker(order.getFeeRateTaker());
+			copy.setFeeRateMaker(order.getFeeRateMaker());
+			copy.setFilledAmount(order.getFilledAmount());
+			copy.setFilledFunds(order.getFilledFunds());
+			copy.setTimestamp(order.getTimestamp());
+			copy.setHash(order.getHash());
+			copy.setSignature(order.getSignature());
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Executes the specified action after transaction committed,
+	 * or executes immediately if not in transaction.
+	 */
+	private static void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			action.run();
+			return;
+		}
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+			@Override
+			public void afterCommit() {
+				action.run();
+			}
+
+		});
+	}
+
+	private void updateStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+		Order order = this.getOrPend(orderId, changes -> changes.statuses.add(new OrderStatus[] { oldStatus, newStatus }));
+		if (order == null) {
+			return;
+		}
+
+		synchronized (order) {
+			if (order.getStatus() != oldStatus) {
+				return;
+			}
+
+			order.setStatus(newStatus);
+			order.setUpdateTime(Timestamp.from(Instant.now()));
+		}
+
+		if (newStatus.isCompleted()) {
+			this.evict(order);
+		}
+	}
+
+	private void fill(long orderId, BigDecimal amount, BigDecimal funds) {
+		Order order = this.getOrPend(orderId, changes -> {
+			changes.filledAmount = changes.filledAmount.add(amount);
+			changes.filledFunds = changes.filledFunds.add(funds);
+		});
+		if (order == null) {
+			return;
+		}
+
+		synchronized (order) {
+			order.setFilledAmount(order.getFilledAmount().add(amount));
+			order.setFilledFunds(order.getFilledFunds().add(funds));
+			order.setUpdateTime(Timestamp.from(Instant.now()));
+		}
+	}
+
+	/**
+	 * Lists incompleted orders of user in order of id, which are optionally filtered by product.
+	 */
+	private List<Order> list(long userId, int productId, OrderStatus status, Timestamp start, Timestamp end, boolean asc) {
+		NavigableMap<Long, Order> userOrders = this.index.get(userId);
+		if (userOrders == null) {
+			return new ArrayList<Order>();
+		}
+
+		List<Order> result = new ArrayList<Order>();
+
+		for (Order order : (asc ? userOrders : userOrders.descendingMap()).values()) {
+			if (productId > 0 && order.getProductId() != productId) {
+				continue;
+			}
+
+			Order copy = copy(order);
+			if (copy.getStatus().isCompleted() || (status != null && copy.getStatus() != status)) {
+				continue;
+			}
+
+			if (start != null && (copy.getCreateTime().before(start) || copy.getCreateTime().after(end))) {
+				continue;
+			}
+
+			result.add(copy);
+		}
+
+		return result;
+	}
+
+	private static List<Order> page(List<Order> orders, int offset, int limit) {
+		if (offset >= orders.size()) {
+			return Collections.emptyList();
+		}
+
+		return orders.subList(offset, (int) Math.min((long) offset + limit, orders.size()));
+	}
+
+	private PagingResult<Order> listByPhase(long userId, int productId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		List<Order> orders = this.list(userId, productId, null, start, end, true);
+		orders.sort(asc ? TIME_ORDER : TIME_ORDER.reversed());
+		return new PagingResult<Order>(offset, limit, page(orders, offset, limit), orders.size());
+	}
+
+	private PagingResult<Order> listByPhase(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		List<Order> orders = this.list(userId, productId, null, start, end, true);
+		orders.sort(asc ? TIME_ORDER : TIME_ORDER.reversed());
+
+		List<Order> paged = new ArrayList<Order>(limit);
+		for (Order order : orders) {
+			if (paged.size() >= limit) {
+				break;
+			}
+
+			if (cursor == null || cursor.precedes(order.getCreateTime(), order.getId(), asc)) {
+				paged.add(order);
+			}
+		}
+
+		return new PagingResult<Order>(0, limit, paged, orders.size());
+	}
+
+	@Override
+	public boolean addOrder(Order order) {
+		if (!this.dao.addOrder(order)) {
+			return false;
+		}
+
+		Order copy = copy(order);
+		afterCommit(() -> this.cache(copy));
+
+		return true;
+	}
+
+	@Override
+	public List<Order> listOrdersByStatus(long userId, int productId, OrderStatus status, int offset, int limit, boolean asc) {
+		if (status.isCompleted()) {
+			return this.dao.listOrdersByStatus(userId, productId, status, offset, limit, asc);
+		}
+
+		return page(this.list(userId, productId, status, null, null, asc), offset, limit);
+	}
+
+	@Override
+	public List<Order> listOrdersByStatus(long userId, OrderStatus status, int offset, int limit, boolean asc) {
+		if (status.isCompleted()) {
+			return this.dao.listOrdersByStatus(userId, status, offset, limit, asc);
+		}
+
+		return page(this.list(userId, 0, status, null, null, asc), offset, limit);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		return this.dao.listOrdersByTimeRange(userId, productId, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		return this.dao.listOrdersByTimeRange(userId, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		if (filter == OrderFilter.Phase.Completed) {
+			return this.dao.listOrdersByPhase(userId, productId, filter, start, end, offset, limit, asc);
+		}
+
+		return this.listByPhase(userId, productId, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		if (filter == OrderFilter.Phase.Completed) {
+			return this.dao.listOrdersByPhase(userId, filter, start, end, offset, limit, asc);
+		}
+
+		return this.listByPhase(userId, 0, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		return this.dao.listOrdersBySidedPhase(userId, productId, filter, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc) {
+		return this.dao.listOrdersBySidedPhase(userId, filter, start, end, offset, limit, asc);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.dao.listOrdersByTimeRange(userId, productId, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.dao.listOrdersByTimeRange(userId, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		if (filter == OrderFilter.Phase.Completed) {
+			return this.dao.listOrdersByPhase(userId, productId, filter, start, end, cursor, limit, asc);
+		}
+
+		return this.listByPhase(userId, productId, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		if (filter == OrderFilter.Phase.Completed) {
+			return this.dao.listOrdersByPhase(userId, filter, start, end, cursor, limit, asc);
+		}
+
+		return this.listByPhase(userId, 0, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.dao.listOrdersBySidedPhase(userId, productId, filter, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.dao.listOrdersBySidedPhase(userId, filter, start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public boolean updateOrderStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
+		if (!this.dao.updateOrderStatus(orderId, oldStatus, newStatus)) {
+			return false;
+		}
+
+		afterCommit(() -> this.updateStatus(orderId, oldStatus, newStatus));
+
+		return true;
+	}
+
+	@Override
+	public void fillOrder(long orderId, BigDecimal amount, BigDecimal funds) {
+		this.dao.fillOrder(orderId, amount, funds);
+
+		afterCommit(() -> this.fill(orderId, amount, funds));
+	}
+
+	@Override
+	public void fillOrders(Map<Long, BigDecimal> amounts, Map<Long, BigDecimal> funds) {
+		this.dao.fillOrders(amounts, funds);
+
+		afterCommit(() -> {
+			for (Map.Entry<Long, BigDecimal> entry : amounts.entrySet()) {
+				this.fill(entry.getKey(), entry.getValue(), funds.get(entry.getKey()));
+			}
+		});
+	}
+
+	@Override
+	public Optional<Order> getOrder(long orderId) {
+		return this.dao.getOrder(orderId);
+	}
+
+	@Override
+	public Optional<Order> getOrderForUpdate(long orderId) {
+		return this.dao.getOrderForUpdate(orderId);
+	}
+
+	@Override
+	public Optional<Order> getOrderByClientOrderId(long userId, String clientOrderId) {
+		return this.dao.getOrderByClientOrderId(userId, clientOrderId);
+	}
+
+	@Override
+	public Optional<Long> getOrderByHash(String hash) {
+		return this.dao.getOrderByHash(hash);
+	}
+
+	@Override
+	public List<Order> listAllOrdersByStatus(OrderStatus status) {
+		return this.dao.listAllOrdersByStatus(status);
+	}
+
+	@Override
+	public List<Order> listAllOrdersByStatus(int productId, OrderStatus status) {
+		return this.dao.listAllOrdersByStatus(productId, status);
+	}
+
+	@Override
+	public List<Order> listOrdersByStatusAfter(int productId, OrderStatus status, long idOffset, int limit) {
+		return this.dao.listOrdersByStatusAfter(productId, status, idOffset, limit);
+	}
+
+	@Override
+	public List<Order> listOrdersByStatusAfter(OrderStatus status, long idOffset, int limit) {
+		return this.dao.listOrdersByStatusAfter(status, idOffset, limit);
+	}
+
+	@Override
+	public List<Order> listOrdersUpdatedSince(int productId, Timestamp since, long idOffset, int limit) {
+		return this.dao.listOrdersUpdatedSince(productId, since, idOffset, limit);
+	}
+
+	@Override
+	public long getMaxOrderId() {
+		return this.dao.getMaxOrderId();
+	}
+
+	@Override
+	public boolean addCancelOrderRequest(CancelOrderRequest request) {
+		return this.dao.addCancelOrderRequest(request);
+	}
+
+	@Override
+	public void updateCancelOrderRequest(long orderId, SettlementStatus status, String txHash, long txNonce) {
+		this.dao.updateCancelOrderRequest(orderId, status, txHash, txNonce);
+	}
+
+	@Override
+	public Optional<CancelOrderRequest> getCancelOrderRequest(long orderId) {
+		return this.dao.getCancelOrderRequest(orderId);
+	}
+
+	@Override
+	public boolean deleteCancelOrderRequest(long orderId) {
+		return this.dao.deleteCancelOrderRequest(orderId);
+	}
+
+	@Override
+	public List<CancelOrderRequest> listCancelOrderRequests(SettlementStatus status) {
+		return this.dao.listCancelOrderRequests(status);
+	}
+
+	@Override
+	public boolean addOrderPruneRecord(long timestamp, long orderId) {
+		return this.dao.addOrderPruneRecord(timestamp, orderId);
+	}
+
+	@Override
+	public void deleteOrderPruneRecord(long timestamp, long orderId) {
+		this.dao.deleteOrderPruneRecord(timestamp, orderId);
+	}
+
+	@Override
+	public List<OrderPruneRecord> getOrderPruneRecords(long timestampUpperBoundExclusive, int offset, int limit) {
+		return this.dao.getOrderPruneRecords(timestampUpperBoundExclusive, offset, limit);
+	}
+
+	/**
+	 * Changes of an order that committed before the order cached.
+	 */
+	private static class PendingChanges {
+		final long createTime = System.currentTimeMillis();
+		// list of status transitions (old, new) in order of commit callbacks
+		final List<OrderStatus[]> statuses = new ArrayList<OrderStatus[]>();
+		BigDecimal filledAmount = BigDecimal.ZERO;
+		BigDecimal filledFunds = BigDecimal.ZERO;
+
+		void applyTo(Order order) {
+			order.setFilledAmount(order.getFilledAmount().add(this.filledAmount));
+			order.setFilledFunds(order.getFilledFunds().add(this.filledFunds));
+
+			// callbacks may run out of order, so apply transitions until no one matches
+			List<OrderStatus[]> remaining = new ArrayList<OrderStatus[]>(this.statuses);
+			for (boolean applied = true; applied;) {
+				applied = false;
+
+				for (Iterator<OrderStatus[]> it = remaining.iterator(); it.hasNext();) {
+					OrderStatus[] transition = it.next();
+					if (order.getStatus() == transition[0]) {
+						order.setStatus(transition[1]);
+						it.remove();
+						applied = true;
+					}
+				}
+			}
+
+			order.setUpdateTime(Timestamp.from(Instant.now()));
+		}
+	}
+
+}
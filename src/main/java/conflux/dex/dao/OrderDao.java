@@ -7,15 +7,23 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
@@ -32,6 +40,7 @@ import conflux.dex.model.Order;
 import conflux.dex.model.OrderFilter;
 import conflux.dex.model.OrderPruneRecord;
 import conflux.dex.model.OrderStatus;
+import conflux.dex.model.PagingCursor;
 import conflux.dex.model.PagingResult;
 import conflux.dex.model.SettlementStatus;
 
@@ -54,9 +63,25 @@ public interface OrderDao {
 	PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc);
 	PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, int offset, int limit, boolean asc);
 
+	/*
+	 * Keyset paging by (create_time, id), which starts from the first page if cursor is null.
+	 * Total number of orders is only counted for the first page, and taken from cursor for others.
+	 */
+	List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+
 	boolean updateOrderStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus);
 
 	void fillOrder(long orderId, BigDecimal amount, BigDecimal funds);
+	
+	/**
+	 * Fills orders in batch, which are keyed by order id.
+	 */
+	void fillOrders(Map<Long, BigDecimal> amounts, Map<Long, BigDecimal> funds);
 
 	@Timed(name = "conflux.dex.dao.OrderDao.get.id", absolute = true)
 	Optional<Order> getOrder(long orderId);
@@ -100,6 +125,27 @@ public interface OrderDao {
 
 	List<Order> listAllOrdersByStatus(OrderStatus status);
 	List<Order> listAllOrdersByStatus(int productId, OrderStatus status);
+	
+	/**
+	 * Lists orders of specified product and status in order of id, which is used to load orders in pages.
+	 */
+	List<Order> listOrdersByStatusAfter(int productId, OrderStatus status, long idOffset, int limit);
+	
+	/**
+	 * Lists orders of all products in specified status in order of id.
+	 */
+	List<Order> listOrdersByStatusAfter(OrderStatus status, long idOffset, int limit);
+	
+	/**
+	 * Lists orders of specified product that updated since the specified time in order of id,
+	 * which is used to load orders changed after order book snapshot in pages.
+	 */
+	List<Order> listOrdersUpdatedSince(int productId, Timestamp since, long idOffset, int limit);
+	
+	/**
+	 * Returns the max order id, or 0 if no order.
+	 */
+	long getMaxOrderId();
 
 	boolean addCancelOrderRequest(CancelOrderRequest request);
 	default void mustAddCancelOrderRequest(CancelOrderRequest request) {
@@ -287,6 +333,68 @@ class InMemoryOrderDao extends IdAllocator implements OrderDao {
 		return PagingResult.fromList(offset, limit, orders);
 	}
 
+	private List<Order> list(Predicate<Order> predicate, Timestamp start, Timestamp end, boolean asc) {
+		NavigableSet<Long> keys = asc ? this.items.navigableKeySet() : this.items.descendingKeySet();
+
+		return keys.stream()
+				.map(id -> this.items.get(id))
+				.filter(o -> predicate.test(o)
+					&& o.getCreateTime().after(start)
+					&& o.getCreateTime().before(end))
+				.collect(Collectors.toList());
+	}
+
+	private static List<Order> page(List<Order> orders, PagingCursor cursor, int limit, boolean asc) {
+		return orders.stream()
+				.filter(o -> cursor == null || cursor.precedes(o.getCreateTime(), o.getId(), asc))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	private PagingResult<Order> list(Predicate<Order> predicate, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		List<Order> orders = this.list(predicate, start, end, asc);
+		int total = cursor == null ? orders.size() : cursor.getTotal();
+		return new PagingResult<Order>(0, limit, page(orders, cursor, limit, asc), total);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		List<Order> orders = this.list(o -> o.getUserId() == userId && o.getProductId() == productId, start, end, asc);
+		return page(orders, cursor, limit, asc);
+	}
+
+	@Override
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		List<Order> orders = this.list(o -> o.getUserId() == userId, start, end, asc);
+		return page(orders, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list(o -> o.getUserId() == userId
+				&& o.getProductId() == productId
+				&& OrderFilter.Phase.parse(o.getStatus()).equals(filter), start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list(o -> o.getUserId() == userId
+				&& OrderFilter.Phase.parse(o.getStatus()).equals(filter), start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list(o -> o.getUserId() == userId
+				&& o.getProductId() == productId
+				&& OrderFilter.SidedPhase.parse(o).equals(filter), start, end, cursor, limit, asc);
+	}
+
+	@Override
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list(o -> o.getUserId() == userId
+				&& OrderFilter.SidedPhase.parse(o).equals(filter), start, end, cursor, limit, asc);
+	}
+
 	@Override
 	public boolean updateOrderStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
 		Order order = this.items.get(orderId);
@@ -311,6 +419,13 @@ class InMemoryOrderDao extends IdAllocator implements OrderDao {
 		order.setFilledFunds(order.getFilledFunds().add(funds));
 		order.setUpdateTime(Timestamp.from(Instant.now()));
 	}
+	
+	@Override
+	public void fillOrders(Map<Long, BigDecimal> amounts, Map<Long, BigDecimal> funds) {
+		for (Map.Entry<Long, BigDecimal> entry : amounts.entrySet()) {
+			this.fillOrder(entry.getKey(), entry.getValue(), funds.get(entry.getKey()));
+		}
+	}
 
 	@Override
 	public Optional<Order> getOrder(long orderId) {
@@ -355,6 +470,37 @@ class InMemoryOrderDao extends IdAllocator implements OrderDao {
 				.filter(o -> (o.getProductId() == productId))
 				.collect(Collectors.toList());
 	}
+	
+	@Override
+	public List<Order> listOrdersByStatusAfter(int productId, OrderStatus status, long idOffset, int limit) {
+		return this.items.tailMap(idOffset, false).values().stream()
+				.filter(o -> o.getStatus().equals(status))
+				.filter(o -> (o.getProductId() == productId))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatusAfter(OrderStatus status, long idOffset, int limit) {
+		return this.items.tailMap(idOffset, false).values().stream()
+				.filter(o -> o.getStatus().equals(status))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
+	@Override
+	public List<Order> listOrdersUpdatedSince(int productId, Timestamp since, long idOffset, int limit) {
+		return this.items.tailMap(idOffset, false).values().stream()
+				.filter(o -> !o.getUpdateTime().before(since))
+				.filter(o -> (o.getProductId() == productId))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
+	@Override
+	public long getMaxOrderId() {
+		return this.items.isEmpty() ? 0 : this.items.lastKey();
+	}
 
 
 	@Override
@@ -438,6 +584,17 @@ class OrderDaoImpl extends BaseDaoImpl implements OrderDao {
 			"(product_id, user_id, client_order_id, type, side, status, phase, phase_side, price, amount, fee_address, fee_rate_taker, fee_rate_maker, filled_amount, filled_funds, timestamp, hash, signature, create_time, update_time, id)",
 			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
 
+	// unique keys of partitioned t_order, see partitiondb.sql
+	private static final String SQL_INSERT_HASH = "INSERT INTO t_order_hash (hash, order_id) VALUES (?, ?)";
+	private static final String SQL_INSERT_CLIENT_ID = "INSERT INTO t_order_client_id (user_id, client_order_id, order_id) VALUES (?, ?, ?)";
+
+	private boolean partitioned;
+
+	@Autowired
+	public void setPartitioned(@Value("${partition.enabled:false}") boolean partitioned) {
+		this.partitioned = partitioned;
+	}
+
 	@Override
 	public boolean addOrder(Order order) {
 		Timestamp now = Timestamp.from(Instant.now());
@@ -455,12 +612,22 @@ class OrderDaoImpl extends BaseDaoImpl implements OrderDao {
 		};
 
 		KeyHolder keyHolder = new GeneratedKeyHolder();
-		if (this.getJdbcTemplate().update(creator, keyHolder) > 0) {
-			order.setId(keyHolder.getKey().longValue());
-			return true;
-		} else {
+		if (this.getJdbcTemplate().update(creator, keyHolder) == 0) {
 			return false;
 		}
+
+		order.setId(keyHolder.getKey().longValue());
+
+		// duplicate key fails the whole transaction in which order added
+		if (this.partitioned) {
+			this.getJdbcTemplate().update(SQL_INSERT_HASH, order.getHash(), order.getId());
+
+			if (order.getClientOrderId() != null) {
+				this.getJdbcTemplate().update(SQL_INSERT_CLIENT_ID, order.getUserId(), order.getClientOrderId(), order.getId());
+			}
+		}
+
+		return true;
 	}
 
 	@Override
@@ -587,6 +754,79 @@ class OrderDaoImpl extends BaseDaoImpl implements OrderDao {
 		return new PagingResult<Order>(offset, limit, orders, total);
 	}
 
+	/**
+	 * Lists orders that match the specified conditions after cursor in order of (create_time, id),
+	 * and the last 2 arguments must be the start and end of create_time.
+	 */
+	private List<Order> list(String conditions, PagingCursor cursor, int limit, boolean asc, Object... args) {
+		StringBuilder sql = new StringBuilder("SELECT * FROM t_order WHERE ").append(conditions).append(" AND create_time BETWEEN ? AND ?");
+		List<Object> params = new ArrayList<Object>(Arrays.asList(args));
+
+		if (cursor != null) {
+			// expanded from (create_time, id) > (?, ?), so that range scan on index takes effect
+			String op = asc ? ">" : "<";
+			sql.append(String.format(" AND (create_time %s ? OR (create_time = ? AND id %s ?))", op, op));
+			params.add(cursor.getCreateTime());
+			params.add(cursor.getCreateTime());
+			params.add(cursor.getId());
+		}
+
+		sql.append(asc ? " ORDER BY create_time, id LIMIT ?" : " ORDER BY create_time DESC, id DESC LIMIT ?");
+		params.add(limit);
+
+		return this.getJdbcTemplate().query(sql.toString(), orderRowMapper, params.toArray());
+	}
+
+	private PagingResult<Order> listWithTotal(String conditions, PagingCursor cursor, int limit, boolean asc, Object... args) {
+		List<Order> orders = this.list(conditions, cursor, limit, asc, args);
+
+		int total;
+		if (cursor == null) {
+			String totalSql = "SELECT COUNT(id) FROM t_order WHERE " + conditions + " AND create_time BETWEEN ? AND ?";
+			total = this.getJdbcTemplate().queryForObject(totalSql, Integer.class, args);
+		} else {
+			total = cursor.getTotal();
+		}
+
+		return new PagingResult<Order>(0, limit, orders, total);
+	}
+
+	@Override
+	@Timed(name = "list.uid.pid.time.cursor")
+	public List<Order> listOrdersByTimeRange(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list("user_id = ? AND product_id = ?", cursor, limit, asc, userId, productId, start, end);
+	}
+
+	@Override
+	@Timed(name = "list.uid.time.cursor")
+	public List<Order> listOrdersByTimeRange(long userId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.list("user_id = ?", cursor, limit, asc, userId, start, end);
+	}
+
+	@Override
+	@Timed(name = "list.uid.pid.phase.time.cursor")
+	public PagingResult<Order> listOrdersByPhase(long userId, int productId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.listWithTotal("user_id = ? AND product_id = ? AND phase = ?", cursor, limit, asc, userId, productId, filter.getValue(), start, end);
+	}
+
+	@Override
+	@Timed(name = "list.uid.phase.time.cursor")
+	public PagingResult<Order> listOrdersByPhase(long userId, OrderFilter.Phase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.listWithTotal("user_id = ? AND phase = ?", cursor, limit, asc, userId, filter.getValue(), start, end);
+	}
+
+	@Override
+	@Timed(name = "list.uid.pid.sidedphase.time.cursor")
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, int productId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.listWithTotal("user_id = ? AND product_id = ? AND phase_side = ?", cursor, limit, asc, userId, productId, filter.getValue(), start, end);
+	}
+
+	@Override
+	@Timed(name = "list.uid.sidedphase.time.cursor")
+	public PagingResult<Order> listOrdersBySidedPhase(long userId, OrderFilter.SidedPhase filter, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		return this.listWithTotal("user_id = ? AND phase_side = ?", cursor, limit, asc, userId, filter.getValue(), start, end);
+	}
+
 	@Override
 	@Timed(name = "update.status")
 	public boolean updateOrderStatus(long orderId, OrderStatus oldStatus, OrderStatus newStatus) {
@@ -602,6 +842,35 @@ class OrderDaoImpl extends BaseDaoImpl implements OrderDao {
 		String sql = "UPDATE t_order SET filled_amount = filled_amount + ?, filled_funds = filled_funds + ?, update_time = UTC_TIMESTAMP() WHERE id = ?";
 		this.getJdbcTemplate().update(sql, amount, funds, orderId);
 	}
+	
+	@Override
+	@Timed(name = "update.filled.batch")
+	public void fillOrders(Map<Long, BigDecimal> amounts, Map<Long, BigDecimal> funds) {
+		if (amounts.isEmpty()) {
+			return;
+		}
+		
+		// update in order of id to avoid deadlock
+		List<Long> orderIds = new ArrayList<Long>(amounts.keySet());
+		Collections.sort(orderIds);
+		
+		String sql = "UPDATE t_order SET filled_amount = filled_amount + ?, filled_funds = filled_funds + ?, update_time = UTC_TIMESTAMP() WHERE id = ?";
+		this.getJdbcTemplate().batchUpdate(sql, new BatchPreparedStatementSetter() {
+			
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				long orderId = orderIds.get(i);
+				ps.setBigDecimal(1, amounts.get(orderId));
+				ps.setBigDecimal(2, funds.get(orderId));
+				ps.setLong(3, orderId);
+			}
+			
+			@Override
+			public int getBatchSize() {
+				return orderIds.size();
+			}
+		});
+	}
 
 	@Override
 	public Optional<Order> getOrder(long orderId) {
@@ -648,6 +917,33 @@ class OrderDaoImpl extends BaseDaoImpl implements OrderDao {
 		return this.getJdbcTemplate().query(sql, orderRowMapper, status.name(), productId);
 	}
 	
+	@Override
+	public List<Order> listOrdersByStatusAfter(int productId, OrderStatus status, long idOffset, int limit) {
+		// use index (product_id, status) with primary key to seek and sort
+		String sql = "SELECT * FROM t_order WHERE product_id = ? AND status = ? AND id > ? ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, orderRowMapper, productId, status.name(), idOffset, limit);
+	}
+	
+	@Override
+	public List<Order> listOrdersByStatusAfter(OrderStatus status, long idOffset, int limit) {
+		// use index (status) with primary key to seek and sort
+		String sql = "SELECT * FROM t_order WHERE status = ? AND id > ? ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, orderRowMapper, status.name(), idOffset, limit);
+	}
+	
+	@Override
+	public List<Order> listOrdersUpdatedSince(int productId, Timestamp since, long idOffset, int limit) {
+		// use index (product_id, update_time) to filter recently updated orders
+		String sql = "SELECT * FROM t_order WHERE product_id = ? AND update_time >= ? AND id > ? ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, orderRowMapper, productId, since, idOffset, limit);
+	}
+	
+	@Override
+	public long getMaxOrderId() {
+		Long id = this.getJdbcTemplate().queryForObject("SELECT MAX(id) FROM t_order", Long.class);
+		return id == null ? 0 : id;
+	}
+	
 	@Override
 	public boolean addCancelOrderRequest(CancelOrderRequest request) {
 		String sql = "INSERT IGNORE INTO t_order_cancel (order_id, reason, timestamp, signature, status, create_time, update_time) VALUES (?, ?, ?, ?, ?, ?, ?)";
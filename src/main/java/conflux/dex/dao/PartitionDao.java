@@ -0,0 +1,221 @@
+package conflux.dex.dao;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Repository;
+
+import conflux.dex.model.OrderStatus;
+import conflux.dex.model.TablePartition;
+
+/**
+ * Manages range partitions of tables that partitioned by RANGE (id), so that history data
+ * could be retired by dropping the whole partition instead of deleting rows in batch.
+ *
+ * Note, DDL statements are committed implicitly, and could not be executed in transaction.
+ */
+@Repository
+public class PartitionDao extends BaseDaoImpl {
+	private static final Pattern NAME_PATTERN = Pattern.compile("^[A-Za-z0-9_]+$");
+
+	private static final String ORDER_COLUMNS = columnsOf(OrderDaoImpl.SQL_INSERT);
+	private static final String TRADE_COLUMNS = columnsOf(TradeDaoImpl.SQL_INSERT);
+
+	private static String columnsOf(String insertSql) {
+		return insertSql.substring(insertSql.indexOf('(') + 1, insertSql.indexOf(')'));
+	}
+
+	// table and partition names could not be parameterized in statement
+	private static String checkName(String name) {
+		if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+			throw new IllegalArgumentException("invalid table or partition name: " + name);
+		}
+
+		return name;
+	}
+
+	/**
+	 * Lists partitions of the specified table in order, which is empty if table not partitioned.
+	 */
+	public List<TablePartition> listPartitions(String table) {
+		String sql = String.join(" ",
+				"SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS",
+				"WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+				"ORDER BY PARTITION_ORDINAL_POSITION");
+		return this.getJdbcTemplate().query(sql,
+				(rs, rowNum) -> TablePartition.parse(rs.getString(1), rs.getString(2)),
+				checkName(table));
+	}
+
+	public long getMaxId(String table) {
+		String sql = String.format("SELECT MAX(id) FROM %s", checkName(table));
+		Long id = this.getJdbcTemplate().queryForObject(sql, Long.class);
+		return id == null ? 0 : id;
+	}
+
+	/**
+	 * Splits the "pmax" partition at the specified bound, which is cheap only if no row in "pmax".
+	 */
+	public void splitMaxPartition(String table, long lessThan) {
+		String sql = String.format(
+				"ALTER TABLE %s REORGANIZE PARTITION %s INTO (PARTITION %s VALUES LESS THAN (%d), PARTITION %s VALUES LESS THAN MAXVALUE)",
+				checkName(table), TablePartition.MAX_NAME, TablePartition.nameOf(lessThan), lessThan, TablePartition.MAX_NAME);
+		this.getJdbcTemplate().execute(sql);
+	}
+
+	public void dropPartition(String table, String partition) {
+		String sql = String.format("ALTER TABLE %s DROP PARTITION %s", checkName(table), checkName(partition));
+		this.getJdbcTemplate().execute(sql);
+	}
+
+	/**
+	 * Returns the max create time of rows in partition, or null if partition is empty.
+	 */
+	public Timestamp getMaxCreateTime(String table, String partition) {
+		String sql = String.format("SELECT MAX(create_time) FROM %s PARTITION (%s)", checkName(table), checkName(partition));
+		return this.getJdbcTemplate().queryForObject(sql, Timestamp.class);
+	}
+
+	public int countIncompletedOrders(String partition) {
+		String sql = String.format("SELECT COUNT(*) FROM t_order PARTITION (%s) WHERE status NOT IN (?, ?)", checkName(partition));
+		return this.getJdbcTemplate().queryForObject(sql, Integer.class, OrderStatus.Filled.name(), OrderStatus.Cancelled.name());
+	}
+
+	/**
+	 * Counts trades in partition whose maker or taker order is not completed yet.
+	 */
+	public int countTradesOfIncompletedOrders(String partition) {
+		String sql = String.format(String.join(" ",
+				"SELECT COUNT(*) FROM t_trade PARTITION (%s) AS t",
+				"INNER JOIN t_order AS m ON m.id = t.maker_order_id",
+				"INNER JOIN t_order AS k ON k.id = t.taker_order_id",
+				"WHERE m.status NOT IN (?, ?) OR k.status NOT IN (?, ?)"), checkName(partition));
+		return this.getJdbcTemplate().queryForObject(sql, Integer.class,
+				OrderStatus.Filled.name(), OrderStatus.Cancelled.name(),
+				OrderStatus.Filled.name(), OrderStatus.Cancelled.name());
+	}
+
+	/**
+	 * Indicates whether any trade still refers to orders in the specified id range.
+	 */
+	public boolean hasTradeOrderMaps(long minOrderIdInclusive, long maxOrderIdExclusive) {
+		String sql = "SELECT order_id FROM t_trade_order_map WHERE order_id >= ? AND order_id < ? LIMIT 1";
+		return !this.getJdbcTemplate().queryForList(sql, Long.class, minOrderIdInclusive, maxOrderIdExclusive).isEmpty();
+	}
+
+	// both maker and taker orders of trade completed, where trade table aliased as "t"
+	private static final String SQL_TRADE_COMPLETED = String.join(" ",
+			"EXISTS (SELECT 1 FROM t_order AS m WHERE m.id = t.maker_order_id AND m.status IN (?, ?))",
+			"AND EXISTS (SELECT 1 FROM t_order AS k WHERE k.id = t.taker_order_id AND k.status IN (?, ?))");
+
+	// completed order that no trade refers to, where order table aliased as "o"
+	private static final String SQL_ORDER_RETIRED = String.join(" ",
+			"o.status IN (?, ?)",
+			"AND NOT EXISTS (SELECT 1 FROM t_trade_order_map AS m WHERE m.order_id = o.id)");
+
+	private static Object[] completedStatuses(int times) {
+		Object[] args = new Object[times * 2];
+		for (int i = 0; i < args.length; i += 2) {
+			args[i] = OrderStatus.Filled.name();
+			args[i + 1] = OrderStatus.Cancelled.name();
+		}
+		return args;
+	}
+
+	/**
+	 * Archives completed maker and taker orders of trades in partition, and ignores the already archived ones.
+	 */
+	public int archiveOrdersOfTrades(String partition, String archiveTable) {
+		String sql = String.format(String.join(" ",
+				"INSERT IGNORE INTO %s (%s) SELECT %s FROM t_order WHERE status IN (?, ?) AND id IN (",
+				"SELECT maker_order_id FROM t_trade PARTITION (%s) UNION SELECT taker_order_id FROM t_trade PARTITION (%s))"),
+				checkName(archiveTable), ORDER_COLUMNS, ORDER_COLUMNS, checkName(partition), partition);
+		return this.getJdbcTemplate().update(sql, completedStatuses(1));
+	}
+
+	/**
+	 * Archives trades in partition whose maker and taker orders both completed.
+	 */
+	public int archiveTrades(String partition, String archiveTable) {
+		String sql = String.format("INSERT IGNORE INTO %s (%s) SELECT %s FROM t_trade PARTITION (%s) AS t WHERE %s",
+				checkName(archiveTable), TRADE_COLUMNS, TRADE_COLUMNS, checkName(partition), SQL_TRADE_COMPLETED);
+		return this.getJdbcTemplate().update(sql, completedStatuses(2));
+	}
+
+	/**
+	 * Lists ids of archived trades in partition, which could be deleted while the partition is
+	 * kept for trades of incompleted orders.
+	 */
+	public List<Long> listRetiredTradeIds(String partition, String archiveTable, int limit) {
+		String sql = String.format("SELECT t.id FROM t_trade PARTITION (%s) AS t INNER JOIN %s AS a ON a.id = t.id LIMIT %d",
+				checkName(partition), checkName(archiveTable), limit);
+		return this.getJdbcTemplate().queryForList(sql, Long.class);
+	}
+
+	/**
+	 * Deletes trades along with the trade map tables.
+	 */
+	public int deleteTrades(List<Long> tradeIds) {
+		this.deleteIn("t_trade_order_map", "trade_id", tradeIds);
+		this.deleteIn("t_trade_user_map", "trade_id", tradeIds);
+		return this.deleteIn("t_trade", "id", tradeIds);
+	}
+
+	/**
+	 * Lists ids of completed orders in partition that no trade refers to, which could be deleted
+	 * while the partition is kept for incompleted orders.
+	 */
+	public List<Long> listRetiredOrderIds(String partition, int limit) {
+		String sql = String.format("SELECT o.id FROM t_order PARTITION (%s) AS o WHERE %s LIMIT %d",
+				checkName(partition), SQL_ORDER_RETIRED, limit);
+		return this.getJdbcTemplate().queryForList(sql, Long.class, completedStatuses(1));
+	}
+
+	/**
+	 * Deletes orders along with cancellation requests and unique keys.
+	 */
+	public int deleteOrders(List<Long> orderIds) {
+		this.deleteIn("t_order_cancel", "order_id", orderIds);
+		this.deleteIn("t_order_hash", "order_id", orderIds);
+		this.deleteIn("t_order_client_id", "order_id", orderIds);
+		this.deleteIn("t_trade_order_pair", "taker_order_id", orderIds);
+		return this.deleteIn("t_order", "id", orderIds);
+	}
+
+	private int deleteIn(String table, String column, List<Long> ids) {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+
+		String sql = String.format("DELETE FROM %s WHERE %s IN (%s)",
+				table, column, String.join(",", Collections.nCopies(ids.size(), "?")));
+		return this.getJdbcTemplate().update(sql, ids.toArray());
+	}
+
+	/**
+	 * Deletes order cancellation requests in the specified order id range, which used to be
+	 * deleted in cascade along with orders before foreign key removed for partitioning.
+	 */
+	public int deleteOrderCancels(long minOrderIdInclusive, long maxOrderIdExclusive) {
+		String sql = "DELETE FROM t_order_cancel WHERE order_id >= ? AND order_id < ?";
+		return this.getJdbcTemplate().update(sql, minOrderIdInclusive, maxOrderIdExclusive);
+	}
+
+	/**
+	 * Deletes unique keys of orders in the specified order id range, which are moved out of
+	 * partitioned t_order and t_trade. Trade pairs are deleted by taker order id, since no
+	 * trade refers to the orders anymore.
+	 */
+	public int deleteOrderUniqueKeys(long minOrderIdInclusive, long maxOrderIdExclusive) {
+		int deleted = this.getJdbcTemplate().update("DELETE FROM t_order_hash WHERE order_id >= ? AND order_id < ?",
+				minOrderIdInclusive, maxOrderIdExclusive);
+		deleted += this.getJdbcTemplate().update("DELETE FROM t_order_client_id WHERE order_id >= ? AND order_id < ?",
+				minOrderIdInclusive, maxOrderIdExclusive);
+		deleted += this.getJdbcTemplate().update("DELETE FROM t_trade_order_pair WHERE taker_order_id >= ? AND taker_order_id < ?",
+				minOrderIdInclusive, maxOrderIdExclusive);
+		return deleted;
+	}
+
+}
@@ -0,0 +1,108 @@
+package conflux.dex.dao;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.BusinessFault;
+import conflux.dex.model.Currency;
+import conflux.dex.model.Product;
+
+/**
+ * Immutable snapshot of all products and currencies, which resolves product by id or
+ * name together with its base and quote currency in one lookup, e.g. to place order.
+ *
+ * Snapshot is rebuilt and swapped by DexDao whenever product or currency added or updated.
+ */
+public class ProductCatalog {
+
+	public static class Entry {
+		private Product product;
+		private Currency baseCurrency;
+		private Currency quoteCurrency;
+
+		Entry(Product product, Currency baseCurrency, Currency quoteCurrency) {
+			this.product = product;
+			this.baseCurrency = baseCurrency;
+			this.quoteCurrency = quoteCurrency;
+		}
+
+		public Product getProduct() {
+			return product;
+		}
+
+		public Currency getBaseCurrency() {
+			return baseCurrency;
+		}
+
+		public Currency getQuoteCurrency() {
+			return quoteCurrency;
+		}
+	}
+
+	// indexed by product id, which is auto increased from 1
+	private Entry[] entries;
+	private Map<String, Entry> names = new HashMap<String, Entry>();
+	// lower case name, since product name is case insensitive in database
+	private Map<String, Entry> lowerCaseNames = new HashMap<String, Entry>();
+	private Map<Integer, Currency> currencies = new HashMap<Integer, Currency>();
+
+	public ProductCatalog(List<Product> products, List<Currency> currencies) {
+		for (Currency currency : currencies) {
+			this.currencies.put(currency.getId(), currency);
+		}
+
+		int maxId = products.stream().mapToInt(Product::getId).max().orElse(0);
+		this.entries = new Entry[maxId + 1];
+
+		for (Product product : products) {
+			Currency baseCurrency = this.currencies.get(product.getBaseCurrencyId());
+			Currency quoteCurrency = this.currencies.get(product.getQuoteCurrencyId());
+			if (baseCurrency == null || quoteCurrency == null) {
+				continue;
+			}
+
+			Entry entry = new Entry(product, baseCurrency, quoteCurrency);
+			this.entries[product.getId()] = entry;
+			this.names.put(product.getName(), entry);
+			this.lowerCaseNames.put(product.getName().toLowerCase(), entry);
+		}
+	}
+
+	public static ProductCatalog load(ProductDao productDao, CurrencyDao currencyDao) {
+		return new ProductCatalog(productDao.listProducts(), currencyDao.listCurrencies());
+	}
+
+	public Entry mustGet(int productId) throws BusinessException {
+		Entry entry = productId > 0 && productId < this.entries.length ? this.entries[productId] : null;
+		if (entry == null) {
+			throw BusinessFault.ProductNotFound.rise();
+		}
+
+		return entry;
+	}
+
+	public Entry mustGet(String productName) throws BusinessException {
+		Entry entry = this.names.get(productName);
+		if (entry == null && productName != null) {
+			entry = this.lowerCaseNames.get(productName.toLowerCase());
+		}
+
+		if (entry == null) {
+			throw BusinessFault.ProductNotFound.rise();
+		}
+
+		return entry;
+	}
+
+	public Currency mustGetCurrency(int currencyId) throws BusinessException {
+		Currency currency = this.currencies.get(currencyId);
+		if (currency == null) {
+			throw BusinessFault.CurrencyNotFound.rise();
+		}
+
+		return currency;
+	}
+
+}
@@ -44,6 +44,11 @@ public interface TickDao {
 	
 	void updateTick(Tick tick);
 	
+	/**
+	 * Adds or updates ticks in batch by product, granularity and create time.
+	 */
+	void upsertTicks(List<Tick> ticks);
+	
 	List<Tick> listTicks(int productId, int granularity, Timestamp start, Timestamp end);
 	
 	/**
@@ -102,6 +107,23 @@ class InMemoryTickDao extends IdAllocator implements TickDao {
 		tick.setCount(other.getCount());
 	}
 
+	@Override
+	public void upsertTicks(List<Tick> ticks) {
+		for (Tick tick : ticks) {
+			Map<Integer, NavigableMap<Instant, Tick>> granularityIndex = this.index.get(tick.getProductId());
+			NavigableMap<Instant, Tick> existing = granularityIndex == null ? null : granularityIndex.get(tick.getGranularity());
+			Tick current = existing == null ? null : existing.get(tick.getCreateTime().toInstant());
+			
+			if (current == null) {
+				this.addTick(tick.clone());
+			} else {
+				Tick copy = tick.clone();
+				copy.setId(current.getId());
+				this.updateTick(copy);
+			}
+		}
+	}
+
 	@Override
 	public List<Tick> listTicks(int productId, int granularity, Timestamp start, Timestamp end) {
 		Map<Integer, NavigableMap<Instant, Tick>> granularityIndex = this.index.get(productId);
@@ -152,6 +174,11 @@ class TickDaoImpl extends BaseDaoImpl implements TickDao {
 			"INSERT INTO t_tick",
 			"(product_id, granularity, open, high, low, close, base_currency_volume, quote_currency_volume, count, create_time, update_time)",
 			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+	
+	private static final String SQL_UPSERT_SUFFIX = String.join(" ",
+			" ON DUPLICATE KEY UPDATE high = VALUES(high), low = VALUES(low), close = VALUES(close),",
+			"base_currency_volume = VALUES(base_currency_volume), quote_currency_volume = VALUES(quote_currency_volume),",
+			"count = VALUES(count), update_time = VALUES(update_time)");
 
 	@Override
 	public void addTick(Tick tick) {
@@ -197,6 +224,26 @@ class TickDaoImpl extends BaseDaoImpl implements TickDao {
 				tick.getBaseCurrencyVolume(), tick.getQuoteCurrencyVolume(), tick.getCount(), tick.getId());
 	}
 
+	@Override
+	@Timed(name = "upsert")
+	public void upsertTicks(List<Tick> ticks) {
+		Timestamp now = Timestamp.from(Instant.now());
+		
+		this.insertMultiRows(SQL_INSERT, SQL_UPSERT_SUFFIX, ticks, (ps, offset, tick) -> {
+			ps.setInt(offset + 1, tick.getProductId());
+			ps.setInt(offset + 2, tick.getGranularity());
+			ps.setBigDecimal(offset + 3, tick.getOpen());
+			ps.setBigDecimal(offset + 4, tick.getHigh());
+			ps.setBigDecimal(offset + 5, tick.getLow());
+			ps.setBigDecimal(offset + 6, tick.getClose());
+			ps.setBigDecimal(offset + 7, tick.getBaseCurrencyVolume());
+			ps.setBigDecimal(offset + 8, tick.getQuoteCurrencyVolume());
+			ps.setInt(offset + 9, tick.getCount());
+			ps.setTimestamp(offset + 10, tick.getCreateTime());
+			ps.setTimestamp(offset + 11, now);
+		});
+	}
+
 	@Override
 	@Timed(name = "list.time")
 	public List<Tick> listTicks(int productId, int granularity, Timestamp start, Timestamp end) {
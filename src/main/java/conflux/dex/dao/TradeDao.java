@@ -5,7 +5,10 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +18,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.RowMapper;
@@ -23,9 +28,11 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
+import conflux.dex.model.PagingCursor;
 import conflux.dex.model.PagingResult;
 import conflux.dex.model.SettlementStatus;
 import conflux.dex.model.Trade;
+import conflux.dex.model.UserTradeMap;
 
 public interface TradeDao {
 	
@@ -35,14 +42,36 @@ public interface TradeDao {
 	
 	void addTradeUserMap(long userId, int productId, Timestamp createTime, long tradeId);
 	
+	/**
+	 * Adds trades in batch, and assigns the generated id for each trade.
+	 */
+	void addTrades(List<Trade> trades);
+	
+	/**
+	 * Adds trade order maps in batch for both taker and maker orders of specified trades.
+	 */
+	void addTradeOrderMaps(List<Trade> trades);
+	
+	void addTradeUserMaps(List<UserTradeMap> maps);
+	
 	List<Trade> listRecentTrades(int productId, int offset, int limit);
 	
+	/**
+	 * Lists trades of the specified product in id ascending order, whose id is greater than idOffset.
+	 */
+	List<Trade> listTradesAfter(int productId, long idOffset, int limit);
+	
 	Optional<Trade> getRecentTradeBefore(int productId, Timestamp timestamp);
 	
 	List<Trade> listTradesByOrderId(long orderId, int offset, int limit);
 	
 	List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, int offset, int limit, boolean asc);
 	
+	/**
+	 * Lists trades of the specified user in order of (create_time, id) after cursor, which starts from the first page if cursor is null.
+	 */
+	List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc);
+	
 	void updateTradeSettlement(long tradeId, SettlementStatus status, String txHash, long txNonce);
 	
 	List<Trade> listTradesByStatus(SettlementStatus status);
@@ -50,18 +79,22 @@ public interface TradeDao {
 	Trade getById(long id);
 
 	static void fillStatement(PreparedStatement ps, Trade trade) throws SQLException {
-		ps.setInt(1, trade.getProductId());
-		ps.setLong(2, trade.getTakerOrderId());
-		ps.setLong(3, trade.getMakerOrderId());
-		ps.setBigDecimal(4, trade.getPrice());
-		ps.setBigDecimal(5, trade.getAmount());
-		ps.setString(6, trade.getSide().name());
-		ps.setBigDecimal(7, trade.getTakerFee());
-		ps.setBigDecimal(8, trade.getMakerFee());
-		ps.setString(9, trade.getStatus().name());
-		ps.setTimestamp(10, trade.getCreateTime());
-		ps.setTimestamp(11, trade.getUpdateTime());
-		ps.setLong(12, trade.getId());
+		fillStatement(ps, 0, trade);
+	}
+	
+	static void fillStatement(PreparedStatement ps, int offset, Trade trade) throws SQLException {
+		ps.setInt(offset + 1, trade.getProductId());
+		ps.setLong(offset + 2, trade.getTakerOrderId());
+		ps.setLong(offset + 3, trade.getMakerOrderId());
+		ps.setBigDecimal(offset + 4, trade.getPrice());
+		ps.setBigDecimal(offset + 5, trade.getAmount());
+		ps.setString(offset + 6, trade.getSide().name());
+		ps.setBigDecimal(offset + 7, trade.getTakerFee());
+		ps.setBigDecimal(offset + 8, trade.getMakerFee());
+		ps.setString(offset + 9, trade.getStatus().name());
+		ps.setTimestamp(offset + 10, trade.getCreateTime());
+		ps.setTimestamp(offset + 11, trade.getUpdateTime());
+		ps.setLong(offset + 12, trade.getId());
 	}
 }
 
@@ -93,6 +126,28 @@ class InMemoryTradeDao extends IdAllocator implements TradeDao {
 		this.userIndex.get(userId).putIfAbsent(productId, new ConcurrentSkipListMap<TimeIndex, Trade>());
 		this.userIndex.get(userId).get(productId).put(new TimeIndex(createTime, tradeId), this.items.get(tradeId));
 	}
+	
+	@Override
+	public void addTrades(List<Trade> trades) {
+		for (Trade trade : trades) {
+			this.addTrade(trade);
+		}
+	}
+	
+	@Override
+	public void addTradeOrderMaps(List<Trade> trades) {
+		for (Trade trade : trades) {
+			this.addTradeOrderMap(trade.getTakerOrderId(), trade.getId());
+			this.addTradeOrderMap(trade.getMakerOrderId(), trade.getId());
+		}
+	}
+	
+	@Override
+	public void addTradeUserMaps(List<UserTradeMap> maps) {
+		for (UserTradeMap map : maps) {
+			this.addTradeUserMap(map.getUserId(), map.getProductId(), map.getCreateTime(), map.getTradeId());
+		}
+	}
 
 	@Override
 	public List<Trade> listRecentTrades(int productId, int offset, int limit) {
@@ -104,6 +159,14 @@ class InMemoryTradeDao extends IdAllocator implements TradeDao {
 		return PagingResult.fromList(offset, limit, trades).getItems();
 	}
 	
+	@Override
+	public List<Trade> listTradesAfter(int productId, long idOffset, int limit) {
+		return this.items.tailMap(idOffset, false).values().stream()
+				.filter(trade -> trade.getProductId() == productId)
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
 	@Override
 	public Optional<Trade> getRecentTradeBefore(int productId, Timestamp timestamp) {
 		List<Trade> trades = this.productIndex.get(productId);
@@ -160,6 +223,32 @@ class InMemoryTradeDao extends IdAllocator implements TradeDao {
 				.collect(Collectors.toList());
 	}
 	
+	@Override
+	public List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		Map<Integer, NavigableMap<TimeIndex, Trade>> productIndex = this.userIndex.get(userId);
+		if (productIndex == null) {
+			return Collections.emptyList();
+		}
+		
+		NavigableMap<TimeIndex, Trade> timeIndex = productIndex.get(productId);
+		if (timeIndex == null) {
+			return Collections.emptyList();
+		}
+		
+		TimeIndex fromKey = new TimeIndex(start, 0);
+		TimeIndex toKey = new TimeIndex(end, Long.MAX_VALUE);
+		timeIndex = timeIndex.subMap(fromKey, true, toKey, true);
+		
+		if (!asc) {
+			timeIndex = timeIndex.descendingMap();
+		}
+		
+		return timeIndex.values().stream()
+				.filter(trade -> cursor == null || cursor.precedes(trade.getCreateTime(), trade.getId(), asc))
+				.limit(limit)
+				.collect(Collectors.toList());
+	}
+	
 	@Override
 	public void updateTradeSettlement(long tradeId, SettlementStatus status, String txHash, long txNonce) {
 		Trade trade = this.items.get(tradeId);
@@ -195,6 +284,17 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 			"(product_id, taker_order_id, maker_order_id, price, amount, side, taker_fee, maker_fee, status, create_time, update_time, id)",
 			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
 	
+	private static final String SQL_LIST_IDS_BY_ORDERS =
+			"SELECT id, taker_order_id, maker_order_id FROM t_trade WHERE (taker_order_id, maker_order_id) IN (%s)";
+	
+	// both taker and maker order of a trade
+	private static final String SQL_INSERT_ORDER_MAP = "INSERT INTO t_trade_order_map (order_id, trade_id) VALUES (?, ?), (?, ?)";
+	
+	private static final String SQL_INSERT_USER_MAP = "INSERT INTO t_trade_user_map (user_id, product_id, create_time, trade_id) VALUES (?, ?, ?, ?)";
+	
+	// unique key of partitioned t_trade, see partitiondb.sql
+	private static final String SQL_INSERT_ORDER_PAIR = "INSERT INTO t_trade_order_pair (taker_order_id, maker_order_id) VALUES (?, ?)";
+	
 	private static final String SQL_LIST_BY_ORDER = String.join(" ",
 			"SELECT t_trade.*",
 			"FROM t_trade",
@@ -215,6 +315,29 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 			"INNER JOIN t_trade_user_map AS m ON t_trade.id = m.trade_id AND m.user_id = ? AND m.product_id = ? AND m.create_time BETWEEN ? AND ?",
 			"ORDER BY t_trade.id DESC",
 			"LIMIT ?,?");
+	
+	private static final String SQL_LIST_BY_USER_CURSOR = String.join(" ",
+			"SELECT t_trade.*",
+			"FROM t_trade",
+			"INNER JOIN t_trade_user_map AS m ON t_trade.id = m.trade_id AND m.user_id = ? AND m.product_id = ? AND m.create_time BETWEEN ? AND ?",
+			"AND (m.create_time > ? OR (m.create_time = ? AND m.trade_id > ?))",
+			"ORDER BY m.create_time, m.trade_id",
+			"LIMIT ?");
+	
+	private static final String SQL_LIST_BY_USER_CURSOR_DESC = String.join(" ",
+			"SELECT t_trade.*",
+			"FROM t_trade",
+			"INNER JOIN t_trade_user_map AS m ON t_trade.id = m.trade_id AND m.user_id = ? AND m.product_id = ? AND m.create_time BETWEEN ? AND ?",
+			"AND (m.create_time < ? OR (m.create_time = ? AND m.trade_id < ?))",
+			"ORDER BY m.create_time DESC, m.trade_id DESC",
+			"LIMIT ?");
+	
+	private boolean partitioned;
+	
+	@Autowired
+	public void setPartitioned(@Value("${partition.enabled:false}") boolean partitioned) {
+		this.partitioned = partitioned;
+	}
 
 	@Override
 	public void addTrade(Trade trade) {
@@ -231,6 +354,10 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 		KeyHolder keyHolder = new GeneratedKeyHolder();
 		this.getJdbcTemplate().update(creator, keyHolder);
 		trade.setId(keyHolder.getKey().longValue());
+		
+		if (this.partitioned) {
+			this.getJdbcTemplate().update(SQL_INSERT_ORDER_PAIR, trade.getTakerOrderId(), trade.getMakerOrderId());
+		}
 	}
 	
 	@Override
@@ -244,6 +371,65 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 		String sql = "INSERT INTO t_trade_user_map (user_id, product_id, create_time, trade_id) VALUES (?, ?, ?, ?)";
 		this.getJdbcTemplate().update(sql, userId, productId, createTime, tradeId);
 	}
+	
+	@Override
+	public void addTrades(List<Trade> trades) {
+		if (trades.isEmpty()) {
+			return;
+		}
+		
+		this.insertMultiRows(SQL_INSERT, trades, TradeDao::fillStatement);
+		
+		// duplicate key fails the whole transaction before trade ids queried back
+		if (this.partitioned) {
+			this.insertMultiRows(SQL_INSERT_ORDER_PAIR, trades, (ps, offset, trade) -> {
+				ps.setLong(offset + 1, trade.getTakerOrderId());
+				ps.setLong(offset + 2, trade.getMakerOrderId());
+			});
+		}
+		
+		// Generated keys of multi-row INSERT are not guaranteed to be consecutive (innodb_autoinc_lock_mode = 2),
+		// so query back the trade ids by the unique key (taker_order_id, maker_order_id) in the same transaction.
+		Map<List<Long>, Trade> index = new HashMap<List<Long>, Trade>();
+		List<Object> args = new ArrayList<Object>(trades.size() * 2);
+		for (Trade trade : trades) {
+			index.put(Arrays.asList(trade.getTakerOrderId(), trade.getMakerOrderId()), trade);
+			args.add(trade.getTakerOrderId());
+			args.add(trade.getMakerOrderId());
+		}
+		
+		String sql = String.format(SQL_LIST_IDS_BY_ORDERS, String.join(", ", Collections.nCopies(trades.size(), "(?, ?)")));
+		this.getJdbcTemplate().query(sql, rs -> {
+			Trade trade = index.remove(Arrays.asList(rs.getLong(2), rs.getLong(3)));
+			if (trade != null) {
+				trade.setId(rs.getLong(1));
+			}
+		}, args.toArray());
+		
+		if (!index.isEmpty()) {
+			throw new IllegalStateException(String.format("failed to query back ids of %d trades", index.size()));
+		}
+	}
+	
+	@Override
+	public void addTradeOrderMaps(List<Trade> trades) {
+		this.insertMultiRows(SQL_INSERT_ORDER_MAP, trades, (ps, offset, trade) -> {
+			ps.setLong(offset + 1, trade.getTakerOrderId());
+			ps.setLong(offset + 2, trade.getId());
+			ps.setLong(offset + 3, trade.getMakerOrderId());
+			ps.setLong(offset + 4, trade.getId());
+		});
+	}
+	
+	@Override
+	public void addTradeUserMaps(List<UserTradeMap> maps) {
+		this.insertMultiRows(SQL_INSERT_USER_MAP, maps, (ps, offset, map) -> {
+			ps.setLong(offset + 1, map.getUserId());
+			ps.setInt(offset + 2, map.getProductId());
+			ps.setTimestamp(offset + 3, map.getCreateTime());
+			ps.setLong(offset + 4, map.getTradeId());
+		});
+	}
 
 	@Override
 	public List<Trade> listRecentTrades(int productId, int offset, int limit) {
@@ -251,6 +437,12 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 		return this.getJdbcTemplate().query(sql, rowMapper, productId, offset, limit);
 	}
 	
+	@Override
+	public List<Trade> listTradesAfter(int productId, long idOffset, int limit) {
+		String sql = "SELECT * FROM t_trade WHERE product_id = ? AND id > ? ORDER BY id LIMIT ?";
+		return this.getJdbcTemplate().query(sql, rowMapper, productId, idOffset, limit);
+	}
+	
 	@Override
 	public Optional<Trade> getRecentTradeBefore(int productId, Timestamp timestamp) {
 		String sql = "SELECT * FROM t_trade WHERE product_id = ? AND create_time < ? ORDER BY id DESC LIMIT 0,1";
@@ -269,6 +461,20 @@ class TradeDaoImpl extends BaseDaoImpl implements TradeDao {
 		return this.getJdbcTemplate().query(sql, rowMapper, userId, productId, start, end, offset, limit);
 	}
 	
+	@Override
+	public List<Trade> listTradesByUser(long userId, int productId, Timestamp start, Timestamp end, PagingCursor cursor, int limit, boolean asc) {
+		if (cursor == null) {
+			// starts from the first row in range, which is always after a virtual cursor at boundary
+			cursor = asc
+					? new PagingCursor(start, 0, 0)
+					: new PagingCursor(end, Long.MAX_VALUE, 0);
+		}
+		
+		String sql = asc ? SQL_LIST_BY_USER_CURSOR : SQL_LIST_BY_USER_CURSOR_DESC;
+		return this.getJdbcTemplate().query(sql, rowMapper, userId, productId, start, end,
+				cursor.getCreateTime(), cursor.getCreateTime(), cursor.getId(), limit);
+	}
+	
 	@Override
 	public void updateTradeSettlement(long tradeId, SettlementStatus status, String txHash, long txNonce) {
 		if (StringUtils.isEmpty(txHash)) {
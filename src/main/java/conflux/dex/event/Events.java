@@ -10,6 +10,8 @@ import conflux.dex.model.Product;
 import conflux.dex.model.Tick;
 import conflux.dex.model.User;
 import conflux.dex.service.blockchain.settle.Settleable;
+import conflux.dex.worker.DepthAggregateManager;
+import conflux.dex.worker.OrderBookEvent;
 import conflux.dex.worker.TradeDetails;
 
 public class Events {
@@ -38,6 +40,8 @@ public class Events {
 	
 	public static final Event<BestBidOffer> BBO_CHANGED = new Event<BestBidOffer>();
 	public static final Event<Tick> TICK_CHANGED = new Event<Tick>();
+	public static final Event<DepthAggregateManager> DEPTH_CHANGED = new Event<DepthAggregateManager>();
+	public static final Event<OrderBookEvent> ORDER_BOOK_CHANGED = new Event<OrderBookEvent>();
 	
 	public static final Event<String> WORKER_ERROR = new Event<String>();
 	public static final Event<String> BLOCKCHAIN_ERROR = new Event<String>();
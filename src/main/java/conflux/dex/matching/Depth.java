@@ -1,11 +1,15 @@
 package conflux.dex.matching;
 
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 import conflux.dex.common.Metrics;
 import conflux.dex.common.Metrics.QueueMetric;
@@ -15,12 +19,18 @@ import conflux.dex.model.OrderSide;
  * Order queue that sorted by price and id (timestamp).
  * For "Buy" side, order is sorted by price DESC, id ASC.
  * For "Sell" side, order is sorted by price ASC, id ASC.
+ * 
+ * Orders are grouped by price level, so that add and cancel order is O(log L) (L: number of price levels)
+ * and typically O(1) for existing price level, while peek and poll the best order is O(1).
+ * 
  * Note, concurrency is unnecessary, since order is handled in sequence.
  */
 class Depth {
 	private OrderSide side;
 	private HashMap<Long, Order> orders;
-	private TreeSet<Order> queue;
+	private TreeMap<BigDecimal, PriceLevel> levels;
+	// cache the first price level for quick access
+	private PriceLevel bestLevel;
 	
 	private static final QueueMetric queueMetric = Metrics.queue(Depth.class);
 	
@@ -29,10 +39,10 @@ class Depth {
 		this.orders = new HashMap<Long, Order>();
 		switch (side) {
 		case Buy:
-			this.queue = new TreeSet<Order>(new Order.BuyComparator());
+			this.levels = new TreeMap<BigDecimal, PriceLevel>(Comparator.reverseOrder());
 			break;
 		case Sell:
-			this.queue = new TreeSet<Order>(new Order.SellComparator());
+			this.levels = new TreeMap<BigDecimal, PriceLevel>(Comparator.naturalOrder());
 			break;
 		default:
 			throw new IllegalArgumentException("unsupported order side: " + side);
@@ -52,7 +62,17 @@ class Depth {
 			return false;
 		}
 		
-		this.queue.add(order);
+		PriceLevel level = this.levels.get(order.getPrice());
+		if (level == null) {
+			level = new PriceLevel(order.getPrice());
+			this.levels.put(level.getPrice(), level);
+			
+			if (this.bestLevel == null || this.levels.comparator().compare(level.getPrice(), this.bestLevel.getPrice()) < 0) {
+				this.bestLevel = level;
+			}
+		}
+		
+		level.add(order);
 		
 		queueMetric.enqueue();
 		
@@ -65,35 +85,85 @@ class Depth {
 			return Optional.empty();
 		}
 		
-		this.queue.remove(order);
+		this.removeFromLevel(order);
 		
 		queueMetric.dequeue();
 		
 		return Optional.of(order);
 	}
 	
+	private void removeFromLevel(Order order) {
+		PriceLevel level = order.level;
+		level.remove(order);
+		
+		if (level.isEmpty()) {
+			this.levels.remove(level.getPrice());
+			
+			if (level == this.bestLevel) {
+				Map.Entry<BigDecimal, PriceLevel> first = this.levels.firstEntry();
+				this.bestLevel = first == null ? null : first.getValue();
+			}
+		}
+	}
+	
 	public boolean isEmpty() {
 		return this.orders.isEmpty();
 	}
 	
+	public int size() {
+		return this.orders.size();
+	}
+	
 	public Optional<Order> peek() {
-		return this.queue.isEmpty() ? Optional.empty() : Optional.of(this.queue.first());
+		return Optional.ofNullable(this.first());
+	}
+	
+	/**
+	 * Returns the best order, or null if depth is empty, which is used in matching to avoid allocation.
+	 */
+	public Order first() {
+		return this.bestLevel == null ? null : this.bestLevel.getHead();
 	}
 	
 	public Optional<Order> poll() {
-		Order order = this.queue.pollFirst();
-		if (order == null) {
-			return Optional.empty();
+		return Optional.ofNullable(this.pollFirst());
+	}
+	
+	/**
+	 * Removes and returns the best order, or null if depth is empty.
+	 */
+	public Order pollFirst() {
+		if (this.bestLevel == null) {
+			return null;
 		}
 		
+		Order order = this.bestLevel.getHead();
 		this.orders.remove(order.getId());
+		this.removeFromLevel(order);
 		
 		queueMetric.dequeue();
 		
-		return Optional.of(order);
+		return order;
 	}
 	
 	public List<Order> filter(Predicate<Order> predicate) {
-		return this.queue.stream().filter(predicate).collect(Collectors.toList());
+		List<Order> result = new LinkedList<Order>();
+		
+		for (PriceLevel level : this.levels.values()) {
+			level.forEach(order -> {
+				if (predicate.test(order)) {
+					result.add(order);
+				}
+			});
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns price levels sorted from the best price, e.g. to aggregate the depth.
+	 */
+	public Iterable<PriceLevel> getLevels() {
+		return Collections.unmodifiableCollection(this.levels.values());
 	}
 }
@@ -58,9 +58,7 @@ public class Engine {
             DexDao dao = this.dao;
             book.updateDailyLimitInfo(dao);
 			// filter the maker order in invalid price range and set them to pending
-			List<Log> logs = book.filterOrders();
-			for (Log log : logs)
-				this.logHandler.handle(log);
+			book.filterOrders(this.logHandler);
 			// take all the pending orders by order id and do match
 			List<conflux.dex.model.Order> orders = dao.listAllOrdersByStatus(productId, OrderStatus.Pending);
 			Product product = dao.getProduct(productId).mustGet();
@@ -68,9 +66,7 @@ public class Engine {
 			Currency quoteCurrency = dao.getCurrency(product.getQuoteCurrencyId()).mustGet();
 			for (conflux.dex.model.Order order : orders) {
 				dao.updateOrderStatus(order.getId(), OrderStatus.Pending, OrderStatus.New);
-				logs = book.placeOrder(Order.place(order, dao, baseCurrency, quoteCurrency));
-				for (Log log : logs)
-					this.logHandler.handle(log);
+				book.placeOrder(Order.place(order, dao, baseCurrency, quoteCurrency), this.logHandler);
 			}
 			this.logHandler.handle(Log.newOrderBookStatusChangedLog(productId));
 		} else {
@@ -88,10 +84,7 @@ public class Engine {
 	// -> EngineService submit (route to engine by product id)
 	// -> Engine.doWork()
 	private void placeOrder(Order order, OrderBook book) {
-		List<Log> logs = book.placeOrder(order);
-		for (Log log : logs) {
-			this.logHandler.handle(log);
-		}
+		book.placeOrder(order, this.logHandler);
 	}
 
 	private void cancelOrder(Order order, int productId, OrderBook book) {
@@ -99,13 +92,11 @@ public class Engine {
 		if (!cancelled.isPresent()) {
 			// case 1): not in depth, regard as taker order
 			// case 2): cancel an other during settlement, here the order may completed.
-			Log log = Log.newPendingCancelLog(productId, order);
-			this.logHandler.handle(log);
+			book.publish(this.logHandler, LogType.PendingOrderCancelled, null, order, null);
 			return;
 		}
 
-		Log log = Log.newCancelLog(productId, cancelled.get(), false, false);
-		this.logHandler.handle(log);
+		book.publish(this.logHandler, LogType.MakerOrderCancelled, null, cancelled.get(), null);
 	}
 	
 	private void cancelAll(int productId, OrderBook book) {
@@ -120,8 +111,7 @@ public class Engine {
 				break;
 			}
 			
-			Log log = Log.newCancelLog(productId, order.get(), false, true);
-			this.logHandler.handle(log);
+			book.publish(this.logHandler, LogType.MakerOrderCancelledByAdmin, null, order.get(), null);
 		}
 	}
 	
@@ -0,0 +1,93 @@
+package conflux.dex.matching;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Optional;
+
+/**
+ * Fixed-point scales of a product, so that orders could be matched with scaled long values
+ * instead of BigDecimal. Price is scaled by product price precision, amount is scaled by product
+ * amount precision, and funds (price * amount) is scaled by the sum of both.
+ *
+ * Note, trade funds is truncated to scale 18 in BigDecimal mode, so fixed-point mode only
+ * works when the sum of both scales is not greater than 18, and then has exactly the same
+ * results as BigDecimal mode. Converted values have trailing zeros stripped as Utils.mul
+ * and Utils.div do, instead of a scale that depends on the product precision.
+ */
+public class FixedPoint {
+	/**
+	 * Indicates that a BigDecimal value could not be represented as a scaled long value.
+	 */
+	static final long INVALID = Long.MIN_VALUE;
+
+	private static final int MAX_FUNDS_SCALE = 18;
+
+	private int priceScale;
+	private int amountScale;
+	private int fundsScale;
+
+	private FixedPoint(int priceScale, int amountScale) {
+		this.priceScale = priceScale;
+		this.amountScale = amountScale;
+		this.fundsScale = priceScale + amountScale;
+	}
+
+	public static Optional<FixedPoint> create(int priceScale, int amountScale) {
+		if (priceScale < 0 || amountScale < 0 || priceScale + amountScale > MAX_FUNDS_SCALE) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new FixedPoint(priceScale, amountScale));
+	}
+
+	public int getPriceScale() {
+		return priceScale;
+	}
+
+	public int getAmountScale() {
+		return amountScale;
+	}
+
+	public int getFundsScale() {
+		return fundsScale;
+	}
+
+	long toPriceValue(BigDecimal price) {
+		return toValue(price, this.priceScale);
+	}
+
+	long toAmountValue(BigDecimal amount) {
+		return toValue(amount, this.amountScale);
+	}
+
+	long toFundsValue(BigDecimal funds) {
+		return toValue(funds, this.fundsScale);
+	}
+
+	BigDecimal toAmount(long value) {
+		return BigDecimal.valueOf(value, this.amountScale).stripTrailingZeros();
+	}
+
+	BigDecimal toFunds(long value) {
+		return BigDecimal.valueOf(value, this.fundsScale).stripTrailingZeros();
+	}
+
+	private static long toValue(BigDecimal value, int scale) {
+		if (value == null || value.signum() < 0) {
+			return INVALID;
+		}
+
+		try {
+			return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+		} catch (ArithmeticException e) {
+			// precision lost or overflow
+			return INVALID;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("FixedPoint{priceScale=%d, amountScale=%d}", this.priceScale, this.amountScale);
+	}
+
+}
@@ -1,9 +1,9 @@
 package conflux.dex.matching;
 
 import java.math.BigDecimal;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import conflux.dex.common.Handler;
 import conflux.dex.common.Utils;
@@ -24,7 +24,8 @@ import conflux.dex.model.OrderStatus;
 public class InstantExchangeEngine {
 	private Handler<Log> logHandler;
 	private DexDao dao;
-    private Set<Integer> initializedProducts = new HashSet<>();
+    // accessed by multiple engine shards in sharded mode
+    private Set<Integer> initializedProducts = ConcurrentHashMap.newKeySet();
 	
 	public InstantExchangeEngine(Handler<Log> logHandler, DexDao dao) {
 		this.logHandler = logHandler;
@@ -5,6 +5,12 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Order matching log, including order matched, opened and cancelled.
+ * 
+ * To avoid allocation for each match, order book reuses a log to publish matching logs,
+ * which is only valid during the handler call. Then, the log is copied into a pre-allocated
+ * slot (see {@link #newSlot()}) of the matching log buffer, which is reused once handled.
+ * So, handlers should {@link #copy()} the log or {@link Order#clone()} the orders if they
+ * need to keep them after handled.
  */
 public class Log {
 
@@ -17,14 +23,86 @@ public class Log {
 	private static AtomicLong globalId = new AtomicLong();
 	
 	private long id;
+	// time in milliseconds when orders matched
+	private long time;
 	private int productId;
 	private LogType type;
 	private Order takerOrder;
 	private Order makerOrder;
 	private BigDecimal matchAmount;
 	
+	// pre-allocated orders to copy into, which are null if not a slot
+	private Order takerOrderSlot;
+	private Order makerOrderSlot;
+	
 	public Log() {
 		this.id = globalId.getAndIncrement();
+		this.time = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Creates a pre-allocated log with orders, which is overwritten by {@link #copyFrom(Log)}.
+	 */
+	public static Log newSlot() {
+		Log log = new Log();
+		log.takerOrderSlot = Order.empty();
+		log.makerOrderSlot = Order.empty();
+		return log;
+	}
+	
+	/**
+	 * Resets the reused log in place with a new id.
+	 */
+	Log reset(int productId, LogType type, Order takerOrder, Order makerOrder, BigDecimal amount) {
+		this.id = globalId.getAndIncrement();
+		this.time = System.currentTimeMillis();
+		this.productId = productId;
+		this.type = type;
+		this.takerOrder = takerOrder;
+		this.makerOrder = makerOrder;
+		this.matchAmount = amount;
+		return this;
+	}
+	
+	/**
+	 * Copies the specified log into this slot, including snapshots of orders, without allocation.
+	 */
+	public void copyFrom(Log other) {
+		if (this.takerOrderSlot == null) {
+			throw new IllegalStateException("log is not a pre-allocated slot");
+		}
+		
+		this.id = other.id;
+		this.time = other.time;
+		this.productId = other.productId;
+		this.type = other.type;
+		this.takerOrder = copyOrder(other.takerOrder, this.takerOrderSlot);
+		this.makerOrder = copyOrder(other.makerOrder, this.makerOrderSlot);
+		this.matchAmount = other.matchAmount;
+	}
+	
+	private static Order copyOrder(Order order, Order slot) {
+		if (order == null) {
+			return null;
+		}
+		
+		slot.copyFrom(order);
+		return slot;
+	}
+	
+	/**
+	 * Returns a copy of this log with snapshots of orders, which could be kept after handled.
+	 */
+	public Log copy() {
+		Log log = new Log();
+		log.id = this.id;
+		log.time = this.time;
+		log.productId = this.productId;
+		log.type = this.type;
+		log.takerOrder = this.takerOrder == null ? null : this.takerOrder.clone();
+		log.makerOrder = this.makerOrder == null ? null : this.makerOrder.clone();
+		log.matchAmount = this.matchAmount;
+		return log;
 	}
 	
 	private static Log newLog(int productId, LogType type, Order takerOrder, Order makerOrder, BigDecimal amount) {
@@ -87,6 +165,10 @@ public class Log {
 		this.id = id;
 	}
 	
+	public long getTime() {
+		return time;
+	}
+	
 	public int getProductId() {
 		return productId;
 	}
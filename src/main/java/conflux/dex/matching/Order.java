@@ -6,10 +6,10 @@ import java.util.Optional;
 
 import conflux.dex.common.Utils;
 import conflux.dex.dao.DexDao;
+import conflux.dex.dao.ProductCatalog;
 import conflux.dex.model.Currency;
 import conflux.dex.model.OrderSide;
 import conflux.dex.model.OrderType;
-import conflux.dex.model.Product;
 import conflux.dex.service.AccountService;
 
 public class Order implements Cloneable {
@@ -42,6 +42,21 @@ public class Order implements Cloneable {
 	private boolean completed;
 	private BigDecimal filledFunds = BigDecimal.ZERO;
 	private BigDecimal filledAmount = BigDecimal.ZERO;
+	
+	// Scaled values in fixed-point mode, see OrderBook#setFixedPoint.
+	// Price value is valid if fixedPoint is not null, and the amount, filledAmount and
+	// filledFunds values are valid (and the BigDecimal fields are not) if amountFixed is true.
+	private FixedPoint fixedPoint;
+	private boolean amountFixed;
+	private long priceValue;
+	private long amountValue;
+	private long filledAmountValue;
+	private long filledFundsValue;
+	
+	// Links of orders in the same price level of depth, see PriceLevel.
+	transient PriceLevel level;
+	transient Order prev;
+	transient Order next;
 
 	private Order(long id, OrderType type, OrderSide side, BigDecimal price, BigDecimal amount) {
 		this.id = id;
@@ -90,12 +105,8 @@ public class Order implements Cloneable {
 	}
 	
 	public static Order place(conflux.dex.model.Order o, DexDao dao) {
-		Product product = dao.getProduct(o.getProductId()).mustGet();
-		
-		Currency baseCurrency = dao.getCurrency(product.getBaseCurrencyId()).mustGet();
-		Currency quoteCurrency = dao.getCurrency(product.getQuoteCurrencyId()).mustGet();
-		
-		return place(o, dao, baseCurrency, quoteCurrency);
+		ProductCatalog.Entry entry = dao.getProductCatalog().mustGet(o.getProductId());
+		return place(o, dao, entry.getBaseCurrency(), entry.getQuoteCurrency());
 	}
 	
 	public static Order place(conflux.dex.model.Order o, DexDao dao, Currency baseCurrency, Currency quoteCurrency) {
@@ -109,6 +120,13 @@ public class Order implements Cloneable {
 		return place(o, baseAccountId, quoteAccountId, feeAccountId);
 	}
 	
+	/**
+	 * Creates an empty order to be overwritten by {@link #copyFrom(Order)}, e.g. pre-allocated log slot.
+	 */
+	static Order empty() {
+		return new Order(0, null, null, BigDecimal.ZERO, BigDecimal.ZERO);
+	}
+	
 	public static Order cancel(conflux.dex.model.Order o) {
 		Order order = new Order(o.getId(), null, o.getSide(), BigDecimal.ZERO, BigDecimal.ZERO);
 		order.cancel = true;
@@ -142,7 +160,87 @@ public class Order implements Cloneable {
 	}
 	
 	public BigDecimal getAmount() {
-		return amount;
+		return this.amountFixed ? this.fixedPoint.toAmount(this.amountValue) : this.amount;
+	}
+	
+	private void setAmount(BigDecimal amount) {
+		if (this.amountFixed) {
+			long value = this.fixedPoint.toAmountValue(amount);
+			if (value != FixedPoint.INVALID) {
+				this.amountValue = value;
+				return;
+			}
+			
+			this.toBigDecimal();
+		}
+		
+		this.amount = amount;
+	}
+	
+	/**
+	 * Converts price and amounts to scaled long values, so that order could be matched
+	 * in fixed-point mode. Returns false if any value could not be represented exactly,
+	 * and then order is still matched with BigDecimal values.
+	 */
+	boolean toFixedPoint(FixedPoint fixedPoint) {
+		if (this.fixedPoint != null) {
+			return this.fixedPoint == fixedPoint && this.amountFixed;
+		}
+		
+		// funds of market buy order is not scaled by amount precision
+		if (this.cancel || (this.type == OrderType.Market && this.side == OrderSide.Buy)) {
+			return false;
+		}
+		
+		long price = fixedPoint.toPriceValue(this.price);
+		long amount = fixedPoint.toAmountValue(this.amount);
+		long filledAmount = fixedPoint.toAmountValue(this.filledAmount);
+		long filledFunds = fixedPoint.toFundsValue(this.filledFunds);
+		if (price == FixedPoint.INVALID || amount == FixedPoint.INVALID
+				|| filledAmount == FixedPoint.INVALID || filledFunds == FixedPoint.INVALID) {
+			return false;
+		}
+		
+		// make sure that trade funds never overflow when matched as maker order
+		try {
+			Math.addExact(Math.multiplyExact(price, Math.addExact(amount, filledAmount)), filledFunds);
+		} catch (ArithmeticException e) {
+			return false;
+		}
+		
+		this.fixedPoint = fixedPoint;
+		this.amountFixed = true;
+		this.priceValue = price;
+		this.amountValue = amount;
+		this.filledAmountValue = filledAmount;
+		this.filledFundsValue = filledFunds;
+		this.amount = null;
+		this.filledAmount = null;
+		this.filledFunds = null;
+		
+		return true;
+	}
+	
+	/**
+	 * Converts amounts back to BigDecimal values, e.g. matched with a market buy order.
+	 */
+	private void toBigDecimal() {
+		if (!this.amountFixed) {
+			return;
+		}
+		
+		this.amount = this.fixedPoint.toAmount(this.amountValue);
+		this.filledAmount = this.fixedPoint.toAmount(this.filledAmountValue);
+		this.filledFunds = this.fixedPoint.toFunds(this.filledFundsValue);
+		this.amountFixed = false;
+	}
+	
+	boolean isAmountFixed(FixedPoint fixedPoint) {
+		return this.amountFixed && this.fixedPoint == fixedPoint;
+	}
+	
+	long getPriceValue() {
+		return priceValue;
 	}
 	
 	public long getBaseAccountId() {
@@ -231,32 +329,71 @@ public class Order implements Cloneable {
 	
 	public Order clone() {
 		try {
-			return (Order) super.clone();
+			Order order = (Order) super.clone();
+			// cloned order is not in depth
+			order.level = null;
+			order.prev = null;
+			order.next = null;
+			return order;
 		} catch (CloneNotSupportedException e) {
 			return null;
 		}
 	}
 	
+	/**
+	 * Overwrites all fields with the specified order in place, which has the same result
+	 * as {@link #clone()} but without allocation. Links of depth are not copied.
+	 */
+	void copyFrom(Order other) {
+		this.id = other.id;
+		this.cancel = other.cancel;
+		this.type = other.type;
+		this.side = other.side;
+		this.price = other.price;
+		this.amount = other.amount;
+		this.baseAccountId = other.baseAccountId;
+		this.quoteAccountId = other.quoteAccountId;
+		this.feeAccountId = other.feeAccountId;
+		this.feeRateTaker = other.feeRateTaker;
+		this.feeRateMaker = other.feeRateMaker;
+		this.productId = other.productId;
+		this.userId = other.userId;
+		this.timestamp = other.timestamp;
+		this.everMatched = other.everMatched;
+		this.completed = other.completed;
+		this.filledFunds = other.filledFunds;
+		this.filledAmount = other.filledAmount;
+		this.fixedPoint = other.fixedPoint;
+		this.amountFixed = other.amountFixed;
+		this.priceValue = other.priceValue;
+		this.amountValue = other.amountValue;
+		this.filledAmountValue = other.filledAmountValue;
+		this.filledFundsValue = other.filledFundsValue;
+		this.level = null;
+		this.prev = null;
+		this.next = null;
+	}
+	
 	public boolean isFullyFilled() {
-		return this.amount.compareTo(BigDecimal.ZERO) == 0;
+		return this.amountFixed ? this.amountValue == 0 : this.amount.compareTo(BigDecimal.ZERO) == 0;
 	}
 	
 	public BigDecimal getUnfilled() {
 		if (this.side == OrderSide.Sell) {
-			return this.amount;
+			return this.getAmount();
 		}
 		
 		switch (this.type) {
 		case Limit:
-			return Utils.mul(this.price, this.amount);
+			return Utils.mul(this.price, this.getAmount());
 		case Market:
-			return this.amount;
+			return this.getAmount();
 		default:
 			throw new UnsupportedOperationException();
 		}
 	}
 	
-	public Optional<BigDecimal> take(Order makerOrder, int amountScale) {
+	private void checkMakerOrder(Order makerOrder) {
 		if (this.side == makerOrder.side) {
 			throw new IllegalArgumentException("invalid maker order side");
 		}
@@ -264,6 +401,84 @@ public class Order implements Cloneable {
 		if (makerOrder.type == OrderType.Market) {
 			throw new IllegalArgumentException("invalid maker order type");
 		}
+	}
+	
+	/**
+	 * Takes the maker order in fixed-point mode, which has the same result as {@link #take(Order, int)}.
+	 * Both orders should be fixed-point with the same scales, and the taker order could not be
+	 * a market buy order.
+	 * @return trade amount value, or -1 if order price mismatch.
+	 */
+	long takeFixedPoint(Order makerOrder) {
+		this.checkMakerOrder(makerOrder);
+		
+		// check if order price matches
+		if (this.type == OrderType.Limit) {
+			if (this.side == OrderSide.Buy && this.priceValue < makerOrder.priceValue) {
+				return -1;
+			}
+			
+			if (this.side == OrderSide.Sell && this.priceValue > makerOrder.priceValue) {
+				return -1;
+			}
+		}
+		
+		long tradeAmount = Math.min(this.amountValue, makerOrder.amountValue);
+		
+		this.amountValue -= tradeAmount;
+		if (this.amountValue == 0) {
+			this.completed = true;
+		}
+		
+		makerOrder.amountValue -= tradeAmount;
+		if (makerOrder.amountValue == 0) {
+			makerOrder.completed = true;
+		}
+		
+		if (tradeAmount > 0) {
+			this.everMatched = true;
+			makerOrder.everMatched = true;
+		}
+		
+		return tradeAmount;
+	}
+	
+	/**
+	 * Updates the filled funds and amount.
+	 */
+	void fill(BigDecimal funds, BigDecimal amount) {
+		if (this.amountFixed) {
+			long fundsValue = this.fixedPoint.toFundsValue(funds);
+			long amountValue = this.fixedPoint.toAmountValue(amount);
+			if (fundsValue != FixedPoint.INVALID && amountValue != FixedPoint.INVALID) {
+				this.fillFixedPoint(fundsValue, amountValue);
+				return;
+			}
+			
+			this.toBigDecimal();
+		}
+		
+		this.filledFunds = this.filledFunds.add(funds);
+		this.filledAmount = this.filledAmount.add(amount);
+	}
+	
+	/**
+	 * Updates the filled funds and amount in fixed-point mode.
+	 */
+	void fillFixedPoint(long funds, long amount) {
+		this.filledAmountValue += amount;
+		
+		try {
+			this.filledFundsValue = Math.addExact(this.filledFundsValue, funds);
+		} catch (ArithmeticException e) {
+			// e.g. market sell order matched with too many buy orders
+			this.toBigDecimal();
+			this.filledFunds = this.filledFunds.add(this.fixedPoint.toFunds(funds));
+		}
+	}
+	
+	public Optional<BigDecimal> take(Order makerOrder, int amountScale) {
+		this.checkMakerOrder(makerOrder);
 		
 		// check if order price matches
 		if (this.type == OrderType.Limit) {
@@ -278,20 +493,23 @@ public class Order implements Cloneable {
 		
 		// match successfully
 		BigDecimal tradeAmount;
+		BigDecimal amount = this.getAmount();
+		BigDecimal makerAmount = makerOrder.getAmount();
 		
 		if (this.type == OrderType.Limit || this.side == OrderSide.Sell) {
-			tradeAmount = this.amount.min(makerOrder.amount);
-			this.amount = this.amount.subtract(tradeAmount);
+			tradeAmount = amount.min(makerAmount);
+			amount = amount.subtract(tradeAmount);
+			this.setAmount(amount);
 			
-			if (this.amount.signum() == 0) {
+			if (amount.signum() == 0) {
 				this.completed = true;
 			}
 		} else {
 			// market buy with funds
-			BigDecimal takerAmount = Utils.div(this.amount, makerOrder.price, amountScale);
-			tradeAmount = takerAmount.min(makerOrder.amount);
+			BigDecimal takerAmount = Utils.div(amount, makerOrder.price, amountScale);
+			tradeAmount = takerAmount.min(makerAmount);
 			BigDecimal tradeFunds = Utils.mul(tradeAmount, makerOrder.price);
-			this.amount = this.amount.subtract(tradeFunds);
+			this.setAmount(amount.subtract(tradeFunds));
 			
 			// e.g. only 1 drip unfilled for a market buy order,
 			// and the actual trade amount will be truncated to 0
@@ -301,8 +519,9 @@ public class Order implements Cloneable {
 			}
 		}
 		
-		makerOrder.amount = makerOrder.amount.subtract(tradeAmount);
-		if (makerOrder.amount.signum() == 0) {
+		makerAmount = makerAmount.subtract(tradeAmount);
+		makerOrder.setAmount(makerAmount);
+		if (makerAmount.signum() == 0) {
 			makerOrder.completed = true;
 		} else if (this.type == OrderType.Market && this.side == OrderSide.Buy) {
 			/*
@@ -327,18 +546,20 @@ public class Order implements Cloneable {
 	}
 
 	public BigDecimal getFilledFunds() {
-		return filledFunds;
+		return this.amountFixed ? this.fixedPoint.toFunds(this.filledFundsValue) : this.filledFunds;
 	}
 
 	public void setFilledFunds(BigDecimal filledFunds) {
+		this.toBigDecimal();
 		this.filledFunds = filledFunds;
 	}
 
 	public BigDecimal getFilledAmount() {
-		return filledAmount;
+		return this.amountFixed ? this.fixedPoint.toAmount(this.filledAmountValue) : this.filledAmount;
 	}
 
 	public void setFilledAmount(BigDecimal filledAmount) {
+		this.toBigDecimal();
 		this.filledAmount = filledAmount;
 	}
 
@@ -347,15 +568,23 @@ public class Order implements Cloneable {
 		return String.format(
 				"MatchingOrder{id=%d, %s | %s, price=%s, amount=%s, base/quoteAccount=%d/%d}", 
 				this.id, this.type, this.side, 
-				this.price.toPlainString(), this.amount.toPlainString(), 
+				this.price.toPlainString(), this.getAmount().toPlainString(), 
 				this.baseAccountId, this.quoteAccountId);
 	}
 
+	private static int comparePrice(Order o1, Order o2) {
+		if (o1.fixedPoint != null && o1.fixedPoint == o2.fixedPoint) {
+			return Long.compare(o1.priceValue, o2.priceValue);
+		}
+		
+		return o1.price.compareTo(o2.price);
+	}
+
 	public static class BuyComparator implements Comparator<Order> {
 
 		@Override
 		public int compare(Order o1, Order o2) {
-			int result = o1.price.compareTo(o2.price);
+			int result = comparePrice(o1, o2);
 			if (result != 0) {
 				return -result;
 			}
@@ -369,7 +598,7 @@ public class Order implements Cloneable {
 
 		@Override
 		public int compare(Order o1, Order o2) {
-			int result = o1.price.compareTo(o2.price);
+			int result = comparePrice(o1, o2);
 			if (result != 0) {
 				return result;
 			}
@@ -2,6 +2,7 @@ package conflux.dex.matching;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -10,6 +11,7 @@ import java.util.function.Predicate;
 
 import com.codahale.metrics.Meter;
 
+import conflux.dex.common.Handler;
 import conflux.dex.common.Metrics;
 import conflux.dex.common.Utils;
 import conflux.dex.dao.DexDao;
@@ -31,6 +33,15 @@ public class OrderBook {
 	private boolean isOpen;
 	private Trade lastClosingTrade;
 	private DailyLimitRate dailyLimitRate;
+	/**
+	 * Match orders with scaled long values if specified.
+	 */
+	private FixedPoint fixedPoint;
+
+	/**
+	 * Reused log to publish matching logs without allocation, see {@link #placeOrder(Order, Handler)}.
+	 */
+	private final Log log = new Log();
 
 	private static final Meter tpsMatch = Metrics.meter(OrderBook.class, "match");
 	
@@ -136,19 +147,37 @@ public class OrderBook {
 		return logs;
 	}
 	
+	/**
+	 * Places order and returns the matching logs, which are copied and could be kept by caller.
+	 */
 	public List<Log> placeOrder(Order order) {
-		List<Log> logs = new LinkedList<Log>();
-		
+		List<Log> logs = new ArrayList<Log>();
+		this.placeOrder(order, log -> logs.add(log.copy()));
+		return logs;
+	}
+	
+	/**
+	 * Places order and publishes matching logs to the specified handler in sequence.
+	 * 
+	 * The same log instance is reused for all matching logs and orders are not cloned,
+	 * so the handler should copy the log if needed, e.g. into a pre-allocated log slot.
+	 * Then, no garbage is created for each match in addition to the trade amount.
+	 */
+	public void placeOrder(Order order, Handler<Log> handler) {
 		if (!this.isOpen) {
 			// aggregate auction order, set to pending
-			logs.add(Log.newPendingLog(this.productId, order, null));
-			return logs;
+			this.publish(handler, LogType.OrderPended, order, null, null);
+			return;
 		}
 
 		Depth takerDepth = this.depths.get(order.getSide());
 		if (takerDepth.contains(order.getId())) {
 			// duplicate order id
-			return logs;
+			return;
+		}
+		
+		if (this.fixedPoint != null) {
+			order.toFixedPoint(this.fixedPoint);
 		}
 
 		// treat this order as taker, the opposite one as maker.
@@ -157,19 +186,44 @@ public class OrderBook {
 
 		// matching
 		while (!order.isCompleted()) {
-			Optional<Order> maybeMakerOrder = makerDepth.peek();
-			if (!maybeMakerOrder.isPresent()) {
+			Order makerOrder = makerDepth.first();
+			if (makerOrder == null) {
 				// take order doesn't exist
 				break;
 			}
 			
-			Order makerOrder = maybeMakerOrder.get();
-			
 			if (this.compareToValidMakerPrice(makerOrder.getPrice()) != 0) {
 				// out of daily increase/decline limitation
 				break;
 			}
 			
+			if (order.isAmountFixed(this.fixedPoint) && makerOrder.isAmountFixed(this.fixedPoint)) {
+				long tradeAmount = order.takeFixedPoint(makerOrder);
+				if (tradeAmount < 0) {
+					// price mismatch
+					break;
+				}
+				
+				if (tradeAmount == 0) {
+					this.publish(handler, LogType.TakerOrderCancelled, order, null, null);
+					return;
+				}
+				
+				// never overflow, see Order#toFixedPoint
+				long funds = makerOrder.getPriceValue() * tradeAmount;
+				order.fillFixedPoint(funds, tradeAmount);
+				makerOrder.fillFixedPoint(funds, tradeAmount);
+				this.publish(handler, LogType.OrderMatched, order, makerOrder, this.fixedPoint.toAmount(tradeAmount));
+				tpsMatch.mark();
+				
+				if (makerOrder.isCompleted()) {
+					makerDepth.pollFirst();
+					this.publish(handler, LogType.MakerOrderCompleted, null, makerOrder, null);
+				}
+				
+				continue;
+			}
+			
 			Optional<BigDecimal> tradeAmount = order.take(makerOrder, this.marketBuyAmountScale);
 			if (!tradeAmount.isPresent()) {
 				// price mismatch
@@ -177,63 +231,70 @@ public class OrderBook {
 			}
 			
 			if (tradeAmount.get().compareTo(BigDecimal.ZERO) == 0) {
-				logs.add(Log.newCancelLog(this.productId, order, true, false));
-				return logs;
+				this.publish(handler, LogType.TakerOrderCancelled, order, null, null);
+				return;
 			}
 
 			BigDecimal funds = Utils.mul(makerOrder.getPrice(), tradeAmount.get());
-			Order cloneOrder = buildCloneOrder(order, funds, tradeAmount.get());
-			Order cloneMakerOrder = buildCloneOrder(makerOrder, funds, tradeAmount.get());
-			logs.add(Log.newMatchLog(this.productId, cloneOrder, cloneMakerOrder, tradeAmount.get()));
+			order.fill(funds, tradeAmount.get());
+			makerOrder.fill(funds, tradeAmount.get());
+			this.publish(handler, LogType.OrderMatched, order, makerOrder, tradeAmount.get());
 			tpsMatch.mark();
 			
 			if (makerOrder.isCompleted()) {
-				makerDepth.poll();
-				logs.add(Log.newCompleteLog(this.productId, makerOrder, false));
+				makerDepth.pollFirst();
+				this.publish(handler, LogType.MakerOrderCompleted, null, makerOrder, null);
 			}
 		}
 		
 		if (order.isFullyFilled()) {
-			logs.add(Log.newCompleteLog(this.productId, order, true));
+			this.publish(handler, LogType.TakerOrderCompleted, order, null, null);
 		} else if (order.getType() == OrderType.Limit) {
 			int cmp = this.compareToValidMakerPrice(order.getPrice());
 			if ((order.getSide() == OrderSide.Buy && cmp > 0) || (order.getSide() == OrderSide.Sell && cmp < 0)) {
 				// set to pending
-				logs.add(Log.newPendingLog(this.productId, order, null));
+				this.publish(handler, LogType.OrderPended, order, null, null);
 			} else {
 				// add to depth
 				takerDepth.add(order);
-				logs.add(Log.newOpenLog(this.productId, order.clone()));
+				this.publish(handler, LogType.TakerOrderOpened, order, null, null);
 			}
 		} else {
-			logs.add(Log.newCancelLog(this.productId, order, true, false));
+			this.publish(handler, LogType.TakerOrderCancelled, order, null, null);
 		}
-		return logs;
 	}
-
-	private Order buildCloneOrder(Order order, BigDecimal funds, BigDecimal amount) {
-		order.setFilledFunds(order.getFilledFunds().add(funds));
-		order.setFilledAmount(order.getFilledAmount().add(amount));
-		Order ret = order.clone();
-		return ret;
+	
+	/**
+	 * Publishes matching log with the reused log instance, which is only valid during the handler call.
+	 */
+	void publish(Handler<Log> handler, LogType type, Order takerOrder, Order makerOrder, BigDecimal amount) {
+		handler.handle(this.log.reset(this.productId, type, takerOrder, makerOrder, amount));
 	}
 
 	public List<Log> filterOrders() {
-		List<Log> logs = new LinkedList<Log>();
+		List<Log> logs = new ArrayList<Log>();
+		this.filterOrders(log -> logs.add(log.copy()));
+		return logs;
+	}
+	
+	/**
+	 * Moves maker orders out of daily limit price range from depth, and publishes
+	 * pending logs to the specified handler, see {@link #placeOrder(Order, Handler)}.
+	 */
+	public void filterOrders(Handler<Log> handler) {
 		for (OrderSide side : OrderSide.values()) {
 			Depth depth = this.depths.get(side);
 			while (!depth.isEmpty()) {
-				Order order = depth.peek().get();
+				Order order = depth.first();
 				int cmp = this.compareToValidMakerPrice(order.getPrice());
 				if ((side == OrderSide.Buy && cmp > 0) || (side == OrderSide.Sell && cmp < 0)) {
-					depth.poll();
-					logs.add(Log.newPendingLog(this.productId, null, order));
+					depth.pollFirst();
+					this.publish(handler, LogType.OrderPended, null, order, null);
 				} else {
 					break;
 				}
 			}
 		}
-		return logs;
 	}
 	
 	public Optional<Order> cancelOrder(long orderId, OrderSide side) {
@@ -248,6 +309,10 @@ public class OrderBook {
 		return this.depths.get(side).filter(predicate);
 	}
 	
+	Depth getDepth(OrderSide side) {
+		return this.depths.get(side);
+	}
+	
 	public int getProductId() {
 		return productId;
 	}
@@ -260,6 +325,19 @@ public class OrderBook {
 		this.isOpen = isOpen;
 	}
 	
+	public FixedPoint getFixedPoint() {
+		return fixedPoint;
+	}
+	
+	/**
+	 * Enables fixed-point mode for new orders, which has exactly the same matching results
+	 * as BigDecimal mode. Orders that could not be represented in scaled long values are
+	 * still matched with BigDecimal values.
+	 */
+	public void setFixedPoint(FixedPoint fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+	
 	public boolean isDailyLimit() {
 		return dailyLimit;
 	}
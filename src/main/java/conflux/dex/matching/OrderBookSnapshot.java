@@ -0,0 +1,297 @@
+package conflux.dex.matching;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import conflux.dex.model.DailyLimitRate;
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.Trade;
+
+/**
+ * Compact binary snapshot of an order book, including orders of both depths
+ * and the daily limit state, which is written to and read from memory-mapped file.
+ *
+ * Snapshot records the time when it is taken as sequence marker, so that order book
+ * could be restored from snapshot and then replay orders that updated after it.
+ *
+ * Note, snapshot should be taken in the thread that matches orders of the order book.
+ */
+public class OrderBookSnapshot {
+	private static final int MAGIC = 0x4F425353; // OBSS
+	private static final int VERSION = 1;
+
+	private int productId;
+	private long timestamp;
+	private boolean open;
+	private boolean dailyLimit;
+	private DailyLimitRate dailyLimitRate;
+	private Trade lastClosingTrade;
+	private List<Order> orders = new ArrayList<Order>();
+
+	private OrderBookSnapshot() {
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	/**
+	 * Time in milliseconds when snapshot taken.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	public boolean isDailyLimit() {
+		return dailyLimit;
+	}
+
+	public DailyLimitRate getDailyLimitRate() {
+		return dailyLimitRate;
+	}
+
+	public Trade getLastClosingTrade() {
+		return lastClosingTrade;
+	}
+
+	/**
+	 * Orders in depths, which are in-completed limit orders.
+	 */
+	public List<Order> getOrders() {
+		return orders;
+	}
+
+	/**
+	 * Writes snapshot of the specified order book into file, which is replaced atomically.
+	 */
+	public static void write(OrderBook book, long timestamp, Path file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(book.getProductId());
+		out.writeLong(timestamp);
+		out.writeBoolean(book.isOpen());
+		out.writeBoolean(book.isDailyLimit());
+
+		DailyLimitRate rate = book.getDailyLimitRate();
+		out.writeBoolean(rate != null);
+		if (rate != null) {
+			out.writeDouble(rate.getUpperLimitRate());
+			out.writeDouble(rate.getLowerLimitRate());
+			writeDecimal(out, rate.getInitialPrice());
+		}
+
+		Trade trade = book.getLastClosingTrade();
+		out.writeBoolean(trade != null);
+		if (trade != null) {
+			out.writeLong(trade.getId());
+			out.writeLong(trade.getTakerOrderId());
+			out.writeLong(trade.getMakerOrderId());
+			writeDecimal(out, trade.getPrice());
+			writeDecimal(out, trade.getAmount());
+			out.writeInt(trade.getSide().ordinal());
+			out.writeLong(trade.getCreateTime().getTime());
+		}
+
+		for (OrderSide side : OrderSide.values()) {
+			Depth depth = book.getDepth(side);
+			out.writeInt(depth.size());
+
+			for (PriceLevel level : depth.getLevels()) {
+				for (Order order = level.getHead(); order != null; order = order.next) {
+					writeOrder(out, order);
+				}
+			}
+		}
+
+		out.flush();
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		byte[] data = bytes.toByteArray();
+
+		Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, 0, data.length);
+			buffer.put(data);
+			buffer.force();
+		}
+
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+		out.writeLong(order.getId());
+		writeDecimal(out, order.getPrice());
+		writeDecimal(out, order.getAmount());
+		writeDecimal(out, order.getFilledAmount());
+		writeDecimal(out, order.getFilledFunds());
+		out.writeLong(order.getBaseAccountId());
+		out.writeLong(order.getQuoteAccountId());
+		out.writeLong(order.getFeeAccountId());
+		out.writeDouble(order.getFeeRateTaker());
+		out.writeDouble(order.getFeeRateMaker());
+		out.writeLong(order.getUserId());
+		out.writeLong(order.getTimestamp());
+		out.writeBoolean(order.isEverMatched());
+	}
+
+	private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+		byte[] unscaled = value.unscaledValue().toByteArray();
+		out.writeInt(value.scale());
+		out.writeShort(unscaled.length);
+		out.write(unscaled);
+	}
+
+	/**
+	 * Reads snapshot from file, and throws IOException if file is corrupted.
+	 */
+	public static OrderBookSnapshot read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("corrupted order book snapshot: " + file, e);
+		}
+	}
+
+	private static OrderBookSnapshot read(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < 8 + Long.BYTES) {
+			throw new IOException("order book snapshot too short");
+		}
+
+		ByteBuffer content = buffer.duplicate();
+		content.limit(buffer.limit() - Long.BYTES);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		if (crc.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+			throw new IOException("order book snapshot checksum mismatch");
+		}
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("unsupported order book snapshot format");
+		}
+
+		OrderBookSnapshot snapshot = new OrderBookSnapshot();
+		snapshot.productId = buffer.getInt();
+		snapshot.timestamp = buffer.getLong();
+		snapshot.open = readBoolean(buffer);
+		snapshot.dailyLimit = readBoolean(buffer);
+
+		if (readBoolean(buffer)) {
+			double upper = buffer.getDouble();
+			double lower = buffer.getDouble();
+			BigDecimal initialPrice = readDecimal(buffer);
+			snapshot.dailyLimitRate = DailyLimitRate.newDailyLimitRate(snapshot.productId, upper, lower, initialPrice);
+		}
+
+		if (readBoolean(buffer)) {
+			Trade trade = new Trade();
+			trade.setId(buffer.getLong());
+			trade.setProductId(snapshot.productId);
+			trade.setTakerOrderId(buffer.getLong());
+			trade.setMakerOrderId(buffer.getLong());
+			trade.setPrice(readDecimal(buffer));
+			trade.setAmount(readDecimal(buffer));
+			trade.setSide(OrderSide.values()[buffer.getInt()]);
+			trade.setCreateTime(new Timestamp(buffer.getLong()));
+			trade.setUpdateTime(trade.getCreateTime());
+			snapshot.lastClosingTrade = trade;
+		}
+
+		for (OrderSide side : OrderSide.values()) {
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				snapshot.orders.add(readOrder(buffer, side, snapshot.productId));
+			}
+		}
+
+		return snapshot;
+	}
+
+	private static Order readOrder(ByteBuffer buffer, OrderSide side, int productId) {
+		long id = buffer.getLong();
+		BigDecimal price = readDecimal(buffer);
+		BigDecimal amount = readDecimal(buffer);
+
+		Order order = side == OrderSide.Buy
+				? Order.limitBuy(id, price, amount)
+				: Order.limitSell(id, price, amount);
+		order.setFilledAmount(readDecimal(buffer));
+		order.setFilledFunds(readDecimal(buffer));
+		order.setBaseAccountId(buffer.getLong());
+		order.setQuoteAccountId(buffer.getLong());
+		order.setFeeAccountId(buffer.getLong());
+		order.setFeeRateTaker(buffer.getDouble());
+		order.setFeeRateMaker(buffer.getDouble());
+		order.setProductId(productId);
+		order.setUserId(buffer.getLong());
+		order.setTimestamp(buffer.getLong());
+		order.setEverMatched(readBoolean(buffer));
+
+		return order;
+	}
+
+	private static boolean readBoolean(ByteBuffer buffer) {
+		return buffer.get() != 0;
+	}
+
+	private static BigDecimal readDecimal(ByteBuffer buffer) {
+		int scale = buffer.getInt();
+		byte[] unscaled = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(unscaled);
+		return new BigDecimal(new BigInteger(unscaled), scale);
+	}
+
+	/**
+	 * Restores orders into the specified order book, which should be empty.
+	 * @param withDailyLimit whether to restore the daily limit state as well.
+	 */
+	public void restore(OrderBook book, boolean withDailyLimit) {
+		if (book.getProductId() != this.productId) {
+			throw new IllegalArgumentException("product mismatch");
+		}
+
+		if (withDailyLimit) {
+			book.setOpen(this.open);
+			book.setDailyLimit(this.dailyLimit);
+			book.setDailyLimitRate(this.dailyLimitRate);
+			book.setLastClosingTrade(this.lastClosingTrade);
+		}
+
+		for (Order order : this.orders) {
+			if (book.getFixedPoint() != null) {
+				order.toFixedPoint(book.getFixedPoint());
+			}
+
+			book.getDepth(order.getSide()).add(order);
+		}
+	}
+
+}
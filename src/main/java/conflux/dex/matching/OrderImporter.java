@@ -0,0 +1,43 @@
+package conflux.dex.matching;
+
+import java.sql.Timestamp;
+
+import conflux.dex.common.Handler;
+
+/**
+ * Request to import in-completed orders into order books when engine started.
+ *
+ * Engine imports orders of different products in parallel, and will not handle
+ * any other request until all orders imported and OrderImported signal delivered
+ * to all products.
+ *
+ * Only orders that exist when importer created are imported, and orders placed
+ * afterwards are handled by engine as requested after importer.
+ */
+public interface OrderImporter {
+
+	/**
+	 * Imports open and cancelling orders of the specified product in sequence.
+	 */
+	default void importOrders(int productId, Handler<Order> handler) {
+		this.importOrders(productId, null, order -> {}, handler);
+	}
+
+	/**
+	 * Imports orders of the specified product to recover order book from snapshot.
+	 *
+	 * Orders updated since the specified time and orders to cancel are passed to remover
+	 * at first, so that stale orders restored from snapshot could be removed. Then, the
+	 * open ones among them, and all orders to cancel are imported in sequence.
+	 *
+	 * @param updatedSince null to import all open and cancelling orders.
+	 */
+	void importOrders(int productId, Timestamp updatedSince, Handler<Order> remover, Handler<Order> handler);
+
+	/**
+	 * Imports orders to place of all products in order of id, which is the order they were
+	 * submitted to engine, since instant exchange orders take liquidity from two order books.
+	 */
+	void importNewOrders(Handler<Order> handler);
+
+}
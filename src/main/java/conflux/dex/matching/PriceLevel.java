@@ -0,0 +1,94 @@
+package conflux.dex.matching;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * Orders of the same price in depth, which is an intrusive doubly linked list sorted by order id.
+ * Generally, order id is increasing, so new order is appended to the tail in O(1).
+ */
+class PriceLevel {
+	private BigDecimal price;
+	private Order head;
+	private Order tail;
+	private int count;
+
+	public PriceLevel(BigDecimal price) {
+		this.price = price;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public Order getHead() {
+		return head;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public boolean isEmpty() {
+		return this.head == null;
+	}
+
+	public void add(Order order) {
+		// find the position from tail, e.g. orders re-added after tried to match
+		Order prev = this.tail;
+		while (prev != null && prev.getId() > order.getId()) {
+			prev = prev.prev;
+		}
+
+		Order next = prev == null ? this.head : prev.next;
+
+		order.level = this;
+		order.prev = prev;
+		order.next = next;
+
+		if (prev == null) {
+			this.head = order;
+		} else {
+			prev.next = order;
+		}
+
+		if (next == null) {
+			this.tail = order;
+		} else {
+			next.prev = order;
+		}
+
+		this.count++;
+	}
+
+	public void remove(Order order) {
+		if (order.level != this) {
+			throw new IllegalArgumentException("order not in price level");
+		}
+
+		if (order.prev == null) {
+			this.head = order.next;
+		} else {
+			order.prev.next = order.next;
+		}
+
+		if (order.next == null) {
+			this.tail = order.prev;
+		} else {
+			order.next.prev = order.prev;
+		}
+
+		order.level = null;
+		order.prev = null;
+		order.next = null;
+
+		this.count--;
+	}
+
+	public void forEach(Consumer<Order> consumer) {
+		for (Order order = this.head; order != null; order = order.next) {
+			consumer.accept(order);
+		}
+	}
+
+}
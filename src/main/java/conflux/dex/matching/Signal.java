@@ -23,6 +23,10 @@ public class Signal {
 		return newSignal(SignalType.CancelAllOrders, 0);
 	}
 	
+	public static Signal snapshotSignal() {
+		return newSignal(SignalType.Snapshot, 0);
+	}
+	
 	public SignalType getType() {
 		return type;
 	}
@@ -4,4 +4,5 @@ public enum SignalType {
 	OrderImported,
 	OrderBookInitialized,
 	CancelAllOrders,
+	Snapshot,
 }
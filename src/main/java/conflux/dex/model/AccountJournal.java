@@ -0,0 +1,71 @@
+package conflux.dex.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Committed balance change of an account, which is not written to t_account yet.
+ */
+public class AccountJournal {
+	/**
+	 * Journal id. (auto-generated)
+	 */
+	private long id;
+	/**
+	 * Referenced account id.
+	 */
+	private long accountId;
+	/**
+	 * Change of balance held by unfilled orders.
+	 */
+	private BigDecimal holdDelta;
+	/**
+	 * Change of available balance.
+	 */
+	private BigDecimal availableDelta;
+	
+	public AccountJournal() {}
+	
+	public AccountJournal(long accountId, BigDecimal holdDelta, BigDecimal availableDelta) {
+		this.accountId = accountId;
+		this.holdDelta = holdDelta;
+		this.availableDelta = availableDelta;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public void setId(long id) {
+		this.id = id;
+	}
+	
+	public long getAccountId() {
+		return accountId;
+	}
+	
+	public void setAccountId(long accountId) {
+		this.accountId = accountId;
+	}
+	
+	public BigDecimal getHoldDelta() {
+		return holdDelta;
+	}
+	
+	public void setHoldDelta(BigDecimal holdDelta) {
+		this.holdDelta = holdDelta;
+	}
+	
+	public BigDecimal getAvailableDelta() {
+		return availableDelta;
+	}
+	
+	public void setAvailableDelta(BigDecimal availableDelta) {
+		this.availableDelta = availableDelta;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("AccountJournal{id=%s, accountId=%s, holdDelta=%s, availableDelta=%s}",
+				this.id, this.accountId, this.holdDelta, this.availableDelta);
+	}
+}
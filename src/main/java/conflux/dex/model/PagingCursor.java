@@ -0,0 +1,115 @@
+package conflux.dex.model;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import conflux.dex.common.BusinessException;
+
+/**
+ * Keyset position of paging data sorted by (create_time, id), which is exchanged
+ * with client as an opaque token to fetch the next page without scanning and
+ * skipping the previous rows as OFFSET does.
+ *
+ * The total number of data is counted only once for the first page, and then
+ * carried by cursor for subsequent pages.
+ */
+public class PagingCursor {
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	/**
+	 * Create time of the last fetched item.
+	 */
+	private Timestamp createTime;
+	/**
+	 * Id of the last fetched item.
+	 */
+	private long id;
+	/**
+	 * Total number of data when the first page fetched.
+	 */
+	private int total;
+
+	public PagingCursor(Timestamp createTime, long id, int total) {
+		this.createTime = createTime;
+		this.id = id;
+		this.total = total;
+	}
+
+	/**
+	 * Returns the cursor to fetch the next page, or null if no more data.
+	 */
+	public static <T> PagingCursor next(List<T> items, int limit, int total, Function<T, Timestamp> timeGetter, ToLongFunction<T> idGetter) {
+		if (items == null || items.isEmpty() || items.size() < limit) {
+			return null;
+		}
+
+		T last = items.get(items.size() - 1);
+		return new PagingCursor(timeGetter.apply(last), idGetter.applyAsLong(last), total);
+	}
+
+	public static PagingCursor next(PagingResult<Order> result) {
+		return next(result.getItems(), result.getLimit(), result.getTotal(), Order::getCreateTime, Order::getId);
+	}
+
+	/**
+	 * Parses the specified cursor token, and returns null if token is empty.
+	 */
+	public static PagingCursor parse(String token) throws BusinessException {
+		if (token == null || token.isEmpty()) {
+			return null;
+		}
+
+		try {
+			String[] fields = new String(DECODER.decode(token), StandardCharsets.UTF_8).split(":");
+			if (fields.length != 4) {
+				throw BusinessException.validateFailed("invalid cursor");
+			}
+
+			Timestamp createTime = new Timestamp(Long.parseLong(fields[0]));
+			createTime.setNanos(Integer.parseInt(fields[1]));
+
+			return new PagingCursor(createTime, Long.parseLong(fields[2]), Integer.parseInt(fields[3]));
+		} catch (IllegalArgumentException e) {
+			throw BusinessException.validateFailed("invalid cursor");
+		}
+	}
+
+	public String encode() {
+		String value = String.format("%d:%d:%d:%d", this.createTime.getTime(), this.createTime.getNanos(), this.id, this.total);
+		return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public Timestamp getCreateTime() {
+		return createTime;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Indicates whether the specified item is after this cursor in the given order.
+	 */
+	public boolean precedes(Timestamp createTime, long id, boolean asc) {
+		int cmp = createTime.compareTo(this.createTime);
+		if (cmp == 0) {
+			cmp = Long.compare(id, this.id);
+		}
+
+		return asc ? cmp > 0 : cmp < 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PagingCursor{createTime=%s, id=%d, total=%d}", this.createTime, this.id, this.total);
+	}
+}
@@ -0,0 +1,48 @@
+package conflux.dex.model;
+
+/**
+ * Range partition of table, which is partitioned by RANGE (id).
+ */
+public class TablePartition {
+	public static final String MAX_NAME = "pmax";
+
+	/**
+	 * Partition name, e.g. "p1000000" or "pmax".
+	 */
+	private String name;
+	/**
+	 * Exclusive upper bound of id, which is Long.MAX_VALUE for "MAXVALUE".
+	 */
+	private long lessThan;
+
+	public TablePartition(String name, long lessThan) {
+		this.name = name;
+		this.lessThan = lessThan;
+	}
+
+	public static TablePartition parse(String name, String description) {
+		long lessThan = "MAXVALUE".equalsIgnoreCase(description) ? Long.MAX_VALUE : Long.parseLong(description);
+		return new TablePartition(name, lessThan);
+	}
+
+	public static String nameOf(long lessThan) {
+		return "p" + lessThan;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getLessThan() {
+		return lessThan;
+	}
+
+	public boolean isMax() {
+		return this.lessThan == Long.MAX_VALUE;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TablePartition{name=%s, lessThan=%s}", this.name, this.isMax() ? "MAXVALUE" : this.lessThan);
+	}
+}
@@ -2,6 +2,7 @@ package conflux.dex.service;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -69,6 +70,22 @@ public class AccountService {
 		mustUpdateAccountBalance(null,dao, accountId, holdDelta, availableDelta);
 	}
 
+	public static void mustUpdateAccountBalances(Logger logger, AccountDao dao, Map<Long, BigDecimal> holdDeltas, Map<Long, BigDecimal> availableDeltas) {
+		List<Long> failed = dao.updateAccountBalances(holdDeltas, availableDeltas);
+		if (failed.isEmpty()) {
+			return;
+		}
+
+		if (logger != null) {
+			for (long accountId : failed) {
+				logger.error("failed to update account balance, accountId = {}, holdDelta = {}, availableDelta = {}, account = {}",
+						accountId, holdDeltas.get(accountId), availableDeltas.get(accountId), dao.getAccountById(accountId));
+			}
+		}
+
+		throw BusinessFault.AccountBalanceNotEnough.rise();
+	}
+
 	public static Account mustGetAccount(AccountDao dao, long userId, String currency) {
 		Optional<Account> account = dao.getAccount(userId, currency);
 		if (!account.isPresent()) {
@@ -19,18 +19,24 @@ import javax.annotation.PostConstruct;
  * Consider that it may need to delete some other related data (nothing at this time in fact),
  * it queries data and then do the deletion.
  * Maybe it can do deletion directly by one sql with conditions.
+ *
+ * If tables partitioned, history data of all users is retired by PartitionService instead,
+ * but trades of market makers and K line robots are still cleaned with a shorter retention.
+ * Their unique keys (see partitiondb.sql) are deleted when order partition retired.
  */
 @Component
 public class CleanerService {
     private final PruneConfig pruneConfig;
+    private final PartitionService partitionService;
     private DeleteOrderWithoutTradeCleaner orderCleanerForAllUser;
     private TradeAndOrderCleaner tradeCleanerForAllUser;
     private TradeAndOrderCleaner tradeCleanerForMarketMaker;
     private TradeAndOrderCleaner tradeCleanerForKLineRobot;
     private boolean initialized = false;
 
-    public CleanerService(@Autowired PruneConfig pruneConfig) {
+    public CleanerService(@Autowired PruneConfig pruneConfig, @Autowired PartitionService partitionService) {
         this.pruneConfig = pruneConfig;
+        this.partitionService = partitionService;
     }
 
     public void init() {
@@ -73,8 +79,10 @@ public class CleanerService {
     @Scheduled(initialDelay = 5000, fixedDelay = 5000)
     public void clean() {
         init();
-        orderCleanerForAllUser.run();
-        tradeCleanerForAllUser.run();
+        if (!partitionService.isEnabled()) {
+            orderCleanerForAllUser.run();
+            tradeCleanerForAllUser.run();
+        }
         tradeCleanerForMarketMaker.run();
         tradeCleanerForKLineRobot.run();
     }
@@ -1,12 +1,22 @@
 package conflux.dex.service;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.EnumMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
 
@@ -14,43 +24,78 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import conflux.dex.common.BusinessException;
 import conflux.dex.common.BusinessFault;
 import conflux.dex.common.Handler;
+import conflux.dex.common.Metrics;
+import conflux.dex.common.Metrics.LongGauge;
 import conflux.dex.common.Utils;
 import conflux.dex.common.channel.Receiver;
+import conflux.dex.common.channel.Sender;
+import conflux.dex.config.OrderBookSnapshotConfig;
 import conflux.dex.dao.DexDao;
 import conflux.dex.event.Events;
 import conflux.dex.matching.Engine;
+import conflux.dex.matching.FixedPoint;
 import conflux.dex.matching.InstantExchangeEngine;
 import conflux.dex.matching.InstantExchangeLog;
 import conflux.dex.matching.Log;
 import conflux.dex.matching.Order;
 import conflux.dex.matching.OrderBook;
+import conflux.dex.matching.OrderBookSnapshot;
+import conflux.dex.matching.OrderImporter;
 import conflux.dex.matching.PruneRequest;
 import conflux.dex.matching.Signal;
+import conflux.dex.matching.SignalType;
 import conflux.dex.model.Currency;
 import conflux.dex.model.DailyLimitOperation;
 import conflux.dex.model.InstantExchangeProduct;
-import conflux.dex.model.OrderSide;
 import conflux.dex.model.Product;
 import conflux.dex.model.Tick;
 import conflux.dex.service.blockchain.PruneOrderService;
 import conflux.dex.worker.DepthAggregateManager;
-import conflux.dex.worker.DepthPriceLevel;
+import conflux.dex.worker.DepthSnapshot;
 import conflux.dex.worker.InstantExchangeMatchingLogWorker;
 import conflux.dex.worker.InstantExchangeTradeSettlement;
+import conflux.dex.worker.OrderBookFeed;
 import conflux.dex.worker.batch.BatchTradeSettlement;
 import conflux.dex.worker.batch.MatchingLogBatchWorker;
+import conflux.dex.worker.ticker.DefaultTickGranularity;
 import conflux.dex.worker.ticker.Ticker;
 
 @Service
 public class EngineService implements Runnable, Handler<Log> {
 	private static final Logger logger = LoggerFactory.getLogger(EngineService.class);
+	
+	private static final LongGauge importedProductsGauge = Metrics.longGauge(EngineService.class, "import", "products");
+	private static final LongGauge importElapsedGauge = Metrics.longGauge(EngineService.class, "import", "elapsed");
+	private static final Meter importSnapshotMeter = Metrics.meter(EngineService.class, "import", "snapshot");
+	private static final Timer snapshotPerf = Metrics.timer(EngineService.class, "snapshot");
+	private static final Meter snapshotSkippedMeter = Metrics.meter(EngineService.class, "snapshot", "skipped");
 
 	private int handleMatchingLogsBatchSize = 50;
 	private int handleMatchlingLogsBatchSizeMax = 60;
+	private int matchingLogBufferSize = MatchingLogBatchWorker.DEFAULT_BUFFER_SIZE;
+	/**
+	 * In sharded mode, each order book is matched on its own thread.
+	 */
+	private boolean sharded;
+	/**
+	 * Match orders with scaled long price and amount if possible.
+	 */
+	private boolean fixedPoint;
+	private boolean tickWriteBehind;
+	/**
+	 * Number of products to import orders in parallel when engine started.
+	 */
+	private int importParallelism = 4;
+	private int orderBookFeedReplaySize = OrderBookFeed.DEFAULT_REPLAY_SIZE;
 
 	private DexDao dao;
 	private Receiver<Object> receiver;
@@ -61,9 +106,11 @@ public class EngineService implements Runnable, Handler<Log> {
 	public final Map<Integer, MatchingLogBatchWorker> logWorkers = new ConcurrentHashMap<Integer, MatchingLogBatchWorker>();
 	public final Map<Integer, InstantExchangeMatchingLogWorker> instantExchangeLogWorkers = new ConcurrentHashMap<Integer, InstantExchangeMatchingLogWorker>();
 	public final Map<Integer, DepthAggregateManager> depthAggs = new ConcurrentHashMap<Integer, DepthAggregateManager>();
+	public final Map<Integer, OrderBookFeed> orderBookFeeds = new ConcurrentHashMap<Integer, OrderBookFeed>();
 	public final Map<Integer, Ticker> tickers = new ConcurrentHashMap<Integer, Ticker>();
 	private final Map<Integer, OrderBook> orderBooks = new ConcurrentHashMap<Integer, OrderBook>();
 	private final Map<Integer, List<Integer>> instantExchangeMapping = new ConcurrentHashMap<Integer, List<Integer>>();
+	private final Map<Integer, EngineShard> shards = new ConcurrentHashMap<Integer, EngineShard>();
 
 	private PruneOrderService orderPruneWorker;
 
@@ -75,6 +122,8 @@ public class EngineService implements Runnable, Handler<Log> {
 	private Object currentTask;
 	private HealthService healthService;
 	private FeeService feeService;
+	private OrderBookSnapshotConfig snapshotConfig = new OrderBookSnapshotConfig();
+	private Sender<Object> snapshotSender;
 
 	@Autowired
 	public EngineService(DexDao dao, Receiver<Object> receiver, ExecutorService executor) {
@@ -103,6 +152,46 @@ public class EngineService implements Runnable, Handler<Log> {
 		this.handleMatchlingLogsBatchSizeMax = handleMatchlingLogsBatchSizeMax;
 	}
 
+	@Autowired
+	public void setMatchingLogBufferSize(@Value("${engine.log.buffer.size:16384}") int matchingLogBufferSize) {
+		this.matchingLogBufferSize = matchingLogBufferSize;
+	}
+
+	@Autowired
+	public void setSharded(@Value("${engine.shard.enabled:false}") boolean sharded) {
+		this.sharded = sharded;
+	}
+
+	@Autowired
+	public void setFixedPoint(@Value("${engine.fixedpoint.enabled:false}") boolean fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+
+	@Autowired
+	public void setTickWriteBehind(@Value("${engine.tick.writebehind.enabled:false}") boolean tickWriteBehind) {
+		this.tickWriteBehind = tickWriteBehind;
+	}
+	
+	@Autowired
+	public void setImportParallelism(@Value("${engine.import.parallelism:4}") int importParallelism) {
+		this.importParallelism = importParallelism;
+	}
+
+	@Autowired
+	public void setOrderBookFeedReplaySize(@Value("${engine.orderbook.feed.replay.size:4096}") int orderBookFeedReplaySize) {
+		this.orderBookFeedReplaySize = orderBookFeedReplaySize;
+	}
+	
+	@Autowired
+	public void setSnapshotConfig(OrderBookSnapshotConfig snapshotConfig) {
+		this.snapshotConfig = snapshotConfig;
+	}
+
+	@Autowired
+	public void setSnapshotSender(Sender<Object> snapshotSender) {
+		this.snapshotSender = snapshotSender;
+	}
+
 	@Autowired
 	public void setOrderPruneWorker(PruneOrderService orderPruneWorker) {
 		this.orderPruneWorker = orderPruneWorker;
@@ -131,13 +220,41 @@ public class EngineService implements Runnable, Handler<Log> {
 		/** @see #run */
 		this.executor.submit(this);
 		
-		logger.info("initialization completed, products = {}", preloadedProducts.size());
+		logger.info("initialization completed, products = {}, sharded = {}", preloadedProducts.size(), this.sharded);
 	}
 	
 	public List<Product> getPreloadedProducts() {
 		return new ArrayList<>(productMap.values());
 	}
 
+	/**
+	 * Route message to the shard of order book in sharded mode,
+	 * otherwise, handle the message in current thread.
+	 * @param productId
+	 * @param data
+	 */
+	private void route(int productId, Object data) {
+		if (!this.sharded) {
+			this.submit(productId, data);
+			return;
+		}
+		
+		Product product = productMap.get(productId);
+		if (product == null) {
+			logger.error("unexpected data received, cannot find the engine by product id {}", productId);
+		} else if (product instanceof InstantExchangeProduct) {
+			InstantExchangeProduct instantProduct = (InstantExchangeProduct) product;
+			EngineShard baseShard = this.shards.get(instantProduct.getBaseProductId());
+			EngineShard quoteShard = this.shards.get(instantProduct.getQuoteProductId());
+			// deliver to both shards atomically to avoid deadlock
+			synchronized (this.shards) {
+				EngineShard.submit(productId, data, baseShard, quoteShard);
+			}
+		} else {
+			this.shards.get(productId).submit(productId, data);
+		}
+	}
+
 	/**
 	 * Route message to engine by product id.
 	 * @param productId
@@ -152,6 +269,8 @@ public class EngineService implements Runnable, Handler<Log> {
             OrderBook baseOrderBook = this.orderBooks.get(instantProduct.getBaseProductId());
             OrderBook quoteOrderBook = this.orderBooks.get(instantProduct.getQuoteProductId());
 			instantEngine.doWork(data, instantProduct, baseOrderBook, quoteOrderBook);
+		} else if (data instanceof Signal && ((Signal) data).getType() == SignalType.Snapshot) {
+			this.snapshot(productId);
 		} else {
 			this.directEngine.doWork(data, productId, this.orderBooks.get(productId));
 		}
@@ -188,27 +307,34 @@ public class EngineService implements Runnable, Handler<Log> {
 			this.currentTask = data;
 			if (data instanceof Order) {
 				int productId = ((Order)data).getProductId();
-				submit(productId, data);
+				route(productId, data);
 			} else if (data instanceof DailyLimitOperation) {
 				int productId = ((DailyLimitOperation)data).getProductId();
-				submit(productId, data);
+				route(productId, data);
 			} else if (data instanceof Signal) {
 				switch (((Signal) data).getType()) {
 					case OrderImported:
 					case CancelAllOrders:
 						for (int productId : this.logWorkers.keySet()) {
-							this.submit(productId, data);
+							this.route(productId, data);
+						}
+						break;
+					case Snapshot:
+						for (int productId : this.orderBooks.keySet()) {
+							this.route(productId, data);
 						}
 						break;
 					default:
 						break;
 				}
+			} else if (data instanceof OrderImporter) {
+				this.importOrders((OrderImporter) data);
 			} else if (data instanceof PruneRequest) {
                 PruneRequest pruneRequest = (PruneRequest) data;
                 int total = this.productMap.size();
                 int index = 0;
                 for (Product product : this.productMap.values()) { 
-					this.submit(product.getId(), PruneRequest.create(pruneRequest, total, index));
+					this.route(product.getId(), PruneRequest.create(pruneRequest, total, index));
 					index++;
 				}
 			} else {
@@ -218,6 +344,210 @@ public class EngineService implements Runnable, Handler<Log> {
 		}
 	}
 	
+	/**
+	 * Imports orders of all products, and other messages are blocked until completed.
+	 * 
+	 * Order books are independent, so open and cancelling orders of different products are
+	 * imported in parallel. Then, orders of instant exchange products, which depend on two order
+	 * books, are imported in sequence. Orders to place of all products are imported at last in
+	 * order of id, the same as they were submitted, since instant exchange orders may match with
+	 * orders of two products. Finally, OrderImported signal is delivered to all products.
+	 */
+	private void importOrders(OrderImporter importer) {
+		logger.info("import orders started, parallelism = {}", this.importParallelism);
+		
+		long start = System.currentTimeMillis();
+		AtomicInteger importedProducts = new AtomicInteger();
+		importedProductsGauge.setValue(0);
+		
+		ExecutorService importExecutor = Executors.newFixedThreadPool(Math.max(1, this.importParallelism));
+		
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			
+			for (Product product : this.productMap.values()) {
+				if (product instanceof InstantExchangeProduct) {
+					continue;
+				}
+				
+				int productId = product.getId();
+				OrderBook book = this.orderBooks.get(productId);
+				// shards are idle until orders imported, so it's safe to access order books directly
+				Handler<Order> handler = order -> this.directEngine.doWork(order, productId, book);
+				futures.add(importExecutor.submit(() -> {
+					Optional<OrderBookSnapshot> snapshot = this.restoreSnapshot(productId);
+					if (snapshot.isPresent()) {
+						Timestamp since = new Timestamp(snapshot.get().getTimestamp() - this.snapshotConfig.replayMarginMillis);
+						importer.importOrders(productId, since, order -> this.removeImportedOrder(productId, order), handler);
+					} else {
+						importer.importOrders(productId, handler);
+					}
+					
+					importedProductsGauge.setValue(importedProducts.incrementAndGet());
+				}));
+			}
+			
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			
+			// depth may be restored from snapshot without any matching log
+			for (DepthAggregateManager depthAgg : this.depthAggs.values()) {
+				depthAgg.refreshSnapshots();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw BusinessException.internalError("failed to import orders", e);
+		} finally {
+			importExecutor.shutdownNow();
+		}
+		
+		for (Product product : this.productMap.values()) {
+			if (product instanceof InstantExchangeProduct) {
+				importer.importOrders(product.getId(), order -> this.route(product.getId(), order));
+				importedProductsGauge.setValue(importedProducts.incrementAndGet());
+			}
+		}
+		
+		importer.importNewOrders(order -> this.route(order.getProductId(), order));
+		
+		Signal signal = Signal.orderImportedSignal();
+		for (int productId : this.logWorkers.keySet()) {
+			this.route(productId, signal);
+		}
+		
+		long elapsed = System.currentTimeMillis() - start;
+		importElapsedGauge.setValue(elapsed);
+		
+		logger.info("import orders completed, products = {}, elapsed = {} ms", importedProducts.get(), elapsed);
+	}
+	
+	private Path getSnapshotFile(int productId) {
+		return Paths.get(this.snapshotConfig.dir, String.format("orderbook-%d.snapshot", productId));
+	}
+	
+	/**
+	 * Restores order book from snapshot if available, and returns empty if snapshot not found or invalid.
+	 */
+	private Optional<OrderBookSnapshot> restoreSnapshot(int productId) {
+		if (!this.snapshotConfig.enabled) {
+			return Optional.empty();
+		}
+		
+		Path file = this.getSnapshotFile(productId);
+		if (!Files.exists(file)) {
+			return Optional.empty();
+		}
+		
+		OrderBookSnapshot snapshot;
+		try {
+			snapshot = OrderBookSnapshot.read(file);
+		} catch (IOException e) {
+			logger.warn("failed to read order book snapshot, file = {}", file, e);
+			return Optional.empty();
+		}
+		
+		long age = System.currentTimeMillis() - snapshot.getTimestamp();
+		if (snapshot.getProductId() != productId || age > this.snapshotConfig.maxAgeMillis) {
+			logger.info("order book snapshot ignored, file = {}, productId = {}, age = {} ms", file, snapshot.getProductId(), age);
+			return Optional.empty();
+		}
+		
+		// daily limit state is refreshed everyday
+		boolean today = snapshot.getTimestamp() >= DefaultTickGranularity.localToday().toEpochMilli();
+		snapshot.restore(this.orderBooks.get(productId), today);
+		
+		DepthAggregateManager depthAgg = this.depthAggs.get(productId);
+		OrderBookFeed feed = this.orderBookFeeds.get(productId);
+		for (Order order : snapshot.getOrders()) {
+			depthAgg.onTakerOrderOpened(order);
+			feed.onTakerOrderOpened(order);
+		}
+		
+		importSnapshotMeter.mark();
+		logger.info("order book restored from snapshot, productId = {}, orders = {}, age = {} ms", productId, snapshot.getOrders().size(), age);
+		
+		return Optional.of(snapshot);
+	}
+	
+	/**
+	 * Removes stale order restored from snapshot without any matching log.
+	 */
+	private void removeImportedOrder(int productId, Order order) {
+		Optional<Order> removed = this.orderBooks.get(productId).cancelOrder(order.getId(), order.getSide());
+		if (removed.isPresent()) {
+			this.depthAggs.get(productId).onMakerOrderCancelled(removed.get(), false);
+			this.orderBookFeeds.get(productId).onMakerOrderCancelled(removed.get(), false);
+		}
+	}
+	
+	/**
+	 * Request to take snapshot of all order books periodically.
+	 */
+	@Scheduled(initialDelayString = "${engine.snapshot.interval.millis:60000}", fixedDelayString = "${engine.snapshot.interval.millis:60000}")
+	public void requestSnapshot() {
+		if (this.snapshotConfig.enabled && this.snapshotSender != null) {
+			this.snapshotSender.send(Signal.snapshotSignal());
+		}
+	}
+	
+	/**
+	 * Writes ticks changed in memory to database periodically in write-behind mode.
+	 */
+	@Scheduled(initialDelayString = "${engine.tick.flush.interval.millis:1000}", fixedDelayString = "${engine.tick.flush.interval.millis:1000}")
+	public void flushTicks() {
+		if (!this.tickWriteBehind) {
+			return;
+		}
+		
+		for (Ticker ticker : this.tickers.values()) {
+			ticker.flush();
+		}
+	}
+	
+	/**
+	 * Takes snapshot of order book in the matching thread.
+	 * 
+	 * Snapshot is skipped if any matching log not persisted yet, so that orders
+	 * updated after snapshot could be replayed from database when restarted.
+	 */
+	private void snapshot(int productId) {
+		if (!this.isSettled(productId)) {
+			snapshotSkippedMeter.mark();
+			return;
+		}
+		
+		long start = System.currentTimeMillis();
+		
+		try {
+			Files.createDirectories(Paths.get(this.snapshotConfig.dir));
+			OrderBookSnapshot.write(this.orderBooks.get(productId), start, this.getSnapshotFile(productId));
+		} catch (IOException e) {
+			logger.warn("failed to write order book snapshot, productId = {}", productId, e);
+			return;
+		}
+		
+		snapshotPerf.update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+	}
+	
+	private boolean isSettled(int productId) {
+		if (this.logWorkers.get(productId).getPendingCount() > 0) {
+			return false;
+		}
+		
+		// instant exchange orders matched with orders in this order book
+		List<Integer> ids = this.instantExchangeMapping.get(productId);
+		if (ids != null) {
+			for (int id : ids) {
+				InstantExchangeMatchingLogWorker worker = this.instantExchangeLogWorkers.get(id);
+				if (worker.isWorking() || worker.getPendingCount() > 0) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
 	public boolean addEngine(Product product) {
 		if (this.productMap.containsKey(product.getId())) {
 			return false;
@@ -233,26 +563,49 @@ public class EngineService implements Runnable, Handler<Log> {
 	}
 
 	private OrderBook createProduct(Product product) {
-		Currency baseCurrency = this.dao.getCurrency(product.getBaseCurrencyId()).mustGet();
+		Currency baseCurrency = this.dao.getProductCatalog().mustGetCurrency(product.getBaseCurrencyId());
 		OrderBook book = new OrderBook(product.getId(), baseCurrency.getDecimalDigits());
 		book.updateDailyLimitInfo(dao);
 		book.setOpen(!book.isDailyLimit());
+		if (this.fixedPoint) {
+			Optional<FixedPoint> fixedPoint = FixedPoint.create(product.getPricePrecision(), product.getAmountPrecision());
+			if (fixedPoint.isPresent()) {
+				book.setFixedPoint(fixedPoint.get());
+			} else {
+				logger.warn("fixed-point mode not supported for product {}, precision too large", product.getName());
+			}
+		}
 		this.orderBooks.put(product.getId(), book);
 		
 		DepthAggregateManager depthAgg = new DepthAggregateManager(product.getId(), product.getName(), product.getPricePrecision());
 		this.depthAggs.put(product.getId(), depthAgg);
 		
-		Ticker ticker = new Ticker(product.getId(), this.dao);
+		OrderBookFeed feed = new OrderBookFeed(product.getId(), this.orderBookFeedReplaySize);
+		this.orderBookFeeds.put(product.getId(), feed);
+		
+		Ticker ticker = new Ticker(product.getId(), this.dao, this.tickWriteBehind);
 		this.tickers.put(product.getId(), ticker);
 		
-		MatchingLogBatchWorker worker = new MatchingLogBatchWorker(this.executor, product, this.handleMatchingLogsBatchSize, this.handleMatchlingLogsBatchSizeMax);
+		MatchingLogBatchWorker worker = new MatchingLogBatchWorker(this.executor, product, 
+				this.handleMatchingLogsBatchSize, this.handleMatchlingLogsBatchSizeMax, this.matchingLogBufferSize);
+		if (this.healthService != null) {
+			worker.setBackpressureHandler(full -> this.healthService.reportBackpressure(worker.getName(), full));
+		}
 		worker.addBatchHandler(new BatchTradeSettlement(this.dao, ticker, feeService));
 		if (this.orderPruneWorker != null) {
 			worker.addHandler(this.orderPruneWorker);
 		}
 		worker.addHandler(depthAgg);
+		worker.addBatchHandler(logs -> depthAgg.refreshSnapshots());
+		worker.addHandler(feed);
 		this.logWorkers.put(product.getId(), worker);
 		
+		if (this.sharded) {
+			EngineShard shard = new EngineShard(product.getName(), this::submit, this.healthService);
+			this.shards.put(product.getId(), shard);
+			this.executor.submit(shard);
+		}
+		
 		Events.NEW_PRODUCT_ADDED.fire(product);
 		
 		logger.debug("succeed to add engine for product {}", product.getName());
@@ -288,13 +641,15 @@ public class EngineService implements Runnable, Handler<Log> {
 		this.instantExchangeMapping.get(product.getBaseProductId()).add(product.getId());
 		this.instantExchangeMapping.get(product.getQuoteProductId()).add(product.getId());
 		
-		Ticker ticker = new Ticker(product.getId(), this.dao);
+		Ticker ticker = new Ticker(product.getId(), this.dao, this.tickWriteBehind);
 		this.tickers.put(product.getId(), ticker);
 
 		InstantExchangeTradeSettlement tradeSettlement = new InstantExchangeTradeSettlement(this.dao, ticker);
 		InstantExchangeMatchingLogWorker worker = new InstantExchangeMatchingLogWorker(this.executor, tradeSettlement, product);
 		worker.addHandler(this.depthAggs.get(product.getBaseProductId()));
 		worker.addHandler(this.depthAggs.get(product.getQuoteProductId()));
+		worker.addHandler(this.orderBookFeeds.get(product.getBaseProductId()));
+		worker.addHandler(this.orderBookFeeds.get(product.getQuoteProductId()));
 		this.instantExchangeLogWorkers.put(product.getId(), worker);
 		
 		Events.NEW_PRODUCT_ADDED.fire(product);
@@ -303,7 +658,7 @@ public class EngineService implements Runnable, Handler<Log> {
 		
 	}
 	
-	public EnumMap<OrderSide, List<DepthPriceLevel>> getDepth(int productId, int step, int depth) {
+	public DepthSnapshot getDepth(int productId, int step, int depth) {
 		DepthAggregateManager agg = this.depthAggs.get(productId);
 		return agg == null ? null : agg.getLevels(step, depth);
 	}
@@ -323,13 +678,13 @@ public class EngineService implements Runnable, Handler<Log> {
 				List<Integer> ids = this.instantExchangeMapping.get(log.getProductId());
 				if (ids != null) {
 					for (int id : ids) {
-						submit(id, DailyLimitOperation.openTrade(log.getProductId()));
+						route(id, DailyLimitOperation.openTrade(log.getProductId()));
 					}
 				}
 				break;
 			case OrderBookInitialized:
 				for (int productId : this.instantExchangeLogWorkers.keySet()) {
-					submit(productId, Signal.orderBookInitializedSignal(log.getProductId()));
+					route(productId, Signal.orderBookInitializedSignal(log.getProductId()));
 				}
 				break;
 			default:
@@ -342,4 +697,9 @@ public class EngineService implements Runnable, Handler<Log> {
 	public Object getCurrentTask() {
 		return currentTask;
 	}
+	
+	public boolean isSharded() {
+		return sharded;
+	}
+
 }
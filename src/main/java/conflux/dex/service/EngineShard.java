@@ -0,0 +1,169 @@
+package conflux.dex.service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
+
+import conflux.dex.common.Metrics;
+import conflux.dex.common.Metrics.QueueMetric;
+import conflux.dex.common.Utils;
+
+/**
+ * Single-writer matching thread for an order book.
+ *
+ * In sharded mode, each order book has its own queue and thread, so that orders
+ * of different products are matched in parallel. Tasks of instant exchange product
+ * are delivered to both base and quote shards, and executed only when both shards
+ * arrived, so that the base and quote order books are consistent during matching.
+ */
+class EngineShard implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(EngineShard.class);
+
+	static interface TaskHandler {
+		void handle(int productId, Object data);
+	}
+
+	private String name;
+	private TaskHandler engine;
+	private HealthService healthService;
+	private BlockingQueue<Task> queue = new LinkedBlockingQueue<Task>();
+
+	/**
+	 * keep current message(task) in order to debug
+	 */
+	private volatile Object currentTask;
+
+	private QueueMetric queueMetric;
+	private Timer latencyPerf;
+	private Timer handlePerf;
+
+	EngineShard(String name, TaskHandler engine, HealthService healthService) {
+		this.name = name;
+		this.engine = engine;
+		this.healthService = healthService;
+
+		this.queueMetric = Metrics.queue(EngineShard.class, name);
+		this.latencyPerf = Metrics.timer(EngineShard.class, name, "latency");
+		this.handlePerf = Metrics.timer(EngineShard.class, name, "perf");
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPendingCount() {
+		return this.queue.size();
+	}
+
+	public Object getCurrentTask() {
+		return currentTask;
+	}
+
+	public void submit(int productId, Object data) {
+		this.enqueue(new Task(productId, data, null, true));
+	}
+
+	/**
+	 * Submit task that requires order books of two shards, e.g. instant exchange product.
+	 * Caller should submit tasks in the same order for both shards to avoid deadlock.
+	 */
+	static void submit(int productId, Object data, EngineShard owner, EngineShard partner) {
+		if (owner == partner) {
+			owner.submit(productId, data);
+			return;
+		}
+
+		Rendezvous rendezvous = new Rendezvous();
+		owner.enqueue(new Task(productId, data, rendezvous, true));
+		partner.enqueue(new Task(productId, data, rendezvous, false));
+	}
+
+	private void enqueue(Task task) {
+		this.queue.add(task);
+		this.queueMetric.enqueue();
+	}
+
+	@Override
+	public void run() {
+		logger.info("engine shard {} started", this.name);
+
+		while (true) {
+			Task task;
+			try {
+				task = this.queue.take();
+			} catch (InterruptedException e) {
+				logger.warn("engine shard {} interrupted, maybe killed.", this.name);
+				break;
+			}
+
+			this.queueMetric.dequeue();
+			this.currentTask = task.data;
+
+			try {
+				this.handle(task);
+			} catch (InterruptedException e) {
+				logger.warn("engine shard {} interrupted, maybe killed.", this.name);
+				break;
+			} catch (Exception e) {
+				this.healthService.pause(HealthService.PauseSource.Workers, "Exception in engine shard " + this.name);
+				logger.error("Exception occur, shard is {}, task is {}", this.name, Utils.toJson(this.currentTask));
+				logger.error("Handle task fail", e);
+				break;
+			}
+
+			this.currentTask = null;
+		}
+	}
+
+	private void handle(Task task) throws InterruptedException {
+		long start = System.currentTimeMillis();
+
+		if (task.rendezvous == null) {
+			this.engine.handle(task.productId, task.data);
+		} else if (task.owner) {
+			task.rendezvous.arrived.countDown();
+			task.rendezvous.arrived.await();
+			try {
+				this.engine.handle(task.productId, task.data);
+			} finally {
+				task.rendezvous.done.countDown();
+			}
+		} else {
+			// hold on until the owner shard completed the task
+			task.rendezvous.arrived.countDown();
+			task.rendezvous.done.await();
+		}
+
+		long end = System.currentTimeMillis();
+		this.handlePerf.update(end - start, TimeUnit.MILLISECONDS);
+		this.latencyPerf.update(end - task.enqueueTime, TimeUnit.MILLISECONDS);
+	}
+
+	private static class Task {
+		private int productId;
+		private Object data;
+		private Rendezvous rendezvous;
+		private boolean owner;
+		private long enqueueTime = System.currentTimeMillis();
+
+		Task(int productId, Object data, Rendezvous rendezvous, boolean owner) {
+			this.productId = productId;
+			this.data = data;
+			this.rendezvous = rendezvous;
+			this.owner = owner;
+		}
+	}
+
+	private static class Rendezvous {
+		private CountDownLatch arrived = new CountDownLatch(2);
+		private CountDownLatch done = new CountDownLatch(1);
+	}
+
+}
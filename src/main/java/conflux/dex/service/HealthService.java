@@ -3,6 +3,8 @@ package conflux.dex.service;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.PostConstruct;
 
@@ -37,6 +39,8 @@ public class HealthService implements InfluxDBReportable {
 	private DexDao dao;
 	private Optional<PauseSource> pauseSource = Optional.empty();
 	private LinkedList<String> recentErrors = new LinkedList<String>();
+	// workers that blocked the producers due to buffer full
+	private Set<String> backpressures = ConcurrentHashMap.newKeySet();
 	
 	@Autowired
 	public HealthService(DexDao dao) {
@@ -96,6 +100,24 @@ public class HealthService implements InfluxDBReportable {
 		this.recentErrors.clear();
 	}
 	
+	/**
+	 * Report the backpressure signal of bounded worker, e.g. matching logs are not consumed in time
+	 * and the engine is blocked to publish more logs.
+	 */
+	public void reportBackpressure(String worker, boolean backpressured) {
+		if (backpressured) {
+			if (this.backpressures.add(worker)) {
+				logger.warn("backpressure started: worker = {}", worker);
+			}
+		} else if (this.backpressures.remove(worker)) {
+			logger.info("backpressure ended: worker = {}", worker);
+		}
+	}
+	
+	public Set<String> getBackpressures() {
+		return this.backpressures;
+	}
+	
 	@Scheduled(initialDelay = 5000, fixedDelay = 5000)
 	public void checkWorkers() {
 		if (!this.pauseSource.isPresent() && WorkerError.hasUnrecoverableError()) {
@@ -111,7 +133,8 @@ public class HealthService implements InfluxDBReportable {
 		
 		return builder.addField("paused", paused)
 				.addField("reason", reason)
-				.addField("details", details);
+				.addField("details", details)
+				.addField("backpressures", this.backpressures.size());
 	}
 
 }
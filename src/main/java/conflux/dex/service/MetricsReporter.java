@@ -148,7 +148,11 @@ public class MetricsReporter {
 				.addField("deq.m1", queue.getDequeue().getOneMinuteRate())
 				.addField("deq.m5", queue.getDequeue().getFiveMinuteRate())
 				.addField("deq.m15", queue.getDequeue().getFifteenMinuteRate())
-				.addField("deq.mean", queue.getDequeue().getMeanRate());
+				.addField("deq.mean", queue.getDequeue().getMeanRate())
+				.addField("capacity", queue.getCapacity())
+				.addField("fill", queue.getFillRatio())
+				.addField("rej.count", queue.getReject().getCount())
+				.addField("rej.m1", queue.getReject().getOneMinuteRate());
 	}
 
 }
@@ -1,13 +1,19 @@
 package conflux.dex.service;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.LongFunction;
 
 import javax.annotation.PostConstruct;
 
 import conflux.dex.blockchain.TypedOrder;
 import conflux.dex.common.BusinessFault;
+import conflux.dex.common.Handler;
+import conflux.dex.common.Metrics;
+import conflux.dex.matching.OrderImporter;
 import conflux.dex.matching.PruneRequest;
 import conflux.dex.model.User;
 import org.slf4j.Logger;
@@ -20,9 +26,12 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 
+import com.codahale.metrics.Counter;
+
 import conflux.dex.common.BusinessException;
 import conflux.dex.common.channel.Sender;
 import conflux.dex.dao.DexDao;
+import conflux.dex.dao.ProductCatalog;
 import conflux.dex.event.Events;
 import conflux.dex.event.OrderEventArg;
 import conflux.dex.matching.Signal;
@@ -46,6 +55,9 @@ public class OrderService {
 	private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 	
 	private static final int NUM_BATCH_CANCELLATION = 100;
+	private static final int IMPORT_PAGE_SIZE = 1000;
+	
+	private static final Counter importedOrdersCounter = Metrics.counter(OrderService.class, "import", "orders");
 	
 	private DexDao dao;
 	private Sender<Object> orderSender;
@@ -72,78 +84,159 @@ public class OrderService {
 		logger.info("initialization started ...");
 		
 		/*
-		 * In case of too many orders during initialization,
-		 * Administrator shall cancel all orders at first.
+		 * In-completed orders are imported by matching engine in pages, so that
+		 * order books of different products could be rebuilt in parallel, and
+		 * engine will not handle any new order until all orders imported.
 		 * 
-		 * Otherwise, DEX should support to initialize in-completed orders
-		 * before allowing to place new orders. In addition, pagination is
-		 * required to avoid loading too many records for a SQL query.
+		 * Orders placed after that are sent to engine after the importer, so only
+		 * orders up to the current max id are imported to avoid placing twice.
 		 */
-		List<Order> orders = this.dao.listAllOrdersByStatus(OrderStatus.Open);
-		for (Order order : orders) {
-			this.sendUnhandledOrder(order);
-		}
+		long maxOrderId = this.dao.getMaxOrderId();
+		
+		this.orderSender.send(new OrderImporter() {
+			
+			@Override
+			public void importOrders(int productId, Timestamp updatedSince,
+					Handler<conflux.dex.matching.Order> remover, Handler<conflux.dex.matching.Order> handler) {
+				OrderService.this.importOrders(productId, updatedSince, maxOrderId, remover, handler);
+			}
+			
+			@Override
+			public void importNewOrders(Handler<conflux.dex.matching.Order> handler) {
+				OrderService.this.importNewOrders(maxOrderId, handler);
+			}
+			
+		});
 		
-		if (!orders.isEmpty()) {
-			logger.info("continue to open orders: {}", orders.size());
+		logger.info("initialization completed");
+	}
+	
+	private void importOrders(int productId, Timestamp updatedSince, long maxOrderId,
+			Handler<conflux.dex.matching.Order> remover, Handler<conflux.dex.matching.Order> handler) {
+		ProductCatalog.Entry entry = this.dao.getProductCatalog().mustGet(productId);
+		Product product = entry.getProduct();
+		Currency baseCurrency = entry.getBaseCurrency();
+		Currency quoteCurrency = entry.getQuoteCurrency();
+		
+		Handler<Order> placer = order -> handler.handle(
+				conflux.dex.matching.Order.place(order, this.dao, baseCurrency, quoteCurrency));
+		
+		int opened;
+		if (updatedSince == null) {
+			opened = this.loadOrders(maxOrderId, idOffset -> this.dao.listOrdersByStatusAfter(
+					productId, OrderStatus.Open, idOffset, IMPORT_PAGE_SIZE), placer);
+		} else {
+			// Remove stale orders from order book at first, including orders updated after snapshot,
+			// and orders in cancelling status which may be requested to cancel before snapshot.
+			List<Order> openOrders = new ArrayList<Order>();
+			int updated = this.loadOrders(maxOrderId, idOffset -> this.dao.listOrdersUpdatedSince(
+					productId, updatedSince, idOffset, IMPORT_PAGE_SIZE), order -> {
+				remover.handle(conflux.dex.matching.Order.cancel(order));
+				
+				if (order.getStatus() == OrderStatus.Open) {
+					openOrders.add(order);
+				}
+			});
+			
+			this.loadOrders(maxOrderId, idOffset -> this.dao.listOrdersByStatusAfter(
+					productId, OrderStatus.Cancelling, idOffset, IMPORT_PAGE_SIZE),
+					order -> remover.handle(conflux.dex.matching.Order.cancel(order)));
+			
+			for (Order order : openOrders) {
+				placer.handle(order);
+			}
+			
+			opened = openOrders.size();
+			
+			logger.info("orders updated since snapshot, product = {}, updated = {}", product.getName(), updated);
 		}
 		
 		// For orders in canceling status, it should be a limit order.
 		// Matching engine requires the order to exist in order book,
 		// So, just send these orders to engine and then cancel them.
-		orders = this.dao.listAllOrdersByStatus(OrderStatus.Cancelling);
-		for (Order order : orders) {
-			this.sendUnhandledOrder(order);
-		}
-		
-		for (Order order : orders) {
+		List<Order> cancellingOrders = new ArrayList<Order>();
+		int cancelling = this.loadOrders(maxOrderId, idOffset -> this.dao.listOrdersByStatusAfter(
+				productId, OrderStatus.Cancelling, idOffset, IMPORT_PAGE_SIZE), order -> {
+			placer.handle(order);
+			
 			if (order.getType().equals(OrderType.Limit)) {
-				this.orderSender.send(conflux.dex.matching.Order.cancel(order));
+				cancellingOrders.add(order);
 			}
-		}
+		});
 		
-		if (!orders.isEmpty()) {
-			logger.info("continue to cancel orders: {}", orders.size());
+		for (Order order : cancellingOrders) {
+			handler.handle(conflux.dex.matching.Order.cancel(order));
 		}
 		
-		orders = this.dao.listAllOrdersByStatus(OrderStatus.New);
-		for (Order order : orders) {
-			this.sendUnhandledOrder(order);
+		if (opened + cancelling > 0) {
+			logger.info("orders imported, product = {}, open = {}, cancelling = {}",
+					product.getName(), opened, cancelling);
 		}
+	}
+	
+	private void importNewOrders(long maxOrderId, Handler<conflux.dex.matching.Order> handler) {
+		ProductCatalog catalog = this.dao.getProductCatalog();
 		
-		if (!orders.isEmpty()) {
-			logger.info("continue to place orders: {}", orders.size());
-		}
+		int placed = this.loadOrders(maxOrderId, idOffset -> this.dao.listOrdersByStatusAfter(
+				OrderStatus.New, idOffset, IMPORT_PAGE_SIZE), order -> {
+			ProductCatalog.Entry entry = catalog.mustGet(order.getProductId());
+			handler.handle(conflux.dex.matching.Order.place(order, this.dao, entry.getBaseCurrency(), entry.getQuoteCurrency()));
+		});
 		
-		this.orderSender.send(Signal.orderImportedSignal());
+		if (placed > 0) {
+			logger.info("orders imported, new = {}", placed);
+		}
+	}
+	
+	/**
+	 * Loads orders up to the max id in pages by id offset, and returns the number of loaded orders.
+	 */
+	private int loadOrders(long maxOrderId, LongFunction<List<Order>> pageLoader, Handler<Order> handler) {
+		int total = 0;
+		long idOffset = 0;
 		
-		logger.info("initialization completed");
+		while (true) {
+			List<Order> orders = pageLoader.apply(idOffset);
+			
+			for (Order order : orders) {
+				// pages are in order of id
+				if (order.getId() > maxOrderId) {
+					return total;
+				}
+				
+				handler.handle(order);
+				total++;
+				importedOrdersCounter.inc();
+			}
+			
+			if (orders.size() < IMPORT_PAGE_SIZE) {
+				return total;
+			}
+			
+			idOffset = orders.get(orders.size() - 1).getId();
+		}
 	}
 
 	public TypedOrder modelOrder2typed(Order order, String userAddress) {
-		Product product = this.dao.getProduct(order.getProductId()).mustGet();
-		Currency baseCurrency = this.dao.getCurrency(product.getBaseCurrencyId()).mustGet();
-		Currency quoteCurrency = this.dao.getCurrency(product.getQuoteCurrencyId()).mustGet();
-		TypedOrder typedOrder = TypedOrder.from(order, userAddress, baseCurrency, quoteCurrency);
+		ProductCatalog.Entry entry = this.dao.getProductCatalog().mustGet(order.getProductId());
+		TypedOrder typedOrder = TypedOrder.from(order, userAddress, entry.getBaseCurrency(), entry.getQuoteCurrency());
 		return typedOrder;
 	}
 	
-	private void sendUnhandledOrder(Order order) {
-		this.orderSender.send(conflux.dex.matching.Order.place(order, this.dao));
-	}
-	
 	public long placeOrder(Order order) throws BusinessException {
 		long userId = order.getUserId();
-		Product product = this.dao.getProduct(order.getProductId()).mustGet();
+		ProductCatalog catalog = this.dao.getProductCatalog();
+		ProductCatalog.Entry entry = catalog.mustGet(order.getProductId());
+		Product product = entry.getProduct();
 		
-		Currency baseCurrency = this.dao.getCurrency(product.getBaseCurrencyId()).mustGet();
-		Currency quoteCurrency = this.dao.getCurrency(product.getQuoteCurrencyId()).mustGet();
+		Currency baseCurrency = entry.getBaseCurrency();
+		Currency quoteCurrency = entry.getQuoteCurrency();
 		
 		if (product instanceof InstantExchangeProduct) {
-			Product baseProduct = this.dao.getProduct(((InstantExchangeProduct)product).getBaseProductId()).mustGet();
-			Currency mediumCurrency = this.dao.getCurrency(baseProduct.getBaseCurrencyId()).mustGet();
+			ProductCatalog.Entry baseEntry = catalog.mustGet(((InstantExchangeProduct)product).getBaseProductId());
+			Currency mediumCurrency = baseEntry.getBaseCurrency();
 			if (((InstantExchangeProduct)product).isBaseIsBaseSide()) 
-				mediumCurrency = this.dao.getCurrency(baseProduct.getQuoteCurrencyId()).mustGet();
+				mediumCurrency = baseEntry.getQuoteCurrency();
 			Optional<Account> mediumAccount = this.dao.getAccount(userId, baseCurrency.getName());
 			if (!mediumAccount.isPresent()) {
 				Account newMediumAccount = new Account(userId, mediumCurrency.getName(), BigDecimal.ZERO);
@@ -178,6 +271,9 @@ public class OrderService {
 			throw BusinessFault.AccountBalanceNotEnough.rise();
 		}
 		
+		// reject before order persisted if engine is too busy to handle
+		this.orderSender.admit();
+		
 		this.dao.execute(new TransactionCallbackWithoutResult() {
 			
 			@Override
@@ -0,0 +1,293 @@
+package conflux.dex.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+
+import conflux.dex.common.Metrics;
+import conflux.dex.common.Metrics.LongGauge;
+import conflux.dex.dao.ConfigDao;
+import conflux.dex.dao.DexDao;
+import conflux.dex.dao.PartitionDao;
+import conflux.dex.model.TablePartition;
+
+/**
+ * Maintains range partitions of t_order, t_trade and trade map tables, which are partitioned
+ * by RANGE (id) with partitiondb.sql. Since id increases along with time, each partition holds
+ * orders or trades of a period, e.g. one day or one week, which depends on the partition size.
+ *
+ * For each round, it keeps some empty partitions ahead of the max id, so that the "pmax" partition
+ * is always empty when split. Then, it retires the oldest partitions that out of retention, by
+ * archiving trades and related orders, and then dropping the whole partition, instead of deleting
+ * rows in batch as CleanerService does.
+ *
+ * Trade map tables are partitioned by trade id with the same bounds as t_trade, and dropped
+ * along with t_trade. Order partition is dropped only if all orders completed and no trade
+ * refers to them anymore. Unique keys of orders and trades are kept in non-partitioned tables,
+ * and deleted along with the order partition.
+ *
+ * If a few long-resting orders are not completed yet, the partition is kept for them and their
+ * trades, but the other rows are still archived and deleted in batch, so that the following
+ * partitions could be retired as usual. The kept partition is dropped once those orders completed.
+ */
+@Service
+public class PartitionService {
+	private static final Logger logger = LoggerFactory.getLogger(PartitionService.class);
+
+	static final String[] ORDER_TABLES = { "t_order" };
+	// t_trade goes last, so that the partition of t_trade is always dropped after map tables
+	static final String[] TRADE_TABLES = { "t_trade_order_map", "t_trade_user_map", "t_trade" };
+
+	private static final Histogram latencyStat = Metrics.histogram(PartitionService.class, "latency");
+	private static final Counter addedCounter = Metrics.counter(PartitionService.class, "added");
+	private static final Counter droppedCounter = Metrics.counter(PartitionService.class, "dropped");
+	private static final Histogram archivedOrdersStat = Metrics.histogram(PartitionService.class, "archived.orders");
+	private static final Histogram archivedTradesStat = Metrics.histogram(PartitionService.class, "archived.trades");
+	// number of partitions out of retention that could not be dropped, e.g. order not completed.
+	private static final LongGauge orderBlockedGauge = Metrics.longGauge(PartitionService.class, "order.blocked");
+	private static final LongGauge tradeBlockedGauge = Metrics.longGauge(PartitionService.class, "trade.blocked");
+
+	private PartitionDao partitionDao;
+	private DexDao dao;
+
+	private boolean enabled;
+	private long orderPartitionSize = 1_000_000;
+	private long tradePartitionSize = 1_000_000;
+	private int ahead = 2;
+	private int batchSize = 1000;
+
+	@Autowired
+	public PartitionService(PartitionDao partitionDao, DexDao dao) {
+		this.partitionDao = partitionDao;
+		this.dao = dao;
+	}
+
+	@Autowired
+	public void setEnabled(@Value("${partition.enabled:false}") boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Autowired
+	public void setOrderPartitionSize(@Value("${partition.order.size:1000000}") long orderPartitionSize) {
+		this.orderPartitionSize = orderPartitionSize;
+	}
+
+	@Autowired
+	public void setTradePartitionSize(@Value("${partition.trade.size:1000000}") long tradePartitionSize) {
+		this.tradePartitionSize = tradePartitionSize;
+	}
+
+	@Autowired
+	public void setAhead(@Value("${partition.ahead:2}") int ahead) {
+		this.ahead = ahead;
+	}
+
+	@Autowired
+	public void setBatchSize(@Value("${partition.batch.size:1000}") int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Scheduled(initialDelay = 60_000, fixedDelayString = "${partition.interval.millis:600000}")
+	public void maintain() {
+		if (!this.enabled) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+
+		try {
+			int days = this.dao.getIntConfig(ConfigDao.KEY_CLEAN_DAYS_GAP, 180);
+			Timestamp retention = Timestamp.from(Instant.now().minus(Duration.ofDays(days)));
+
+			if (this.addPartitions(TRADE_TABLES, this.tradePartitionSize)) {
+				this.retireTradePartitions(retention);
+			}
+
+			if (this.addPartitions(ORDER_TABLES, this.orderPartitionSize)) {
+				this.retireOrderPartitions(retention);
+			}
+		} catch (Exception e) {
+			logger.error("failed to maintain partitions", e);
+		} finally {
+			latencyStat.update(System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * Returns bounds of partitions to add after the last bound, so that there are
+	 * at least the specified number of empty partitions ahead of the max id.
+	 *
+	 * Bounds are aligned with partition size. If rows already in "pmax", e.g. partition
+	 * not added in time, it only splits once right after the max id.
+	 */
+	static List<Long> nextBounds(long lastBound, long maxId, long size, int ahead) {
+		long current = (maxId + 1) / size + 1;
+		long first = Math.max(lastBound / size + 1, current);
+
+		List<Long> bounds = new ArrayList<Long>();
+		for (long i = first; i <= current + ahead; i++) {
+			bounds.add(i * size);
+		}
+
+		return bounds;
+	}
+
+	/**
+	 * Adds partitions ahead for the specified tables, of which the last table determines the max id.
+	 * Returns false if any table is not partitioned.
+	 */
+	private boolean addPartitions(String[] tables, long size) {
+		String idTable = tables[tables.length - 1];
+		long maxId = this.partitionDao.getMaxId(idTable);
+
+		for (String table : tables) {
+			List<TablePartition> partitions = this.partitionDao.listPartitions(table);
+			if (partitions.isEmpty() || !partitions.get(partitions.size() - 1).isMax()) {
+				logger.warn("table {} is not partitioned by RANGE (id) with {} partition", table, TablePartition.MAX_NAME);
+				return false;
+			}
+
+			long lastBound = partitions.size() > 1 ? partitions.get(partitions.size() - 2).getLessThan() : 0;
+			if (lastBound <= maxId) {
+				logger.warn("rows of table {} already in {} partition, max id = {}, last bound = {}",
+						table, TablePartition.MAX_NAME, maxId, lastBound);
+			}
+
+			for (long bound : nextBounds(lastBound, maxId, size, this.ahead)) {
+				this.partitionDao.splitMaxPartition(table, bound);
+				addedCounter.inc();
+				logger.info("partition added, table = {}, less than {}", table, bound);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Indicates whether the partition is full, and all rows are out of retention.
+	 */
+	private boolean isExpired(String table, TablePartition partition, long maxId, Timestamp retention) {
+		if (partition.isMax() || partition.getLessThan() > maxId) {
+			return false;
+		}
+
+		Timestamp maxCreateTime = this.partitionDao.getMaxCreateTime(table, partition.getName());
+		return maxCreateTime == null || maxCreateTime.before(retention);
+	}
+
+	void retireTradePartitions(Timestamp retention) {
+		String orderArchiveTable = this.dao.getConfig(ConfigDao.KEY_ORDER_ARCHIVE_TABLE).orElse(ConfigDao.KEY_ORDER_ARCHIVE_TABLE);
+		String tradeArchiveTable = this.dao.getConfig(ConfigDao.KEY_TRADE_ARCHIVE_TABLE).orElse(ConfigDao.KEY_TRADE_ARCHIVE_TABLE);
+
+		long maxId = this.partitionDao.getMaxId("t_trade");
+		int blocked = 0;
+
+		for (TablePartition partition : this.partitionDao.listPartitions("t_trade")) {
+			if (!this.isExpired("t_trade", partition, maxId, retention)) {
+				break;
+			}
+
+			// counted before archived, since order status changes only from incompleted to completed
+			int incompleted = this.partitionDao.countTradesOfIncompletedOrders(partition.getName());
+
+			// trades archived first, so that orders of archived trades are all completed and archived
+			int trades = this.partitionDao.archiveTrades(partition.getName(), tradeArchiveTable);
+			int orders = this.partitionDao.archiveOrdersOfTrades(partition.getName(), orderArchiveTable);
+			archivedOrdersStat.update(orders);
+			archivedTradesStat.update(trades);
+
+			if (incompleted == 0) {
+				this.dropPartition(TRADE_TABLES, partition.getName());
+				logger.info("trade partition {} retired, archived orders = {}, archived trades = {}", partition.getName(), orders, trades);
+				continue;
+			}
+
+			// keep the few trades of long-resting orders, and go on with the following partitions
+			int deleted = this.deleteInBatch(limit -> this.partitionDao.listRetiredTradeIds(partition.getName(), tradeArchiveTable, limit),
+					this.partitionDao::deleteTrades);
+			blocked++;
+			logger.warn("trade partition {} not dropped, {} trades of incompleted orders kept, archived orders = {}, deleted trades = {}",
+					partition.getName(), incompleted, orders, deleted);
+		}
+
+		tradeBlockedGauge.setValue(blocked);
+	}
+
+	void retireOrderPartitions(Timestamp retention) {
+		long maxId = this.partitionDao.getMaxId("t_order");
+		int blocked = 0;
+
+		// lower bound of the current partition, which is 0 for the oldest one to cover all previous dropped partitions
+		long lowerBound = 0;
+
+		for (TablePartition partition : this.partitionDao.listPartitions("t_order")) {
+			if (!this.isExpired("t_order", partition, maxId, retention)) {
+				break;
+			}
+
+			int incompleted = this.partitionDao.countIncompletedOrders(partition.getName());
+			if (incompleted == 0 && !this.partitionDao.hasTradeOrderMaps(lowerBound, partition.getLessThan())) {
+				int cancels = this.partitionDao.deleteOrderCancels(lowerBound, partition.getLessThan());
+				int uniqueKeys = this.partitionDao.deleteOrderUniqueKeys(lowerBound, partition.getLessThan());
+				this.dropPartition(ORDER_TABLES, partition.getName());
+				logger.info("order partition {} retired, deleted cancel requests = {}, unique keys = {}",
+						partition.getName(), cancels, uniqueKeys);
+			} else {
+				// keep the few incompleted orders or orders referred by kept trades, and delete the others
+				int deleted = this.deleteInBatch(limit -> this.partitionDao.listRetiredOrderIds(partition.getName(), limit),
+						this.partitionDao::deleteOrders);
+				blocked++;
+				logger.warn("order partition {} not dropped, incompleted orders = {}, or referred by trades, deleted orders = {}",
+						partition.getName(), incompleted, deleted);
+			}
+
+			lowerBound = partition.getLessThan();
+		}
+
+		orderBlockedGauge.setValue(blocked);
+	}
+
+	/**
+	 * Deletes rows by id in batch, like CleanerService does, until no more rows listed.
+	 */
+	private int deleteInBatch(IntFunction<List<Long>> lister, ToIntFunction<List<Long>> deleter) {
+		int deleted = 0;
+		List<Long> ids;
+
+		do {
+			ids = lister.apply(this.batchSize);
+			deleted += deleter.applyAsInt(ids);
+		} while (ids.size() >= this.batchSize);
+
+		return deleted;
+	}
+
+	private void dropPartition(String[] tables, String partition) {
+		for (String table : tables) {
+			// partition may be dropped in previous round that failed halfway
+			if (this.partitionDao.listPartitions(table).stream().anyMatch(p -> p.getName().equals(partition))) {
+				this.partitionDao.dropPartition(table, partition);
+				droppedCounter.inc();
+			}
+		}
+	}
+
+}
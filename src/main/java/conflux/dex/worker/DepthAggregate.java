@@ -3,10 +3,13 @@ package conflux.dex.worker;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import conflux.dex.model.OrderSide;
 
@@ -22,6 +25,10 @@ class DepthAggregate {
 	private int priceScale;
 	private int aggregatePriceScale;
 	private NavigableMap<BigDecimal, DepthPriceLevel> levels;
+	// prices of levels changed since last poll
+	private NavigableSet<BigDecimal> changedPrices;
+	// whether levels changed since last snapshot
+	private volatile boolean snapshotDirty = true;
 	
 	public DepthAggregate(OrderSide side, int priceScale, int aggregateStep) {
 		if (aggregateStep < 0) {
@@ -31,12 +38,26 @@ class DepthAggregate {
 		this.side = side;
 		this.priceScale = priceScale;
 		this.aggregatePriceScale = priceScale - aggregateStep;
-		this.levels = new ConcurrentSkipListMap<BigDecimal, DepthPriceLevel>(side == OrderSide.Buy ? buyComparator : sellComparator);
+		Comparator<BigDecimal> comparator = side == OrderSide.Buy ? buyComparator : sellComparator;
+		this.levels = new ConcurrentSkipListMap<BigDecimal, DepthPriceLevel>(comparator);
+		this.changedPrices = new ConcurrentSkipListSet<BigDecimal>(comparator);
 	}
 	
 	private BigDecimal normalize(BigDecimal price) {
+		// already normalized in most cases
+		if (this.aggregatePriceScale == this.priceScale && price.scale() == this.priceScale) {
+			return price;
+		}
+		
+		return this.normalize(price, 0);
+	}
+	
+	/**
+	 * Normalizes price with coarser precision, which is reduced by the specified step.
+	 */
+	private BigDecimal normalize(BigDecimal price, int step) {
 		RoundingMode mode = this.side == OrderSide.Buy ? RoundingMode.DOWN : RoundingMode.UP;
-		return price.setScale(this.aggregatePriceScale, mode).setScale(this.priceScale);
+		return price.setScale(this.aggregatePriceScale - step, mode).setScale(this.priceScale);
 	}
 	
 	public void add(BigDecimal price, BigDecimal amount) {
@@ -46,6 +67,10 @@ class DepthAggregate {
 		if (level != null) {
 			level.update(amount, 1);
 		}
+		
+		// mark after level updated, so that the update will not be missed by poller
+		this.changedPrices.add(price);
+		this.snapshotDirty = true;
 	}
 	
 	public void remove(BigDecimal price, BigDecimal amount, boolean orderRemoved) {
@@ -57,6 +82,9 @@ class DepthAggregate {
 		if (level.getCount() == 0) {
 			this.levels.remove(price);
 		}
+		
+		this.changedPrices.add(price);
+		this.snapshotDirty = true;
 	}
 	
 	public List<DepthPriceLevel> getLevels(int depth) {
@@ -76,6 +104,125 @@ class DepthAggregate {
 		return levels;
 	}
 	
+	/**
+	 * Returns an immutable copy of the top levels if changed since last call, otherwise null.
+	 */
+	public List<DepthPriceLevel> pollSnapshot(int depth) {
+		if (!this.snapshotDirty) {
+			return null;
+		}
+		
+		// reset before copy, so that any change afterwards will be polled next time
+		this.snapshotDirty = false;
+		
+		return Collections.unmodifiableList(this.getLevels(depth));
+	}
+	
+	/**
+	 * Aggregates levels with coarser precision, which is reduced by the specified step,
+	 * so that it is not required to maintain aggregates for all steps.
+	 */
+	public List<DepthPriceLevel> getLevels(int step, int depth) {
+		if (step == 0) {
+			return this.getLevels(depth);
+		}
+		
+		List<DepthPriceLevel> levels = new ArrayList<DepthPriceLevel>(depth);
+		DepthPriceLevel current = null;
+		
+		// levels in the same coarser level are adjacent in order
+		for (DepthPriceLevel level : this.levels.values()) {
+			level = level.clone();
+			BigDecimal price = this.normalize(level.getPrice(), step);
+			
+			if (current != null && current.getPrice().compareTo(price) == 0) {
+				current.update(level.getAmount(), level.getCount());
+				continue;
+			}
+			
+			if (current != null) {
+				levels.add(current);
+				
+				if (levels.size() >= depth) {
+					return levels;
+				}
+			}
+			
+			current = new DepthPriceLevel(price, level.getAmount(), level.getCount());
+		}
+		
+		if (current != null) {
+			levels.add(current);
+		}
+		
+		return levels;
+	}
+	
+	/**
+	 * Polls the prices of levels changed since last poll in price order.
+	 */
+	public List<BigDecimal> pollChangedPrices() {
+		// only poll the prices changed before, in case of changed too frequently
+		int size = this.changedPrices.size();
+		List<BigDecimal> changed = new ArrayList<BigDecimal>(size);
+		
+		for (int i = 0; i < size; i++) {
+			BigDecimal price = this.changedPrices.pollFirst();
+			if (price == null) {
+				break;
+			}
+			
+			changed.add(price);
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Returns the levels with coarser precision that contain any of the specified
+	 * prices in price order. Removed level is returned with zero amount and count.
+	 */
+	public List<DepthPriceLevel> getChangedLevels(List<BigDecimal> changedPrices, int step) {
+		List<DepthPriceLevel> changed = new ArrayList<DepthPriceLevel>(changedPrices.size());
+		BigDecimal unit = BigDecimal.ONE.scaleByPowerOfTen(step - this.aggregatePriceScale);
+		
+		for (BigDecimal price : changedPrices) {
+			price = this.normalize(price, step);
+			
+			// prices in order, so that duplicated coarser prices are adjacent
+			if (!changed.isEmpty() && changed.get(changed.size() - 1).getPrice().compareTo(price) == 0) {
+				continue;
+			}
+			
+			if (step == 0) {
+				DepthPriceLevel level = this.levels.get(price);
+				changed.add(level == null ? new DepthPriceLevel(price, BigDecimal.ZERO, 0) : level.clone());
+				continue;
+			}
+			
+			// coarser level contains prices in range [price, price + unit) for buy side,
+			// or (price - unit, price] for sell side.
+			BigDecimal edge = this.side == OrderSide.Buy ? price.add(unit) : price.subtract(unit);
+			DepthPriceLevel aggregated = new DepthPriceLevel(price, BigDecimal.ZERO, 0);
+			for (DepthPriceLevel level : this.levels.subMap(edge, false, price, true).values()) {
+				level = level.clone();
+				aggregated.update(level.getAmount(), level.getCount());
+			}
+			
+			changed.add(aggregated);
+		}
+		
+		return changed;
+	}
+	
+	/**
+	 * Polls the levels changed since last poll in price order. Removed level is
+	 * returned with zero amount and count.
+	 */
+	public List<DepthPriceLevel> pollChangedLevels() {
+		return this.getChangedLevels(this.pollChangedPrices(), 0);
+	}
+	
 	private static class PriceComparator implements Comparator<BigDecimal> {
 		private boolean asc;
 		
@@ -7,6 +7,8 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import conflux.dex.common.BusinessFault;
 import conflux.dex.event.Events;
@@ -22,23 +24,44 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 	
 	public static final int DefaultSteps[] = {0, 1, 2, 3, 4, 5};
 	
-	private EnumMap<OrderSide, Map<Integer, DepthAggregate>> aggs;
+	// number of levels in snapshot for each side
+	private static final int SNAPSHOT_DEPTH_STEP0 = 150;
+	private static final int SNAPSHOT_DEPTH = 20;
+	
+	// only step 0 is maintained, and coarser steps are aggregated from step 0 on demand
+	private EnumMap<OrderSide, DepthAggregate> aggs;
+	// map<step, sequence of last depth diff>
+	private Map<Integer, AtomicLong> diffSequences = new HashMap<Integer, AtomicLong>();
+	
+	// immutable top levels of step 0, replaced when refreshed
+	private volatile Snapshot snapshot;
+	// map<step, snapshot of coarser step>, cached until step 0 refreshed
+	private Map<Integer, Snapshot> coarserSnapshots = new ConcurrentHashMap<Integer, Snapshot>();
+	// time in milliseconds of the first change since last snapshot refreshed
+	private AtomicLong pendingTime = new AtomicLong();
+	// time in milliseconds of the first change since last poll, or 0 if unchanged
+	private AtomicLong changedTime = new AtomicLong();
+	// time in milliseconds when orders matched of the log in handling, or 0 if not
+	private long logTime;
 	
 	private int productId;
 	private BestBidOffer Bbo; // for step0 only
 	private boolean takerOrderMatched;
 	
 	public DepthAggregateManager(int productId, String product, int priceScale) {
-		this.aggs = new EnumMap<OrderSide, Map<Integer,DepthAggregate>>(OrderSide.class);
+		this.aggs = new EnumMap<OrderSide, DepthAggregate>(OrderSide.class);
 		
 		for (OrderSide side : OrderSide.values()) {
-			this.aggs.put(side, new HashMap<Integer, DepthAggregate>());
-			
-			for (int step : DefaultSteps) {
-				this.aggs.get(side).put(step, new DepthAggregate(side, priceScale, step));
-			}
+			this.aggs.put(side, new DepthAggregate(side, priceScale, 0));
 		}
 		
+		for (int step : DefaultSteps) {
+			this.diffSequences.put(step, new AtomicLong());
+		}
+		
+		this.snapshot = new Snapshot(0, new DepthSnapshot(0, new EnumMap<OrderSide, List<DepthPriceLevel>>(OrderSide.class)));
+		this.refreshSnapshots();
+		
 		this.productId = productId;
 		this.Bbo = new BestBidOffer(product);
 	}
@@ -64,14 +87,30 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 			this.onTakerOrderCompleted(takerOrder);
 		else 
 			this.onTakerOrderCancelled(takerOrder);
+		
+		this.refreshSnapshots();
 	}
 
+	/**
+	 * Handles log with the time when orders matched, so that the latency of depth published
+	 * includes the time spent before log handled, e.g. persistence.
+	 */
 	@Override
-	public void onOrderMatched(Order takerOrder, Order makerOrder, BigDecimal tradeAmount) {
-		for (DepthAggregate agg : this.aggs.get(makerOrder.getSide()).values()) {
-			agg.remove(makerOrder.getPrice(), tradeAmount, false);
+	public void handle(Log log) {
+		this.logTime = log.getTime();
+		
+		try {
+			LogHandler.super.handle(log);
+		} finally {
+			this.logTime = 0;
 		}
+	}
+
+	@Override
+	public void onOrderMatched(Order takerOrder, Order makerOrder, BigDecimal tradeAmount) {
+		this.aggs.get(makerOrder.getSide()).remove(makerOrder.getPrice(), tradeAmount, false);
 		
+		this.onLevelsChanged();
 		this.takerOrderMatched = true;
 	}
 	
@@ -83,9 +122,9 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 
 	@Override
 	public void onTakerOrderOpened(Order order) {
-		for (DepthAggregate agg : this.aggs.get(order.getSide()).values()) {
-			agg.add(order.getPrice(), order.getAmount());
-		}
+		this.aggs.get(order.getSide()).add(order.getPrice(), order.getAmount());
+		
+		this.onLevelsChanged();
 		
 		if (this.takerOrderMatched) {
 			this.updateBbo();
@@ -93,11 +132,64 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 		}
 	}
 	
+	private void onLevelsChanged() {
+		if (this.pendingTime.get() == 0) {
+			this.pendingTime.compareAndSet(0, this.logTime > 0 ? this.logTime : System.currentTimeMillis());
+		}
+	}
+	
+	/**
+	 * Replaces snapshot if changed, which should be called after a batch of matching
+	 * logs handled. Then, fires DEPTH_CHANGED event only for the first change since
+	 * last poll, so that subscriber could coalesce the following changes.
+	 */
+	public synchronized void refreshSnapshots() {
+		long time = this.pendingTime.getAndSet(0);
+		// read before levels, so that changes not in levels will be in the following diffs
+		long sequence = this.diffSequences.get(0).get();
+		
+		EnumMap<OrderSide, List<DepthPriceLevel>> levels = null;
+		
+		for (OrderSide side : OrderSide.values()) {
+			List<DepthPriceLevel> sideLevels = this.aggs.get(side).pollSnapshot(SNAPSHOT_DEPTH_STEP0);
+			if (sideLevels == null) {
+				continue;
+			}
+			
+			if (levels == null) {
+				levels = new EnumMap<OrderSide, List<DepthPriceLevel>>(this.snapshot.depth.getLevels());
+			}
+			
+			levels.put(side, sideLevels);
+		}
+		
+		if (levels != null) {
+			this.snapshot = new Snapshot(this.snapshot.version + 1, new DepthSnapshot(sequence, levels));
+		}
+		
+		// changes may have been refreshed in the previous call
+		if (time > 0 && this.changedTime.get() == 0 && this.changedTime.compareAndSet(0, time)) {
+			Events.DEPTH_CHANGED.fire(this);
+		}
+	}
+	
+	/**
+	 * Returns the time in milliseconds when levels first changed since last poll,
+	 * or 0 if not changed. Changes afterwards will fire DEPTH_CHANGED event again.
+	 */
+	public long pollChangedTime() {
+		return this.changedTime.getAndSet(0);
+	}
+	
+	public int getProductId() {
+		return productId;
+	}
+	
 	private void updateBbo() {
 		this.Bbo.setQuoteTime(Instant.now());
 		
 		// bid
-		List<DepthPriceLevel> levels = this.aggs.get(OrderSide.Buy).get(0).getLevels(1);
+		List<DepthPriceLevel> levels = this.aggs.get(OrderSide.Buy).getLevels(1);
 		if (levels.isEmpty()) {
 			this.Bbo.setBid(null);
 			this.Bbo.setBidAmount(null);
@@ -109,7 +201,7 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 		}
 		
 		// ask
-		levels = this.aggs.get(OrderSide.Sell).get(0).getLevels(1);
+		levels = this.aggs.get(OrderSide.Sell).getLevels(1);
 		if (levels.isEmpty()) {
 			this.Bbo.setAsk(null);
 			this.Bbo.setAskAmount(null);
@@ -125,9 +217,9 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 
 	@Override
 	public void onMakerOrderCompleted(Order order) {
-		for (DepthAggregate agg : this.aggs.get(order.getSide()).values()) {
-			agg.remove(order.getPrice(), BigDecimal.ZERO, true);
-		}
+		this.aggs.get(order.getSide()).remove(order.getPrice(), BigDecimal.ZERO, true);
+		
+		this.onLevelsChanged();
 	}
 
 	@Override
@@ -138,10 +230,9 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 
 	@Override
 	public void onMakerOrderCancelled(Order order, boolean byAdmin) {
-		for (DepthAggregate agg : this.aggs.get(order.getSide()).values()) {
-			agg.remove(order.getPrice(), order.getAmount(), true);
-		}
+		this.aggs.get(order.getSide()).remove(order.getPrice(), order.getAmount(), true);
 		
+		this.onLevelsChanged();
 		this.updateBbo();
 	}
 	
@@ -156,16 +247,96 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 		}
 	}
 	
-	public EnumMap<OrderSide, List<DepthPriceLevel>> getLevels(int step, int depth) {
+	/**
+	 * Returns the immutable snapshot of top levels, which is shared by all readers.
+	 * Snapshot of coarser step is aggregated from step 0 only once for each version.
+	 */
+	public DepthSnapshot getSnapshot(int step) {
+		Snapshot current = this.snapshot;
+		if (step == 0) {
+			return current.depth;
+		}
+		
+		AtomicLong diffSequence = this.diffSequences.get(step);
+		if (diffSequence == null) {
+			return null;
+		}
+		
+		Snapshot cached = this.coarserSnapshots.get(step);
+		if (cached != null && cached.version == current.version) {
+			return cached.depth;
+		}
+		
+		// read before levels, so that changes not in levels will be in the following diffs
+		long sequence = diffSequence.get();
+		
+		// levels may be newer than the version, and will be aggregated again once refreshed
+		EnumMap<OrderSide, List<DepthPriceLevel>> levels = new EnumMap<OrderSide, List<DepthPriceLevel>>(OrderSide.class);
+		for (OrderSide side : OrderSide.values()) {
+			levels.put(side, Collections.unmodifiableList(this.aggs.get(side).getLevels(step, SNAPSHOT_DEPTH)));
+		}
+		
+		DepthSnapshot depth = new DepthSnapshot(sequence, levels);
+		this.coarserSnapshots.put(step, new Snapshot(current.version, depth));
+		
+		return depth;
+	}
+	
+	public DepthSnapshot getLevels(int step, int depth) {
+		DepthSnapshot snapshot = this.getSnapshot(step);
+		
+		boolean truncated = false;
+		if (snapshot != null) {
+			for (List<DepthPriceLevel> levels : snapshot.getLevels().values()) {
+				truncated |= levels.size() > depth;
+			}
+			
+			if (!truncated) {
+				return snapshot;
+			}
+		}
+		
 		EnumMap<OrderSide, List<DepthPriceLevel>> result = new EnumMap<OrderSide, List<DepthPriceLevel>>(OrderSide.class);
 		
 		for (OrderSide side : OrderSide.values()) {
-			DepthAggregate agg = this.aggs.get(side).get(step);
-			List<DepthPriceLevel> levels = agg == null ? Collections.emptyList() : agg.getLevels(depth);
-			result.put(side, levels);
+			List<DepthPriceLevel> levels = snapshot == null ? Collections.emptyList() : snapshot.getLevels().get(side);
+			result.put(side, levels.size() > depth ? levels.subList(0, depth) : levels);
 		}
 		
-		return result;
+		return new DepthSnapshot(snapshot == null ? 0 : snapshot.getSequence(), result);
+	}
+	
+	/**
+	 * Polls the price levels changed since last poll for all steps, and returns
+	 * map<step, diff> for changed steps only. The sequence of returned diff increases
+	 * by 1 for each step, so that client could detect any missed diff.
+	 */
+	public Map<Integer, DepthDiff> pollDiffs() {
+		// not blocked by snapshot refreshing in the log handling thread
+		synchronized (this.diffSequences) {
+			EnumMap<OrderSide, List<BigDecimal>> changedPrices = new EnumMap<OrderSide, List<BigDecimal>>(OrderSide.class);
+			for (OrderSide side : OrderSide.values()) {
+				changedPrices.put(side, this.aggs.get(side).pollChangedPrices());
+			}
+			
+			if (changedPrices.values().stream().allMatch(List::isEmpty)) {
+				return Collections.emptyMap();
+			}
+			
+			Map<Integer, DepthDiff> diffs = new HashMap<Integer, DepthDiff>();
+			
+			for (int step : DefaultSteps) {
+				EnumMap<OrderSide, List<DepthPriceLevel>> levels = new EnumMap<OrderSide, List<DepthPriceLevel>>(OrderSide.class);
+				
+				for (OrderSide side : OrderSide.values()) {
+					levels.put(side, this.aggs.get(side).getChangedLevels(changedPrices.get(side), step));
+				}
+				
+				diffs.put(step, new DepthDiff(this.diffSequences.get(step).incrementAndGet(), levels));
+			}
+			
+			return diffs;
+		}
 	}
 
 	@Override
@@ -173,5 +344,15 @@ public class DepthAggregateManager implements LogHandler, InstantExchangeLogHand
 
 	@Override
 	public void onInstantExchangeOrderPended(Order order) {}
+	
+	private static class Snapshot {
+		final long version;
+		final DepthSnapshot depth;
+		
+		Snapshot(long version, DepthSnapshot depth) {
+			this.version = version;
+			this.depth = depth;
+		}
+	}
 
 }
@@ -0,0 +1,38 @@
+package conflux.dex.worker;
+
+import java.util.EnumMap;
+import java.util.List;
+
+import conflux.dex.model.OrderSide;
+
+/**
+ * Price levels changed since the previous diff. Level with zero count
+ * indicates that the price level has been removed.
+ *
+ * Levels are absolute values, so it is safe to apply a diff that already
+ * included in depth snapshot, see {@link DepthSnapshot#getSequence()}.
+ */
+public class DepthDiff {
+	/**
+	 * Increased by 1 for each diff of the same product and step.
+	 */
+	private long sequence;
+	/**
+	 * Changed price levels of both sides.
+	 */
+	private EnumMap<OrderSide, List<DepthPriceLevel>> levels;
+	
+	public DepthDiff(long sequence, EnumMap<OrderSide, List<DepthPriceLevel>> levels) {
+		this.sequence = sequence;
+		this.levels = levels;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public EnumMap<OrderSide, List<DepthPriceLevel>> getLevels() {
+		return levels;
+	}
+	
+}
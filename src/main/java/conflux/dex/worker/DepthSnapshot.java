@@ -0,0 +1,44 @@
+package conflux.dex.worker;
+
+import java.util.EnumMap;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+
+import conflux.dex.model.OrderSide;
+
+/**
+ * Top price levels of both sides, along with the sequence of depth diff
+ * that the levels are consistent with.
+ *
+ * To maintain depth with diffs, client should subscribe the diff topic at first,
+ * and then get the full depth. Diffs with sequence less than or equal to the
+ * sequence of full depth should be dropped, and the following diffs applied in
+ * order of sequence.
+ */
+public class DepthSnapshot {
+	/**
+	 * Sequence of the last depth diff of the same product and step,
+	 * whose changes are all included in the levels.
+	 */
+	private long sequence;
+	/**
+	 * Price levels of both sides, which are serialized as "Buy" and "Sell" fields.
+	 */
+	private EnumMap<OrderSide, List<DepthPriceLevel>> levels;
+	
+	public DepthSnapshot(long sequence, EnumMap<OrderSide, List<DepthPriceLevel>> levels) {
+		this.sequence = sequence;
+		this.levels = levels;
+	}
+	
+	public long getSequence() {
+		return sequence;
+	}
+	
+	@JsonAnyGetter
+	public EnumMap<OrderSide, List<DepthPriceLevel>> getLevels() {
+		return levels;
+	}
+	
+}
@@ -0,0 +1,105 @@
+package conflux.dex.worker;
+
+import java.math.BigDecimal;
+
+import conflux.dex.model.OrderSide;
+
+/**
+ * Order-by-order change of an order book, so that client could rebuild
+ * the order book with order id from a snapshot and the following events.
+ */
+public class OrderBookEvent {
+
+	public enum Type {
+		/**
+		 * Order added into order book with the remaining amount.
+		 */
+		Open,
+		/**
+		 * Order removed from order book with the remaining amount.
+		 */
+		Cancel,
+		/**
+		 * Maker order filled with the trade amount, and removed if no amount remained.
+		 */
+		Match,
+	}
+
+	/**
+	 * Start time of the feed, which changes when server restarted and sequence reset.
+	 */
+	private long epoch;
+	/**
+	 * Increased by 1 for each event of the same product in the same epoch.
+	 */
+	private long sequence;
+	private int productId;
+	private Type type;
+	/**
+	 * Id of order in order book, which is the maker order for Match event.
+	 */
+	private long orderId;
+	/**
+	 * Id of taker order for Match event, otherwise 0.
+	 */
+	private long takerOrderId;
+	private OrderSide side;
+	private BigDecimal price;
+	private BigDecimal amount;
+	private long timestamp;
+
+	public OrderBookEvent(long epoch, long sequence, int productId, Type type, long orderId, long takerOrderId,
+			OrderSide side, BigDecimal price, BigDecimal amount, long timestamp) {
+		this.epoch = epoch;
+		this.sequence = sequence;
+		this.productId = productId;
+		this.type = type;
+		this.orderId = orderId;
+		this.takerOrderId = takerOrderId;
+		this.side = side;
+		this.price = price;
+		this.amount = amount;
+		this.timestamp = timestamp;
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public long getOrderId() {
+		return orderId;
+	}
+
+	public long getTakerOrderId() {
+		return takerOrderId;
+	}
+
+	public OrderSide getSide() {
+		return side;
+	}
+
+	public BigDecimal getPrice() {
+		return price;
+	}
+
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+}
@@ -0,0 +1,278 @@
+package conflux.dex.worker;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import conflux.dex.common.BusinessFault;
+import conflux.dex.common.Handler;
+import conflux.dex.event.Events;
+import conflux.dex.matching.InstantExchangeLogHandler;
+import conflux.dex.matching.Log;
+import conflux.dex.matching.LogHandler;
+import conflux.dex.matching.Order;
+import conflux.dex.model.InstantExchangeProduct;
+import conflux.dex.model.OrderSide;
+
+/**
+ * Order-by-order (L3) feed of an order book, which converts matching logs into
+ * events with sequence, and fires ORDER_BOOK_CHANGED event for each of them.
+ *
+ * Open orders and recent events are maintained, so that subscriber could
+ * replay missed events since a sequence, or re-sync with a full snapshot.
+ *
+ * Sequence starts from 0 whenever server restarted, so events are tagged with
+ * the epoch of feed (start time), and replay requires the same epoch as well.
+ */
+public class OrderBookFeed implements LogHandler, InstantExchangeLogHandler {
+
+	public static final int DEFAULT_REPLAY_SIZE = 4096;
+
+	private int productId;
+	private int replaySize;
+	private long epoch;
+
+	private long sequence;
+	// map<orderId, order> in order of time when opened
+	private Map<Long, OpenOrder> orders = new LinkedHashMap<Long, OpenOrder>();
+	// recent events for replay, bounded by replaySize
+	private ArrayDeque<OrderBookEvent> events = new ArrayDeque<OrderBookEvent>();
+
+	public OrderBookFeed(int productId) {
+		this(productId, DEFAULT_REPLAY_SIZE);
+	}
+
+	public OrderBookFeed(int productId, int replaySize) {
+		this(productId, replaySize, System.currentTimeMillis());
+	}
+
+	public OrderBookFeed(int productId, int replaySize, long epoch) {
+		this.productId = productId;
+		this.replaySize = Math.max(0, replaySize);
+		this.epoch = epoch;
+	}
+
+	public int getProductId() {
+		return productId;
+	}
+
+	public long getEpoch() {
+		return epoch;
+	}
+
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	@Override
+	public void onInstantExchangeOrderMatched(InstantExchangeProduct product, Order takerOrder, List<Log> quoteLogs, List<Log> baseLogs) {
+		if (quoteLogs == null || baseLogs == null) {
+			return;
+		}
+
+		List<Log> logs;
+		if (this.productId == product.getBaseProductId())
+			logs = baseLogs;
+		else if (this.productId == product.getQuoteProductId())
+			logs = quoteLogs;
+		else
+			throw BusinessFault.OrderProductNotMatch.rise();
+
+		for (Log log : logs) {
+			this.handle(log);
+		}
+	}
+
+	@Override
+	public void onInstantExchangePendingOrderCancelled(Order order) {}
+
+	@Override
+	public void onInstantExchangeOrderPended(Order order) {}
+
+	@Override
+	public synchronized void onOrderMatched(Order takerOrder, Order makerOrder, BigDecimal tradeAmount) {
+		// maker order in log may be updated by matching thread, so track the remaining amount here
+		OpenOrder order = this.orders.get(makerOrder.getId());
+		if (order == null) {
+			return;
+		}
+
+		order.amount = order.amount.subtract(tradeAmount);
+		if (order.amount.signum() <= 0) {
+			this.orders.remove(makerOrder.getId());
+		}
+
+		this.append(OrderBookEvent.Type.Match, makerOrder.getId(), takerOrder.getId(), order.side, order.price, tradeAmount);
+	}
+
+	@Override
+	public void onOrderPended(Order takerOrder, Order makerOrder) {
+		// maker order moved out of order book until daily limit opened
+		if (makerOrder != null) {
+			this.remove(makerOrder);
+		}
+	}
+
+	@Override
+	public synchronized void onTakerOrderOpened(Order order) {
+		if (this.orders.containsKey(order.getId())) {
+			return;
+		}
+
+		this.orders.put(order.getId(), new OpenOrder(order.getSide(), order.getPrice(), order.getAmount()));
+		this.append(OrderBookEvent.Type.Open, order.getId(), 0, order.getSide(), order.getPrice(), order.getAmount());
+	}
+
+	@Override
+	public synchronized void onMakerOrderCompleted(Order order) {
+		// removed when filled in Match event
+		this.orders.remove(order.getId());
+	}
+
+	@Override
+	public void onTakerOrderCompleted(Order order) {}
+
+	@Override
+	public void onMakerOrderCancelled(Order order, boolean byAdmin) {
+		this.remove(order);
+	}
+
+	@Override
+	public void onPendingOrderCancelled(Order order) {}
+
+	@Override
+	public void onTakerOrderCancelled(Order order) {}
+
+	private synchronized void remove(Order order) {
+		OpenOrder removed = this.orders.remove(order.getId());
+		if (removed != null) {
+			this.append(OrderBookEvent.Type.Cancel, order.getId(), 0, removed.side, removed.price, removed.amount);
+		}
+	}
+
+	private void append(OrderBookEvent.Type type, long orderId, long takerOrderId, OrderSide side, BigDecimal price, BigDecimal amount) {
+		this.sequence++;
+		OrderBookEvent event = new OrderBookEvent(this.epoch, this.sequence, this.productId, type, orderId, takerOrderId,
+				side, price, amount, System.currentTimeMillis());
+
+		if (this.replaySize > 0) {
+			if (this.events.size() >= this.replaySize) {
+				this.events.pollFirst();
+			}
+
+			this.events.addLast(event);
+		}
+
+		// fired in lock, so that events are delivered in sequence
+		Events.ORDER_BOOK_CHANGED.fire(event);
+	}
+
+	/**
+	 * Synchronizes with the current order book, and then the handler is called in lock,
+	 * so that no event will be fired until the handler returns. This allows subscriber
+	 * to register for the following events without any gap or duplication.
+	 *
+	 * Events after the specified sequence are replayed if in the same epoch and still
+	 * available, otherwise a full snapshot is returned.
+	 *
+	 * @param epoch epoch of the last event received.
+	 * @param since sequence of the last event received, or negative for snapshot.
+	 */
+	public synchronized void sync(long epoch, long since, Handler<Sync> handler) {
+		long first = this.events.isEmpty() ? this.sequence + 1 : this.events.peekFirst().getSequence();
+
+		if (epoch == this.epoch && since >= 0 && since <= this.sequence && since + 1 >= first) {
+			List<OrderBookEvent> replayed = new ArrayList<OrderBookEvent>();
+			for (OrderBookEvent event : this.events) {
+				if (event.getSequence() > since) {
+					replayed.add(event);
+				}
+			}
+
+			handler.handle(new Sync(this.epoch, this.sequence, null, replayed));
+		} else {
+			handler.handle(new Sync(this.epoch, this.sequence, this.snapshot(), null));
+		}
+	}
+
+	private List<OrderBookEvent> snapshot() {
+		long now = System.currentTimeMillis();
+
+		List<OrderBookEvent> snapshot = new ArrayList<OrderBookEvent>(this.orders.size());
+		for (Map.Entry<Long, OpenOrder> entry : this.orders.entrySet()) {
+			OpenOrder order = entry.getValue();
+			snapshot.add(new OrderBookEvent(this.epoch, this.sequence, this.productId, OrderBookEvent.Type.Open, entry.getKey(), 0,
+					order.side, order.price, order.amount, now));
+		}
+
+		// best price first, and then in time priority (stable sort)
+		snapshot.sort(Comparator.comparing(OrderBookEvent::getSide).thenComparing((e1, e2) -> e1.getSide() == OrderSide.Buy
+				? e2.getPrice().compareTo(e1.getPrice())
+				: e1.getPrice().compareTo(e2.getPrice())));
+
+		return snapshot;
+	}
+
+	private static class OpenOrder {
+		OrderSide side;
+		BigDecimal price;
+		BigDecimal amount;
+
+		OpenOrder(OrderSide side, BigDecimal price, BigDecimal amount) {
+			this.side = side;
+			this.price = price;
+			this.amount = amount;
+		}
+	}
+
+	/**
+	 * Initial message for subscriber, either a full snapshot of open orders or
+	 * the replayed events, after which events start from sequence + 1.
+	 */
+	public static class Sync {
+		/**
+		 * Epoch of feed, which should be specified along with sequence to replay.
+		 */
+		private long epoch;
+		/**
+		 * Sequence of the last event included.
+		 */
+		private long sequence;
+		/**
+		 * Open orders as Open events, or null if replayed.
+		 */
+		private List<OrderBookEvent> orders;
+		/**
+		 * Replayed events, or null if snapshot.
+		 */
+		private List<OrderBookEvent> events;
+
+		public Sync(long epoch, long sequence, List<OrderBookEvent> orders, List<OrderBookEvent> events) {
+			this.epoch = epoch;
+			this.sequence = sequence;
+			this.orders = orders;
+			this.events = events;
+		}
+
+		public long getEpoch() {
+			return epoch;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public List<OrderBookEvent> getOrders() {
+			return orders;
+		}
+
+		public List<OrderBookEvent> getEvents() {
+			return events;
+		}
+	}
+
+}
@@ -20,6 +20,14 @@ public class BatchTradeSettlement implements Handler<List<Log>> {
 	private static Histogram statTrades = Metrics.histogram(BatchTradeSettlement.class, "latency", "trades");
 	private static Histogram statNonTrades = Metrics.histogram(BatchTradeSettlement.class, "latency", "nonTrades");
 	
+	// latency of batched statements to settle trades
+	static Histogram statOrders = Metrics.histogram(BatchTradeSettlement.class, "latency", "trades.orders");
+	static Histogram statTradesInsert = Metrics.histogram(BatchTradeSettlement.class, "latency", "trades.insert");
+	static Histogram statTradeMaps = Metrics.histogram(BatchTradeSettlement.class, "latency", "trades.maps");
+	static Histogram statBalances = Metrics.histogram(BatchTradeSettlement.class, "latency", "trades.balances");
+	// number of trades settled in a batch
+	static Histogram statBatchTrades = Metrics.histogram(BatchTradeSettlement.class, "batch", "trades");
+	
 	private DexDao dao;
 	private Ticker ticker;
 	FeeService feeService;
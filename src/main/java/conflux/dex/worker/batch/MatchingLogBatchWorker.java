@@ -1,95 +1,204 @@
 package conflux.dex.worker.batch;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 
 import conflux.dex.common.Event;
 import conflux.dex.common.Handler;
 import conflux.dex.common.Metrics;
-import conflux.dex.common.worker.AsyncWorker;
+import conflux.dex.common.Metrics.QueueMetric;
+import conflux.dex.common.worker.RingBuffer;
 import conflux.dex.event.Events;
 import conflux.dex.matching.Log;
 import conflux.dex.matching.LogType;
+import conflux.dex.matching.PruneLog;
 import conflux.dex.model.Product;
 
 /**
  * Sequentially handle order matching logs in batch.
- * 
- * Compared to handle order matching log one by one, handling in batch will help to 
+ *
+ * Compared to handle order matching log one by one, handling in batch will help to
  * improve the performance of database operations in following ways:
  * 1) Reduce the number of database transactions, which is time consuming in case of high trade TPS.
  * 2) Aggregate balance changes for the same user.
  * 3) Aggregate tick changes and update only once.
+ *
+ * Matching logs are copied by engine into pre-allocated log slots of a bounded ring buffer,
+ * and handlers read them in order. Once the buffer is full, engine will be blocked until any
+ * batch handled (backpressure).
+ *
+ * Note, both the batch list and logs (including orders in log) are reused once handled,
+ * so handlers should copy what they need to keep after handled, see {@link Log#copy()}.
  */
-public class MatchingLogBatchWorker extends AsyncWorker<Log> {
-	
+public class MatchingLogBatchWorker implements Runnable {
+
 	private static Logger logger = LoggerFactory.getLogger(MatchingLogBatchWorker.class);
-	
+
+	public static final int DEFAULT_BUFFER_SIZE = 16384;
+
 	private static Histogram statBatchTotal = Metrics.histogram(MatchingLogBatchWorker.class, "batch", "total");
 	private static Histogram statBatchTrades = Metrics.histogram(MatchingLogBatchWorker.class, "batch", "trades");
-	
+	private static QueueMetric queueMetric = Metrics.queue(MatchingLogBatchWorker.class);
+	private static Timer handleDataPerf = Metrics.timer(MatchingLogBatchWorker.class, "perf");
+
+	private ExecutorService executor;
+	private String name;
 	private int batchSize;
 	private int batchSizeMax;
 	private Event<List<Log>> event = new Event<List<Log>>();
 
+	private RingBuffer<Slot> buffer;
+	private List<Log> batch;
+	private AtomicBoolean working = new AtomicBoolean();
+
 	public MatchingLogBatchWorker(ExecutorService executor, Product product, int batchSize, int batchSizeMax) {
-		super(executor, "MatchingLogBatchWorker-" + product.getName());
-		
+		this(executor, product, batchSize, batchSizeMax, DEFAULT_BUFFER_SIZE);
+	}
+
+	public MatchingLogBatchWorker(ExecutorService executor, Product product, int batchSize, int batchSizeMax, int bufferSize) {
 		if (batchSize > batchSizeMax) {
 			throw new IllegalArgumentException("batchSize should be <= batchSizeMax");
 		}
-		
+
+		if (batchSizeMax > bufferSize) {
+			throw new IllegalArgumentException("batchSizeMax should be <= bufferSize");
+		}
+
+		this.executor = executor;
+		this.name = "MatchingLogBatchWorker-" + product.getName();
 		this.batchSize = batchSize;
 		this.batchSizeMax = batchSizeMax;
-		
-		this.setQueueMetric(Metrics.queue(MatchingLogBatchWorker.class));
-		this.setHandleDataPerf(Metrics.timer(MatchingLogBatchWorker.class, "perf"));
+		this.buffer = new RingBuffer<Slot>(bufferSize, Slot::new);
+		this.batch = new ArrayList<Log>(batchSizeMax);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getPendingCount() {
+		return this.buffer.size();
+	}
+
+	public boolean isWorking() {
+		return this.working.get();
 	}
-	
+
+	public boolean isBackpressured() {
+		return this.buffer.isBackpressured();
+	}
+
+	/**
+	 * Set handler to receive notification when the buffer becomes full (true) or available again (false).
+	 */
+	public void setBackpressureHandler(Handler<Boolean> handler) {
+		this.buffer.setBackpressureHandler(handler);
+	}
+
+	/**
+	 * Submit matching log to handle asynchronously, and blocks if buffer is full.
+	 * 
+	 * The log is copied into a pre-allocated slot, so caller could reuse the log
+	 * and orders once returned.
+	 */
+	public void submit(Log log) {
+		publish(this.buffer, log);
+		queueMetric.enqueue();
+
+		if (this.working.compareAndSet(false, true)) {
+			this.executor.submit(this);
+		}
+	}
+
 	@Override
-	protected int doWork(ConcurrentLinkedDeque<Log> queue) {
-		LinkedList<Log> logs = getLogs(queue, this.batchSize, this.batchSizeMax);
-		statBatchTotal.update(logs.size());
-		statBatchTrades.update(logs.stream().filter(l -> l.getType() == LogType.OrderMatched).count());
-		
+	public void run() {
+		long start = System.currentTimeMillis();
+
+		int handledCount = this.doWork();
+
+		handleDataPerf.update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+
+		if (handledCount > 0) {
+			queueMetric.dequeue(handledCount);
+		}
+
+		// check buffer again in case of any log published before working flag cleared
+		this.working.set(false);
+		if (!this.buffer.isEmpty() && this.working.compareAndSet(false, true)) {
+			this.executor.submit(this);
+		}
+	}
+
+	private int doWork() {
+		long next = getLogs(this.buffer, this.batchSize, this.batchSizeMax, this.batch);
+		if (this.batch.isEmpty()) {
+			return 0;
+		}
+
+		statBatchTotal.update(this.batch.size());
+		statBatchTrades.update(countTrades(this.batch));
+
 		try {
-			this.event.fire(logs);
-			return logs.size();
+			this.event.fire(this.batch);
+			this.buffer.release(next);
+			return this.batch.size();
 		} catch (Exception e) {
 			logger.error("failed to handle matching logs in batch", e);
-			
-			while (!logs.isEmpty()) {
-				queue.addFirst(logs.removeLast());
-			}
 
+			// logs not released, and will be handled again
 			Events.WORKER_ERROR.fire(String.format("failed to handle matching logs in batch: %s", e.getMessage()));
-			
+
 			return 0;
+		} finally {
+			this.batch.clear();
 		}
 	}
-	
-	static LinkedList<Log> getLogs(ConcurrentLinkedDeque<Log> queue, int batchSize, int batchSizeMax) {
-		LinkedList<Log> logs = new LinkedList<Log>();
-		
-		for (int i = 0; i < batchSize && !queue.isEmpty(); i++) {
-			logs.add(queue.removeFirst());
+
+	private static int countTrades(List<Log> logs) {
+		int count = 0;
+
+		for (Log log : logs) {
+			if (log.getType() == LogType.OrderMatched) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	static void publish(RingBuffer<Slot> buffer, Log log) {
+		long sequence = buffer.claim();
+		buffer.getClaimed(sequence).set(log);
+		buffer.publish(sequence);
+	}
+
+	/**
+	 * Reads logs of a batch from buffer without release, and returns the next sequence to read.
+	 */
+	static long getLogs(RingBuffer<Slot> buffer, int batchSize, int batchSizeMax, List<Log> logs) {
+		long sequence = buffer.getConsumed();
+
+		for (int i = 0; i < batchSize && buffer.isPublished(sequence); i++) {
+			logs.add(buffer.get(sequence++).get());
 		}
-		
+
 		// handle more logs in the same match
-		while (!isSealed(logs.getLast()) && logs.size() < batchSizeMax && !queue.isEmpty()) {
-			logs.add(queue.removeFirst());
+		while (!logs.isEmpty() && !isSealed(logs.get(logs.size() - 1)) && logs.size() < batchSizeMax && buffer.isPublished(sequence)) {
+			logs.add(buffer.get(sequence++).get());
 		}
-		
-		return logs;
+
+		return sequence;
 	}
-	
+
 	private static boolean isSealed(Log log) {
 		switch (log.getType()) {
 		case OrderMatched:
@@ -99,11 +208,11 @@ public class MatchingLogBatchWorker extends AsyncWorker<Log> {
 			return true;
 		}
 	}
-	
+
 	public void addBatchHandler(Handler<List<Log>> handler) {
 		this.event.addHandler(handler);
 	}
-	
+
 	public void addHandler(Handler<Log> handler) {
 		this.event.addHandler(logs -> {
 			for (Log log : logs) {
@@ -112,4 +221,26 @@ public class MatchingLogBatchWorker extends AsyncWorker<Log> {
 		});
 	}
 
+	/**
+	 * Pre-allocated slot of ring buffer, which holds a copy of matching log.
+	 */
+	static class Slot {
+		private Log log = Log.newSlot();
+		// prune log is not reused by engine, and referred directly
+		private Log current;
+
+		void set(Log log) {
+			if (log instanceof PruneLog) {
+				this.current = log;
+			} else {
+				this.log.copyFrom(log);
+				this.current = this.log;
+			}
+		}
+
+		Log get() {
+			return this.current;
+		}
+	}
+
 }
@@ -3,6 +3,7 @@ package conflux.dex.worker.batch;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -24,6 +25,7 @@ import conflux.dex.model.OrderSide;
 import conflux.dex.model.OrderType;
 import conflux.dex.model.Tick;
 import conflux.dex.model.Trade;
+import conflux.dex.model.UserTradeMap;
 import conflux.dex.service.FeeService;
 import conflux.dex.worker.TradeDetails;
 import conflux.dex.worker.ticker.Ticker;
@@ -171,8 +173,8 @@ class SettlementAggregator implements LogHandler {
 		this.updateOrderFilledChanges(takerOrder.getId(), tradeAmount, tradeFunds);
 		this.updateOrderFilledChanges(makerOrder.getId(), tradeAmount, tradeFunds);
 		
-		// add trade
-		this.trades.add(new TradeDetails(trade, takerOrder, makerOrder));
+		// add trade, and orders in log are reused once handled
+		this.trades.add(new TradeDetails(trade, takerOrder.clone(), makerOrder.clone()));
 		
 		// update tick
 		if (this.aggregatedTick == null) {
@@ -221,39 +223,69 @@ class SettlementAggregator implements LogHandler {
 	
 	public void persist(TransactionStatus status, DexDao dao, Ticker ticker) {
 		// update filled amount and funds for both taker and maker orders
-		for (Map.Entry<Long, BigDecimal> entry : this.orderFilledAmountChanges.entrySet()) {
-			BigDecimal filledFunds = this.orderFilledFundsChanges.get(entry.getKey());
-			dao.fillOrder(entry.getKey(), entry.getValue(), filledFunds);
-		}
+		long startTime = System.currentTimeMillis();
+		dao.fillOrders(this.orderFilledAmountChanges, this.orderFilledFundsChanges);
+		BatchTradeSettlement.statOrders.update(System.currentTimeMillis() - startTime);
 		
 		// Add trade after order update to avoid deadlock, because trade
 		// use order id as foreign key, which acquires shared read lock.
-		for (TradeDetails details : this.trades) {
-			Trade trade = details.getTrade();
-			dao.addTrade(trade);
+		long lastTradeId = 0;
+		if (!this.trades.isEmpty()) {
+			List<Trade> trades = new ArrayList<Trade>(this.trades.size());
+			for (TradeDetails details : this.trades) {
+				trades.add(details.getTrade());
+			}
 			
-			Order takerOrder = details.getTakerOrder();
-			Order makerOrder = details.getMakerOrder();
-			dao.addTradeOrderMap(takerOrder.getId(), trade.getId());
-			dao.addTradeOrderMap(makerOrder.getId(), trade.getId());
+			startTime = System.currentTimeMillis();
+			dao.addTrades(trades);
+			BatchTradeSettlement.statTradesInsert.update(System.currentTimeMillis() - startTime);
 			
-			dao.addTradeUserMap(takerOrder.getUserId(), trade.getProductId(), trade.getCreateTime(), trade.getId());
-			if (takerOrder.getUserId() != makerOrder.getUserId()) {
-				dao.addTradeUserMap(makerOrder.getUserId(), trade.getProductId(), trade.getCreateTime(), trade.getId());
+			for (Trade trade : trades) {
+				lastTradeId = Math.max(lastTradeId, trade.getId());
 			}
+			
+			startTime = System.currentTimeMillis();
+			dao.addTradeOrderMaps(trades);
+			dao.addTradeUserMaps(this.getTradeUserMaps());
+			BatchTradeSettlement.statTradeMaps.update(System.currentTimeMillis() - startTime);
+			
+			BatchTradeSettlement.statBatchTrades.update(trades.size());
 		}
 		
 		// update tick
 		if (this.aggregatedTick != null) {
-			ticker.update(this.aggregatedTick, dao);
+			ticker.update(this.aggregatedTick, dao, lastTradeId);
 		}
 		
 		// Update account.hold and account.available for taker, maker and fee owner.
 		// Note, update balances at last to reduce the database write lock time among different products.
 		// E.g. both BTC-USDT and ETH-USDT will update the same USDT account.
-		for (Map.Entry<Long, BigDecimal> entry : this.balanceHoldChanges.entrySet()) {
-			AccountService.mustUpdateAccountBalance(logger, dao, entry.getKey(), entry.getValue(), this.balanceAvailableChanges.get(entry.getKey()));
+		startTime = System.currentTimeMillis();
+		AccountService.mustUpdateAccountBalances(logger, dao, this.balanceHoldChanges, this.balanceAvailableChanges);
+		BatchTradeSettlement.statBalances.update(System.currentTimeMillis() - startTime);
+	}
+	
+	private List<UserTradeMap> getTradeUserMaps() {
+		List<UserTradeMap> maps = new ArrayList<UserTradeMap>(this.trades.size() * 2);
+		
+		for (TradeDetails details : this.trades) {
+			Trade trade = details.getTrade();
+			maps.add(newTradeUserMap(details.getTakerOrder().getUserId(), trade));
+			if (details.getTakerOrder().getUserId() != details.getMakerOrder().getUserId()) {
+				maps.add(newTradeUserMap(details.getMakerOrder().getUserId(), trade));
+			}
 		}
+		
+		return maps;
+	}
+	
+	private static UserTradeMap newTradeUserMap(long userId, Trade trade) {
+		UserTradeMap map = new UserTradeMap();
+		map.setUserId(userId);
+		map.setProductId(trade.getProductId());
+		map.setCreateTime(trade.getCreateTime());
+		map.setTradeId(trade.getId());
+		return map;
 	}
 	
 	public void fires() {
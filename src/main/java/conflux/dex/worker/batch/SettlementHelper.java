@@ -33,6 +33,7 @@ class SettlementHelper implements LogHandler {
 	
 	private DexDao dao;
 	
+	// copies of orders to fire events, since orders in log are reused once handled
 	private List<Order> statusChangedOrders = new ArrayList<Order>();
 	private List<Order> cancelledOrders = new ArrayList<Order>();
 	private List<Order> filledOrders = new ArrayList<Order>();
@@ -65,7 +66,7 @@ class SettlementHelper implements LogHandler {
 		if (takerOrder != null) {
 			if (this.dao.updateOrderStatus(takerOrder.getId(), OrderStatus.New, OrderStatus.Pending)
 					|| this.dao.updateOrderStatus(takerOrder.getId(), OrderStatus.Open, OrderStatus.Pending)) {
-				this.statusChangedOrders.add(takerOrder);
+				this.statusChangedOrders.add(takerOrder.clone());
 			} else {
 				assertOrderStatus("taker order pended but failed to change status from New|Open to Pending",
 						takerOrder.getId(), OrderStatus.Cancelling);
@@ -74,7 +75,7 @@ class SettlementHelper implements LogHandler {
 		
 		if (makerOrder != null) {
 			if (this.dao.updateOrderStatus(makerOrder.getId(), OrderStatus.Open, OrderStatus.Pending)) {
-				this.statusChangedOrders.add(makerOrder);
+				this.statusChangedOrders.add(makerOrder.clone());
 			} else {
 				assertOrderStatus("maker order pended but failed to change status from Open to Pending",
 						makerOrder.getId(), OrderStatus.Cancelling);
@@ -86,7 +87,7 @@ class SettlementHelper implements LogHandler {
 	public void onTakerOrderOpened(Order order) {
 		// try to open an order
 		if (this.dao.updateOrderStatus(order.getId(), OrderStatus.New, OrderStatus.Open)) {
-			this.statusChangedOrders.add(order);
+			this.statusChangedOrders.add(order.clone());
 			return;
 		}
 		
@@ -106,16 +107,18 @@ class SettlementHelper implements LogHandler {
 		}
 		
 		this.dao.addOrderPruneRecord(order.getTimestamp(), order.getId());
-		this.filledOrders.add(order);
-		this.statusChangedOrders.add(order);
+		Order copy = order.clone();
+		this.filledOrders.add(copy);
+		this.statusChangedOrders.add(copy);
 	}
 
 	@Override
 	public void onTakerOrderCompleted(Order order) {
 		this.mustUpdateOrderStatus("taker order completed", order.getId(), OrderStatus.New, OrderStatus.Filled);
 		this.dao.addOrderPruneRecord(order.getTimestamp(), order.getId());
-		this.filledOrders.add(order);
-		this.statusChangedOrders.add(order);
+		Order copy = order.clone();
+		this.filledOrders.add(copy);
+		this.statusChangedOrders.add(copy);
 	}
 
 	@Override
@@ -141,8 +144,9 @@ class SettlementHelper implements LogHandler {
 			this.dao.addOrderPruneRecord(order.getTimestamp(), order.getId());
 		}
 		
-		this.cancelledOrders.add(order);
-		this.statusChangedOrders.add(order);
+		Order copy = order.clone();
+		this.cancelledOrders.add(copy);
+		this.statusChangedOrders.add(copy);
 	}
 
 	@Override
@@ -182,7 +186,8 @@ class SettlementHelper implements LogHandler {
 	@Override
 	public void onTakerOrderCancelled(Order order) {
 		this.mustUpdateOrderStatus("taker order cancelled", order.getId(), OrderStatus.New, OrderStatus.Cancelled);
-		this.statusChangedOrders.add(order);
+		Order copy = order.clone();
+		this.statusChangedOrders.add(copy);
 		
 		// If taker order never matched, just update status in database,
 		// and need not to settle on-chain.
@@ -194,7 +199,7 @@ class SettlementHelper implements LogHandler {
 		this.dao.mustAddCancelOrderRequest(request);
 		
 		this.dao.addOrderPruneRecord(order.getTimestamp(), order.getId());
-		this.cancelledOrders.add(order);
+		this.cancelledOrders.add(copy);
 	}
 	
 	public void persist(TransactionStatus status, List<Log> logs) {
@@ -3,19 +3,47 @@ package conflux.dex.worker.ticker;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.codahale.metrics.Histogram;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableMap;
+
+import conflux.dex.common.Metrics;
+import conflux.dex.dao.ConfigDao;
+import conflux.dex.dao.DexDao;
 import conflux.dex.dao.TickDao;
 import conflux.dex.event.Events;
 import conflux.dex.model.Tick;
 import conflux.dex.model.Trade;
 
+/**
+ * Ticker updates ticks of all granularities for trades.
+ *
+ * In write-behind mode, ticks are only updated in memory along with trade settlement,
+ * and flushed to database periodically in batch, together with the id of last trade
+ * reflected in ticks. If process crashed, ticks are recovered from trades after that id.
+ */
 public class Ticker {
+	private static final Logger logger = LoggerFactory.getLogger(Ticker.class);
+	
+	private static final int RECOVER_BATCH_SIZE = 1000;
+	
+	private static final Histogram flushSizeStat = Metrics.histogram(Ticker.class, "flush", "size");
+	private static final Histogram flushLatencyStat = Metrics.histogram(Ticker.class, "flush", "latency");
+	
 	public static final TickGranularity DEFAULT_GRANULARITIES[] = new TickGranularity[] {
 		DefaultTickGranularity.Minute,
 		TickGranularity.ofMinutes(5),
@@ -31,19 +59,43 @@ public class Ticker {
 			= Arrays.stream(DEFAULT_GRANULARITIES)
 			.collect(ImmutableMap.toImmutableMap(TickGranularity::getValue, Functions.identity()));
 
+	private int productId;
 	private TickDao dao;
 	private Map<TickGranularity, Tick> lastTicks = new HashMap<TickGranularity, Tick>();
 	private TickerWindow last24HoursTickerWindow;
 	
+	// write-behind mode
+	private DexDao writeBehindDao;
+	// changed ticks to flush, map<granularity, map<createTime, tick>>
+	private final Object pendingLock = new Object();
+	private Map<Integer, Map<Long, Tick>> pendingTicks = new HashMap<Integer, Map<Long, Tick>>();
+	private long pendingLastTradeId;
+	// flush by only one thread at a time
+	private final Object flushLock = new Object();
+	
 	public Ticker(int productId, TickDao dao) {
 		this(productId, dao, DEFAULT_GRANULARITIES);
 	}
 	
+	/**
+	 * Creates ticker in write-behind mode if specified, and recovers ticks from trades
+	 * that not flushed yet.
+	 */
+	public Ticker(int productId, DexDao dao, boolean writeBehind) {
+		this(productId, dao, DEFAULT_GRANULARITIES);
+		
+		if (writeBehind) {
+			this.writeBehindDao = dao;
+			this.recover();
+		}
+	}
+	
 	public Ticker(int productId, TickDao dao, TickGranularity granularities[]) {
 		if (granularities == null || granularities.length == 0) {
 			throw new IllegalArgumentException("granularities is null or empty");
 		}
 		
+		this.productId = productId;
 		this.dao = dao;
 		
 		for (TickGranularity granularity : granularities) {
@@ -58,29 +110,169 @@ public class Ticker {
 		this.last24HoursTickerWindow = new TickerWindow(productId, dao, 60*24, DefaultTickGranularity.Minute);
 	}
 
+	public boolean isWriteBehind() {
+		return this.writeBehindDao != null;
+	}
+	
 	public void update(Trade trade) {
 		this.update(trade, this.dao);
 	}
 	
 	public void update(Trade trade, TickDao tx) {
+		Map<TickGranularity, Tick> changed = new HashMap<TickGranularity, Tick>();
+		
 		for (Map.Entry<TickGranularity, Tick> entry : this.lastTicks.entrySet()) {
-			this.handle(tx, trade, entry.getKey(), entry.getValue());
+			this.handle(tx, trade, entry.getKey(), entry.getValue(), changed);
 		}
+		
+		this.enqueue(changed, trade.getId());
 	}
 	
 	public void update(Tick tick, TickDao tx) {
+		this.update(tick, tx, 0);
+	}
+	
+	/**
+	 * Updates with ticks aggregated from trades, whose max id is lastTradeId.
+	 */
+	public void update(Tick tick, TickDao tx, long lastTradeId) {
+		Map<TickGranularity, Tick> changed = new HashMap<TickGranularity, Tick>();
+		
 		for (Map.Entry<TickGranularity, Tick> entry : this.lastTicks.entrySet()) {
-			this.handle(dao, tick, entry.getKey(), entry.getValue());
+			this.handle(tx, tick, entry.getKey(), entry.getValue(), changed);
+		}
+		
+		this.enqueue(changed, lastTradeId);
+	}
+	
+	private void enqueue(Map<TickGranularity, Tick> changed, long lastTradeId) {
+		if (changed.isEmpty()) {
+			return;
+		}
+		
+		// flush only after trades committed
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				
+				@Override
+				public void afterCommit() {
+					enqueueCommitted(changed, lastTradeId);
+				}
+				
+			});
+		} else {
+			this.enqueueCommitted(changed, lastTradeId);
+		}
+	}
+	
+	private void enqueueCommitted(Map<TickGranularity, Tick> changed, long lastTradeId) {
+		// ticks of all granularities for the same trades are enqueued atomically
+		synchronized (this.pendingLock) {
+			for (Tick tick : changed.values()) {
+				this.pendingTicks.computeIfAbsent(tick.getGranularity(), g -> new HashMap<Long, Tick>())
+					.put(tick.getCreateTime().getTime(), tick);
+			}
+			
+			this.pendingLastTradeId = Math.max(this.pendingLastTradeId, lastTradeId);
+		}
+	}
+	
+	/**
+	 * Writes the changed ticks in write-behind mode to database in batch.
+	 */
+	public void flush() {
+		if (this.writeBehindDao == null) {
+			return;
+		}
+		
+		synchronized (this.flushLock) {
+			List<Tick> ticks = new ArrayList<Tick>();
+			long lastTradeId;
+			
+			synchronized (this.pendingLock) {
+				for (Map<Long, Tick> granularityTicks : this.pendingTicks.values()) {
+					ticks.addAll(granularityTicks.values());
+				}
+				
+				this.pendingTicks.clear();
+				lastTradeId = this.pendingLastTradeId;
+			}
+			
+			if (ticks.isEmpty()) {
+				return;
+			}
+			
+			long start = System.currentTimeMillis();
+			
+			try {
+				this.writeBehindDao.execute(new TransactionCallbackWithoutResult() {
+					
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						writeBehindDao.upsertTicks(ticks);
+						writeBehindDao.setConfig(ConfigDao.KEY_TICK_LAST_TRADE_ID + productId, String.valueOf(lastTradeId));
+					}
+					
+				});
+			} catch (RuntimeException e) {
+				logger.error("failed to flush ticks, productId = {}, ticks = {}", this.productId, ticks.size(), e);
+				
+				// enqueue again unless changed since then
+				synchronized (this.pendingLock) {
+					for (Tick tick : ticks) {
+						this.pendingTicks.computeIfAbsent(tick.getGranularity(), g -> new HashMap<Long, Tick>())
+							.putIfAbsent(tick.getCreateTime().getTime(), tick);
+					}
+				}
+				
+				return;
+			}
+			
+			flushLatencyStat.update(System.currentTimeMillis() - start);
+			flushSizeStat.update(ticks.size());
+		}
+	}
+	
+	/**
+	 * Replays trades after the last one that flushed, which is the latest trade
+	 * if never flushed, since ticks were updated along with trades.
+	 */
+	private void recover() {
+		Optional<String> lastTradeId = this.writeBehindDao.getConfig(ConfigDao.KEY_TICK_LAST_TRADE_ID + this.productId);
+		if (!lastTradeId.isPresent()) {
+			List<Trade> trades = this.writeBehindDao.listRecentTrades(this.productId, 0, 1);
+			this.pendingLastTradeId = trades.isEmpty() ? 0 : trades.get(0).getId();
+			return;
+		}
+		
+		long idOffset = Long.parseLong(lastTradeId.get());
+		this.pendingLastTradeId = idOffset;
+		
+		int recovered = 0;
+		List<Trade> trades;
+		
+		do {
+			trades = this.writeBehindDao.listTradesAfter(this.productId, idOffset, RECOVER_BATCH_SIZE);
+			for (Trade trade : trades) {
+				this.update(trade);
+				idOffset = trade.getId();
+			}
+			
+			recovered += trades.size();
+		} while (trades.size() == RECOVER_BATCH_SIZE);
+		
+		if (recovered > 0) {
+			logger.info("ticks recovered from trades, productId = {}, trades = {}", this.productId, recovered);
 		}
 	}
 
-	private void handle(TickDao dao, Trade trade, TickGranularity granularity, Tick lastTick) {
+	private void handle(TickDao dao, Trade trade, TickGranularity granularity, Tick lastTick, Map<TickGranularity, Tick> changed) {
 		Instant lastTickInstant = lastTick.getCreateTime().toInstant();
 		Instant tickInstant = granularity.truncate(trade.getCreateTime().toInstant());
 		
 		if (lastTickInstant.equals(tickInstant)) {
 			lastTick.update(trade);
-			dao.updateTick(lastTick);
+			this.persist(dao, lastTick, false, granularity, changed);
 			Events.TICK_CHANGED.fire(lastTick.clone());
 			if (granularity == DefaultTickGranularity.Minute) {
 				this.last24HoursTickerWindow.update(trade);
@@ -88,7 +280,7 @@ public class Ticker {
 		} else {
 			Tick newTick = Tick.open(trade.getProductId(), granularity.getValue(), trade.getPrice(), trade.getAmount(), tickInstant);
 			setOpenPrice(lastTick, newTick, trade.getPrice());
-			dao.addTick(newTick);
+			this.persist(dao, newTick, true, granularity, changed);
 			this.lastTicks.replace(granularity, lastTick, newTick);
 			Events.TICK_CHANGED.fire(newTick.clone());
 			if (granularity == DefaultTickGranularity.Minute) {
@@ -97,6 +289,19 @@ public class Ticker {
 		}
 	}
 
+	/**
+	 * Writes tick to database immediately, or collects a copy of it to flush later in write-behind mode.
+	 */
+	private void persist(TickDao dao, Tick tick, boolean added, TickGranularity granularity, Map<TickGranularity, Tick> changed) {
+		if (this.writeBehindDao != null) {
+			changed.put(granularity, tick.clone());
+		} else if (added) {
+			dao.addTick(tick);
+		} else {
+			dao.updateTick(tick);
+		}
+	}
+
 	private void setOpenPrice(Tick lastTick, Tick newTick, BigDecimal price) {
 		BigDecimal close = lastTick.getClose();
 		if (close == null) {
@@ -106,13 +311,13 @@ public class Ticker {
 		}
 	}
 
-	private void handle(TickDao dao, Tick tick, TickGranularity granularity, Tick lastTick) {
+	private void handle(TickDao dao, Tick tick, TickGranularity granularity, Tick lastTick, Map<TickGranularity, Tick> changed) {
 		Instant lastTickInstant = lastTick.getCreateTime().toInstant();
 		Instant tickInstant = granularity.truncate(tick.getCreateTime().toInstant());
 		
 		if (lastTickInstant.equals(tickInstant)) {
 			lastTick.update(tick);
-			dao.updateTick(lastTick);
+			this.persist(dao, lastTick, false, granularity, changed);
 			Events.TICK_CHANGED.fire(lastTick.clone());
 			if (granularity == DefaultTickGranularity.Minute) {
 				this.last24HoursTickerWindow.update(tick);
@@ -123,7 +328,7 @@ public class Ticker {
 			newTick.setGranularity(granularity.getValue());
 			newTick.setCreateTime(Timestamp.from(tickInstant));
 			newTick.setUpdateTime(newTick.getCreateTime());
-			dao.addTick(newTick);
+			this.persist(dao, newTick, true, granularity, changed);
 			this.lastTicks.replace(granularity, lastTick, newTick);
 			Events.TICK_CHANGED.fire(newTick.clone());
 			if (granularity == DefaultTickGranularity.Minute) {
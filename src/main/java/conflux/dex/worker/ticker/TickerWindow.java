@@ -5,337 +5,461 @@ import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 
 import conflux.dex.dao.TickDao;
 import conflux.dex.model.Tick;
 import conflux.dex.model.Trade;
 
+/**
+ * Rolling time window of minute ticks, e.g. last 24 hours.
+ *
+ * Ticks are stored in a circular buffer of per-tick values, and the highest/lowest
+ * prices are tracked by monotonic deques, so that the window could be moved in O(1)
+ * amortized time. Aggregated tick is only created when read, and cached until changed.
+ */
 public class TickerWindow {
+	// Initial capacity of circular buffer if not able to derive from timeout.
+	private static final int DEFAULT_CAPACITY = 64;
+
 	// Timeout to eliminate the out of date ticks from time window.
-	private Duration timeout;
-	
-	// All ticks in the time window.
-	private Deque<Tick> ticks = new LinkedList<Tick>();
-	
-	// Price queues to record the highest/lowest prices in the time window.
-	// Once any tick eliminated from the time window, we must update the 
-	// aggregated tick info for the new highest/lowest prices in queue.
-	private PriceQueue highPrices = new PriceQueue(true);
-	private PriceQueue lowPrices = new PriceQueue(false);
-	
-	// Use atomic object to support concurrency:
-	// 1) update trade in sequence;
-	// 2) read from external request;
-	private AtomicReference<Tick> aggregate = new AtomicReference<Tick>();
+	private long timeoutMillis;
+
+	// Circular buffer of ticks in the time window, from head with size.
+	private long[] times;
+	private BigDecimal[] opens;
+	private BigDecimal[] highs;
+	private BigDecimal[] lows;
+	private BigDecimal[] closes;
+	private BigDecimal[] baseVolumes;
+	private BigDecimal[] quoteVolumes;
+	private int[] counts;
+	private int head;
+	private int size;
+	// Sequence of the tick at head, which increases by 1 for each tick added.
+	private long headSeq;
+
+	// Deques to record the highest/lowest prices in the time window.
+	private PriceDeque highPrices = new PriceDeque(true);
+	private PriceDeque lowPrices = new PriceDeque(false);
+
+	// Close price of the last removed tick, which is the Open price of time window
+	// if no tick at the start time.
+	private BigDecimal lastRemovedClose;
+
+	// Aggregated values of all ticks in the time window.
+	private int productId;
+	private int granularity;
+	private BigDecimal baseVolume;
+	private BigDecimal quoteVolume;
+	private int count;
+	private long createTime;
+	private long updateTime;
+
 	// Used to avoid updating time window every time when user request aggregated tick info.
 	// Generally, if no trade for a short/long time that exceeds one minute, we must update
 	// the time window before getting the aggregated tick info.
-	private Instant lastTickTime;
-	
+	// Long.MIN_VALUE if no tick added yet.
+	private long lastTickTime = Long.MIN_VALUE;
+
+	// Aggregated tick created when read, and reset once changed.
+	private Tick aggregate;
+
 	public TickerWindow() {
 		this(Duration.ofDays(1));
 	}
-	
+
 	public TickerWindow(Duration timeout) {
-		this.timeout = timeout;
+		this.timeoutMillis = timeout.toMillis();
+
+		// both the start and end minutes are included
+		long minutes = timeout.toMinutes() + 1;
+		this.allocate(minutes > 0 && minutes < Integer.MAX_VALUE ? (int) minutes : DEFAULT_CAPACITY);
 	}
-	
+
 	public TickerWindow(int productId, TickDao dao, int limit, TickGranularity granularity) {
-		this.timeout = Duration.ofDays(1);
-		
+		this(Duration.ofDays(1));
+
 		Instant endTime = granularity.truncate(Instant.now());
-		
+
 		// in case of tick missed for the minute of oneDayBefore.
-		Timestamp oneDayBefore = Timestamp.from(endTime.minus(this.timeout));
+		Timestamp oneDayBefore = Timestamp.from(endTime.minusMillis(this.timeoutMillis));
 		List<Tick> ticks = dao.listTicks(productId, granularity.getValue(), oneDayBefore, 1);
 		if (!ticks.isEmpty()) {
 			this.move(ticks.get(0));
 		}
-		
+
 		// initialize with ticks in last 24 hours
 		ticks = dao.listTicks(productId, granularity.getValue(), oneDayBefore, Timestamp.from(endTime));
 		for (Tick tick : ticks) {
 			this.move(tick);
 		}
 	}
-	
-	public List<Tick> getTicks() {
-		return new ArrayList<Tick>(this.ticks);
+
+	private void allocate(int capacity) {
+		this.times = new long[capacity];
+		this.opens = new BigDecimal[capacity];
+		this.highs = new BigDecimal[capacity];
+		this.lows = new BigDecimal[capacity];
+		this.closes = new BigDecimal[capacity];
+		this.baseVolumes = new BigDecimal[capacity];
+		this.quoteVolumes = new BigDecimal[capacity];
+		this.counts = new int[capacity];
+	}
+
+	// Doubles the capacity, e.g. ticks are not added in minutes.
+	private void grow() {
+		long[] times = this.times;
+		BigDecimal[] opens = this.opens;
+		BigDecimal[] highs = this.highs;
+		BigDecimal[] lows = this.lows;
+		BigDecimal[] closes = this.closes;
+		BigDecimal[] baseVolumes = this.baseVolumes;
+		BigDecimal[] quoteVolumes = this.quoteVolumes;
+		int[] counts = this.counts;
+
+		this.allocate(times.length * 2);
+
+		for (int i = 0; i < this.size; i++) {
+			int from = (this.head + i) % times.length;
+			this.times[i] = times[from];
+			this.opens[i] = opens[from];
+			this.highs[i] = highs[from];
+			this.lows[i] = lows[from];
+			this.closes[i] = closes[from];
+			this.baseVolumes[i] = baseVolumes[from];
+			this.quoteVolumes[i] = quoteVolumes[from];
+			this.counts[i] = counts[from];
+		}
+
+		this.head = 0;
+	}
+
+	private int index(long seq) {
+		return (int) ((this.head + (seq - this.headSeq)) % this.times.length);
+	}
+
+	private int lastIndex() {
+		return this.index(this.headSeq + this.size - 1);
+	}
+
+	public synchronized List<Tick> getTicks() {
+		List<Tick> ticks = new ArrayList<Tick>(this.size);
+
+		for (int i = 0; i < this.size; i++) {
+			int index = (this.head + i) % this.times.length;
+
+			Tick tick = new Tick();
+			tick.setProductId(this.productId);
+			tick.setGranularity(this.granularity);
+			tick.setOpen(this.opens[index]);
+			tick.setHigh(this.highs[index]);
+			tick.setLow(this.lows[index]);
+			tick.setClose(this.closes[index]);
+			tick.setBaseCurrencyVolume(this.baseVolumes[index]);
+			tick.setQuoteCurrencyVolume(this.quoteVolumes[index]);
+			tick.setCount(this.counts[index]);
+			tick.setCreateTime(new Timestamp(this.times[index]));
+			tick.setUpdateTime(tick.getCreateTime());
+			ticks.add(tick);
+		}
+
+		return ticks;
 	}
-	
+
 	// Update new trade for the last tick.
 	// For each product, it is updated in sequence without concurrency.
-	public void update(Trade trade) {
-		Tick agg = this.aggregate.get().clone();
-		
-		BigDecimal price = trade.getPrice();
-		
-		// update high prices if trade price is higher than the high price of last tick.
-		if (this.highPrices.getLast().get().compareTo(price) < 0) {
-			BigDecimal highest = this.highPrices.enqueue(price);
-			agg.setHigh(highest);
-		}
-		
-		// update low prices if trade price is lower than the low price of last tick.
-		if (this.lowPrices.getLast().get().compareTo(price) > 0) {
-			BigDecimal lowest = this.lowPrices.enqueue(price);
-			agg.setLow(lowest);
+	public synchronized void update(Trade trade) {
+		if (this.size == 0) {
+			return;
 		}
-		
-		agg.setClose(price);
-		updateTickVolume(agg, trade.getAmount(), trade.getFunds(), 1);
-		agg.setUpdateTime(trade.getCreateTime());
-		
-		this.aggregate.set(agg);
+
+		BigDecimal price = trade.getPrice();
+		this.updateLast(price, price, price, trade.getAmount(), trade.getFunds(), 1);
+		this.updateTime = trade.getCreateTime().getTime();
 	}
-	
+
 	// Update new trades in batch for the last tick.
 	// For each product, it is updated in sequence without concurrency.
-	public void update(Tick tick) {
-		Tick agg = this.aggregate.get().clone();
-		
+	public synchronized void update(Tick tick) {
+		if (this.size == 0) {
+			return;
+		}
+
+		this.updateLast(tick.getHigh(), tick.getLow(), tick.getClose(), tick.getBaseCurrencyVolume(), tick.getQuoteCurrencyVolume(), tick.getCount());
+		this.updateTime = tick.getUpdateTime().getTime();
+	}
+
+	private void updateLast(BigDecimal high, BigDecimal low, BigDecimal close, BigDecimal baseVolume, BigDecimal quoteVolume, int count) {
+		long seq = this.headSeq + this.size - 1;
+		int index = this.index(seq);
+
 		// update high prices if trade price is higher than the high price of last tick.
-		if (this.highPrices.getLast().get().compareTo(tick.getHigh()) < 0) {
-			BigDecimal highest = this.highPrices.enqueue(tick.getHigh());
-			agg.setHigh(highest);
+		if (this.highs[index].compareTo(high) < 0) {
+			this.highs[index] = high;
+			this.highPrices.push(seq, high);
 		}
-		
+
 		// update low prices if trade price is lower than the low price of last tick.
-		if (this.lowPrices.getLast().get().compareTo(tick.getLow()) > 0) {
-			BigDecimal lowest = this.lowPrices.enqueue(tick.getLow());
-			agg.setLow(lowest);
+		if (this.lows[index].compareTo(low) > 0) {
+			this.lows[index] = low;
+			this.lowPrices.push(seq, low);
 		}
-		
-		agg.setClose(tick.getClose());
-		updateTickVolume(agg, tick.getBaseCurrencyVolume(), tick.getQuoteCurrencyVolume(), tick.getCount());
-		agg.setUpdateTime(tick.getUpdateTime());
-		
-		this.aggregate.set(agg);
+
+		this.closes[index] = close;
+		this.baseVolumes[index] = this.baseVolumes[index].add(baseVolume);
+		this.quoteVolumes[index] = this.quoteVolumes[index].add(quoteVolume);
+		this.counts[index] += count;
+
+		this.baseVolume = this.baseVolume.add(baseVolume);
+		this.quoteVolume = this.quoteVolume.add(quoteVolume);
+		this.count += count;
+
+		this.aggregate = null;
 	}
-	
+
 	// Add new tick and update the time window.
 	public synchronized void move(Tick ticker) {
+		long time = ticker.getCreateTime().getTime();
+
 		// first tick added
-		if (this.aggregate.compareAndSet(null, ticker)) {
-			this.ticks.addLast(ticker);
-			this.highPrices.enqueue(ticker.getHigh());
-			this.lowPrices.enqueue(ticker.getLow());
-			this.lastTickTime = ticker.getCreateTime().toInstant();
+		if (this.lastTickTime == Long.MIN_VALUE) {
+			this.productId = ticker.getProductId();
+			this.granularity = ticker.getGranularity();
+			this.baseVolume = BigDecimal.ZERO;
+			this.quoteVolume = BigDecimal.ZERO;
+			this.count = 0;
+			this.createTime = time;
+			this.add(ticker);
+			this.updateTime = ticker.getUpdateTime().getTime();
+			this.lastTickTime = time;
 			return;
 		}
-		
-		Tick agg = this.aggregate.get().clone();
-		
+
 		// update the time window according to the time of new tick.
-		this.removeTimeoutTicks(agg, ticker.getCreateTime());
-		
-		this.ticks.addLast(ticker);
-		
-		BigDecimal highest = this.highPrices.enqueue(ticker.getHigh());
-		// in case of Close price of last removed tick > new highest price
-		if (agg.getHigh().compareTo(highest) < 0) {
-			agg.setHigh(highest);
-		}
-		
-		BigDecimal lowest = this.lowPrices.enqueue(ticker.getLow());
-		// in case of the Close price of last removed tick < new lowest price
-		if (agg.getLow().compareTo(lowest) > 0) {
-			agg.setLow(lowest);
+		this.removeTimeoutTicks(time);
+
+		this.add(ticker);
+
+		this.updateTime = time;
+		this.lastTickTime = time;
+	}
+
+	private void add(Tick tick) {
+		if (this.size == this.times.length) {
+			this.grow();
 		}
-		
-		agg.setClose(ticker.getClose());
-		updateTickVolume(agg, ticker.getBaseCurrencyVolume(), ticker.getQuoteCurrencyVolume(), ticker.getCount());
-		agg.setUpdateTime(ticker.getCreateTime());
-		
-		this.aggregate.set(agg);
-		this.lastTickTime = ticker.getCreateTime().toInstant();
+
+		long seq = this.headSeq + this.size;
+		this.size++;
+		int index = this.index(seq);
+
+		this.times[index] = tick.getCreateTime().getTime();
+		this.opens[index] = tick.getOpen();
+		this.highs[index] = tick.getHigh();
+		this.lows[index] = tick.getLow();
+		this.closes[index] = tick.getClose();
+		this.baseVolumes[index] = tick.getBaseCurrencyVolume();
+		this.quoteVolumes[index] = tick.getQuoteCurrencyVolume();
+		this.counts[index] = tick.getCount();
+
+		this.highPrices.push(seq, tick.getHigh());
+		this.lowPrices.push(seq, tick.getLow());
+
+		this.baseVolume = this.baseVolume.add(tick.getBaseCurrencyVolume());
+		this.quoteVolume = this.quoteVolume.add(tick.getQuoteCurrencyVolume());
+		this.count += tick.getCount();
+
+		this.aggregate = null;
 	}
-	
+
 	// remove the out of date ticks the specified endTime.
-	private void removeTimeoutTicks(Tick agg, Timestamp endTime) {
-		Timestamp startTime = Timestamp.from(endTime.toInstant().minus(this.timeout));
-		if (agg.getCreateTime().before(startTime)) {
-			agg.setCreateTime(startTime);
+	private void removeTimeoutTicks(long endTime) {
+		long startTime = endTime - this.timeoutMillis;
+		if (this.createTime < startTime) {
+			this.createTime = startTime;
 		}
-		
-		Tick lastRemovedTick = null;
-		
+
 		// remove ticks that out of date.
-		while (!this.ticks.isEmpty() && this.ticks.getFirst().getCreateTime().before(startTime)) {
-			lastRemovedTick = this.ticks.removeFirst();
-			this.highPrices.dequeue(lastRemovedTick.getHigh());
-			this.lowPrices.dequeue(lastRemovedTick.getLow());
-			updateTickVolume(agg, lastRemovedTick.getBaseCurrencyVolume().negate(), lastRemovedTick.getQuoteCurrencyVolume().negate(), -lastRemovedTick.getCount());
-		}
-		
-		if (this.ticks.isEmpty()) {
-			// If any tick removed, set the Open/High/Low as the Close price of last removed tick.
-			if (lastRemovedTick != null) {
-				agg.setOpen(lastRemovedTick.getClose());
-				agg.setHigh(lastRemovedTick.getClose());
-				agg.setLow(lastRemovedTick.getClose());
-			}
-		} else if (this.ticks.getFirst().getCreateTime().after(startTime)) {
-			// if removed, use the Close price of last removed one as the Open price for the new time window
-			if (lastRemovedTick != null) {
-				agg.setOpen(lastRemovedTick.getClose());
-			}
-			
-			// the removed tick may be with the highest price
-			BigDecimal highest = this.highPrices.getFirst().get();
-			if (lastRemovedTick != null && lastRemovedTick.getClose().compareTo(highest) > 0) {
-				agg.setHigh(lastRemovedTick.getClose());
-			} else {
-				agg.setHigh(highest);
-			}
-			
-			// the removed tick may be with the lowest price
-			BigDecimal lowest = this.lowPrices.getFirst().get();
-			if (lastRemovedTick != null && lastRemovedTick.getClose().compareTo(lowest) < 0) {
-				agg.setLow(lastRemovedTick.getClose());
-			} else {
-				agg.setLow(lowest);
-			}
-		} else {
-			agg.setOpen(this.ticks.getFirst().getOpen());
-			agg.setHigh(this.highPrices.getFirst().get());
-			agg.setLow(this.lowPrices.getFirst().get());
+		while (this.size > 0 && this.times[this.head] < startTime) {
+			int index = this.head;
+
+			this.lastRemovedClose = this.closes[index];
+			this.baseVolume = this.baseVolume.subtract(this.baseVolumes[index]);
+			this.quoteVolume = this.quoteVolume.subtract(this.quoteVolumes[index]);
+			this.count -= this.counts[index];
+
+			// release references for GC
+			this.opens[index] = null;
+			this.highs[index] = null;
+			this.lows[index] = null;
+			this.closes[index] = null;
+			this.baseVolumes[index] = null;
+			this.quoteVolumes[index] = null;
+
+			this.head = (this.head + 1) % this.times.length;
+			this.headSeq++;
+			this.size--;
 		}
+
+		this.highPrices.removeBefore(this.headSeq);
+		this.lowPrices.removeBefore(this.headSeq);
+
+		this.aggregate = null;
 	}
-	
-	private static void updateTickVolume(Tick tick, BigDecimal baseVolDelta, BigDecimal quoteVolDelta, int countDelta) {
-		tick.setBaseCurrencyVolume(tick.getBaseCurrencyVolume().add(baseVolDelta));
-		tick.setQuoteCurrencyVolume(tick.getQuoteCurrencyVolume().add(quoteVolDelta));
-		tick.setCount(tick.getCount() + countDelta);
-	}
-	
+
 	public Tick getAggregate() {
 		return this.getAggregate(Instant.now());
 	}
-	
+
 	public synchronized Tick getAggregate(Instant endTime) {
-		if (this.lastTickTime == null) {
-			return this.aggregate.get();
+		if (this.lastTickTime == Long.MIN_VALUE) {
+			return null;
+		}
+
+		long endMillis = DefaultTickGranularity.Minute.truncate(endTime).toEpochMilli();
+		if (this.lastTickTime < endMillis) {
+			// no trade for a short/long time, need to move the time window forward.
+			this.removeTimeoutTicks(endMillis);
+			this.updateTime = endMillis;
+			this.lastTickTime = endMillis;
+		}
+
+		if (this.aggregate == null) {
+			this.aggregate = this.aggregate();
 		}
-		
-		endTime = DefaultTickGranularity.Minute.truncate(endTime);
-		if (!this.lastTickTime.isBefore(endTime)) {
-			return this.aggregate.get();
+
+		return this.aggregate;
+	}
+
+	private Tick aggregate() {
+		Tick agg = new Tick();
+
+		agg.setProductId(this.productId);
+		agg.setGranularity(this.granularity);
+		agg.setBaseCurrencyVolume(this.baseVolume);
+		agg.setQuoteCurrencyVolume(this.quoteVolume);
+		agg.setCount(this.count);
+		agg.setCreateTime(new Timestamp(this.createTime));
+		agg.setUpdateTime(new Timestamp(this.updateTime));
+
+		if (this.size == 0) {
+			// all ticks removed, use the Close price of last removed tick.
+			agg.setOpen(this.lastRemovedClose);
+			agg.setHigh(this.lastRemovedClose);
+			agg.setLow(this.lastRemovedClose);
+			agg.setClose(this.lastRemovedClose);
+			return agg;
 		}
-		
-		// no trade for a short/long time, need to move the time window forward.
-		Tick agg = this.aggregate.get().clone();
-		
-		this.removeTimeoutTicks(agg, Timestamp.from(endTime));
-		
-		agg.setUpdateTime(Timestamp.from(endTime));
-		
-		this.aggregate.set(agg);
-		this.lastTickTime = endTime;
-		
+
+		BigDecimal highest = this.highPrices.peek();
+		BigDecimal lowest = this.lowPrices.peek();
+
+		if (this.lastRemovedClose != null && this.times[this.head] > this.createTime) {
+			// use the Close price of last removed one as the Open price for the time window,
+			// which may be the highest or lowest price as well.
+			agg.setOpen(this.lastRemovedClose);
+			agg.setHigh(highest.max(this.lastRemovedClose));
+			agg.setLow(lowest.min(this.lastRemovedClose));
+		} else {
+			agg.setOpen(this.opens[this.head]);
+			agg.setHigh(highest);
+			agg.setLow(lowest);
+		}
+
+		agg.setClose(this.closes[this.lastIndex()]);
+
 		return agg;
 	}
 }
 
 /*
- * PriceQueue is used to maintain a series of prices in a time window.
+ * PriceDeque is a monotonic deque to maintain the highest (or lowest) price of ticks in a time window.
  * Take "max price first" as example:
- * 1) Enqueue
- * 		- Add item into queue if empty.
- * 		- If new price is higher than the first element, then clear the queue and add the new price item.
- * 		- Otherwise, append the new price item:
- * 			a) Remove lower prices from the last position.
- * 			b) If any element has same price, then increase the counter.
- * 			c) Otherwise, append the new price item.
- * 2) Dequeue
- * 		- Handle only when dequeued price is the same with the first element in queue.
- * 		- Decrease the counter of first element.
- * 		- Once counter decreased to 0, remove the first element.
- * 
- * When any tick out of date and eliminated from the time window, the corresponding queues of high/low prices
- * should also be dequeued with the price of removed tick. If the tick with highest price eliminated, time window
- * could update the highest value with remaining queued prices in time complexity O(1).
+ * 1) Push
+ * 		- Remove items from the last position whose price is not higher than the new price.
+ * 		- If the last item is for the same tick, which is still higher, then ignore the new price.
+ * 		- Otherwise, append the new price item with sequence of tick.
+ * 2) Remove
+ * 		- Remove items from the first position whose tick is out of the time window.
+ *
+ * So, prices in deque are in descending order, and the first one is the highest price in the time window.
+ * Each tick is pushed and removed at most once for each price change, so in time complexity O(1) amortized.
+ * Items are stored in circular primitive arrays to avoid allocation.
  */
-class PriceQueue {
-	
-	private static class Item {
-		public BigDecimal price;
-		public int count;
-		
-		public Item(BigDecimal price) {
-			this.price = price;
-			this.count = 1;
-		}
-	}
-	
+class PriceDeque {
+
 	private boolean maxFirst;
-	private Deque<Item> items = new LinkedList<Item>();
-	
-	public PriceQueue(boolean maxFirst) {
+	private long[] seqs = new long[16];
+	private BigDecimal[] prices = new BigDecimal[16];
+	private int head;
+	private int size;
+
+	public PriceDeque(boolean maxFirst) {
 		this.maxFirst = maxFirst;
 	}
-	
-	public Optional<BigDecimal> getFirst() {
-		return this.items.isEmpty() ? Optional.empty() : Optional.of(this.items.getFirst().price);
+
+	public boolean isEmpty() {
+		return this.size == 0;
 	}
-	
-	public Optional<BigDecimal> getLast() {
-		return this.items.isEmpty() ? Optional.empty() : Optional.of(this.items.getLast().price);
+
+	public BigDecimal peek() {
+		return this.size == 0 ? null : this.prices[this.head];
 	}
-	
-	public BigDecimal enqueue(BigDecimal price) {
-		if (this.items.isEmpty()) {
-			this.items.addLast(new Item(price));
-			return price;
-		}
-		
-		int cmp = this.items.getFirst().price.compareTo(price);
-		if ((this.maxFirst && cmp < 0) || (!this.maxFirst && cmp > 0)) {
-			this.items.clear();
-			this.items.addLast(new Item(price));
-			return price;
-		}
-		
-		while (!this.items.isEmpty()) {
-			Item last = this.items.getLast();
-			cmp = last.price.compareTo(price);
-			
-			if (cmp == 0) {
-				last.count++;
-				break;
-			}
-			
+
+	private int lastIndex() {
+		return (this.head + this.size - 1) % this.seqs.length;
+	}
+
+	public void push(long seq, BigDecimal price) {
+		while (this.size > 0) {
+			int last = this.lastIndex();
+			int cmp = this.prices[last].compareTo(price);
+
 			if ((this.maxFirst && cmp > 0) || (!this.maxFirst && cmp < 0)) {
-				this.items.add(new Item(price));
+				if (this.seqs[last] == seq) {
+					return;
+				}
+
 				break;
 			}
-			
-			this.items.removeLast();
+
+			this.prices[last] = null;
+			this.size--;
 		}
-		
-		return this.items.getFirst().price;
-	}
-	
-	public boolean dequeue(BigDecimal price) {
-		if (this.items.isEmpty()) {
-			return false;
+
+		if (this.size == this.seqs.length) {
+			this.grow();
 		}
-		
-		Item first = this.items.getFirst();
-		if (first.price.compareTo(price) != 0) {
-			return false;
+
+		int index = (this.head + this.size) % this.seqs.length;
+		this.seqs[index] = seq;
+		this.prices[index] = price;
+		this.size++;
+	}
+
+	private void grow() {
+		long[] seqs = new long[this.seqs.length * 2];
+		BigDecimal[] prices = new BigDecimal[seqs.length];
+
+		for (int i = 0; i < this.size; i++) {
+			int from = (this.head + i) % this.seqs.length;
+			seqs[i] = this.seqs[from];
+			prices[i] = this.prices[from];
 		}
-		
-		if (--first.count == 0) {
-			this.items.removeFirst();
+
+		this.seqs = seqs;
+		this.prices = prices;
+		this.head = 0;
+	}
+
+	// Removes prices of ticks before the specified sequence.
+	public void removeBefore(long seq) {
+		while (this.size > 0 && this.seqs[this.head] < seq) {
+			this.prices[this.head] = null;
+			this.head = (this.head + 1) % this.seqs.length;
+			this.size--;
 		}
-		
-		return true;
 	}
-	
+
 }
@@ -0,0 +1,201 @@
+package conflux.dex.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.Tick;
+import conflux.dex.model.Trade;
+import conflux.dex.worker.DepthDiff;
+import conflux.dex.worker.DepthPriceLevel;
+import conflux.dex.worker.DepthSnapshot;
+
+/**
+ * Compact binary encoding of market data, in which prices and amounts are encoded
+ * as long integers scaled by the decimal scales in message header. All values are
+ * in big-endian, and string is in modified UTF-8 with 2 bytes length prefixed.
+ * 
+ * Header: version(1) type(1) topic(UTF) timestamp(8) priceScale(1) amountScale(1)
+ * 
+ * Body:
+ * - Depth: sequence(8) of the last depth diff included, and then count(4) and levels
+ *   of the buy side, and then the sell side. Each level is price(8) amount(8) orders(4).
+ * - DepthDiff: sequence(8) and levels as Depth. Removed level has 0 orders.
+ * - Tick: id(8) granularity(4) open(8) high(8) low(8) close(8) baseVolume(8)
+ *   quoteVolume(8) count(4) createTime(8) updateTime(8).
+ * - Trade: id(8) takerOrderId(8) makerOrderId(8) price(8) amount(8) side(1) createTime(8).
+ */
+final class BinaryEncoder {
+	
+	static final byte VERSION = 1;
+	
+	static final byte TYPE_DEPTH = 1;
+	static final byte TYPE_DEPTH_DIFF = 2;
+	static final byte TYPE_TICK = 3;
+	static final byte TYPE_TRADE = 4;
+	
+	private static final int MAX_SCALE = 18;
+	
+	private BinaryEncoder() {
+	}
+	
+	/**
+	 * Whether the data of specified topic could be encoded in binary.
+	 */
+	static boolean isSupported(String topic) {
+		return topic != null && topic.startsWith("market.")
+				&& (topic.contains(".depth.") || topic.contains(".tick.") || topic.contains(".trade."));
+	}
+	
+	/**
+	 * Encodes response in binary, and returns null if data type not supported,
+	 * or any price or amount could not be scaled into a long integer.
+	 */
+	static byte[] encode(TopicResponse response) throws IOException {
+		Object data = response.getData();
+		
+		try {
+			if (data instanceof DepthDiff) {
+				DepthDiff diff = (DepthDiff) data;
+				return encodeDepth(response, TYPE_DEPTH_DIFF, diff.getSequence(), diff.getLevels());
+			} else if (data instanceof DepthSnapshot) {
+				DepthSnapshot snapshot = (DepthSnapshot) data;
+				return encodeDepth(response, TYPE_DEPTH, snapshot.getSequence(), snapshot.getLevels());
+			} else if (data instanceof Tick) {
+				return encodeTick(response, (Tick) data);
+			} else if (data instanceof Trade) {
+				return encodeTrade(response, (Trade) data);
+			} else {
+				return null;
+			}
+		} catch (ArithmeticException e) {
+			return null;
+		}
+	}
+	
+	private static DataOutputStream writeHeader(ByteArrayOutputStream bytes, TopicResponse response, byte type,
+			List<BigDecimal> prices, List<BigDecimal> amounts, int[] scales) throws IOException {
+		scales[0] = scaleOf(prices);
+		scales[1] = scaleOf(amounts);
+		
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(VERSION);
+		out.writeByte(type);
+		out.writeUTF(response.getTopic());
+		out.writeLong(response.getTimestamp());
+		out.writeByte(scales[0]);
+		out.writeByte(scales[1]);
+		return out;
+	}
+	
+	private static byte[] encodeDepth(TopicResponse response, byte type, long sequence,
+			Map<OrderSide, List<DepthPriceLevel>> levels) throws IOException {
+		List<BigDecimal> prices = new ArrayList<BigDecimal>();
+		List<BigDecimal> amounts = new ArrayList<BigDecimal>();
+		for (List<DepthPriceLevel> sideLevels : levels.values()) {
+			for (DepthPriceLevel level : sideLevels) {
+				prices.add(level.getPrice());
+				amounts.add(level.getAmount());
+			}
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + prices.size() * 20);
+		int[] scales = new int[2];
+		DataOutputStream out = writeHeader(bytes, response, type, prices, amounts, scales);
+		
+		out.writeLong(sequence);
+		
+		for (OrderSide side : OrderSide.values()) {
+			List<DepthPriceLevel> sideLevels = levels.getOrDefault(side, Collections.emptyList());
+			out.writeInt(sideLevels.size());
+			
+			for (DepthPriceLevel level : sideLevels) {
+				out.writeLong(scale(level.getPrice(), scales[0]));
+				out.writeLong(scale(level.getAmount(), scales[1]));
+				out.writeInt(level.getCount());
+			}
+		}
+		
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	private static byte[] encodeTick(TopicResponse response, Tick tick) throws IOException {
+		List<BigDecimal> prices = new ArrayList<BigDecimal>();
+		Collections.addAll(prices, tick.getOpen(), tick.getHigh(), tick.getLow(), tick.getClose());
+		List<BigDecimal> amounts = new ArrayList<BigDecimal>();
+		Collections.addAll(amounts, tick.getBaseCurrencyVolume(), tick.getQuoteCurrencyVolume());
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		int[] scales = new int[2];
+		DataOutputStream out = writeHeader(bytes, response, TYPE_TICK, prices, amounts, scales);
+		
+		out.writeLong(tick.getId());
+		out.writeInt(tick.getGranularity());
+		for (BigDecimal price : prices) {
+			out.writeLong(scale(price, scales[0]));
+		}
+		for (BigDecimal amount : amounts) {
+			out.writeLong(scale(amount, scales[1]));
+		}
+		out.writeInt(tick.getCount());
+		out.writeLong(timeOf(tick.getCreateTime()));
+		out.writeLong(timeOf(tick.getUpdateTime()));
+		
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	private static byte[] encodeTrade(TopicResponse response, Trade trade) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+		int[] scales = new int[2];
+		DataOutputStream out = writeHeader(bytes, response, TYPE_TRADE,
+				Collections.singletonList(trade.getPrice()), Collections.singletonList(trade.getAmount()), scales);
+		
+		out.writeLong(trade.getId());
+		out.writeLong(trade.getTakerOrderId());
+		out.writeLong(trade.getMakerOrderId());
+		out.writeLong(scale(trade.getPrice(), scales[0]));
+		out.writeLong(scale(trade.getAmount(), scales[1]));
+		out.writeByte(trade.getSide().ordinal());
+		out.writeLong(timeOf(trade.getCreateTime()));
+		
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Returns the minimum scale to represent all values without precision lost.
+	 */
+	private static int scaleOf(List<BigDecimal> values) {
+		int scale = 0;
+		
+		for (BigDecimal value : values) {
+			if (value != null) {
+				scale = Math.max(scale, value.stripTrailingZeros().scale());
+			}
+		}
+		
+		if (scale > MAX_SCALE) {
+			throw new ArithmeticException("scale too large");
+		}
+		
+		return scale;
+	}
+	
+	private static long scale(BigDecimal value, int scale) {
+		return value == null ? 0 : value.setScale(scale).unscaledValue().longValueExact();
+	}
+	
+	private static long timeOf(Timestamp time) {
+		return time == null ? 0 : time.getTime();
+	}
+
+}
@@ -0,0 +1,35 @@
+package conflux.dex.ws;
+
+/**
+ * Encoding of messages that subscriber requested for a topic, e.g.
+ * {"topic": "market.CAT-CFX.depth.step0", "sub": true, "arguments": {"encoding": "Binary"}}
+ */
+public enum MessageEncoding {
+	/**
+	 * JSON text frame, which is the default encoding.
+	 */
+	Json,
+	/**
+	 * JSON text compressed in zlib format, and sent in binary frame.
+	 */
+	Deflate,
+	/**
+	 * Compact binary frame for market depth, tick and trade topics, see {@link BinaryEncoder}.
+	 * Falls back to JSON text frame if any price or amount could not be encoded.
+	 */
+	Binary;
+	
+	public static MessageEncoding parse(Object value) {
+		if (value == null) {
+			return Json;
+		}
+		
+		for (MessageEncoding encoding : values()) {
+			if (encoding.name().equalsIgnoreCase(value.toString())) {
+				return encoding;
+			}
+		}
+		
+		return null;
+	}
+}
@@ -1,13 +1,26 @@
 package conflux.dex.ws;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
 
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
 
 import org.slf4j.Logger;
@@ -20,57 +33,305 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import conflux.dex.common.Metrics;
 import conflux.dex.common.Metrics.QueueMetric;
-import conflux.dex.common.worker.SequentialWorker;
+import conflux.dex.config.WebSocketSendConfig;
 
-class MessageSender extends SequentialWorker<TopicResponse> implements Subscriber {
+/**
+ * Sends messages to subscriber via the asynchronous remote endpoint, so that slow
+ * client will not occupy any thread. Messages are buffered in a bounded queue and
+ * sent one by one. When queue is full, slow subscriber is handled by the policy of topic.
+ */
+class MessageSender implements Subscriber, SendHandler {
 	
 	private static final Logger logger = LoggerFactory.getLogger(MessageSender.class);
 	private static final TopicResponse PING = new TopicResponse();
+	private static final String MARKET_TOPIC_PREFIX = "market.";
 	
 	private Set<String> subscribedTopics = Collections.synchronizedSet(new HashSet<String>());
+	// map<topic, encoding>, JSON text by default
+	private ConcurrentMap<String, MessageEncoding> encodings = new ConcurrentHashMap<String, MessageEncoding>();
 	private Random rand = new Random();
 	private ByteBuffer pingBuf = ByteBuffer.allocate(Long.BYTES);
 	private long connectedTime = System.currentTimeMillis();
 	private Session session;
 	private ObjectMapper mapper;
+	private WebSocketSendConfig config;
+	
+	// guarded by queue
+	private Deque<TopicResponse> queue = new ArrayDeque<TopicResponse>();
+	private boolean sending;
+	private volatile boolean closed;
+	
+	// to continue sending in loop if completed in the sending thread, instead of recursion
+	private AtomicReference<Thread> sendingThread = new AtomicReference<Thread>();
+	private volatile boolean sentInline;
+	private long sendStartTime;
 	
 	// total statistics for all subscribers
 	private static final QueueMetric sendQueue = Metrics.queue(MessageSender.class);
 	private static final Timer sendPerf = Metrics.timer(MessageSender.class, "perf");
 	private static final Meter tpsIoError = Metrics.meter(MessageSender.class, "error.io");
 	private static final Meter tpsError = Metrics.meter(MessageSender.class, "error.others");
+	private static final Meter tpsEncodeShared = Metrics.meter(MessageSender.class, "encode.shared");
+	private static final Meter tpsEncodeFallback = Metrics.meter(MessageSender.class, "encode.binary.fallback");
+	private static final Meter tpsSlowDropped = Metrics.meter(MessageSender.class, "slow.dropped");
+	private static final Meter tpsSlowDisconnected = Metrics.meter(MessageSender.class, "slow.disconnected");
+	// encode statistics for each topic
+	private static final ConcurrentMap<String, Timer> encodePerfs = new ConcurrentHashMap<String, Timer>();
+	
+	// closes sessions of slow subscribers, so that publisher will not be blocked by the peer
+	private static final ExecutorService closeExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "ws-slow-subscriber-closer");
+		thread.setDaemon(true);
+		return thread;
+	});
 
-	public MessageSender(ExecutorService executor, Session session, ObjectMapper mapper) {
-		super(executor, "MessageSender-" + session.getId());
-		
-		this.setQueueMetric(sendQueue);
-		this.setHandleDataPerf(sendPerf);
-		
+	public MessageSender(Session session, ObjectMapper mapper, WebSocketSendConfig config) {
 		this.session = session;
 		this.mapper = mapper;
+		this.config = config;
 	}
-
-	@Override
-	protected void doWork(TopicResponse data) throws Exception {
+	
+	private SlowConsumerPolicy getPolicy(TopicResponse data) {
+		String topic = data.getTopic();
+		return topic != null && topic.startsWith(MARKET_TOPIC_PREFIX)
+				? this.config.marketPolicy
+				: this.config.userPolicy;
+	}
+	
+	private void offer(TopicResponse data) {
+		if (this.closed) {
+			return;
+		}
+		
+		boolean disconnect = false;
+		boolean startSending = false;
+		
+		synchronized (this.queue) {
+			if (this.queue.size() >= this.config.queueCapacity) {
+				if (data == PING) {
+					// client is busy, and session will be closed if idle timeout
+					return;
+				}
+				
+				if (this.getPolicy(data) == SlowConsumerPolicy.DropOldest && this.dropOldest()) {
+					tpsSlowDropped.mark();
+				} else {
+					disconnect = true;
+				}
+			}
+			
+			if (!disconnect) {
+				this.queue.addLast(data);
+				sendQueue.enqueue();
+				
+				if (!this.sending) {
+					this.sending = true;
+					startSending = true;
+				}
+			}
+		}
+		
+		if (disconnect) {
+			logger.debug("disconnect slow subscriber {}, topic = {}", this.getId(), data.getTopic());
+			tpsSlowDisconnected.mark();
+			this.clear();
+			closeExecutor.execute(this::closeSession);
+		} else if (startSending) {
+			this.sendNext();
+		}
+	}
+	
+	/**
+	 * Drops the oldest message that allowed to drop, and returns false if not found.
+	 */
+	private boolean dropOldest() {
+		Iterator<TopicResponse> iterator = this.queue.iterator();
+		while (iterator.hasNext()) {
+			TopicResponse queued = iterator.next();
+			if (queued != PING && this.getPolicy(queued) == SlowConsumerPolicy.DropOldest) {
+				iterator.remove();
+				sendQueue.dequeue();
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void sendNext() {
+		while (true) {
+			TopicResponse data;
+			synchronized (this.queue) {
+				data = this.closed ? null : this.queue.pollFirst();
+				if (data == null) {
+					this.sending = false;
+					return;
+				}
+			}
+			
+			sendQueue.dequeue();
+			
+			if (!this.send(data)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Sends message and returns true if completed immediately.
+	 */
+	private boolean send(TopicResponse data) {
 		try {
 			if (data == PING) {
 				this.pingBuf.putLong(0, this.rand.nextLong());
-				this.session.getBasicRemote().sendPing(this.pingBuf);
+				this.session.getAsyncRemote().sendPing(this.pingBuf);
+				return true;
+			}
+			
+			byte[] binary = null;
+			switch (this.getEncoding(data.getTopic())) {
+			case Deflate:
+				binary = encodeDeflate(this.mapper, data);
+				break;
+			case Binary:
+				binary = encodeBinary(data);
+				break;
+			default:
+				break;
+			}
+			
+			String json = binary == null ? encode(this.mapper, data) : null;
+			
+			Thread current = Thread.currentThread();
+			this.sentInline = false;
+			this.sendingThread.set(current);
+			this.sendStartTime = System.currentTimeMillis();
+			
+			if (binary == null) {
+				this.session.getAsyncRemote().sendText(json, this);
 			} else {
-				String json = this.mapper.writeValueAsString(data);
-				this.session.getBasicRemote().sendText(json);
+				// wrap for each subscriber, since buffer position changed when sent
+				this.session.getAsyncRemote().sendBinary(ByteBuffer.wrap(binary), this);
 			}
+			
+			// completed in another thread if thread changed
+			return this.sendingThread.compareAndSet(current, null) && this.sentInline;
 		} catch (JsonProcessingException e) {
 			logger.error("failed to send message (JSON)", e);
-			this.close();
 		} catch (IOException e) {
 			logger.debug("failed to send message (IO)", e);
 			tpsIoError.mark();
-			this.close();
 		} catch (Exception e) {
 			logger.error("failed to send message (Other)", e);
 			tpsError.mark();
+		}
+		
+		this.close();
+		return false;
+	}
+	
+	@Override
+	public void onResult(SendResult result) {
+		Metrics.update(sendPerf, this.sendStartTime);
+		
+		if (!result.isOK()) {
+			logger.debug("failed to send message (IO)", result.getException());
+			tpsIoError.mark();
 			this.close();
+			return;
+		}
+		
+		if (this.sendingThread.get() == Thread.currentThread()) {
+			this.sentInline = true;
+		} else {
+			this.sendNext();
+		}
+	}
+
+	/**
+	 * Encodes response to JSON text only once, so that the same response
+	 * could be sent to all subscribers of a topic as is.
+	 */
+	static String encode(ObjectMapper mapper, TopicResponse data) throws JsonProcessingException {
+		String text = data.text;
+		if (text != null) {
+			tpsEncodeShared.mark();
+			return text;
+		}
+		
+		synchronized (data) {
+			if (data.text != null) {
+				tpsEncodeShared.mark();
+				return data.text;
+			}
+			
+			long start = System.nanoTime();
+			text = mapper.writeValueAsString(data);
+			encodePerfs.computeIfAbsent(String.valueOf(data.getTopic()), topic -> Metrics.timer(MessageSender.class, "encode", topic))
+				.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			
+			data.text = text;
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * Encodes response to JSON text compressed in zlib format only once.
+	 */
+	static byte[] encodeDeflate(ObjectMapper mapper, TopicResponse data) throws JsonProcessingException {
+		byte[] deflated = data.deflated;
+		if (deflated != null) {
+			return deflated;
+		}
+		
+		String text = encode(mapper, data);
+		
+		synchronized (data) {
+			if (data.deflated == null) {
+				byte[] input = text.getBytes(StandardCharsets.UTF_8);
+				Deflater deflater = new Deflater();
+				
+				try {
+					deflater.setInput(input);
+					deflater.finish();
+					
+					ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+					byte[] buf = new byte[4096];
+					while (!deflater.finished()) {
+						out.write(buf, 0, deflater.deflate(buf));
+					}
+					
+					data.deflated = out.toByteArray();
+				} finally {
+					deflater.end();
+				}
+			}
+			
+			return data.deflated;
+		}
+	}
+	
+	/**
+	 * Encodes response in binary only once, and returns null if not supported.
+	 */
+	static byte[] encodeBinary(TopicResponse data) throws IOException {
+		byte[] binary = data.binary;
+		if (binary != null) {
+			return binary;
+		}
+		
+		synchronized (data) {
+			if (data.binary == null && !data.binaryUnsupported) {
+				data.binary = BinaryEncoder.encode(data);
+				data.binaryUnsupported = data.binary == null;
+				
+				if (data.binaryUnsupported) {
+					tpsEncodeFallback.mark();
+				}
+			}
+			
+			return data.binary;
 		}
 	}
 
@@ -89,18 +350,56 @@ class MessageSender extends SequentialWorker<TopicResponse> implements Subscribe
 		return this.subscribedTopics;
 	}
 
+	private MessageEncoding getEncoding(String topic) {
+		MessageEncoding encoding = topic == null ? null : this.encodings.get(topic);
+		return encoding == null ? MessageEncoding.Json : encoding;
+	}
+	
+	@Override
+	public void setEncoding(String topic, MessageEncoding encoding) {
+		if (encoding == null || encoding == MessageEncoding.Json) {
+			this.encodings.remove(topic);
+		} else {
+			this.encodings.put(topic, encoding);
+		}
+	}
+
 	@Override
 	public void consume(TopicResponse data) {
-		this.submit(data);
+		this.offer(data);
 	}
 	
 	@Override
 	public void ping() {
-		this.submit(PING);
+		this.offer(PING);
+	}
+	
+	public int getPendingCount() {
+		synchronized (this.queue) {
+			return this.queue.size();
+		}
 	}
 
 	@Override
 	public void close() {
+		this.clear();
+		this.closeSession();
+	}
+	
+	/**
+	 * Marks closed and drops all pending messages, so that nothing will be sent anymore.
+	 */
+	private void clear() {
+		synchronized (this.queue) {
+			if (!this.closed) {
+				this.closed = true;
+				sendQueue.dequeue(this.queue.size());
+				this.queue.clear();
+			}
+		}
+	}
+	
+	private void closeSession() {
 		try {
 			this.session.close();
 		} catch (IOException e) {
@@ -0,0 +1,16 @@
+package conflux.dex.ws;
+
+/**
+ * Policy to handle slow subscriber when its outbound queue is full.
+ */
+public enum SlowConsumerPolicy {
+	/**
+	 * Drop the oldest message of the same policy in queue, e.g. market data
+	 * will be superseded by the following messages.
+	 */
+	DropOldest,
+	/**
+	 * Disconnect the subscriber, e.g. account data should not be lost.
+	 */
+	Disconnect,
+}
@@ -12,6 +12,11 @@ public interface Subscriber {
 	
 	void consume(TopicResponse data);
 	
+	/**
+	 * Sets the encoding of messages for the specified topic, null to use the default one.
+	 */
+	default void setEncoding(String topic, MessageEncoding encoding) {}
+	
 	void ping();
 	
 	void close();
@@ -20,6 +20,8 @@ class SubscriberManager {
 	
 	private static final Logger logger = LoggerFactory.getLogger(SubscriberManager.class);
 	
+	private static final String KEY_ENCODING = "encoding";
+	
 	private static final long intervalHeartbeatMillis = 5000;
 	public static final long SessionTimeoutMillis = 30000;
 	
@@ -59,14 +61,28 @@ class SubscriberManager {
 		logger.trace("topic request: {}", request);
 		
 		if (request.isSub()) {
+			MessageEncoding encoding = parseEncoding(request);
 			topic.subscribe(subscriber, request);
+			subscriber.setEncoding(request.getTopic(), encoding);
 			this.topicsQueue.enqueue();
 		} else {
 			topic.unsubscribe(subscriber, request);
+			subscriber.setEncoding(request.getTopic(), null);
 			this.topicsQueue.dequeue();
 		}
 	}
 	
+	private static MessageEncoding parseEncoding(TopicRequest request) throws BusinessException {
+		Object value = request.getArguments() == null ? null : request.getArguments().get(KEY_ENCODING);
+		MessageEncoding encoding = MessageEncoding.parse(value);
+		
+		if (encoding == null || (encoding == MessageEncoding.Binary && !BinaryEncoder.isSupported(request.getTopic()))) {
+			throw BusinessFault.TopicEncodingNotSupported.rise();
+		}
+		
+		return encoding;
+	}
+	
 	@Scheduled(initialDelay = intervalHeartbeatMillis, fixedRate = intervalHeartbeatMillis)
 	public void heartbeat() {
 		logger.trace("heartbeat: begin to check topics and send PING");
@@ -6,6 +6,13 @@ public class TopicResponse {
 	private long timestamp;
 	private Object data;
 	
+	// JSON text encoded once and shared by all subscribers, see MessageSender#encode
+	volatile String text;
+	// encoded once as above for subscribers that requested other encodings
+	volatile byte[] deflated;
+	volatile byte[] binary;
+	volatile boolean binaryUnsupported;
+	
 	public static TopicResponse create(String topic, Object data) {
 		TopicResponse response = new TopicResponse();
 		
@@ -22,6 +29,7 @@ public class TopicResponse {
 	
 	public void setTopic(String topic) {
 		this.topic = topic;
+		this.reset();
 	}
 	
 	public long getTimestamp() {
@@ -30,6 +38,7 @@ public class TopicResponse {
 	
 	public void setTimestamp(long timestamp) {
 		this.timestamp = timestamp;
+		this.reset();
 	}
 	
 	public Object getData() {
@@ -38,6 +47,14 @@ public class TopicResponse {
 	
 	public void setData(Object data) {
 		this.data = data;
+		this.reset();
+	}
+	
+	private void reset() {
+		this.text = null;
+		this.deflated = null;
+		this.binary = null;
+		this.binaryUnsupported = false;
 	}
 
 }
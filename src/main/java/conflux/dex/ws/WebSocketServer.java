@@ -1,7 +1,5 @@
 package conflux.dex.ws;
 
-import java.util.concurrent.ExecutorService;
-
 import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
@@ -16,30 +14,32 @@ import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import conflux.dex.config.WebSocketSendConfig;
+
 @ServerEndpoint("/ws")
 @Component
 public class WebSocketServer {
 	
 	private static final Logger logger = LoggerFactory.getLogger(WebSocketServer.class);
 	private static SubscriberManager manager;
-	private static ExecutorService executor;
 	private static ObjectMapper mapper;
+	private static WebSocketSendConfig config;
 	
 	public WebSocketServer() {
 	}
 	
 	@Autowired
-	public WebSocketServer(SubscriberManager manager, ExecutorService executor, ObjectMapper mapper) {
+	public WebSocketServer(SubscriberManager manager, ObjectMapper mapper, WebSocketSendConfig config) {
 		WebSocketServer.manager = manager;
-		WebSocketServer.executor = executor;
 		WebSocketServer.mapper = mapper;
+		WebSocketServer.config = config;
 	}
 	
 	@OnOpen
 	public void onOpen(Session session) {
 		session.setMaxIdleTimeout(SubscriberManager.SessionTimeoutMillis);
 		
-		manager.add(new MessageSender(executor, session, mapper));
+		manager.add(new MessageSender(session, mapper, config));
 	}
 	
 	@OnClose
@@ -3,41 +3,143 @@ package conflux.dex.ws.topic;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import com.codahale.metrics.Histogram;
+
+import conflux.dex.common.Handler;
+import conflux.dex.common.Metrics;
+import conflux.dex.event.Events;
 import conflux.dex.model.Product;
 import conflux.dex.worker.DepthAggregateManager;
+import conflux.dex.worker.DepthDiff;
+import conflux.dex.ws.Subscriber;
+import conflux.dex.ws.TopicRequest;
 
+/**
+ * Depth topic, which is published when depth changed, and at most once
+ * in the specified interval for each product to coalesce changes.
+ */
 @Component
-class DepthTopic extends MarketTopic {
+class DepthTopic extends MarketTopic implements Handler<DepthAggregateManager> {
+	
+	private static final Logger logger = LoggerFactory.getLogger(DepthTopic.class);
+	
+	// latency in milliseconds from orders matched to depth published
+	private static final Histogram latencyStat = Metrics.histogram(DepthTopic.class, "latency");
 	
 	// map<productId, map<step, topic>>
 	private ConcurrentMap<Integer, ConcurrentMap<Integer, String>> index = new ConcurrentHashMap<Integer, ConcurrentMap<Integer, String>>();
+	// map<productId, map<step, diff topic>>
+	private ConcurrentMap<Integer, ConcurrentMap<Integer, String>> diffIndex = new ConcurrentHashMap<Integer, ConcurrentMap<Integer, String>>();
+	// map<topic, productId>
+	private ConcurrentMap<String, Integer> topicProducts = new ConcurrentHashMap<String, Integer>();
+	
+	// map<productId, state>
+	private ConcurrentMap<Integer, PublishState> states = new ConcurrentHashMap<Integer, PublishState>();
+	private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "depth-topic-publisher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private long intervalMillis = 100;
+	
+	public DepthTopic() {
+		Events.DEPTH_CHANGED.addHandler(this);
+	}
+	
+	@Value("${ws.depth.publish.interval.millis:100}")
+	public void setIntervalMillis(long intervalMillis) {
+		this.intervalMillis = intervalMillis;
+	}
+	
+	@PreDestroy
+	public void close() {
+		this.executor.shutdownNow();
+	}
 	
 	@Override
 	protected void register(Product product) {
 		int productId = product.getId();
 		this.index.put(productId, new ConcurrentHashMap<Integer, String>());
+		this.diffIndex.put(productId, new ConcurrentHashMap<Integer, String>());
 		
 		for (int step : DepthAggregateManager.DefaultSteps) {
 			String topic = String.format("market.%s.depth.step%s", product.getName(), step);
 			this.register(topic);
 			this.index.get(productId).put(step, topic);
+			this.topicProducts.put(topic, productId);
+			
+			String diffTopic = String.format("market.%s.depth.diff.step%s", product.getName(), step);
+			this.register(diffTopic);
+			this.diffIndex.get(productId).put(step, diffTopic);
 		}
 	}
 	
-	@Scheduled(initialDelay = 1000, fixedDelay = 1000)
-	public void publish() {
-		if (this.engineService == null) {
+	@Override
+	public void subscribe(Subscriber subscriber, TopicRequest request) {
+		super.subscribe(subscriber, request);
+		
+		// depth may not change for a long time, so publish to the new subscriber soon
+		Integer productId = this.topicProducts.get(request.getTopic());
+		if (productId != null) {
+			this.schedule(productId);
+		}
+	}
+	
+	@Override
+	public void handle(DepthAggregateManager manager) {
+		this.schedule(manager.getProductId());
+	}
+	
+	private void schedule(int productId) {
+		// handler of DEPTH_CHANGED event is never removed
+		if (this.executor.isShutdown()) {
 			return;
 		}
 		
-		for (Map.Entry<Integer, DepthAggregateManager> entry : this.engineService.depthAggs.entrySet()) {
+		PublishState state = this.states.computeIfAbsent(productId, id -> new PublishState());
+		if (!state.scheduled.compareAndSet(false, true)) {
+			return;
+		}
+		
+		long delay = Math.max(0, state.lastPublishTime + this.intervalMillis - System.currentTimeMillis());
+		this.executor.schedule(() -> this.publish(productId, state), delay, TimeUnit.MILLISECONDS);
+	}
+	
+	private void publish(int productId, PublishState state) {
+		// reset before polling changes, so that any change afterwards will be scheduled again
+		state.scheduled.set(false);
+		state.lastPublishTime = System.currentTimeMillis();
+		
+		DepthAggregateManager manager = this.engineService == null ? null : this.engineService.depthAggs.get(productId);
+		if (manager == null) {
+			return;
+		}
+		
+		long changedTime = manager.pollChangedTime();
+		
+		try {
 			for (int step : DepthAggregateManager.DefaultSteps) {
-				this.publish(entry.getKey(), step, entry.getValue());
+				this.publish(productId, step, manager);
 			}
+		} catch (Exception e) {
+			logger.error("failed to publish depth, productId = {}", productId, e);
+		}
+		
+		if (changedTime > 0) {
+			latencyStat.update(System.currentTimeMillis() - changedTime);
 		}
 	}
 	
@@ -52,9 +154,48 @@ class DepthTopic extends MarketTopic {
 			return;
 		}
 		
-		int depth = step == 0 ? 150 : 20;
-		Object data = manager.getLevels(step, depth);
+		// immutable snapshot shared with REST API, including the sequence of depth diff
+		Object data = manager.getSnapshot(step);
 		this.publish(topic, data);
 	}
+	
+	/**
+	 * Publishes changed price levels only, so as to push depth updates more frequently.
+	 * Clients could detect missed diff by sequence, and then re-sync with full depth,
+	 * which is published with the sequence of diff. Diffs with sequence less than or
+	 * equal to the sequence of full depth are already included, and should be dropped.
+	 */
+	@Scheduled(initialDelay = 1000, fixedDelayString = "${ws.depth.diff.interval.millis:200}")
+	public void publishDiff() {
+		if (this.engineService == null) {
+			return;
+		}
+		
+		for (Map.Entry<Integer, DepthAggregateManager> entry : this.engineService.depthAggs.entrySet()) {
+			// always poll even if not subscribed, so that changes will not be accumulated
+			Map<Integer, DepthDiff> diffs = entry.getValue().pollDiffs();
+			
+			for (Map.Entry<Integer, DepthDiff> diff : diffs.entrySet()) {
+				this.publishDiff(entry.getKey(), diff.getKey(), diff.getValue());
+			}
+		}
+	}
+	
+	private void publishDiff(int productId, int step, DepthDiff diff) {
+		ConcurrentMap<Integer, String> stepIndex = this.diffIndex.get(productId);
+		if (stepIndex == null) {
+			return;
+		}
+		
+		String topic = stepIndex.get(step);
+		if (topic != null && this.isSubscribed(topic)) {
+			this.publish(topic, diff);
+		}
+	}
+	
+	private static class PublishState {
+		AtomicBoolean scheduled = new AtomicBoolean();
+		volatile long lastPublishTime;
+	}
 
 }
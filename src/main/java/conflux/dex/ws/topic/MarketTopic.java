@@ -59,11 +59,14 @@ abstract class MarketTopic extends Topic {
 			return;
 		}
 		
+		// shared by all subscribers, so as to encode only once
+		TopicResponse response = TopicResponse.create(topic, data);
+		
 		Iterator<Entry<String, Subscriber>> iterator = subscribers.entrySet().iterator();
 		while (iterator.hasNext()) {
 			Subscriber subscriber = iterator.next().getValue();
 			if (subscriber.getSubscribedTopics().contains(topic)) {
-				subscriber.consume(TopicResponse.create(topic, data));
+				subscriber.consume(response);
 			} else {
 				iterator.remove();
 			}
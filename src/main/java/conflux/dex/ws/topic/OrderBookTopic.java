@@ -0,0 +1,101 @@
+package conflux.dex.ws.topic;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.Handler;
+import conflux.dex.event.Events;
+import conflux.dex.model.Product;
+import conflux.dex.worker.OrderBookEvent;
+import conflux.dex.worker.OrderBookFeed;
+import conflux.dex.ws.Subscriber;
+import conflux.dex.ws.TopicRequest;
+import conflux.dex.ws.TopicResponse;
+
+/**
+ * Order-by-order (L3) topic. Subscriber receives a snapshot of open orders at first,
+ * or the missed events if argument "since" specified with the last received sequence
+ * along with argument "epoch" of that event, and then every event in sequence, e.g.
+ * {"topic": "market.CAT-CFX.orderbook", "sub": true, "arguments": {"epoch": 1600000000000, "since": 1024}}
+ *
+ * Sequence restarts when server restarted with a new epoch, in which case a snapshot
+ * is received instead.
+ */
+@Component
+class OrderBookTopic extends MarketTopic implements Handler<OrderBookEvent> {
+
+	private static final String KEY_EPOCH = "epoch";
+	private static final String KEY_SINCE = "since";
+
+	// map<productId, topic>
+	private ConcurrentMap<Integer, String> index = new ConcurrentHashMap<Integer, String>();
+	// map<topic, productId>
+	private ConcurrentMap<String, Integer> topicProducts = new ConcurrentHashMap<String, Integer>();
+
+	public OrderBookTopic() {
+		Events.ORDER_BOOK_CHANGED.addHandler(this);
+	}
+
+	@Override
+	protected void register(Product product) {
+		String topic = String.format("market.%s.orderbook", product.getName());
+		this.register(topic);
+		this.index.put(product.getId(), topic);
+		this.topicProducts.put(topic, product.getId());
+	}
+
+	@Override
+	public void subscribe(Subscriber subscriber, TopicRequest request) {
+		String topic = request.getTopic();
+		Integer productId = this.topicProducts.get(topic);
+		OrderBookFeed feed = productId == null || this.engineService == null ? null : this.engineService.orderBookFeeds.get(productId);
+		if (feed == null) {
+			super.subscribe(subscriber, request);
+			return;
+		}
+
+		long since = parseLong(request, KEY_SINCE);
+		long epoch = parseLong(request, KEY_EPOCH);
+		if (since >= 0 && epoch < 0) {
+			throw BusinessException.validateFailed("epoch required along with since");
+		}
+
+		// subscribe in lock of feed, so that events will be published after the initial message
+		feed.sync(epoch, since, sync -> {
+			super.subscribe(subscriber, request);
+			subscriber.consume(TopicResponse.create(topic, sync));
+		});
+	}
+
+	/**
+	 * Returns the specified argument, or -1 if not specified.
+	 */
+	private static long parseLong(TopicRequest request, String key) {
+		Object value = request.getArguments() == null ? null : request.getArguments().get(key);
+		if (value == null) {
+			return -1;
+		}
+
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+
+		try {
+			return Long.parseLong(value.toString());
+		} catch (NumberFormatException e) {
+			throw BusinessException.validateFailed("invalid %s", key);
+		}
+	}
+
+	@Override
+	public void handle(OrderBookEvent event) {
+		String topic = this.index.get(event.getProductId());
+		if (this.isSubscribed(topic)) {
+			this.publish(topic, event);
+		}
+	}
+
+}
@@ -65,11 +65,14 @@ abstract class UserTopic extends Topic {
 				return;
 			}
 			
+			// shared by all subscribers, so as to encode only once
+			TopicResponse response = TopicResponse.create(this.topic, data);
+			
 			Iterator<Entry<String, Subscriber>> iterator = subscribers.entrySet().iterator();
 			while (iterator.hasNext()) {
 				Subscriber subscriber = iterator.next().getValue();
 				if (subscriber.getSubscribedTopics().contains(this.topic)) {
-					subscriber.consume(TopicResponse.create(this.topic, data));
+					subscriber.consume(response);
 				} else {
 					iterator.remove();
 				}
@@ -76,6 +76,14 @@ CREATE TABLE IF NOT EXISTS t_account (
 	UNIQUE KEY uk_uid_currency (user_id, currency)
 ) ENGINE=InnoDB;
 
+CREATE TABLE IF NOT EXISTS t_account_journal (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	account_id BIGINT NOT NULL,
+	hold_delta DECIMAL(32,18) NOT NULL,
+	available_delta DECIMAL(32,18) NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
+
 CREATE TABLE IF NOT EXISTS t_order (
 	id BIGINT NOT NULL AUTO_INCREMENT,
 	product_id INT NOT NULL,
@@ -111,7 +119,8 @@ CREATE TABLE IF NOT EXISTS t_order (
 	KEY idx_uid_pid_ps_ct (user_id, product_id, phase_side, create_time),
 	KEY idx_uid_ps_ct (user_id, phase_side, create_time),
 	KEY idx_status (status),
-	KEY idx_pid_status (product_id, status)
+	KEY idx_pid_status (product_id, status),
+	KEY idx_pid_ut (product_id, update_time)
 ) ENGINE=InnoDB;
 
 CREATE TABLE IF NOT EXISTS t_order_archive (
@@ -0,0 +1,68 @@
+USE conflux_dex;
+-- 2026.10.17
+-- Partitions t_order, t_trade and trade map tables by RANGE (id), so that PartitionService
+-- (partition.enabled=true) could retire history data by dropping partitions.
+-- Run in maintenance window, since all tables will be rebuilt.
+
+-- 1. Partitioned tables do not support foreign keys, and the cascaded deletion of t_order_cancel
+-- is done by PartitionService instead. Foreign key names are generated by default, please check
+-- with SHOW CREATE TABLE before running.
+ALTER TABLE t_order_cancel DROP FOREIGN KEY t_order_cancel_ibfk_1;
+ALTER TABLE t_order_prune DROP FOREIGN KEY t_order_prune_ibfk_1;
+ALTER TABLE t_trade_order_map DROP FOREIGN KEY t_trade_order_map_ibfk_1;
+ALTER TABLE t_trade_user_map DROP FOREIGN KEY t_trade_user_map_ibfk_1;
+ALTER TABLE t_trade DROP FOREIGN KEY t_trade_ibfk_1, DROP FOREIGN KEY t_trade_ibfk_2, DROP FOREIGN KEY t_trade_ibfk_3;
+ALTER TABLE t_order DROP FOREIGN KEY t_order_ibfk_1, DROP FOREIGN KEY t_order_ibfk_2;
+
+-- 2. Every unique key must include the partitioning column. Order hash and client order id are only
+-- checked before order placed, which is not atomic, and TradeDao.addTrades queries back trade ids by
+-- (taker, maker). So, unique keys are moved to the non-partitioned tables below, which are inserted
+-- in the same transaction along with orders and trades (partition.enabled=true), and deleted by
+-- PartitionService when order partition retired.
+CREATE TABLE IF NOT EXISTS t_order_hash (
+	hash VARCHAR(128) NOT NULL,
+	order_id BIGINT NOT NULL,
+	PRIMARY KEY (hash),
+	KEY idx_oid (order_id)
+) ENGINE=InnoDB;
+CREATE TABLE IF NOT EXISTS t_order_client_id (
+	user_id BIGINT NOT NULL,
+	client_order_id VARCHAR(64) NOT NULL,
+	order_id BIGINT NOT NULL,
+	PRIMARY KEY (user_id, client_order_id),
+	KEY idx_oid (order_id)
+) ENGINE=InnoDB;
+CREATE TABLE IF NOT EXISTS t_trade_order_pair (
+	taker_order_id BIGINT NOT NULL,
+	maker_order_id BIGINT NOT NULL,
+	PRIMARY KEY (taker_order_id, maker_order_id)
+) ENGINE=InnoDB;
+INSERT INTO t_order_hash (hash, order_id) SELECT hash, id FROM t_order;
+INSERT INTO t_order_client_id (user_id, client_order_id, order_id)
+	SELECT user_id, client_order_id, id FROM t_order WHERE client_order_id IS NOT NULL;
+INSERT INTO t_trade_order_pair (taker_order_id, maker_order_id) SELECT taker_order_id, maker_order_id FROM t_trade;
+ALTER TABLE t_order
+	DROP INDEX hash, ADD KEY idx_hash (hash),
+	DROP INDEX uk_uid_coid, ADD KEY idx_uid_coid (user_id, client_order_id);
+ALTER TABLE t_trade DROP INDEX uk_toid_moid, ADD KEY idx_toid_moid (taker_order_id, maker_order_id);
+
+-- 3. Existing rows are kept in the first partition, and the "pmax" partition must be empty, otherwise
+-- it will be expensive to split. Partition bound should be constant, so please replace ORDER_BOUND with
+-- the result of SELECT MAX(id) + 1 FROM t_order, and TRADE_BOUND with SELECT MAX(id) + 1 FROM t_trade.
+-- Map tables must use the same partition names and bounds as t_trade.
+ALTER TABLE t_order PARTITION BY RANGE (id) (
+	PARTITION phistory VALUES LESS THAN (ORDER_BOUND),
+	PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+ALTER TABLE t_trade PARTITION BY RANGE (id) (
+	PARTITION phistory VALUES LESS THAN (TRADE_BOUND),
+	PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+ALTER TABLE t_trade_order_map PARTITION BY RANGE (trade_id) (
+	PARTITION phistory VALUES LESS THAN (TRADE_BOUND),
+	PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+ALTER TABLE t_trade_user_map PARTITION BY RANGE (trade_id) (
+	PARTITION phistory VALUES LESS THAN (TRADE_BOUND),
+	PARTITION pmax VALUES LESS THAN MAXVALUE
+);
@@ -78,3 +78,15 @@ create table if not exists t_qps_limit
     comment 'qps limit conf';
 
 
+
+-- Load orders updated after order book snapshot when engine started
+ALTER TABLE t_order ADD KEY idx_pid_ut (product_id, update_time);
+
+-- Balance changes committed but not written to t_account yet by account ledger (account.ledger.enabled=true)
+CREATE TABLE IF NOT EXISTS t_account_journal (
+	id BIGINT NOT NULL AUTO_INCREMENT,
+	account_id BIGINT NOT NULL,
+	hold_delta DECIMAL(32,18) NOT NULL,
+	available_delta DECIMAL(32,18) NOT NULL,
+	PRIMARY KEY (id)
+) ENGINE=InnoDB;
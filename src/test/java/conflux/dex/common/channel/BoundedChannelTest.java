@@ -0,0 +1,159 @@
+package conflux.dex.common.channel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.BusinessFault;
+import conflux.dex.common.Metrics.QueueMetric;
+
+public class BoundedChannelTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void cleanup() throws InterruptedException {
+		executor.shutdownNow();
+		executor.awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testCreate() {
+		Assert.assertFalse(Channel.create(0, OverflowPolicy.Reject, false) instanceof BoundedChannel);
+		Assert.assertTrue(Channel.create(10, OverflowPolicy.Reject, false) instanceof ArrayChannel);
+		Assert.assertTrue(Channel.create(10, OverflowPolicy.Reject, true) instanceof LockFreeChannel);
+		Assert.assertEquals(16, ((BoundedChannel<?>) Channel.create(10, OverflowPolicy.Reject, true)).getCapacity());
+	}
+
+	@Test(timeout = 5000)
+	public void testSendReceive() throws Exception {
+		this.testSendReceive(new ArrayChannel<Integer>(4, OverflowPolicy.Block));
+		this.testSendReceive(new LockFreeChannel<Integer>(4, OverflowPolicy.Block));
+	}
+
+	private void testSendReceive(BoundedChannel<Integer> channel) throws Exception {
+		QueueMetric metric = new QueueMetric();
+		channel.setQueueMetric(metric);
+
+		Future<?> future = this.executor.submit(() -> {
+			for (int i = 0; i < 100; i++) {
+				channel.send(i);
+			}
+		});
+
+		// receive in order, and sender blocked when channel is full
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, channel.receive().intValue());
+			Assert.assertTrue(channel.size() <= channel.getCapacity());
+		}
+
+		future.get();
+		Assert.assertEquals(0, channel.size());
+		Assert.assertEquals(0, metric.getSize());
+		Assert.assertEquals(100, metric.getDequeue().getCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testSendInterrupted() throws Exception {
+		this.testSendInterrupted(new ArrayChannel<Integer>(2, OverflowPolicy.Block));
+		this.testSendInterrupted(new LockFreeChannel<Integer>(2, OverflowPolicy.Block));
+	}
+
+	private void testSendInterrupted(BoundedChannel<Integer> channel) throws Exception {
+		QueueMetric metric = new QueueMetric();
+		channel.setQueueMetric(metric);
+		channel.send(1);
+		channel.send(2);
+
+		// sender blocked when channel is full, and counted in queue size
+		Future<?> future = this.executor.submit(() -> channel.send(3));
+		while (metric.getSize() < 3) {
+			Thread.sleep(1);
+		}
+
+		future.cancel(true);
+		while (metric.getSize() > 2) {
+			Thread.sleep(1);
+		}
+
+		Assert.assertEquals(2, channel.size());
+		Assert.assertEquals(1, channel.receive().intValue());
+		Assert.assertEquals(2, channel.receive().intValue());
+		Assert.assertEquals(0, channel.size());
+	}
+
+	@Test
+	public void testAdmitReject() {
+		this.testAdmitReject(new ArrayChannel<Integer>(4, OverflowPolicy.Reject));
+		this.testAdmitReject(new LockFreeChannel<Integer>(4, OverflowPolicy.Reject));
+	}
+
+	private void testAdmitReject(BoundedChannel<Integer> channel) {
+		QueueMetric metric = new QueueMetric();
+		channel.setQueueMetric(metric);
+
+		for (int i = 0; i < 4; i++) {
+			channel.admit();
+			channel.send(i);
+		}
+
+		Assert.assertEquals(4, metric.getCapacity());
+		Assert.assertEquals(1.0, metric.getFillRatio(), 0);
+
+		try {
+			channel.admit();
+			Assert.fail("admitted when channel is full");
+		} catch (BusinessException e) {
+			Assert.assertEquals(BusinessFault.SystemBusy.getCode(), e.getCode());
+		}
+
+		Assert.assertEquals(1, metric.getReject().getCount());
+	}
+
+	@Test
+	public void testAdmitBlock() {
+		BoundedChannel<Integer> channel = new ArrayChannel<Integer>(2, OverflowPolicy.Block);
+		channel.send(1);
+		channel.send(2);
+
+		// always admitted
+		channel.admit();
+	}
+
+	@Test
+	public void testAdmitShed() {
+		BoundedChannel<Integer> channel = new ArrayChannel<Integer>(100, OverflowPolicy.Shed);
+
+		// always admitted under threshold
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertTrue(channel.isAdmitted(79));
+		}
+
+		// shed partially between threshold and capacity
+		int admitted = 0;
+		for (int i = 0; i < 10000; i++) {
+			if (channel.isAdmitted(90)) {
+				admitted++;
+			}
+		}
+		Assert.assertTrue(admitted > 4000 && admitted < 6000);
+
+		// always rejected when full
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertFalse(channel.isAdmitted(100));
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package conflux.dex.common.worker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RingBufferTest extends CommonWorkerTest {
+
+	private static class Slot {
+		int value;
+	}
+
+	private static RingBuffer<Slot> newBuffer(int capacity) {
+		return new RingBuffer<Slot>(capacity, Slot::new);
+	}
+
+	private static long publish(RingBuffer<Slot> buffer, int value) {
+		long sequence = buffer.claim();
+		buffer.getClaimed(sequence).value = value;
+		buffer.publish(sequence);
+		return sequence;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		newBuffer(10);
+	}
+
+	@Test
+	public void testPublishAndRelease() {
+		RingBuffer<Slot> buffer = newBuffer(4);
+		Assert.assertTrue(buffer.isEmpty());
+
+		// wrap around several times
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(2 * i, publish(buffer, 2 * i));
+			Assert.assertEquals(2 * i + 1, publish(buffer, 2 * i + 1));
+			Assert.assertEquals(2, buffer.size());
+
+			long sequence = buffer.getConsumed();
+			Assert.assertEquals(2 * i, buffer.get(sequence).value);
+			Assert.assertEquals(2 * i + 1, buffer.get(sequence + 1).value);
+			Assert.assertFalse(buffer.isPublished(sequence + 2));
+
+			buffer.release(sequence + 2);
+			Assert.assertTrue(buffer.isEmpty());
+		}
+	}
+
+	@Test
+	public void testTryClaim() {
+		RingBuffer<Slot> buffer = newBuffer(2);
+		publish(buffer, 1);
+		publish(buffer, 2);
+
+		// not claimed when full
+		Assert.assertEquals(-1, buffer.tryClaim());
+		Assert.assertEquals(2, buffer.size());
+
+		buffer.release(buffer.getConsumed() + 1);
+		Assert.assertEquals(2, buffer.tryClaim());
+		Assert.assertEquals(-1, buffer.tryClaim());
+	}
+
+	@Test
+	public void testSlotsReused() {
+		RingBuffer<Slot> buffer = newBuffer(2);
+
+		long sequence = publish(buffer, 1);
+		Slot slot = buffer.get(sequence);
+		buffer.release(sequence + 1);
+
+		publish(buffer, 2);
+
+		// wrapped around to the same slot
+		sequence = publish(buffer, 3);
+		Assert.assertSame(slot, buffer.get(sequence));
+		Assert.assertEquals(3, slot.value);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetReleased() {
+		RingBuffer<Slot> buffer = newBuffer(4);
+		publish(buffer, 1);
+		buffer.release(1);
+		buffer.get(0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleaseUnpublished() {
+		RingBuffer<Slot> buffer = newBuffer(4);
+		publish(buffer, 1);
+		buffer.release(2);
+	}
+
+	@Test(timeout = 5000)
+	public void testBackpressure() throws Exception {
+		RingBuffer<Slot> buffer = newBuffer(2);
+		List<Boolean> signals = new ArrayList<Boolean>();
+		buffer.setBackpressureHandler(full -> {
+			synchronized (signals) {
+				signals.add(full);
+			}
+		});
+
+		publish(buffer, 1);
+		publish(buffer, 2);
+
+		// blocked since buffer is full
+		Future<Long> future = this.executor.submit(() -> publish(buffer, 3));
+		while (!buffer.isBackpressured()) {
+			Thread.sleep(5);
+		}
+		Assert.assertFalse(future.isDone());
+
+		buffer.release(buffer.getConsumed() + 1);
+		Assert.assertEquals(2, future.get().longValue());
+		Assert.assertFalse(buffer.isBackpressured());
+
+		synchronized (signals) {
+			Assert.assertEquals(2, signals.size());
+			Assert.assertTrue(signals.get(0));
+			Assert.assertFalse(signals.get(1));
+		}
+
+		Assert.assertEquals(2, buffer.get(1).value);
+		Assert.assertEquals(3, buffer.get(2).value);
+	}
+
+	@Test(timeout = 5000)
+	public void testMultipleProducers() throws Exception {
+		RingBuffer<Slot> buffer = newBuffer(8);
+		int producers = 4;
+		int count = 1000;
+
+		for (int p = 0; p < producers; p++) {
+			int base = p * count;
+			this.executor.submit(() -> {
+				for (int i = 0; i < count; i++) {
+					publish(buffer, base + i);
+				}
+			});
+		}
+
+		// each producer publishes in order
+		int[] next = new int[producers];
+		for (int received = 0; received < producers * count; received++) {
+			long sequence = buffer.getConsumed();
+			while (!buffer.isPublished(sequence)) {
+				Thread.yield();
+			}
+
+			int value = buffer.get(sequence).value;
+			Assert.assertEquals(next[value / count]++, value % count);
+			buffer.release(sequence + 1);
+		}
+
+		Assert.assertTrue(buffer.isEmpty());
+	}
+
+}
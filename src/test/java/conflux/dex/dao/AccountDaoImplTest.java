@@ -3,8 +3,13 @@ package conflux.dex.dao;
 import conflux.dex.model.AccountStatus;
 import conflux.dex.service.AccountService;
 import org.easymock.EasyMock;
+import org.junit.Assert;
 import org.junit.Test;
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AccountDaoImplTest {
     private final AccountDaoImpl accountDao = new AccountDaoImpl();
@@ -20,6 +25,25 @@ public class AccountDaoImplTest {
         accountDao.updateAccountBalance(1L, BigDecimal.valueOf(1L), BigDecimal.valueOf(1L));
     }
 
+    @Test(expected = NullPointerException.class)
+    public void testUpdateAccountBalances() {
+        accountDao.updateAccountBalances(Collections.singletonMap(1L, BigDecimal.ONE), Collections.singletonMap(1L, BigDecimal.ONE));
+    }
+
+    @Test
+    public void testInMemoryUpdateAccountBalances() {
+        TestDexDao dao = new TestDexDao();
+        Map<Long, BigDecimal> holdDeltas = new HashMap<>();
+        Map<Long, BigDecimal> availableDeltas = new HashMap<>();
+        holdDeltas.put(dao.aliceCat.getId(), BigDecimal.ZERO);
+        availableDeltas.put(dao.aliceCat.getId(), BigDecimal.ONE);
+        holdDeltas.put(dao.bobCat.getId(), BigDecimal.ONE.negate());
+        availableDeltas.put(dao.bobCat.getId(), BigDecimal.ZERO);
+
+        List<Long> failed = dao.get().updateAccountBalances(holdDeltas, availableDeltas);
+        Assert.assertEquals(Collections.singletonList(dao.bobCat.getId()), failed);
+    }
+
     @Test(expected = NullPointerException.class)
     public void testGetAccount() {
         accountDao.getAccount(1L, "CFX");
@@ -0,0 +1,142 @@
+package conflux.dex.dao;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import conflux.dex.model.Account;
+
+public class AccountLedgerTest {
+
+	private InMemoryAccountDao dao;
+	private InMemoryAccountJournalDao journalDao;
+	private AccountLedger ledger;
+	private Account account;
+
+	@Before
+	public void setUp() {
+		this.dao = new InMemoryAccountDao();
+		this.account = new Account(1, "CFX", BigDecimal.valueOf(100));
+		this.dao.addAccount(this.account);
+
+		this.journalDao = new InMemoryAccountJournalDao();
+
+		this.ledger = new AccountLedger(this.dao, this.journalDao);
+		this.ledger.setEnabled(true);
+		this.ledger.init();
+	}
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private void assertBalance(AccountDao dao, long hold, long available) {
+		Account account = dao.getAccountById(this.account.getId()).get();
+		Assert.assertEquals(0, BigDecimal.valueOf(hold).compareTo(account.getHold()));
+		Assert.assertEquals(0, BigDecimal.valueOf(available).compareTo(account.getAvailable()));
+	}
+
+	private void complete(int status) {
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		if (status == TransactionSynchronization.STATUS_COMMITTED) {
+			for (TransactionSynchronization synchronization : synchronizations) {
+				synchronization.beforeCommit(false);
+			}
+		}
+
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.afterCompletion(status);
+		}
+	}
+
+	@Test
+	public void testWriteBehind() {
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(30), BigDecimal.valueOf(-30)));
+		Assert.assertFalse(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(80), BigDecimal.valueOf(-80)));
+
+		// balances changed in ledger but not flushed yet
+		this.assertBalance(this.ledger, 30, 70);
+		this.assertBalance(this.dao, 0, 100);
+
+		this.ledger.flush();
+		this.assertBalance(this.dao, 30, 70);
+	}
+
+	@Test
+	public void testLoad() {
+		Account other = new Account(2, "CFX", BigDecimal.TEN);
+		this.dao.addAccount(other);
+
+		AccountLedger ledger = new AccountLedger(this.dao, this.journalDao);
+		ledger.load();
+
+		Assert.assertEquals(1, ledger.listAccounts(1).size());
+		Assert.assertEquals(other.getId(), ledger.getAccount(2, "CFX").get().getId());
+	}
+
+	@Test
+	public void testCommit() {
+		TransactionSynchronizationManager.initSynchronization();
+
+		// increase is visible in the same transaction
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(100), BigDecimal.valueOf(-100)));
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(-40), BigDecimal.valueOf(40)));
+		this.assertBalance(this.ledger, 0, 0);
+
+		this.complete(TransactionSynchronization.STATUS_COMMITTED);
+		this.assertBalance(this.ledger, 60, 40);
+
+		this.ledger.flush();
+		this.assertBalance(this.dao, 60, 40);
+	}
+
+	@Test
+	public void testRollback() {
+		TransactionSynchronizationManager.initSynchronization();
+
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(30), BigDecimal.valueOf(-30)));
+		this.assertBalance(this.ledger, 0, 70);
+
+		this.complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+		this.assertBalance(this.ledger, 0, 100);
+		Assert.assertTrue(this.journalDao.listJournals(10).isEmpty());
+
+		this.ledger.flush();
+		this.assertBalance(this.dao, 0, 100);
+	}
+
+	@Test
+	public void testCrashRecovery() {
+		TransactionSynchronizationManager.initSynchronization();
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(30), BigDecimal.valueOf(-30)));
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(-10), BigDecimal.valueOf(10)));
+		this.complete(TransactionSynchronization.STATUS_COMMITTED);
+
+		Assert.assertTrue(this.ledger.updateAccountBalance(this.account.getId(), BigDecimal.valueOf(5), BigDecimal.valueOf(-5)));
+
+		// crashed before flushed, only the net changes of each transaction in journal
+		this.assertBalance(this.dao, 0, 100);
+		Assert.assertEquals(2, this.journalDao.listJournals(10).size());
+
+		// replayed on restart
+		AccountLedger restarted = new AccountLedger(this.dao, this.journalDao);
+		restarted.setEnabled(true);
+		restarted.init();
+
+		this.assertBalance(this.dao, 25, 75);
+		this.assertBalance(restarted, 25, 75);
+		Assert.assertTrue(this.journalDao.listJournals(10).isEmpty());
+	}
+
+}
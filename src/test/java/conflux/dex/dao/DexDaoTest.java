@@ -0,0 +1,50 @@
+package conflux.dex.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.junit.Test;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.BusinessFault;
+
+public class DexDaoTest {
+
+	@Test
+	public void testAllMethodsDelegated() throws Exception {
+		for (Method method : DexDao.class.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+
+			// default methods may be overridden by DAO implementation, so should be delegated too
+			Method impl = DelegatingDexDao.class.getMethod(method.getName(), method.getParameterTypes());
+			assertEquals(method.toString(), DelegatingDexDao.class, impl.getDeclaringClass());
+		}
+	}
+
+	@Test
+	public void testInMemory() {
+		DexDao dao = DexDao.newInMemory();
+
+		dao.setConfig("foo", "bar");
+		assertEquals("bar", dao.execute(status -> dao.getConfig("foo").get()));
+
+		try {
+			dao.mustGetOrder(1);
+			fail("order should not be found");
+		} catch (BusinessException e) {
+			assertEquals(BusinessFault.OrderNotFound.getCode(), e.getCode());
+		}
+
+		try {
+			dao.getWithdrawSum("CFX");
+			fail("withdraw DAO should not be supported in memory");
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+}
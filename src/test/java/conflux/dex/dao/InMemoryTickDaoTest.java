@@ -0,0 +1,40 @@
+package conflux.dex.dao;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import conflux.dex.model.Tick;
+
+public class InMemoryTickDaoTest {
+
+	private final InMemoryTickDao dao = new InMemoryTickDao();
+
+	@Test
+	public void testUpsertTicks() {
+		Instant time = Instant.ofEpochSecond(60);
+		Tick tick = Tick.open(1, 1, BigDecimal.ONE, BigDecimal.TEN, time);
+
+		this.dao.upsertTicks(Arrays.asList(tick));
+		Assert.assertEquals(0, tick.getId());
+
+		Tick updated = Tick.open(1, 1, BigDecimal.valueOf(2), BigDecimal.TEN, time);
+		this.dao.upsertTicks(Arrays.asList(updated));
+		Assert.assertEquals(0, updated.getId());
+
+		List<Tick> ticks = this.dao.listTicks(1, 1, Timestamp.from(time), Timestamp.from(time));
+		Assert.assertEquals(1, ticks.size());
+		Assert.assertTrue(ticks.get(0).getId() > 0);
+		Assert.assertEquals(0, BigDecimal.valueOf(2).compareTo(ticks.get(0).getClose()));
+
+		// stored tick not shared with caller
+		updated.setClose(BigDecimal.TEN);
+		Assert.assertEquals(0, BigDecimal.valueOf(2).compareTo(ticks.get(0).getClose()));
+	}
+
+}
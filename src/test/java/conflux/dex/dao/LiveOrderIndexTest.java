@@ -0,0 +1,198 @@
+package conflux.dex.dao;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import conflux.dex.model.Order;
+import conflux.dex.model.OrderFilter;
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.OrderStatus;
+import conflux.dex.model.OrderType;
+import conflux.dex.model.PagingResult;
+
+public class LiveOrderIndexTest {
+
+	private InMemoryOrderDao dao;
+	private LiveOrderIndex index;
+
+	private Order open;
+	private Order placed;
+
+	@Before
+	public void setUp() {
+		this.dao = new InMemoryOrderDao();
+
+		this.open = newOrder(1, 1, OrderStatus.Open);
+		this.placed = newOrder(1, 2, OrderStatus.New);
+		this.dao.addOrder(this.open);
+		this.dao.addOrder(this.placed);
+		this.dao.addOrder(newOrder(1, 1, OrderStatus.Filled));
+		this.dao.addOrder(newOrder(2, 1, OrderStatus.Open));
+
+		this.index = new LiveOrderIndex(this.dao);
+		this.index.setEnabled(true);
+		this.index.init();
+	}
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static Order newOrder(long userId, int productId, OrderStatus status) {
+		Order order = new Order();
+		order.setUserId(userId);
+		order.setProductId(productId);
+		order.setType(OrderType.Limit);
+		order.setSide(OrderSide.Buy);
+		order.setStatus(status);
+		order.setPrice(BigDecimal.ONE);
+		order.setAmount(BigDecimal.TEN);
+		order.setFilledAmount(BigDecimal.ZERO);
+		order.setFilledFunds(BigDecimal.ZERO);
+		return order;
+	}
+
+	private PagingResult<Order> listIncompleted(long userId, int offset, int limit, boolean asc) {
+		return this.index.listOrdersByPhase(userId, OrderFilter.Phase.Incompleted,
+				Timestamp.from(Instant.EPOCH), Timestamp.from(Instant.now()), offset, limit, asc);
+	}
+
+	private void complete(int status) {
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		for (TransactionSynchronization synchronization : synchronizations) {
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				synchronization.afterCommit();
+			}
+
+			synchronization.afterCompletion(status);
+		}
+	}
+
+	@Test
+	public void testList() {
+		List<Order> orders = this.index.listOrdersByStatus(1, OrderStatus.Open, 0, 10, true);
+		Assert.assertEquals(1, orders.size());
+		Assert.assertEquals(this.open.getId(), orders.get(0).getId());
+
+		Assert.assertEquals(1, this.index.listOrdersByStatus(1, 2, OrderStatus.New, 0, 10, true).size());
+		Assert.assertTrue(this.index.listOrdersByStatus(1, 1, OrderStatus.New, 0, 10, true).isEmpty());
+
+		// completed orders served by database
+		Assert.assertEquals(1, this.index.listOrdersByStatus(1, OrderStatus.Filled, 0, 10, true).size());
+
+		PagingResult<Order> result = this.listIncompleted(1, 0, 10, false);
+		Assert.assertEquals(2, result.getTotal());
+		Assert.assertEquals(this.placed.getId(), result.getItems().get(0).getId());
+		Assert.assertEquals(this.open.getId(), result.getItems().get(1).getId());
+
+		result = this.listIncompleted(1, 1, 10, true);
+		Assert.assertEquals(2, result.getTotal());
+		Assert.assertEquals(1, result.getItems().size());
+		Assert.assertEquals(this.placed.getId(), result.getItems().get(0).getId());
+
+		Assert.assertTrue(this.listIncompleted(1, 2, 10, true).getItems().isEmpty());
+	}
+
+	@Test
+	public void testUpdate() {
+		Assert.assertTrue(this.index.addOrder(newOrder(1, 1, OrderStatus.New)));
+		Assert.assertEquals(2, this.index.listOrdersByStatus(1, OrderStatus.New, 0, 10, true).size());
+
+		this.index.fillOrder(this.open.getId(), BigDecimal.ONE, BigDecimal.ONE);
+		Order filled = this.index.listOrdersByStatus(1, OrderStatus.Open, 0, 10, true).get(0);
+		Assert.assertEquals(0, BigDecimal.ONE.compareTo(filled.getFilledAmount()));
+
+		Assert.assertTrue(this.index.updateOrderStatus(this.open.getId(), OrderStatus.Open, OrderStatus.Filled));
+		Assert.assertTrue(this.index.listOrdersByStatus(1, OrderStatus.Open, 0, 10, true).isEmpty());
+		Assert.assertEquals(2, this.listIncompleted(1, 0, 10, true).getTotal());
+	}
+
+	@Test
+	public void testTransaction() {
+		TransactionSynchronizationManager.initSynchronization();
+		Assert.assertTrue(this.index.updateOrderStatus(this.placed.getId(), OrderStatus.New, OrderStatus.Open));
+
+		// not changed until committed
+		Assert.assertEquals(1, this.index.listOrdersByStatus(1, OrderStatus.New, 0, 10, true).size());
+
+		this.complete(TransactionSynchronization.STATUS_COMMITTED);
+		Assert.assertTrue(this.index.listOrdersByStatus(1, OrderStatus.New, 0, 10, true).isEmpty());
+		Assert.assertEquals(2, this.index.listOrdersByStatus(1, OrderStatus.Open, 0, 10, true).size());
+
+		// rolled back
+		TransactionSynchronizationManager.initSynchronization();
+		this.index.fillOrder(this.placed.getId(), BigDecimal.ONE, BigDecimal.ONE);
+		this.complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		for (Order order : this.index.listOrdersByStatus(1, OrderStatus.Open, 0, 10, true)) {
+			Assert.assertEquals(0, BigDecimal.ZERO.compareTo(order.getFilledAmount()));
+		}
+	}
+
+	@Test
+	public void testChangedBeforeCached() {
+		// order added, but callback not run yet
+		TransactionSynchronizationManager.initSynchronization();
+		Order order = newOrder(1, 1, OrderStatus.New);
+		Assert.assertTrue(this.index.addOrder(order));
+		List<TransactionSynchronization> added = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		// another transaction committed and callbacks run
+		Assert.assertTrue(this.index.updateOrderStatus(order.getId(), OrderStatus.New, OrderStatus.Open));
+		this.index.fillOrder(order.getId(), BigDecimal.ONE, BigDecimal.ONE);
+
+		TransactionSynchronizationManager.initSynchronization();
+		added.forEach(TransactionSynchronizationManager::registerSynchronization);
+		this.complete(TransactionSynchronization.STATUS_COMMITTED);
+
+		// fill applied only once
+		List<Order> orders = this.index.listOrdersByStatus(1, 1, OrderStatus.Open, 0, 10, true);
+		Assert.assertEquals(2, orders.size());
+		Assert.assertEquals(order.getId(), orders.get(1).getId());
+		Assert.assertEquals(0, BigDecimal.ONE.compareTo(orders.get(1).getFilledAmount()));
+		Assert.assertTrue(this.index.listOrdersByStatus(1, 1, OrderStatus.New, 0, 10, true).isEmpty());
+	}
+
+	@Test
+	public void testCompletedBeforeCached() {
+		TransactionSynchronizationManager.initSynchronization();
+		Order order = newOrder(1, 1, OrderStatus.New);
+		Assert.assertTrue(this.index.addOrder(order));
+		List<TransactionSynchronization> added = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		// callbacks of status changes run in reverse order
+		TransactionSynchronizationManager.initSynchronization();
+		Assert.assertTrue(this.index.updateOrderStatus(order.getId(), OrderStatus.New, OrderStatus.Open));
+		List<TransactionSynchronization> opened = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		Assert.assertTrue(this.index.updateOrderStatus(order.getId(), OrderStatus.Open, OrderStatus.Filled));
+
+		TransactionSynchronizationManager.initSynchronization();
+		opened.forEach(TransactionSynchronizationManager::registerSynchronization);
+		added.forEach(TransactionSynchronizationManager::registerSynchronization);
+		this.complete(TransactionSynchronization.STATUS_COMMITTED);
+
+		// stale New order not cached
+		Assert.assertTrue(this.index.listOrdersByStatus(1, 1, OrderStatus.New, 0, 10, true).isEmpty());
+		Assert.assertEquals(1, this.index.listOrdersByStatus(1, 1, OrderStatus.Open, 0, 10, true).size());
+		Assert.assertEquals(2, this.listIncompleted(1, 0, 10, true).getTotal());
+	}
+
+}
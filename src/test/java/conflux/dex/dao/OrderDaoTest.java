@@ -1,12 +1,21 @@
 package conflux.dex.dao;
 
+import conflux.dex.common.BusinessException;
 import conflux.dex.model.Order;
 import conflux.dex.model.OrderFilter;
 import conflux.dex.model.OrderStatus;
+import conflux.dex.model.PagingCursor;
+import conflux.dex.model.PagingResult;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 
 public class OrderDaoTest {
     private java.sql.Timestamp start;
@@ -46,7 +55,50 @@ public class OrderDaoTest {
         Assert.assertNotNull(inMemoryOrderDao.getOrderByClientOrderId(1L, "alice"));
     }
 
+    @Test
+    public void testListOrdersByStatusAfter() {
+        InMemoryOrderDao inMemoryOrderDao = new InMemoryOrderDao();
+        for (int i = 0; i < 5; i++) {
+            Order order = new Order();
+            order.setProductId(i == 2 ? 2 : 1);
+            order.setStatus(OrderStatus.Open);
+            inMemoryOrderDao.addOrder(order);
+        }
+
+        List<Order> orders = inMemoryOrderDao.listOrdersByStatusAfter(1, OrderStatus.Open, 0, 2);
+        Assert.assertEquals(2, orders.size());
+
+        orders = inMemoryOrderDao.listOrdersByStatusAfter(1, OrderStatus.Open, orders.get(1).getId(), 2);
+        Assert.assertEquals(2, orders.size());
+        Assert.assertTrue(orders.stream().allMatch(o -> o.getProductId() == 1));
+
+        orders = inMemoryOrderDao.listOrdersByStatusAfter(1, OrderStatus.Open, orders.get(1).getId(), 2);
+        Assert.assertTrue(orders.isEmpty());
+    }
+
+    @Test
+    public void testListOrdersUpdatedSince() {
+        InMemoryOrderDao inMemoryOrderDao = new InMemoryOrderDao();
+        for (int i = 0; i < 3; i++) {
+            Order order = new Order();
+            order.setProductId(1);
+            order.setStatus(OrderStatus.Open);
+            inMemoryOrderDao.addOrder(order);
+            order.setUpdateTime(new java.sql.Timestamp(i * 1000));
+        }
+
+        List<Order> orders = inMemoryOrderDao.listOrdersUpdatedSince(1, new java.sql.Timestamp(1000), 0, 10);
+        Assert.assertEquals(2, orders.size());
+        Assert.assertTrue(inMemoryOrderDao.listOrdersUpdatedSince(2, new java.sql.Timestamp(0), 0, 10).isEmpty());
+    }
+
     // test OrderDaoImpl
+    @Test(expected = NullPointerException.class)
+    public void testFillOrders() {
+        OrderDaoImpl orderDao = new OrderDaoImpl();
+        orderDao.fillOrders(Collections.singletonMap(1L, BigDecimal.ONE), Collections.singletonMap(1L, BigDecimal.ONE));
+    }
+
     @Test(expected = NullPointerException.class)
     public void testAddOrder() {
         Order order = new Order();
@@ -92,4 +144,61 @@ public class OrderDaoTest {
         orderDao.listOrdersByPhase(1L, filter, start, end, 1, 1, true);
     }
 
+    @Test
+    public void testPagingCursor() {
+        Timestamp createTime = Timestamp.from(Instant.ofEpochSecond(1600000000, 123456789));
+        PagingCursor cursor = PagingCursor.parse(new PagingCursor(createTime, 7, 30).encode());
+        Assert.assertEquals(createTime, cursor.getCreateTime());
+        Assert.assertEquals(7, cursor.getId());
+        Assert.assertEquals(30, cursor.getTotal());
+
+        Assert.assertNull(PagingCursor.parse(""));
+
+        try {
+            PagingCursor.parse("not a cursor");
+            Assert.fail("invalid cursor should be rejected");
+        } catch (BusinessException e) {
+            Assert.assertEquals(BusinessException.codeValidateFailed, e.getCode());
+        }
+    }
+
+    @Test
+    public void testListOrdersByPhaseWithCursor() {
+        InMemoryOrderDao inMemoryOrderDao = new InMemoryOrderDao();
+        for (int i = 0; i < 5; i++) {
+            Order order = new Order();
+            order.setUserId(1);
+            order.setProductId(1);
+            order.setStatus(OrderStatus.Filled);
+            inMemoryOrderDao.addOrder(order);
+        }
+
+        Timestamp start = Timestamp.from(Instant.EPOCH);
+        Timestamp end = Timestamp.from(Instant.now().plusSeconds(60));
+
+        for (boolean asc : new boolean[] { true, false }) {
+            List<Long> ids = new ArrayList<Long>();
+            PagingCursor cursor = null;
+
+            do {
+                PagingResult<Order> result = inMemoryOrderDao.listOrdersByPhase(1, OrderFilter.Phase.Completed, start, end, cursor, 2, asc);
+                Assert.assertEquals(5, result.getTotal());
+                result.getItems().forEach(o -> ids.add(o.getId()));
+                cursor = PagingCursor.next(result);
+            } while (cursor != null);
+
+            List<Long> expected = new ArrayList<Long>();
+            for (long id = 1; id <= 5; id++) {
+                expected.add(id);
+            }
+            if (!asc) {
+                Collections.reverse(expected);
+            }
+
+            Assert.assertEquals(expected, ids);
+        }
+
+        Assert.assertEquals(5, inMemoryOrderDao.listOrdersByTimeRange(1, 1, start, end, (PagingCursor) null, 10, true).size());
+    }
+
 }
@@ -0,0 +1,114 @@
+package conflux.dex.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import conflux.dex.common.BusinessException;
+import conflux.dex.common.BusinessFault;
+import conflux.dex.model.Currency;
+import conflux.dex.model.Product;
+
+public class ProductCatalogTest {
+
+	private DexDao dao;
+	private Currency cat;
+	private Currency cfx;
+	private Product product;
+
+	@Before
+	public void setUp() {
+		this.dao = DexDao.newInMemory();
+
+		this.cat = new Currency("CAT", "0x849e5d42f3cd202e422554aea991806f38c692a5", "0x84c787e5b802fd068463295eaf89920882061e85", 18);
+		this.cfx = new Currency("CFX", "0x8e038c1c2765c4042a20df2af61df425eb1844f2", "0x83a92e6beb4c9dd5b58b0ab92bee1e5b6cee0fd0", 18);
+		this.dao.addCurrency(this.cat);
+		this.dao.addCurrency(this.cfx);
+
+		this.product = new Product();
+		this.product.setName("CAT-CFX");
+		this.product.setBaseCurrencyId(this.cat.getId());
+		this.product.setQuoteCurrencyId(this.cfx.getId());
+		this.product.setPricePrecision(6);
+		this.product.setAmountPrecision(3);
+		this.product.setFundsPrecision(6);
+		this.product.setMinOrderAmount(BigDecimal.valueOf(0.001));
+		this.product.setMaxOrderAmount(BigDecimal.valueOf(100000000));
+		this.product.setMinOrderFunds(BigDecimal.valueOf(0.000001));
+		this.dao.addProduct(this.product);
+	}
+
+	@Test
+	public void testGet() {
+		ProductCatalog catalog = this.dao.getProductCatalog();
+
+		ProductCatalog.Entry entry = catalog.mustGet(this.product.getId());
+		assertSame(this.product, entry.getProduct());
+		assertEquals(this.cat.getId(), entry.getBaseCurrency().getId());
+		assertEquals(this.cfx.getId(), entry.getQuoteCurrency().getId());
+
+		assertSame(entry, catalog.mustGet("CAT-CFX"));
+		// case insensitive
+		assertSame(entry, catalog.mustGet("cat-cfx"));
+
+		assertEquals(this.cfx.getId(), catalog.mustGetCurrency(this.cfx.getId()).getId());
+	}
+
+	@Test
+	public void testNotFound() {
+		ProductCatalog catalog = this.dao.getProductCatalog();
+
+		try {
+			catalog.mustGet(this.product.getId() + 1);
+			fail("product should not be found");
+		} catch (BusinessException e) {
+			assertEquals(BusinessFault.ProductNotFound.getCode(), e.getCode());
+		}
+
+		try {
+			catalog.mustGet("DOG-CFX");
+			fail("product should not be found");
+		} catch (BusinessException e) {
+			assertEquals(BusinessFault.ProductNotFound.getCode(), e.getCode());
+		}
+
+		try {
+			catalog.mustGetCurrency(-1);
+			fail("currency should not be found");
+		} catch (BusinessException e) {
+			assertEquals(BusinessFault.CurrencyNotFound.getCode(), e.getCode());
+		}
+	}
+
+	@Test
+	public void testRebuiltOnChange() {
+		ProductCatalog catalog = this.dao.getProductCatalog();
+
+		Currency dog = new Currency("DOG", "0x8d56b7dfc511a6ab35302dd4c1575c0e0faca936", "0x8a46375a0604577950f4637e4ea94f6daf33de93", 18);
+		this.dao.addCurrency(dog);
+
+		Product product2 = new Product();
+		product2.setName("CFX-DOG");
+		product2.setBaseCurrencyId(this.cfx.getId());
+		product2.setQuoteCurrencyId(dog.getId());
+		this.dao.addProduct(product2);
+
+		// previous snapshot not changed
+		try {
+			catalog.mustGet(product2.getId());
+			fail("product should not be found in previous snapshot");
+		} catch (BusinessException e) {
+			assertEquals(BusinessFault.ProductNotFound.getCode(), e.getCode());
+		}
+
+		ProductCatalog.Entry entry = this.dao.getProductCatalog().mustGet("CFX-DOG");
+		assertSame(product2, entry.getProduct());
+		assertEquals(dog.getId(), entry.getQuoteCurrency().getId());
+	}
+
+}
@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Collections;
 
 public class TradeDaoImplTest {
 
@@ -22,6 +23,12 @@ public class TradeDaoImplTest {
         tradeDao.addTradeOrderMap(1L, 1L);
     }
 
+    @Test(expected = NullPointerException.class)
+    public void testAddTrades() {
+        TradeDaoImpl tradeDao = new TradeDaoImpl();
+        tradeDao.addTrades(Collections.singletonList(new Trade()));
+    }
+
     @Test(expected = NullPointerException.class)
     public void testListTradesByOrderId() {
         TradeDaoImpl tradeDao = new TradeDaoImpl();
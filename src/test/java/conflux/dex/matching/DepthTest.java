@@ -0,0 +1,95 @@
+package conflux.dex.matching;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import conflux.dex.model.OrderSide;
+
+public class DepthTest {
+	
+	@Test
+	public void testPriceTimePriority() {
+		Depth depth = new Depth(OrderSide.Buy);
+		
+		depth.add(Order.limitBuy(3, BigDecimal.valueOf(5), BigDecimal.ONE));
+		depth.add(Order.limitBuy(2, BigDecimal.valueOf(6), BigDecimal.ONE));
+		depth.add(Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.ONE));
+		depth.add(Order.limitBuy(4, new BigDecimal("6.00"), BigDecimal.ONE));
+		
+		Assert.assertFalse(depth.add(Order.limitBuy(1, BigDecimal.valueOf(7), BigDecimal.ONE)));
+		Assert.assertEquals(2, depth.peek().get().getId());
+		
+		Assert.assertEquals(2, depth.poll().get().getId());
+		Assert.assertEquals(4, depth.poll().get().getId());
+		Assert.assertEquals(1, depth.poll().get().getId());
+		Assert.assertEquals(3, depth.poll().get().getId());
+		Assert.assertFalse(depth.poll().isPresent());
+		Assert.assertTrue(depth.isEmpty());
+	}
+	
+	@Test
+	public void testRemove() {
+		Depth depth = new Depth(OrderSide.Sell);
+		
+		depth.add(Order.limitSell(1, BigDecimal.valueOf(5), BigDecimal.ONE));
+		depth.add(Order.limitSell(2, BigDecimal.valueOf(5), BigDecimal.ONE));
+		depth.add(Order.limitSell(3, BigDecimal.valueOf(6), BigDecimal.ONE));
+		
+		Assert.assertEquals(1, depth.remove(1).get().getId());
+		Assert.assertFalse(depth.remove(1).isPresent());
+		Assert.assertFalse(depth.contains(1));
+		Assert.assertEquals(2, depth.peek().get().getId());
+		
+		// remove the best price level
+		Assert.assertEquals(2, depth.remove(2).get().getId());
+		Assert.assertEquals(3, depth.peek().get().getId());
+		
+		// add the removed order again
+		depth.add(Order.limitSell(1, BigDecimal.valueOf(5), BigDecimal.ONE));
+		Assert.assertEquals(1, depth.peek().get().getId());
+	}
+	
+	@Test
+	public void testSameAsSortedSet() {
+		Depth depth = new Depth(OrderSide.Sell);
+		TreeSet<Order> expected = new TreeSet<Order>(new Order.SellComparator());
+		List<Order> added = new ArrayList<Order>();
+		
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			switch (random.nextInt(4)) {
+			case 0:
+				if (!added.isEmpty()) {
+					Order order = added.remove(random.nextInt(added.size()));
+					Assert.assertTrue(depth.remove(order.getId()).isPresent());
+					expected.remove(order);
+				}
+				break;
+			case 1:
+				Order polled = depth.poll().orElse(null);
+				Assert.assertEquals(expected.pollFirst(), polled);
+				added.remove(polled);
+				break;
+			default:
+				// order id is not always increasing, e.g. orders re-added after tried to match
+				Order order = Order.limitSell(random.nextInt(100000), BigDecimal.valueOf(random.nextInt(20)), BigDecimal.ONE);
+				if (depth.add(order)) {
+					expected.add(order);
+					added.add(order);
+				}
+				break;
+			}
+			
+			Assert.assertEquals(expected.isEmpty() ? null : expected.first(), depth.peek().orElse(null));
+		}
+		
+		Assert.assertEquals(new ArrayList<Order>(expected), depth.filter(o -> true));
+	}
+
+}
@@ -0,0 +1,86 @@
+package conflux.dex.matching;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import conflux.dex.model.DailyLimitRate;
+import conflux.dex.model.OrderSide;
+
+public class OrderBookSnapshotTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("orderbook", ".snapshot");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.file);
+	}
+
+	private OrderBook newTestOrderBook() {
+		OrderBook book = new OrderBook(1, 18);
+		book.setDailyLimit(false);
+		book.setOpen(true);
+		return book;
+	}
+
+	@Test
+	public void testWriteRead() throws IOException {
+		OrderBook book = this.newTestOrderBook();
+		book.setDailyLimitRate(DailyLimitRate.newDailyLimitRate(1, 0.1, 0.2, new BigDecimal("1.5")));
+
+		book.placeOrder(Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(100)));
+		book.placeOrder(Order.limitBuy(2, BigDecimal.valueOf(6), BigDecimal.valueOf(100)));
+		book.placeOrder(Order.limitSell(3, BigDecimal.valueOf(7), new BigDecimal("12.345678901234567890")));
+		// partially filled
+		book.placeOrder(Order.limitSell(4, BigDecimal.valueOf(6), BigDecimal.valueOf(30)));
+
+		OrderBookSnapshot.write(book, 100, this.file);
+		OrderBookSnapshot snapshot = OrderBookSnapshot.read(this.file);
+
+		Assert.assertEquals(1, snapshot.getProductId());
+		Assert.assertEquals(100, snapshot.getTimestamp());
+		Assert.assertTrue(snapshot.isOpen());
+		Assert.assertEquals(0.2, snapshot.getDailyLimitRate().getLowerLimitRate(), 0);
+		Assert.assertEquals(3, snapshot.getOrders().size());
+
+		OrderBook restored = this.newTestOrderBook();
+		snapshot.restore(restored, true);
+
+		List<Order> buyOrders = restored.filter(OrderSide.Buy, o -> true);
+		Assert.assertEquals(2, buyOrders.size());
+		Assert.assertEquals(2, buyOrders.get(0).getId());
+		Assert.assertEquals(0, BigDecimal.valueOf(70).compareTo(buyOrders.get(0).getAmount()));
+		Assert.assertEquals(0, BigDecimal.valueOf(30).compareTo(buyOrders.get(0).getFilledAmount()));
+		Assert.assertTrue(buyOrders.get(0).isEverMatched());
+
+		List<Order> sellOrders = restored.filter(OrderSide.Sell, o -> true);
+		Assert.assertEquals(1, sellOrders.size());
+		Assert.assertEquals(new BigDecimal("12.345678901234567890"), sellOrders.get(0).getAmount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadCorrupted() throws IOException {
+		OrderBook book = this.newTestOrderBook();
+		book.placeOrder(Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(100)));
+		OrderBookSnapshot.write(book, 100, this.file);
+
+		byte[] data = Files.readAllBytes(this.file);
+		data[data.length / 2] ^= 1;
+		Files.write(this.file, data);
+
+		OrderBookSnapshot.read(this.file);
+	}
+
+}
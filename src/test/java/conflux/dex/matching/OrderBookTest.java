@@ -1,7 +1,14 @@
 package conflux.dex.matching;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -91,6 +98,35 @@ public class OrderBookTest {
 		Assert.assertEquals(LogType.TakerOrderCompleted, logs.get(1).getType());
 	}
 	
+	@Test
+	public void testPlaceOrderWithReusedLog() {
+		OrderBook book = newTestOrderBook();
+		book.placeOrder(Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(10)));
+		book.placeOrder(Order.limitBuy(2, BigDecimal.valueOf(5), BigDecimal.valueOf(10)));
+		
+		Set<Log> instances = Collections.newSetFromMap(new IdentityHashMap<Log, Boolean>());
+		List<LogType> types = new ArrayList<LogType>();
+		List<BigDecimal> makerFilled = new ArrayList<BigDecimal>();
+		book.placeOrder(Order.limitSell(3, BigDecimal.valueOf(5), BigDecimal.valueOf(20)), log -> {
+			instances.add(log);
+			types.add(log.getType());
+			if (log.getType() == LogType.OrderMatched) {
+				// orders are valid during the handler call
+				makerFilled.add(log.getMakerOrder().getFilledAmount());
+			}
+		});
+		
+		Assert.assertEquals(1, instances.size());
+		Assert.assertEquals(Arrays.asList(LogType.OrderMatched, LogType.MakerOrderCompleted,
+				LogType.OrderMatched, LogType.MakerOrderCompleted, LogType.TakerOrderCompleted), types);
+		Assert.assertEquals(Arrays.asList(BigDecimal.valueOf(10), BigDecimal.valueOf(10)), makerFilled);
+		
+		// copied logs are not affected by the following matches
+		List<Log> logs = book.placeOrder(Order.limitBuy(4, BigDecimal.valueOf(6), BigDecimal.valueOf(10)));
+		book.placeOrder(Order.limitSell(5, BigDecimal.valueOf(6), BigDecimal.valueOf(4)));
+		Assert.assertEquals(BigDecimal.valueOf(10), logs.get(0).getTakerOrder().getAmount());
+	}
+	
 	@Test
 	public void testPlaceOrderMultipleMatches() {
 		OrderBook book = newTestOrderBook();
@@ -163,4 +199,98 @@ public class OrderBookTest {
 		Assert.assertEquals(LogType.TakerOrderCancelled, logs.get(1).getType());
 	}
 
+	private static final FixedPoint FIXED_POINT = FixedPoint.create(2, 3).get();
+	
+	@Test
+	public void testFixedPoint() {
+		OrderBook book = newTestOrderBook();
+		OrderBook fixedBook = newTestOrderBook();
+		fixedBook.setFixedPoint(FIXED_POINT);
+		
+		// both books should have exactly the same matching results
+		Random random = new Random(1);
+		for (long id = 1; id <= 5000; id++) {
+			Order order = newRandomOrder(random, id);
+			assertSameLogs(book.placeOrder(order.clone()), fixedBook.placeOrder(order.clone()));
+			
+			if (random.nextInt(10) == 0) {
+				long cancelId = 1 + random.nextInt((int) id);
+				OrderSide side = random.nextBoolean() ? OrderSide.Buy : OrderSide.Sell;
+				Optional<Order> cancelled = book.cancelOrder(cancelId, side);
+				Optional<Order> fixedCancelled = fixedBook.cancelOrder(cancelId, side);
+				Assert.assertEquals(cancelled.isPresent(), fixedCancelled.isPresent());
+				if (cancelled.isPresent()) {
+					assertSameOrder(cancelled.get(), fixedCancelled.get());
+				}
+			}
+		}
+	}
+	
+	private static Order newRandomOrder(Random random, long id) {
+		// price in [9.00, 11.00), amount in [0.001, 100]
+		BigDecimal price = BigDecimal.valueOf(900 + random.nextInt(200), 2);
+		BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100000), 3);
+		
+		switch (random.nextInt(10)) {
+		case 0:
+			return Order.marketBuy(id, BigDecimal.valueOf(1 + random.nextInt(100000), 2));
+		case 1:
+			return Order.marketSell(id, amount);
+		case 2:
+		case 3:
+		case 4:
+		case 5:
+			return Order.limitBuy(id, price, amount);
+		default:
+			return Order.limitSell(id, price, amount);
+		}
+	}
+	
+	private static void assertSameLogs(List<Log> expected, List<Log> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		
+		for (int i = 0; i < expected.size(); i++) {
+			Log expectedLog = expected.get(i);
+			Log actualLog = actual.get(i);
+			Assert.assertEquals(expectedLog.getType(), actualLog.getType());
+			assertSameAmount(expectedLog.getMatchAmount(), actualLog.getMatchAmount(),
+					isFixed(actualLog.getTakerOrder()) && isFixed(actualLog.getMakerOrder()));
+			assertSameOrder(expectedLog.getTakerOrder(), actualLog.getTakerOrder());
+			assertSameOrder(expectedLog.getMakerOrder(), actualLog.getMakerOrder());
+		}
+	}
+	
+	private static boolean isFixed(Order order) {
+		return order == null || order.isAmountFixed(FIXED_POINT);
+	}
+	
+	private static void assertSameOrder(Order expected, Order actual) {
+		if (expected == null || actual == null) {
+			Assert.assertEquals(expected, actual);
+			return;
+		}
+		
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.isCompleted(), actual.isCompleted());
+		boolean strict = isFixed(actual);
+		assertSameAmount(expected.getAmount(), actual.getAmount(), strict);
+		assertSameAmount(expected.getFilledAmount(), actual.getFilledAmount(), strict);
+		assertSameAmount(expected.getFilledFunds(), actual.getFilledFunds(), strict);
+	}
+	
+	/**
+	 * Values in fixed-point mode should be equal to values in BigDecimal mode with trailing zeros
+	 * stripped, since BigDecimal mode keeps scale of input amounts, e.g. 0.000. Once converted back
+	 * to BigDecimal mode, e.g. matched with a market buy order, values are only numerically equal.
+	 */
+	private static void assertSameAmount(BigDecimal expected, BigDecimal actual, boolean strict) {
+		if (expected == null || actual == null) {
+			Assert.assertEquals(expected, actual);
+		} else if (strict) {
+			Assert.assertEquals(expected.stripTrailingZeros(), actual);
+		} else {
+			Assert.assertEquals(0, expected.compareTo(actual));
+		}
+	}
+
 }
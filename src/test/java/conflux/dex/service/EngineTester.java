@@ -1,6 +1,5 @@
 package conflux.dex.service;
 
-import java.util.EnumMap;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -13,10 +12,9 @@ import org.junit.Before;
 
 import conflux.dex.common.channel.Channel;
 import conflux.dex.dao.TestDexDao;
-import conflux.dex.model.OrderSide;
 import conflux.dex.model.Product;
 import conflux.dex.model.Tick;
-import conflux.dex.worker.DepthPriceLevel;
+import conflux.dex.worker.DepthSnapshot;
 
 public abstract class EngineTester {
 	protected TestDexDao dao;
@@ -34,6 +32,7 @@ public abstract class EngineTester {
 		this.executor = Executors.newCachedThreadPool();
 		this.service = new EngineService(this.dao.get(), this.channel, this.executor);
 		this.service.setFeeService(feeService);
+		this.service.setSharded(this.isEngineSharded());
 		this.service.start();
 		this.scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
 		this.dailyLimitService = new DailyLimitService(this.dao.get(), channel);
@@ -51,11 +50,15 @@ public abstract class EngineTester {
 		this.dailyLimitService.close();
 	}
 
+	protected boolean isEngineSharded() {
+		return false;
+	}
+
 	public List<Product> getPreloadedProducts() {
 		return this.service.getPreloadedProducts();
 	}
 
-	public EnumMap<OrderSide, List<DepthPriceLevel>> getDepth(int productId, int step, int depth) {
+	public DepthSnapshot getDepth(int productId, int step, int depth) {
 		return this.service.getDepth(productId, step, depth);
 	}
 
@@ -0,0 +1,255 @@
+package conflux.dex.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import conflux.dex.dao.DexDao;
+import conflux.dex.dao.PartitionDao;
+import conflux.dex.model.TablePartition;
+
+public class PartitionServiceTest {
+
+	private static final Timestamp RETENTION = Timestamp.from(Instant.now().minus(Duration.ofDays(1)));
+
+	private FakePartitionDao partitionDao;
+	private PartitionService service;
+
+	@Before
+	public void setUp() {
+		this.partitionDao = new FakePartitionDao();
+		for (String table : Arrays.asList("t_order", "t_trade", "t_trade_order_map", "t_trade_user_map")) {
+			this.partitionDao.addPartitions(table, 10, 20, 30, 40, 50);
+		}
+
+		// the last partition is not full
+		this.partitionDao.maxId = 45;
+		for (String partition : Arrays.asList("p10", "p20", "p30", "p40")) {
+			this.partitionDao.createTimes.put(partition, Timestamp.from(Instant.EPOCH));
+		}
+
+		this.service = new PartitionService(this.partitionDao, DexDao.newInMemory());
+		this.service.setBatchSize(3);
+	}
+
+	@Test
+	public void testNextBounds() {
+		// empty table with "pmax" only
+		assertEquals(Arrays.asList(10L, 20L, 30L), PartitionService.nextBounds(0, 0, 10, 2));
+
+		// enough partitions ahead
+		assertEquals(Collections.emptyList(), PartitionService.nextBounds(30, 8, 10, 2));
+
+		// max id in the next partition
+		assertEquals(Arrays.asList(40L), PartitionService.nextBounds(30, 15, 10, 2));
+
+		// the last id of partition assigned
+		assertEquals(Arrays.asList(40L, 50L), PartitionService.nextBounds(30, 19, 10, 2));
+
+		// initial partition of history data is not aligned
+		assertEquals(Arrays.asList(130L, 140L, 150L), PartitionService.nextBounds(124, 123, 10, 2));
+
+		// rows already in "pmax", split right after the max id
+		assertEquals(Arrays.asList(60L, 70L, 80L), PartitionService.nextBounds(20, 55, 10, 2));
+	}
+
+	@Test
+	public void testParsePartition() {
+		TablePartition partition = TablePartition.parse("p1000", "1000");
+		assertEquals(1000, partition.getLessThan());
+		assertEquals(false, partition.isMax());
+		assertEquals("p1000", TablePartition.nameOf(partition.getLessThan()));
+
+		assertEquals(true, TablePartition.parse(TablePartition.MAX_NAME, "MAXVALUE").isMax());
+	}
+
+	@Test
+	public void testRetireTradePartitions() {
+		this.partitionDao.incompleted.put("p20", 2);
+		this.partitionDao.retiredIds.put("p20", new ArrayList<Long>(Arrays.asList(11L, 12L, 13L, 14L, 15L, 16L, 17L)));
+
+		this.service.retireTradePartitions(RETENTION);
+
+		// partition of incompleted orders kept, but not block the following partitions
+		for (String table : PartitionService.TRADE_TABLES) {
+			assertEquals(Arrays.asList("p20", "p50", TablePartition.MAX_NAME), this.partitionDao.partitionNames(table));
+		}
+
+		// trades archived before deleted
+		assertEquals(Arrays.asList("archive p10", "archive p20", "delete [11, 12, 13]", "delete [14, 15, 16]", "delete [17]",
+				"archive p30", "archive p40"), this.partitionDao.operations);
+
+		// dropped once orders completed
+		this.partitionDao.incompleted.clear();
+		this.service.retireTradePartitions(RETENTION);
+		assertEquals(Arrays.asList("p50", TablePartition.MAX_NAME), this.partitionDao.partitionNames("t_trade"));
+	}
+
+	@Test
+	public void testRetireOrderPartitions() {
+		this.partitionDao.incompleted.put("p20", 1);
+		this.partitionDao.retiredIds.put("p20", new ArrayList<Long>(Arrays.asList(11L, 12L)));
+		// referred by kept trade
+		this.partitionDao.referredOrderIds.add(25L);
+		this.partitionDao.retiredIds.put("p30", new ArrayList<Long>(Arrays.asList(21L, 22L, 23L)));
+
+		this.service.retireOrderPartitions(RETENTION);
+
+		assertEquals(Arrays.asList("p20", "p30", "p50", TablePartition.MAX_NAME), this.partitionDao.partitionNames("t_order"));
+		assertEquals(Arrays.asList("cancels [0, 10)", "delete [11, 12]", "delete [21, 22, 23]", "delete []", "cancels [30, 40)"),
+				this.partitionDao.operations);
+
+		// the oldest partition covers ids of all dropped partitions
+		this.partitionDao.operations.clear();
+		this.partitionDao.incompleted.clear();
+		this.partitionDao.referredOrderIds.clear();
+		this.service.retireOrderPartitions(RETENTION);
+
+		assertEquals(Arrays.asList("p50", TablePartition.MAX_NAME), this.partitionDao.partitionNames("t_order"));
+		assertEquals(Arrays.asList("cancels [0, 20)", "cancels [20, 30)"), this.partitionDao.operations);
+	}
+
+	@Test
+	public void testRetireNotExpired() {
+		this.partitionDao.createTimes.put("p20", Timestamp.from(Instant.now()));
+
+		this.service.retireTradePartitions(RETENTION);
+		this.service.retireOrderPartitions(RETENTION);
+
+		for (String table : Arrays.asList("t_order", "t_trade")) {
+			assertEquals(Arrays.asList("p20", "p30", "p40", "p50", TablePartition.MAX_NAME), this.partitionDao.partitionNames(table));
+		}
+
+		assertTrue(this.partitionDao.operations.stream().noneMatch(op -> op.contains("p20") || op.contains("p30")));
+	}
+
+	/**
+	 * Partitions of all tables share the same names, and rows are simulated by partition name.
+	 */
+	private static class FakePartitionDao extends PartitionDao {
+		final Map<String, List<TablePartition>> partitions = new HashMap<String, List<TablePartition>>();
+		final Map<String, Timestamp> createTimes = new HashMap<String, Timestamp>();
+		final Map<String, Integer> incompleted = new HashMap<String, Integer>();
+		final Map<String, List<Long>> retiredIds = new HashMap<String, List<Long>>();
+		final Set<Long> referredOrderIds = new HashSet<Long>();
+		final List<String> operations = new ArrayList<String>();
+		long maxId;
+
+		void addPartitions(String table, long... bounds) {
+			List<TablePartition> list = new ArrayList<TablePartition>();
+			for (long bound : bounds) {
+				list.add(new TablePartition(TablePartition.nameOf(bound), bound));
+			}
+			list.add(new TablePartition(TablePartition.MAX_NAME, Long.MAX_VALUE));
+			this.partitions.put(table, list);
+		}
+
+		List<String> partitionNames(String table) {
+			return this.partitions.get(table).stream().map(TablePartition::getName).collect(Collectors.toList());
+		}
+
+		@Override
+		public List<TablePartition> listPartitions(String table) {
+			return new ArrayList<TablePartition>(this.partitions.get(table));
+		}
+
+		@Override
+		public long getMaxId(String table) {
+			return this.maxId;
+		}
+
+		@Override
+		public void dropPartition(String table, String partition) {
+			this.partitions.get(table).removeIf(p -> p.getName().equals(partition));
+		}
+
+		@Override
+		public Timestamp getMaxCreateTime(String table, String partition) {
+			return this.createTimes.get(partition);
+		}
+
+		@Override
+		public int countIncompletedOrders(String partition) {
+			return this.incompleted.getOrDefault(partition, 0);
+		}
+
+		@Override
+		public int countTradesOfIncompletedOrders(String partition) {
+			return this.incompleted.getOrDefault(partition, 0);
+		}
+
+		@Override
+		public boolean hasTradeOrderMaps(long minOrderIdInclusive, long maxOrderIdExclusive) {
+			return this.referredOrderIds.stream().anyMatch(id -> id >= minOrderIdInclusive && id < maxOrderIdExclusive);
+		}
+
+		@Override
+		public int archiveOrdersOfTrades(String partition, String archiveTable) {
+			return 0;
+		}
+
+		@Override
+		public int archiveTrades(String partition, String archiveTable) {
+			this.operations.add("archive " + partition);
+			return 0;
+		}
+
+		@Override
+		public List<Long> listRetiredTradeIds(String partition, String archiveTable, int limit) {
+			return this.listRetiredIds(partition, limit);
+		}
+
+		@Override
+		public List<Long> listRetiredOrderIds(String partition, int limit) {
+			return this.listRetiredIds(partition, limit);
+		}
+
+		private List<Long> listRetiredIds(String partition, int limit) {
+			List<Long> ids = this.retiredIds.getOrDefault(partition, Collections.emptyList());
+			return new ArrayList<Long>(ids.subList(0, Math.min(limit, ids.size())));
+		}
+
+		@Override
+		public int deleteTrades(List<Long> tradeIds) {
+			return this.delete(tradeIds);
+		}
+
+		@Override
+		public int deleteOrders(List<Long> orderIds) {
+			return this.delete(orderIds);
+		}
+
+		private int delete(List<Long> ids) {
+			this.operations.add("delete " + ids);
+			this.retiredIds.values().forEach(list -> list.removeAll(ids));
+			return ids.size();
+		}
+
+		@Override
+		public int deleteOrderCancels(long minOrderIdInclusive, long maxOrderIdExclusive) {
+			this.operations.add(String.format("cancels [%d, %d)", minOrderIdInclusive, maxOrderIdExclusive));
+			return 0;
+		}
+
+		@Override
+		public int deleteOrderUniqueKeys(long minOrderIdInclusive, long maxOrderIdExclusive) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,13 @@
+package conflux.dex.service;
+
+/**
+ * Run instant exchange test cases with base and quote order books matched in different shards.
+ */
+public class ShardedInstantExchangeOrderTest extends InstantExchangeOrderTest {
+
+	@Override
+	protected boolean isEngineSharded() {
+		return true;
+	}
+
+}
@@ -7,6 +7,8 @@ import java.util.List;
 
 import org.junit.Test;
 
+import conflux.dex.matching.Log;
+import conflux.dex.matching.Order;
 import conflux.dex.model.OrderSide;
 import conflux.dex.worker.DepthAggregate;
 import conflux.dex.worker.DepthPriceLevel;
@@ -78,5 +80,132 @@ public class DepthAggregateTest {
 		assertEquals(BigDecimal.valueOf(400), levels.get(1).getAmount());
 		assertEquals(4, levels.get(1).getCount());
 	}
-
+	
+	@Test
+	public void testPollChangedLevels() {
+		DepthAggregate agg = new DepthAggregate(OrderSide.Buy, 6, 0);
+		assertTrue(agg.pollChangedLevels().isEmpty());
+		
+		agg.add(BigDecimal.valueOf(0.123456), BigDecimal.valueOf(100));
+		agg.add(BigDecimal.valueOf(0.123457), BigDecimal.valueOf(100));
+		agg.add(BigDecimal.valueOf(0.123457), BigDecimal.valueOf(50));
+		
+		List<DepthPriceLevel> levels = agg.pollChangedLevels();
+		assertEquals(2, levels.size());
+		assertEquals(new BigDecimal("0.123457"), levels.get(0).getPrice());
+		assertEquals(0, BigDecimal.valueOf(150).compareTo(levels.get(0).getAmount()));
+		assertEquals(2, levels.get(0).getCount());
+		assertTrue(agg.pollChangedLevels().isEmpty());
+		
+		agg.remove(BigDecimal.valueOf(0.123456), BigDecimal.valueOf(100), true);
+		
+		levels = agg.pollChangedLevels();
+		assertEquals(1, levels.size());
+		assertEquals(new BigDecimal("0.123456"), levels.get(0).getPrice());
+		assertEquals(0, BigDecimal.ZERO.compareTo(levels.get(0).getAmount()));
+		assertEquals(0, levels.get(0).getCount());
+	}
+	
+	@Test
+	public void testPollSnapshot() {
+		DepthAggregate agg = new DepthAggregate(OrderSide.Sell, 6, 0);
+		assertTrue(agg.pollSnapshot(1).isEmpty());
+		assertNull(agg.pollSnapshot(1));
+		
+		agg.add(BigDecimal.valueOf(0.123457), BigDecimal.valueOf(100));
+		agg.add(BigDecimal.valueOf(0.123456), BigDecimal.valueOf(100));
+		
+		List<DepthPriceLevel> snapshot = agg.pollSnapshot(1);
+		assertEquals(1, snapshot.size());
+		assertEquals(new BigDecimal("0.123456"), snapshot.get(0).getPrice());
+		assertNull(agg.pollSnapshot(1));
+		
+		// snapshot is not affected by changes afterwards
+		agg.add(BigDecimal.valueOf(0.123456), BigDecimal.valueOf(50));
+		assertEquals(0, BigDecimal.valueOf(100).compareTo(snapshot.get(0).getAmount()));
+		assertEquals(0, BigDecimal.valueOf(150).compareTo(agg.pollSnapshot(1).get(0).getAmount()));
+	}
+	
+	@Test
+	public void testCoarserStepFromStep0() {
+		for (OrderSide side : OrderSide.values()) {
+			DepthAggregate agg = new DepthAggregate(side, 6, 0);
+			DepthAggregate agg2 = new DepthAggregate(side, 6, 2);
+			
+			for (String price : new String[] {"0.123450", "0.123451", "0.123499", "0.123500", "0.123501", "0.123650"}) {
+				agg.add(new BigDecimal(price), BigDecimal.valueOf(100));
+				agg2.add(new BigDecimal(price), BigDecimal.valueOf(100));
+			}
+			
+			List<DepthPriceLevel> expected = agg2.getLevels(2);
+			List<DepthPriceLevel> levels = agg.getLevels(2, 2);
+			assertEquals(2, levels.size());
+			
+			for (int i = 0; i < levels.size(); i++) {
+				assertEquals(expected.get(i).getPrice(), levels.get(i).getPrice());
+				assertEquals(expected.get(i).getAmount(), levels.get(i).getAmount());
+				assertEquals(expected.get(i).getCount(), levels.get(i).getCount());
+			}
+		}
+	}
+	
+	@Test
+	public void testChangedLevelsOfCoarserStep() {
+		DepthAggregate agg = new DepthAggregate(OrderSide.Sell, 6, 0);
+		agg.add(BigDecimal.valueOf(0.123451), BigDecimal.valueOf(100));
+		agg.add(BigDecimal.valueOf(0.123459), BigDecimal.valueOf(100));
+		agg.add(BigDecimal.valueOf(0.123461), BigDecimal.valueOf(100));
+		agg.remove(BigDecimal.valueOf(0.123461), BigDecimal.valueOf(100), true);
+		
+		List<BigDecimal> prices = agg.pollChangedPrices();
+		assertEquals(3, prices.size());
+		assertTrue(agg.pollChangedPrices().isEmpty());
+		
+		List<DepthPriceLevel> levels = agg.getChangedLevels(prices, 1);
+		assertEquals(2, levels.size());
+		
+		assertEquals(new BigDecimal("0.123460"), levels.get(0).getPrice());
+		assertEquals(0, BigDecimal.valueOf(200).compareTo(levels.get(0).getAmount()));
+		assertEquals(2, levels.get(0).getCount());
+		
+		// removed
+		assertEquals(new BigDecimal("0.123470"), levels.get(1).getPrice());
+		assertEquals(0, levels.get(1).getCount());
+	}
+	
+	@Test
+	public void testSnapshotSequence() {
+		DepthAggregateManager manager = new DepthAggregateManager(1, "btc-usdt", 6);
+		assertEquals(0, manager.getSnapshot(0).getSequence());
+		
+		manager.onTakerOrderOpened(Order.limitBuy(1, BigDecimal.valueOf(0.1), BigDecimal.TEN));
+		assertEquals(1, manager.pollDiffs().get(0).getSequence());
+		
+		// diff polled before refreshed is included in snapshot
+		manager.refreshSnapshots();
+		DepthSnapshot snapshot = manager.getSnapshot(0);
+		assertEquals(1, snapshot.getSequence());
+		assertEquals(1, snapshot.getLevels().get(OrderSide.Buy).size());
+		assertEquals(1, manager.getLevels(1, 1).getSequence());
+		
+		// changes after refreshed will be in the following diff
+		manager.onTakerOrderOpened(Order.limitSell(2, BigDecimal.valueOf(0.2), BigDecimal.TEN));
+		assertEquals(2, manager.pollDiffs().get(0).getSequence());
+		assertEquals(1, manager.getSnapshot(0).getSequence());
+	}
+	
+	@Test
+	public void testChangedTimeOfLog() throws InterruptedException {
+		DepthAggregateManager manager = new DepthAggregateManager(1, "btc-usdt", 6);
+		manager.refreshSnapshots();
+		manager.pollChangedTime();
+		
+		// changed when orders matched, instead of log handled
+		Log log = Log.newOpenLog(1, Order.limitBuy(1, BigDecimal.valueOf(0.1), BigDecimal.TEN));
+		Thread.sleep(20);
+		manager.handle(log);
+		manager.refreshSnapshots();
+		assertEquals(log.getTime(), manager.pollChangedTime());
+	}
+	
 }
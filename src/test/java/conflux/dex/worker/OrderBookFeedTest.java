@@ -0,0 +1,109 @@
+package conflux.dex.worker;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import conflux.dex.matching.Log;
+import conflux.dex.matching.Order;
+import conflux.dex.matching.OrderBook;
+import conflux.dex.model.OrderSide;
+
+public class OrderBookFeedTest {
+
+	private static void place(OrderBook book, OrderBookFeed feed, Order order) {
+		for (Log log : book.placeOrder(order)) {
+			feed.handle(log);
+		}
+	}
+
+	private static OrderBook newTestOrderBook() {
+		OrderBook book = new OrderBook(1, 18);
+		book.setDailyLimit(false);
+		book.setOpen(true);
+		return book;
+	}
+
+	@Test
+	public void testEvents() {
+		OrderBook book = newTestOrderBook();
+		OrderBookFeed feed = new OrderBookFeed(1);
+
+		place(book, feed, Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(100)));
+		place(book, feed, Order.limitBuy(2, BigDecimal.valueOf(6), BigDecimal.valueOf(100)));
+		// partially filled order 2, and order 3 opened with remaining amount
+		place(book, feed, Order.limitSell(3, BigDecimal.valueOf(6), BigDecimal.valueOf(130)));
+		feed.onMakerOrderCancelled(book.cancelOrder(1, OrderSide.Buy).get(), false);
+
+		List<OrderBookEvent> events = new ArrayList<OrderBookEvent>();
+		feed.sync(feed.getEpoch(), 0, sync -> events.addAll(sync.getEvents()));
+
+		assertEquals(5, events.size());
+		assertEquals(5, feed.getSequence());
+
+		assertEquals(OrderBookEvent.Type.Match, events.get(2).getType());
+		assertEquals(2, events.get(2).getOrderId());
+		assertEquals(3, events.get(2).getTakerOrderId());
+		assertEquals(0, BigDecimal.valueOf(100).compareTo(events.get(2).getAmount()));
+
+		assertEquals(OrderBookEvent.Type.Open, events.get(3).getType());
+		assertEquals(3, events.get(3).getOrderId());
+		assertEquals(0, BigDecimal.valueOf(30).compareTo(events.get(3).getAmount()));
+
+		assertEquals(OrderBookEvent.Type.Cancel, events.get(4).getType());
+		assertEquals(1, events.get(4).getOrderId());
+		assertEquals(0, BigDecimal.valueOf(100).compareTo(events.get(4).getAmount()));
+
+		for (int i = 0; i < events.size(); i++) {
+			assertEquals(i + 1, events.get(i).getSequence());
+			assertEquals(feed.getEpoch(), events.get(i).getEpoch());
+		}
+	}
+
+	@Test
+	public void testSnapshot() {
+		OrderBook book = newTestOrderBook();
+		OrderBookFeed feed = new OrderBookFeed(1, 2, 1000);
+
+		place(book, feed, Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(100)));
+		place(book, feed, Order.limitBuy(2, BigDecimal.valueOf(6), BigDecimal.valueOf(100)));
+		place(book, feed, Order.limitSell(3, BigDecimal.valueOf(8), BigDecimal.valueOf(100)));
+		place(book, feed, Order.limitSell(4, BigDecimal.valueOf(6), BigDecimal.valueOf(40)));
+
+		List<OrderBookFeed.Sync> syncs = new ArrayList<OrderBookFeed.Sync>();
+
+		// replayed since events still available
+		feed.sync(1000, 2, syncs::add);
+		assertNull(syncs.get(0).getOrders());
+		assertEquals(2, syncs.get(0).getEvents().size());
+		assertEquals(4, syncs.get(0).getSequence());
+		assertEquals(1000, syncs.get(0).getEpoch());
+
+		// too old to replay
+		feed.sync(1000, 1, syncs::add);
+		// newer than current sequence
+		feed.sync(1000, 5, syncs::add);
+		// sequence of previous epoch, e.g. server restarted
+		feed.sync(999, 2, syncs::add);
+		// no epoch
+		feed.sync(-1, 2, syncs::add);
+
+		for (OrderBookFeed.Sync sync : syncs.subList(1, syncs.size())) {
+			assertNull(sync.getEvents());
+			assertEquals(4, sync.getSequence());
+			assertEquals(1000, sync.getEpoch());
+
+			List<OrderBookEvent> orders = sync.getOrders();
+			assertEquals(3, orders.size());
+			assertEquals(2, orders.get(0).getOrderId());
+			assertEquals(0, BigDecimal.valueOf(60).compareTo(orders.get(0).getAmount()));
+			assertEquals(1, orders.get(1).getOrderId());
+			assertEquals(3, orders.get(2).getOrderId());
+		}
+	}
+
+}
@@ -1,74 +1,125 @@
 package conflux.dex.worker.batch;
 
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import conflux.dex.common.worker.RingBuffer;
 import conflux.dex.matching.Log;
+import conflux.dex.matching.LogType;
+import conflux.dex.matching.Order;
 
 public class MatchingLogBatchWorkerTest {
 	
+	private static RingBuffer<MatchingLogBatchWorker.Slot> newBuffer() {
+		return new RingBuffer<MatchingLogBatchWorker.Slot>(16, MatchingLogBatchWorker.Slot::new);
+	}
+	
+	private static List<Log> getLogs(RingBuffer<MatchingLogBatchWorker.Slot> buffer, int batchSize, int batchSizeMax) {
+		List<Log> logs = new ArrayList<Log>();
+		buffer.release(MatchingLogBatchWorker.getLogs(buffer, batchSize, batchSizeMax, logs));
+		return logs;
+	}
+	
 	@Test
 	public void testBatchNotFull() {
-		ConcurrentLinkedDeque<Log> logs = new ConcurrentLinkedDeque<Log>();
+		RingBuffer<MatchingLogBatchWorker.Slot> logs = newBuffer();
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		Assert.assertEquals(3, MatchingLogBatchWorker.getLogs(logs, 10, 20).size());
+		Assert.assertEquals(3, getLogs(logs, 10, 20).size());
 		Assert.assertTrue(logs.isEmpty());
+		Assert.assertEquals(0, logs.size());
 	}
 	
 	@Test
 	public void testBatchFullSealed() {
-		ConcurrentLinkedDeque<Log> logs = new ConcurrentLinkedDeque<Log>();
+		RingBuffer<MatchingLogBatchWorker.Slot> logs = newBuffer();
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		logs.add(Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
 		
-		Assert.assertEquals(3, MatchingLogBatchWorker.getLogs(logs, 3, 10).size());
+		Assert.assertEquals(3, getLogs(logs, 3, 10).size());
 		Assert.assertEquals(1, logs.size());
 	}
 	
 	@Test
 	public void testBatchFullNotSealed() {
-		ConcurrentLinkedDeque<Log> logs = new ConcurrentLinkedDeque<Log>();
+		RingBuffer<MatchingLogBatchWorker.Slot> logs = newBuffer();
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		Assert.assertEquals(6, MatchingLogBatchWorker.getLogs(logs, 4, 10).size());
+		Assert.assertEquals(6, getLogs(logs, 4, 10).size());
 		Assert.assertEquals(3, logs.size());
 	}
 	
 	@Test
 	public void testBatchTooManyTrades() {
-		ConcurrentLinkedDeque<Log> logs = new ConcurrentLinkedDeque<Log>();
+		RingBuffer<MatchingLogBatchWorker.Slot> logs = newBuffer();
 		
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newMatchLog(1, null, null, null));
-		logs.add(Log.newCompleteLog(1, null, false));
-		logs.add(Log.newCompleteLog(1, null, true));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newMatchLog(1, null, null, null));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, false));
+		MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
 		
-		Assert.assertEquals(6, MatchingLogBatchWorker.getLogs(logs, 3, 6).size());
+		Assert.assertEquals(6, getLogs(logs, 3, 6).size());
 		Assert.assertEquals(1, logs.size());
 	}
+	
+	@Test
+	public void testLogCopiedIntoSlot() {
+		RingBuffer<MatchingLogBatchWorker.Slot> logs = newBuffer();
+		
+		Order taker = Order.limitBuy(1, BigDecimal.valueOf(5), BigDecimal.valueOf(10));
+		Order maker = Order.limitSell(2, BigDecimal.valueOf(5), BigDecimal.valueOf(10));
+		Log log = Log.newMatchLog(1, taker, maker, BigDecimal.ONE);
+		MatchingLogBatchWorker.publish(logs, log);
+		
+		// log and orders could be reused by engine once published
+		taker.setUserId(100);
+		log.setType(LogType.TakerOrderOpened);
+		
+		Log slot = logs.get(logs.getConsumed()).get();
+		Assert.assertNotSame(log, slot);
+		Assert.assertNotSame(taker, slot.getTakerOrder());
+		Assert.assertEquals(LogType.OrderMatched, slot.getType());
+		Assert.assertEquals(1, slot.getTakerOrder().getId());
+		Assert.assertEquals(0, slot.getTakerOrder().getUserId());
+		Assert.assertEquals(2, slot.getMakerOrder().getId());
+		Assert.assertEquals(BigDecimal.ONE, slot.getMatchAmount());
+		
+		// slot is reused after released
+		Assert.assertEquals(1, getLogs(logs, 10, 20).size());
+		for (int i = 0; i < 15; i++) {
+			MatchingLogBatchWorker.publish(logs, Log.newCompleteLog(1, null, true));
+		}
+		Assert.assertEquals(15, getLogs(logs, 15, 20).size());
+		
+		MatchingLogBatchWorker.publish(logs, Log.newCancelLog(1, maker, false, false));
+		Assert.assertSame(slot, logs.get(logs.getConsumed()).get());
+		Assert.assertNull(slot.getTakerOrder());
+		Assert.assertEquals(LogType.MakerOrderCancelled, slot.getType());
+	}
 
 }
@@ -9,6 +9,7 @@ import java.time.Instant;
 import org.junit.Before;
 import org.junit.Test;
 
+import conflux.dex.dao.ConfigDao;
 import conflux.dex.model.OrderSide;
 import conflux.dex.model.Tick;
 import conflux.dex.model.Trade;
@@ -67,4 +68,43 @@ public class TickerTest extends EngineTester {
 		tick = this.mustGetLastTick(TickGranularity.ofMinutes(5));
 		this.assertTick(tick, TickGranularity.ofMinutes(5), "2019-12-10T09:30:00Z", 0.3, 0.6, 0.2, 0.6, 500, 200);
 	}
+	
+	private Trade addTrade(Ticker ticker, double price, int amount, String instant) {
+		Trade trade = new Trade(this.dao.product.getId(), 2, 1, BigDecimal.valueOf(price), BigDecimal.valueOf(amount), OrderSide.Buy, BigDecimal.ZERO, BigDecimal.ZERO);
+		trade.setCreateTime(Timestamp.from(Instant.parse(instant)));
+		this.dao.get().addTrade(trade);
+		ticker.update(trade);
+		return trade;
+	}
+	
+	@Test
+	public void testWriteBehind() {
+		Ticker ticker = new Ticker(this.dao.product.getId(), this.dao.get(), true);
+		
+		this.addTrade(ticker, 0.3, 100, "2019-12-10T09:30:05.123Z");
+		Trade trade = this.addTrade(ticker, 0.5, 100, "2019-12-10T09:30:15.123Z");
+		
+		// not written until flushed
+		assertEquals(false, this.dao.get().getLastTick(this.dao.product.getId(), DefaultTickGranularity.Minute.getValue()).isPresent());
+		
+		ticker.flush();
+		Tick tick = this.mustGetLastTick(DefaultTickGranularity.Minute);
+		this.assertTick(tick, DefaultTickGranularity.Minute, "2019-12-10T09:30:00Z", 0.3, 0.5, 0.3, 0.5, 200, 80);
+		assertEquals(String.valueOf(trade.getId()), this.dao.get().getConfig(ConfigDao.KEY_TICK_LAST_TRADE_ID + this.dao.product.getId()).get());
+		
+		// lost since not flushed
+		this.addTrade(ticker, 0.2, 100, "2019-12-10T09:30:35.123Z");
+		this.addTrade(ticker, 0.6, 100, "2019-12-10T09:31:01.123Z");
+		
+		// recovered from trades after the last flushed one
+		Ticker recovered = new Ticker(this.dao.product.getId(), this.dao.get(), true);
+		recovered.flush();
+		
+		tick = this.dao.get().listTicks(this.dao.product.getId(), DefaultTickGranularity.Minute.getValue(), Timestamp.from(Instant.parse("2019-12-10T09:31:00Z")), 1).get(0);
+		this.assertTick(tick, DefaultTickGranularity.Minute, "2019-12-10T09:30:00Z", 0.3, 0.5, 0.2, 0.2, 300, 100);
+		tick = this.mustGetLastTick(DefaultTickGranularity.Minute);
+		this.assertTick(tick, DefaultTickGranularity.Minute, "2019-12-10T09:31:00Z", 0.2, 0.6, 0.6, 0.6, 100, 60);
+		tick = this.mustGetLastTick(TickGranularity.ofMinutes(5));
+		this.assertTick(tick, TickGranularity.ofMinutes(5), "2019-12-10T09:30:00Z", 0.3, 0.6, 0.2, 0.6, 400, 160);
+	}
 }
@@ -197,63 +197,99 @@ public class TickerWindowTest {
 	}
 	
 	@Test
-	public void testPriceQueueMax() {
-		PriceQueue queue = new PriceQueue(true);
-		
-		// empty queue
-		Assert.assertFalse(queue.getFirst().isPresent());
-		Assert.assertFalse(queue.getLast().isPresent());
-		Assert.assertFalse(queue.dequeue(BigDecimal.valueOf(5)));
-		
-		// insert price 5
-		Assert.assertEquals(BigDecimal.valueOf(5), queue.enqueue(BigDecimal.valueOf(5)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(5, queue.getLast().get().intValueExact());
-		
-		// insert price 3: [5, 3]
-		Assert.assertEquals(BigDecimal.valueOf(5), queue.enqueue(BigDecimal.valueOf(3)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(3, queue.getLast().get().intValueExact());
-		
-		// insert price 5: [5(2)]
-		Assert.assertEquals(BigDecimal.valueOf(5), queue.enqueue(BigDecimal.valueOf(5)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(5, queue.getLast().get().intValueExact());
-		
-		// remove price 5: [5(1)]
-		Assert.assertTrue(queue.dequeue(BigDecimal.valueOf(5)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(5, queue.getLast().get().intValueExact());
-		
-		// remove price 5: []
-		Assert.assertTrue(queue.dequeue(BigDecimal.valueOf(5)));
-		Assert.assertFalse(queue.getFirst().isPresent());
-		Assert.assertFalse(queue.getLast().isPresent());
+	public void testGetCached() {
+		TickerWindow window = new TickerWindow(Duration.ofMinutes(3));
+		this.move(window, 5, 100, "2020-05-17T09:30:00Z");
+		
+		// not changed
+		Tick agg = window.getAggregate(Instant.parse("2020-05-17T09:30:01Z"));
+		Assert.assertSame(agg, window.getAggregate(Instant.parse("2020-05-17T09:30:02Z")));
+		
+		// changed by trade
+		this.update(window, 6, 10, "2020-05-17T09:30:03Z");
+		Tick updated = window.getAggregate(Instant.parse("2020-05-17T09:30:04Z"));
+		Assert.assertNotSame(agg, updated);
+		this.assertPrice(agg, 5, 5, 5, 5);
+		this.assertPrice(updated, 5, 6, 5, 6);
+	}
+	
+	@Test
+	public void testMoveMoreThanCapacity() {
+		TickerWindow window = new TickerWindow(Duration.ofMinutes(3));
+		
+		// ticks in seconds, so that more ticks than minutes in time window
+		for (int i = 0; i < 10; i++) {
+			this.move(window, 10 - i, 100, String.format("2020-05-17T09:30:0%sZ", i));
+		}
+		
+		Tick agg = window.getAggregate(Instant.parse("2020-05-17T09:30:10Z"));
+		this.assertPrice(agg, 10, 10, 1, 1);
+		this.assertVolume(agg, 1000, 5500, 10);
+		Assert.assertEquals(10, window.getTicks().size());
+	}
+	
+	@Test
+	public void testPriceDequeMax() {
+		PriceDeque deque = new PriceDeque(true);
+		
+		// empty deque
+		Assert.assertTrue(deque.isEmpty());
+		Assert.assertNull(deque.peek());
+		
+		// tick 0 with price 5: [5]
+		deque.push(0, BigDecimal.valueOf(5));
+		Assert.assertEquals(5, deque.peek().intValueExact());
+		
+		// tick 1 with price 3: [5, 3]
+		deque.push(1, BigDecimal.valueOf(3));
+		Assert.assertEquals(5, deque.peek().intValueExact());
+		
+		// tick 1 with lower price 2 is ignored: [5, 3]
+		deque.push(1, BigDecimal.valueOf(2));
+		
+		// tick 2 with price 4: [5, 4]
+		deque.push(2, BigDecimal.valueOf(4));
+		Assert.assertEquals(5, deque.peek().intValueExact());
+		
+		// remove tick 0: [4]
+		deque.removeBefore(1);
+		Assert.assertEquals(4, deque.peek().intValueExact());
+		
+		// tick 2 with higher price 6: [6]
+		deque.push(2, BigDecimal.valueOf(6));
+		Assert.assertEquals(6, deque.peek().intValueExact());
+		
+		// remove tick 2: []
+		deque.removeBefore(3);
+		Assert.assertTrue(deque.isEmpty());
 	}
 	
 	@Test
-	public void testPriceQueueMin() {
-		PriceQueue queue = new PriceQueue(false);
-		
-		// insert price 5: [5]
-		Assert.assertEquals(BigDecimal.valueOf(5), queue.enqueue(BigDecimal.valueOf(5)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(5, queue.getLast().get().intValueExact());
-		
-		// insert price 6: [5, 6]
-		Assert.assertEquals(BigDecimal.valueOf(5), queue.enqueue(BigDecimal.valueOf(6)));
-		Assert.assertEquals(5, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(6, queue.getLast().get().intValueExact());
-		
-		// insert price 3: [3]
-		Assert.assertEquals(BigDecimal.valueOf(3), queue.enqueue(BigDecimal.valueOf(3)));
-		Assert.assertEquals(3, queue.getFirst().get().intValueExact());
-		Assert.assertEquals(3, queue.getLast().get().intValueExact());
-		
-		// cannot remove prices that not equals to the first one
-		Assert.assertFalse(queue.dequeue(BigDecimal.valueOf(2)));
-		Assert.assertFalse(queue.dequeue(BigDecimal.valueOf(4)));
-		Assert.assertTrue(queue.dequeue(BigDecimal.valueOf(3)));
+	public void testPriceDequeMin() {
+		PriceDeque deque = new PriceDeque(false);
+		
+		// [5]
+		deque.push(0, BigDecimal.valueOf(5));
+		Assert.assertEquals(5, deque.peek().intValueExact());
+		
+		// [5, 6]
+		deque.push(1, BigDecimal.valueOf(6));
+		Assert.assertEquals(5, deque.peek().intValueExact());
+		
+		// [3]
+		deque.push(2, BigDecimal.valueOf(3));
+		Assert.assertEquals(3, deque.peek().intValueExact());
+		
+		// ticks before 2 removed already
+		deque.removeBefore(2);
+		Assert.assertEquals(3, deque.peek().intValueExact());
+		
+		// grows when more prices than initial capacity
+		for (int i = 0; i < 100; i++) {
+			deque.push(3 + i, BigDecimal.valueOf(4 + i));
+		}
+		deque.removeBefore(50);
+		Assert.assertEquals(51, deque.peek().intValueExact());
 	}
 
 }
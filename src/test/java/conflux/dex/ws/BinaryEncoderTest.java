@@ -0,0 +1,78 @@
+package conflux.dex.ws;
+
+import conflux.dex.model.OrderSide;
+import conflux.dex.model.Trade;
+import conflux.dex.worker.DepthPriceLevel;
+import conflux.dex.worker.DepthSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+
+public class BinaryEncoderTest {
+
+    @Test
+    public void testIsSupported() {
+        Assert.assertTrue(BinaryEncoder.isSupported("market.CAT-CFX.depth.step0"));
+        Assert.assertTrue(BinaryEncoder.isSupported("market.CAT-CFX.depth.diff.step1"));
+        Assert.assertTrue(BinaryEncoder.isSupported("market.CAT-CFX.tick.1min"));
+        Assert.assertTrue(BinaryEncoder.isSupported("market.CAT-CFX.trade.detail"));
+        Assert.assertFalse(BinaryEncoder.isSupported("market.CAT-CFX.bbo"));
+        Assert.assertFalse(BinaryEncoder.isSupported("order.CAT-CFX"));
+    }
+
+    @Test
+    public void testEncodeDepth() throws Exception {
+        EnumMap<OrderSide, List<DepthPriceLevel>> levels = new EnumMap<OrderSide, List<DepthPriceLevel>>(OrderSide.class);
+        levels.put(OrderSide.Buy, Arrays.asList(
+                new DepthPriceLevel(new BigDecimal("1.25"), new BigDecimal("10.5"), 2),
+                new DepthPriceLevel(new BigDecimal("1.2"), new BigDecimal("3"), 1)));
+        levels.put(OrderSide.Sell, Collections.emptyList());
+
+        TopicResponse response = TopicResponse.create("market.CAT-CFX.depth.step0", new DepthSnapshot(7, levels));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(BinaryEncoder.encode(response)));
+
+        Assert.assertEquals(BinaryEncoder.VERSION, in.readByte());
+        Assert.assertEquals(BinaryEncoder.TYPE_DEPTH, in.readByte());
+        Assert.assertEquals("market.CAT-CFX.depth.step0", in.readUTF());
+        Assert.assertEquals(response.getTimestamp(), in.readLong());
+        Assert.assertEquals(2, in.readByte()); // price scale
+        Assert.assertEquals(1, in.readByte()); // amount scale
+        Assert.assertEquals(7, in.readLong()); // sequence
+
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(125, in.readLong());
+        Assert.assertEquals(105, in.readLong());
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(120, in.readLong());
+        Assert.assertEquals(30, in.readLong());
+        Assert.assertEquals(1, in.readInt());
+
+        Assert.assertEquals(0, in.readInt());
+        Assert.assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testEncodeTrade() throws Exception {
+        Trade trade = new Trade(1, 1, 2, new BigDecimal("0.5"), new BigDecimal("100"), OrderSide.Sell, BigDecimal.ZERO, BigDecimal.ZERO);
+        TopicResponse response = TopicResponse.create("market.CAT-CFX.trade.detail", trade);
+        Assert.assertNotNull(BinaryEncoder.encode(response));
+    }
+
+    @Test
+    public void testEncodeUnsupported() throws Exception {
+        // unsupported data type
+        Assert.assertNull(BinaryEncoder.encode(TopicResponse.create("market.CAT-CFX.bbo", "data")));
+
+        // overflow if scaled into long
+        Trade trade = new Trade(1, 1, 2, new BigDecimal("0.5"), new BigDecimal("100000000000000000000"), OrderSide.Sell, BigDecimal.ZERO, BigDecimal.ZERO);
+        Assert.assertNull(BinaryEncoder.encode(TopicResponse.create("market.CAT-CFX.trade.detail", trade)));
+    }
+
+}
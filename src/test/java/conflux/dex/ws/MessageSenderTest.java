@@ -1,41 +1,72 @@
 package conflux.dex.ws;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import conflux.dex.config.WebSocketSendConfig;
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Test;
 
 import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
 import javax.websocket.Session;
-import java.nio.ByteBuffer;
-import java.util.concurrent.ExecutorService;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.Inflater;
 
 public class MessageSenderTest {
     private MessageSender sender;
+    private Session session;
     private TopicResponse PING;
     private TopicResponse data;
 
-    private MessageSender sender() throws Exception{
-        Session session = EasyMock.createMock(Session.class);
-        RemoteEndpoint.Basic basic = EasyMock.createMock(RemoteEndpoint.Basic.class);
-        ByteBuffer pingBuf = ByteBuffer.allocate(Long.BYTES);
+    private MessageSender sender() throws Exception {
+        return sender(true, new WebSocketSendConfig());
+    }
+
+    /**
+     * @param completed whether to complete the asynchronous sending immediately.
+     */
+    private MessageSender sender(boolean completed, WebSocketSendConfig config) throws Exception {
+        return sender(completed, config, null);
+    }
+
+    /**
+     * @param closeLatch blocks closing session until counted down, if not null.
+     */
+    private MessageSender sender(boolean completed, WebSocketSendConfig config, CountDownLatch closeLatch) throws Exception {
+        session = EasyMock.createMock(Session.class);
+        RemoteEndpoint.Async async = EasyMock.createMock(RemoteEndpoint.Async.class);
         PING = new TopicResponse();
         data = new TopicResponse();
 
         session.close();
-        EasyMock.expectLastCall();
+        if (closeLatch == null) {
+            EasyMock.expectLastCall().anyTimes();
+        } else {
+            EasyMock.expectLastCall().andAnswer(() -> {
+                closeLatch.await();
+                return null;
+            }).once();
+        }
         EasyMock.expect(session.getId()).andReturn("id1").anyTimes();
-        EasyMock.expect(session.getBasicRemote()).andReturn(basic).anyTimes();
-        basic.sendPing(pingBuf);
-        EasyMock.expectLastCall().anyTimes();
-        basic.sendText(EasyMock.anyString());
+        EasyMock.expect(session.getAsyncRemote()).andReturn(async).anyTimes();
+        async.sendPing(EasyMock.anyObject());
         EasyMock.expectLastCall().anyTimes();
+        async.sendText(EasyMock.anyString(), EasyMock.anyObject(SendHandler.class));
+        if (completed) {
+            EasyMock.expectLastCall().andAnswer(() -> {
+                ((SendHandler) EasyMock.getCurrentArguments()[1]).onResult(new SendResult());
+                return null;
+            }).anyTimes();
+        } else {
+            EasyMock.expectLastCall().anyTimes();
+        }
         EasyMock.replay(session);
-        EasyMock.replay(basic);
+        EasyMock.replay(async);
 
-        ExecutorService executor = EasyMock.createMock(ExecutorService.class);
         ObjectMapper mapper = new ObjectMapper();
-        return new MessageSender(executor, session, mapper);
+        return new MessageSender(session, mapper, config);
     }
 
     @Test
@@ -51,8 +82,90 @@ public class MessageSenderTest {
         sender = sender();
         data.setData(PING);
         data.setTopic("AccountTopic");
-        sender.doWork(data);
-        sender.doWork(PING);
+        sender.consume(data);
+        sender.consume(data);
+        sender.ping();
+        Assert.assertEquals(0, sender.getPendingCount());
+    }
+
+    @Test
+    public void testEncodeOnce() throws Exception {
+        TopicResponse response = TopicResponse.create("market.CAT-CFX.depth.step0", 1);
+        String json = MessageSender.encode(new ObjectMapper(), response);
+        Assert.assertTrue(json.contains("market.CAT-CFX.depth.step0"));
+        Assert.assertFalse(json.contains("text"));
+
+        // shared by other subscribers
+        Assert.assertSame(json, MessageSender.encode(new ObjectMapper(), response));
+
+        // encode again if changed
+        response.setData(2);
+        Assert.assertNotEquals(json, MessageSender.encode(new ObjectMapper(), response));
+    }
+
+    @Test
+    public void testEncodeDeflate() throws Exception {
+        TopicResponse response = TopicResponse.create("market.CAT-CFX.depth.step0", 1);
+        byte[] deflated = MessageSender.encodeDeflate(new ObjectMapper(), response);
+        Assert.assertSame(deflated, MessageSender.encodeDeflate(new ObjectMapper(), response));
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(deflated);
+        byte[] buf = new byte[1024];
+        int n = inflater.inflate(buf);
+        inflater.end();
+        Assert.assertEquals(MessageSender.encode(new ObjectMapper(), response), new String(buf, 0, n, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSlowConsumerDropOldest() throws Exception {
+        WebSocketSendConfig config = new WebSocketSendConfig();
+        config.queueCapacity = 2;
+        sender = sender(false, config);
+
+        // the first one is being sent
+        for (int i = 0; i < 5; i++) {
+            sender.consume(TopicResponse.create("market.CAT-CFX.depth.step0", i));
+        }
+
+        Assert.assertEquals(2, sender.getPendingCount());
+        EasyMock.verify(session);
+    }
+
+    @Test
+    public void testSlowConsumerDisconnect() throws Exception {
+        WebSocketSendConfig config = new WebSocketSendConfig();
+        config.queueCapacity = 1;
+        sender = sender(false, config);
+
+        sender.consume(TopicResponse.create("order.CAT-CFX", 1));
+        sender.consume(TopicResponse.create("order.CAT-CFX", 2));
+        Assert.assertEquals(1, sender.getPendingCount());
+
+        // queue is full
+        sender.consume(TopicResponse.create("order.CAT-CFX", 3));
+        Assert.assertEquals(0, sender.getPendingCount());
+
+        // ignored once closed
+        sender.consume(TopicResponse.create("order.CAT-CFX", 4));
+        Assert.assertEquals(0, sender.getPendingCount());
+    }
+
+    @Test(timeout = 5000)
+    public void testSlowConsumerDisconnectAsync() throws Exception {
+        WebSocketSendConfig config = new WebSocketSendConfig();
+        config.queueCapacity = 1;
+        CountDownLatch closeLatch = new CountDownLatch(1);
+        sender = sender(false, config, closeLatch);
+
+        sender.consume(TopicResponse.create("order.CAT-CFX", 1));
+        sender.consume(TopicResponse.create("order.CAT-CFX", 2));
+
+        // publisher not blocked by the stuck peer
+        sender.consume(TopicResponse.create("order.CAT-CFX", 3));
+        Assert.assertEquals(0, sender.getPendingCount());
+
+        closeLatch.countDown();
     }
 
     @Test
@@ -2,11 +2,11 @@ package conflux.dex.ws;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import conflux.dex.common.BusinessException;
+import conflux.dex.config.WebSocketSendConfig;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
 import javax.websocket.Session;
-import java.util.concurrent.ExecutorService;
 
 public class WebSocketServerTest {
     private WebSocketServer server;
@@ -14,7 +14,6 @@ public class WebSocketServerTest {
     private static final SubscriberManager manager = new SubscriberManager();
 
     private WebSocketServer webSocketServer() {
-        ExecutorService executor = EasyMock.createMock(ExecutorService.class);
         ObjectMapper mapper = new ObjectMapper();
 
         session = EasyMock.createMock(Session.class);
@@ -23,7 +22,7 @@ public class WebSocketServerTest {
         EasyMock.expectLastCall();
         EasyMock.replay(session);
 
-        return new WebSocketServer(manager, executor, mapper);
+        return new WebSocketServer(manager, mapper, new WebSocketSendConfig());
     }
 
     @Test(expected = BusinessException.class)
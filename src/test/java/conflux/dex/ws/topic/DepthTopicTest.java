@@ -16,6 +16,7 @@ public class DepthTopicTest {
         TestDexDao dao = new TestDexDao();
 
         topic.register(dao.product);
+        topic.close();
     }
 
     @Test
@@ -31,6 +32,8 @@ public class DepthTopicTest {
 
         DepthTopic topic = new DepthTopic();
         topic.setEngineService(engineService);
-        topic.publish();
+        topic.handle(engineService.depthAggs.get(dao.product.getId()));
+        topic.publishDiff();
+        topic.close();
     }
 }
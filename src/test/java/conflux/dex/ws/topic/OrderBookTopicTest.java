@@ -0,0 +1,49 @@
+package conflux.dex.ws.topic;
+
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import conflux.dex.common.channel.Channel;
+import conflux.dex.dao.TestDexDao;
+import conflux.dex.service.EngineService;
+import conflux.dex.ws.Subscriber;
+import conflux.dex.ws.TopicRequest;
+import conflux.dex.ws.TopicResponse;
+
+public class OrderBookTopicTest {
+
+    @Test
+    public void testSubscribe() throws Exception {
+        TestDexDao dao = new TestDexDao();
+        Channel<Object> channel = Channel.create();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        EngineService engineService = new EngineService(dao.get(), channel, executor);
+        engineService.start();
+        engineService.addEngine(dao.product);
+
+        OrderBookTopic topic = new OrderBookTopic();
+        topic.setEngineService(engineService);
+
+        String message = String.format("{ \"topic\" : \"market.%s.orderbook\", \"sub\" : true, \"arguments\" : { \"since\" : 0 } }", dao.product.getName());
+        TopicRequest request = new ObjectMapper().readValue(message, TopicRequest.class);
+
+        // snapshot or replayed events sent once subscribed
+        Subscriber subscriber = EasyMock.createNiceMock(Subscriber.class);
+        EasyMock.expect(subscriber.getId()).andReturn("id1").anyTimes();
+        EasyMock.expect(subscriber.getSubscribedTopics()).andReturn(new HashSet<String>()).anyTimes();
+        subscriber.consume(EasyMock.anyObject(TopicResponse.class));
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(subscriber);
+
+        topic.subscribe(subscriber, request);
+
+        EasyMock.verify(subscriber);
+    }
+}